@@ -15,7 +15,8 @@ public enum Errors {
     ERR_AUTHENTICATION(6004, "authentication error"),
     ERR_PROHIBITION(6005, "prohibition error"),
     ERR_DB(6006, "database error"),
-    ERR_CONFIG(6007, "configuration error");
+    ERR_CONFIG(6007, "configuration error"),
+    ERR_UNAVAILABLE(6008, "service unavailable");
 
     private int    code;
     private String message;
@@ -44,6 +45,8 @@ public enum Errors {
             err = Errors.ERR_GRAPH;
         } else if(e instanceof PMConfigurationException) {
             err = Errors.ERR_CONFIG;
+        } else if(e instanceof PMUnavailableException) {
+            err = Errors.ERR_UNAVAILABLE;
         } else {
             err = Errors.ERR_PM;
         }
@@ -0,0 +1,12 @@
+package gov.nist.csd.pm.common.exceptions;
+
+import gov.nist.csd.pm.exceptions.PMException;
+
+/**
+ * Thrown when the server is too busy to handle a request, and the request can be retried later.
+ */
+public class PMUnavailableException extends PMException {
+    public PMUnavailableException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,58 @@
+package gov.nist.csd.pm.common.util;
+
+/**
+ * Allocates the primitive arrays of a structure, such as a LongIntMap, so the structure can be kept on the heap or in
+ * buffers outside of it.
+ */
+public interface ArrayAllocator {
+
+    /**
+     * @return a new array of zeros.
+     */
+    IntArray ints(int length);
+
+    /**
+     * @return a new array of zeros.
+     */
+    LongArray longs(int length);
+
+    /**
+     * Give back the memory of an array that is no longer used.
+     */
+    void free(IntArray array);
+
+    void free(LongArray array);
+
+    /**
+     * @return a new array with the values of the given array, cut off or padded with zeros to the length.  The given
+     * array is freed.
+     */
+    default IntArray resize(IntArray array, int length) {
+        IntArray resized = ints(length);
+        for (int i = Math.min(length, array.length()) - 1; i >= 0; i--) {
+            resized.set(i, array.get(i));
+        }
+        free(array);
+        return resized;
+    }
+
+    /**
+     * @return a new array with the values of the given array, cut off or padded with zeros to the length.  The given
+     * array is freed.
+     */
+    default LongArray resize(LongArray array, int length) {
+        LongArray resized = longs(length);
+        for (int i = Math.min(length, array.length()) - 1; i >= 0; i--) {
+            resized.set(i, array.get(i));
+        }
+        free(array);
+        return resized;
+    }
+
+    /**
+     * @return an allocator of ordinary Java arrays.
+     */
+    static ArrayAllocator heap() {
+        return HeapArrays.INSTANCE;
+    }
+}
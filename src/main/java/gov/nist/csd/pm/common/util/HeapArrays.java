@@ -0,0 +1,89 @@
+package gov.nist.csd.pm.common.util;
+
+import java.util.Arrays;
+
+/**
+ * The ArrayAllocator of ordinary Java arrays.  Freed arrays are collected like any other object.
+ */
+final class HeapArrays implements ArrayAllocator {
+
+    static final HeapArrays INSTANCE = new HeapArrays();
+
+    private HeapArrays() {}
+
+    @Override
+    public IntArray ints(int length) {
+        return new HeapIntArray(new int[length]);
+    }
+
+    @Override
+    public LongArray longs(int length) {
+        return new HeapLongArray(new long[length]);
+    }
+
+    @Override
+    public void free(IntArray array) {
+        // collected with the array
+    }
+
+    @Override
+    public void free(LongArray array) {
+        // collected with the array
+    }
+
+    @Override
+    public IntArray resize(IntArray array, int length) {
+        return new HeapIntArray(Arrays.copyOf(((HeapIntArray) array).values, length));
+    }
+
+    @Override
+    public LongArray resize(LongArray array, int length) {
+        return new HeapLongArray(Arrays.copyOf(((HeapLongArray) array).values, length));
+    }
+
+    private static final class HeapIntArray implements IntArray {
+        private final int[] values;
+
+        HeapIntArray(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, int value) {
+            values[index] = value;
+        }
+
+        @Override
+        public int length() {
+            return values.length;
+        }
+    }
+
+    private static final class HeapLongArray implements LongArray {
+        private final long[] values;
+
+        HeapLongArray(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(int index, long value) {
+            values[index] = value;
+        }
+
+        @Override
+        public int length() {
+            return values.length;
+        }
+    }
+}
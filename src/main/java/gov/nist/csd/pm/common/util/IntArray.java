@@ -0,0 +1,12 @@
+package gov.nist.csd.pm.common.util;
+
+/**
+ * A fixed length array of ints, which an ArrayAllocator can keep on or off the heap.
+ */
+public interface IntArray {
+    int get(int index);
+
+    void set(int index, int value);
+
+    int length();
+}
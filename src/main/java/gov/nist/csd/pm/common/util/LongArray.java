@@ -0,0 +1,12 @@
+package gov.nist.csd.pm.common.util;
+
+/**
+ * A fixed length array of longs, which an ArrayAllocator can keep on or off the heap.
+ */
+public interface LongArray {
+    long get(int index);
+
+    void set(int index, long value);
+
+    int length();
+}
@@ -0,0 +1,201 @@
+package gov.nist.csd.pm.common.util;
+
+/**
+ * A hash map from long keys to non-negative int values, stored in two primitive arrays so no key or value is boxed.
+ * Collisions are resolved by linear probing, and removals shift the following entries back so no tombstones are left.
+ * Any long, including 0, can be a key.  The arrays are allocated by an ArrayAllocator, so they can be kept off the
+ * heap, as a MappedGraph does with its map of node IDs to slots.
+ *
+ * Not thread safe.
+ */
+public class LongIntMap {
+
+    private static final int   MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR  = 0.6f;
+
+    private ArrayAllocator storage;
+    private LongArray      keys;
+    /**
+     * The value plus one, so 0 marks an empty entry.
+     */
+    private IntArray       values;
+    private int            size;
+    private int            mask;
+
+    public LongIntMap() {
+        this(ArrayAllocator.heap(), MIN_CAPACITY);
+    }
+
+    /**
+     * @param expected the number of keys expected, so the map does not have to grow.
+     */
+    public LongIntMap(int expected) {
+        this(ArrayAllocator.heap(), expected);
+    }
+
+    public LongIntMap(ArrayAllocator storage) {
+        this(storage, MIN_CAPACITY);
+    }
+
+    public LongIntMap(ArrayAllocator storage, int expected) {
+        this.storage = storage;
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expected) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return the value of the key, or -1 if the key is not in the map.
+     */
+    public int get(long key) {
+        int i = index(key);
+        int value;
+        while ((value = values.get(i)) != 0) {
+            if (keys.get(i) == key) {
+                return value - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param value the value, which must not be negative.
+     */
+    public void put(long key, int value) {
+        checkValue(value);
+
+        int i = index(key);
+        while (values.get(i) != 0) {
+            if (keys.get(i) == key) {
+                values.set(i, value + 1);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys.set(i, key);
+        values.set(i, value + 1);
+        if (++size > keys.length() * LOAD_FACTOR) {
+            resize(keys.length() << 1);
+        }
+    }
+
+    /**
+     * Map the key to the value if the key is not already in the map.
+     * @param value the value, which must not be negative.
+     * @return the value the key is mapped to.
+     */
+    public int putIfAbsent(long key, int value) {
+        checkValue(value);
+
+        int i = index(key);
+        int existing;
+        while ((existing = values.get(i)) != 0) {
+            if (keys.get(i) == key) {
+                return existing - 1;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys.set(i, key);
+        values.set(i, value + 1);
+        if (++size > keys.length() * LOAD_FACTOR) {
+            resize(keys.length() << 1);
+        }
+        return value;
+    }
+
+    /**
+     * @return the value the key had, or -1 if the key was not in the map.
+     */
+    public int remove(long key) {
+        int i = index(key);
+        while (values.get(i) != 0) {
+            if (keys.get(i) == key) {
+                int value = values.get(i) - 1;
+                shiftBack(i);
+                size--;
+                return value;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int i = values.length() - 1; i >= 0; i--) {
+            values.set(i, 0);
+        }
+        size = 0;
+    }
+
+    /**
+     * @return the bytes used by the arrays of the map.
+     */
+    public long bytes() {
+        return 8L * keys.length() + 4L * values.length();
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("a value cannot be negative");
+        }
+    }
+
+    /**
+     * Move the entries after the removed one back if their probe sequence passes through it.
+     */
+    private void shiftBack(int removed) {
+        int gap = removed;
+        int i = (gap + 1) & mask;
+        while (values.get(i) != 0) {
+            int home = index(keys.get(i));
+            // the entry can move to the gap if its home is not between the gap and its position
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys.set(gap, keys.get(i));
+                values.set(gap, values.get(i));
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        values.set(gap, 0);
+    }
+
+    private void resize(int capacity) {
+        LongArray oldKeys = keys;
+        IntArray oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length(); i++) {
+            int value = oldValues.get(i);
+            if (value != 0) {
+                long key = oldKeys.get(i);
+                int j = index(key);
+                while (values.get(j) != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys.set(j, key);
+                values.set(j, value);
+            }
+        }
+        storage.free(oldKeys);
+        storage.free(oldValues);
+    }
+
+    private void allocate(int capacity) {
+        keys = storage.longs(capacity);
+        values = storage.ints(capacity);
+        mask = capacity - 1;
+    }
+
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
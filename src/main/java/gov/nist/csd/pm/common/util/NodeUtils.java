@@ -12,6 +12,11 @@ import java.util.HashMap;
  * Utility methods for nodes.
  */
 public class NodeUtils {
+    /**
+     * The number of PBKDF2 iterations used by generatePasswordHash(String).
+     */
+    public static final int DEFAULT_HASH_ITERATIONS = 100;
+
     /**
      * Utility method to hash a password of a user. This will be used by the session and node service classes.
      * @param password The plaintext password to hash.
@@ -20,7 +25,25 @@ public class NodeUtils {
      * @throws NoSuchAlgorithmException If there is no such algorithm exists when hashing the password.
      */
     public static String generatePasswordHash(String password) throws InvalidKeySpecException, NoSuchAlgorithmException {
-        int iterations = 100;
+        return generatePasswordHash(password, DEFAULT_HASH_ITERATIONS);
+    }
+
+    /**
+     * Hash a password with the given number of PBKDF2 iterations.  Hashes with 100 to 999 iterations are written as
+     * the 3 digit iteration count followed by the salt and hash, which is the format older versions read.  Any other
+     * count is written as iterations:salt:hash.
+     * @param password The plaintext password to hash.
+     * @param iterations The number of iterations, at least 1.
+     * @return the hash of the password.
+     * @throws InvalidKeySpecException If there is an error with the KeySpec
+     * @throws NoSuchAlgorithmException If there is no such algorithm exists when hashing the password.
+     */
+    public static String generatePasswordHash(String password, int iterations)
+            throws InvalidKeySpecException, NoSuchAlgorithmException {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("the number of hash iterations must be at least 1");
+        }
+
         char[] chars = password.toCharArray();
         SecureRandom sr = SecureRandom.getInstance("SHA1PRNG");
         byte[] salt = new byte[16];
@@ -29,7 +52,18 @@ public class NodeUtils {
         PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, 64 * 8);
         SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
         byte[] hash = skf.generateSecret(spec).getEncoded();
-        return iterations + toHex(salt) + toHex(hash);
+        if (iterations >= 100 && iterations <= 999) {
+            return iterations + toHex(salt) + toHex(hash);
+        }
+        return iterations + ":" + toHex(salt) + ":" + toHex(hash);
+    }
+
+    /**
+     * @param stored The hash of a password.
+     * @return the number of PBKDF2 iterations the password was hashed with.
+     */
+    public static int getHashIterations(String stored) {
+        return Integer.parseInt(splitHash(stored)[0]);
     }
 
     /**
@@ -41,12 +75,10 @@ public class NodeUtils {
      * @throws NoSuchAlgorithmException If there is no such algorithm exists when hashing the password.
      */
     public static boolean checkPasswordHash(String stored, String toCheck) throws NoSuchAlgorithmException, InvalidKeySpecException{
-        String part0 = stored.substring(0, 3);
-        String part1 = stored.substring(3, 35);
-        String part2 = stored.substring(35);
-        int iterations = Integer.parseInt(part0);
-        byte[] salt = fromHex(part1);
-        byte[] hash = fromHex(part2);
+        String[] parts = splitHash(stored);
+        int iterations = Integer.parseInt(parts[0]);
+        byte[] salt = fromHex(parts[1]);
+        byte[] hash = fromHex(parts[2]);
 
         PBEKeySpec spec = new PBEKeySpec(toCheck.toCharArray(), salt, iterations, hash.length * 8);
         SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
@@ -63,6 +95,16 @@ public class NodeUtils {
         return diff == 0;
     }
 
+    /**
+     * @return the iterations, salt, and hash of a stored password hash in either format.
+     */
+    private static String[] splitHash(String stored) {
+        if (stored.indexOf(':') >= 0) {
+            return stored.split(":", 3);
+        }
+        return new String[]{stored.substring(0, 3), stored.substring(3, 35), stored.substring(35)};
+    }
+
     private static byte[] fromHex(String hex)
     {
         byte[] bytes = new byte[hex.length() / 2];
@@ -0,0 +1,110 @@
+package gov.nist.csd.pm.common.util;
+
+import gov.nist.csd.pm.common.constants.Operations;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every operation a small int ordinal, so a set of operations can be a bitset of ordinals and set operations
+ * are word operations.  The constants of Operations are registered first, and any other operation is registered the
+ * first time it is stored in the policy.  Operations that only come from requests are looked up with find, which
+ * does not register them, so a client cannot make the registry grow.  Ordinals only live as long as the process and
+ * are never stored.
+ *
+ * The operations are kept in chunks of a fixed size, so registering an operation copies at most the array of chunks,
+ * never the operations themselves.  Looking up an operation is lock free and can be done from any thread.
+ */
+public class OperationRegistry {
+
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_MASK  = (1 << CHUNK_SHIFT) - 1;
+
+    private static final ConcurrentHashMap<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+
+    private static volatile String[][] chunks = new String[0][];
+    private static volatile int        size;
+
+    static {
+        for (Field field : Operations.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    ordinal((String) field.get(null));
+                }
+                catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private OperationRegistry() {}
+
+    /**
+     * @return the ordinal of the operation, registering it if it has not been seen.  Only call this for operations that
+     * are stored in the policy.
+     * @throws IllegalArgumentException if the operation is null.
+     */
+    public static int ordinal(String operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("an operation cannot be null");
+        }
+
+        Integer ordinal = ORDINALS.get(operation);
+        return ordinal != null ? ordinal : register(operation);
+    }
+
+    /**
+     * Find the ordinal of an operation without registering it, for operations that come from a request and may not
+     * be in the policy.
+     * @return the ordinal of the operation, or -1 if it has not been registered.
+     */
+    public static int find(String operation) {
+        Integer ordinal = operation == null ? null : ORDINALS.get(operation);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * @return the operation with the given ordinal.
+     */
+    public static String operation(int ordinal) {
+        return chunks[ordinal >>> CHUNK_SHIFT][ordinal & CHUNK_MASK];
+    }
+
+    /**
+     * @return the registered string equal to the operation, so equal operations read from different places share one
+     * string.
+     */
+    public static String intern(String operation) {
+        return operation(ordinal(operation));
+    }
+
+    /**
+     * @return the number of registered operations.
+     */
+    public static int size() {
+        return size;
+    }
+
+    private static synchronized int register(String operation) {
+        Integer ordinal = ORDINALS.get(operation);
+        if (ordinal != null) {
+            return ordinal;
+        }
+
+        ordinal = size;
+        String[][] current = chunks;
+        if ((ordinal >>> CHUNK_SHIFT) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new String[CHUNK_MASK + 1];
+            chunks = current;
+        }
+        current[ordinal >>> CHUNK_SHIFT][ordinal & CHUNK_MASK] = operation;
+        // publish the operation before its ordinal, so anyone who finds the ordinal can look up the operation
+        size = ordinal + 1;
+        ORDINALS.put(operation, ordinal);
+        return ordinal;
+    }
+}
@@ -0,0 +1,231 @@
+package gov.nist.csd.pm.common.util;
+
+import java.util.*;
+
+/**
+ * An immutable set of operations stored as a bitset of their OperationRegistry ordinals.  Union, intersection, and
+ * difference are word operations, and contains() is a bit test, so decisions can combine operation sets without
+ * hashing strings.  The strings are only looked up when the set is iterated, such as when it is written in a
+ * response.
+ *
+ * An OperationSet is equal to any Set with the same operations, and has the same hash code, so it can be used in
+ * place of a HashSet of operations.  Methods that would change the set throw UnsupportedOperationException.
+ */
+public final class OperationSet extends AbstractSet<String> {
+
+    public static final OperationSet EMPTY = new OperationSet(new long[0]);
+
+    /**
+     * The bits of the ordinals, without trailing zero words so equal sets have equal arrays.
+     */
+    private final long[] bits;
+    private final int    size;
+    private int          hash;
+
+    private OperationSet(long[] bits) {
+        this.bits = bits;
+        int size = 0;
+        for (long word : bits) {
+            size += Long.bitCount(word);
+        }
+        this.size = size;
+    }
+
+    /**
+     * @return a set with the given operations, or the set itself if it is an OperationSet.  Operations not seen
+     * before are registered.
+     * @throws IllegalArgumentException if an operation is null.
+     */
+    public static OperationSet of(Collection<String> operations) {
+        if (operations instanceof OperationSet) {
+            return (OperationSet) operations;
+        } else if (operations.isEmpty()) {
+            return EMPTY;
+        }
+
+        long[] bits = new long[1];
+        for (String operation : operations) {
+            int ordinal = OperationRegistry.ordinal(operation);
+            if (ordinal >>> 6 >= bits.length) {
+                bits = Arrays.copyOf(bits, (ordinal >>> 6) + 1);
+            }
+            bits[ordinal >>> 6] |= 1L << ordinal;
+        }
+        return fromTrimmed(trim(bits));
+    }
+
+    public static OperationSet of(String... operations) {
+        return of(Arrays.asList(operations));
+    }
+
+    /**
+     * Make a set of the given operations without registering any, for operations that come from a request or are
+     * only compared with the operations of the policy.  An operation that has not been registered is not in any
+     * association, so it can be left out of a set that is only compared with granted operations.
+     * @return a set with the registered operations among the given ones.
+     */
+    public static OperationSet find(Collection<String> operations) {
+        if (operations instanceof OperationSet) {
+            return (OperationSet) operations;
+        } else if (operations.isEmpty()) {
+            return EMPTY;
+        }
+
+        long[] bits = new long[1];
+        for (String operation : operations) {
+            int ordinal = OperationRegistry.find(operation);
+            if (ordinal < 0) {
+                continue;
+            }
+            if (ordinal >>> 6 >= bits.length) {
+                bits = Arrays.copyOf(bits, (ordinal >>> 6) + 1);
+            }
+            bits[ordinal >>> 6] |= 1L << ordinal;
+        }
+        return fromTrimmed(trim(bits));
+    }
+
+    /**
+     * @param bits a bitset of OperationRegistry ordinals.  It is copied.
+     * @return the set of the operations in the bitset.
+     */
+    public static OperationSet fromBits(long[] bits) {
+        long[] trimmed = trim(bits);
+        return fromTrimmed(trimmed == bits ? bits.clone() : trimmed);
+    }
+
+    /**
+     * @return a copy of the bitset of the ordinals of the operations.
+     */
+    public long[] toBits() {
+        return bits.clone();
+    }
+
+    /**
+     * @return true if the set has the operation with the given ordinal.
+     */
+    public boolean containsOrdinal(int ordinal) {
+        int word = ordinal >>> 6;
+        return ordinal >= 0 && word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    public OperationSet union(OperationSet other) {
+        long[] longer = bits.length >= other.bits.length ? bits : other.bits;
+        long[] shorter = longer == bits ? other.bits : bits;
+        long[] result = longer.clone();
+        for (int i = 0; i < shorter.length; i++) {
+            result[i] |= shorter[i];
+        }
+        return fromTrimmed(result);
+    }
+
+    public OperationSet intersection(OperationSet other) {
+        long[] result = new long[Math.min(bits.length, other.bits.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bits[i] & other.bits[i];
+        }
+        return fromTrimmed(trim(result));
+    }
+
+    /**
+     * @return the operations of this set that are not in the other.
+     */
+    public OperationSet difference(OperationSet other) {
+        long[] result = bits.clone();
+        for (int i = 0; i < Math.min(result.length, other.bits.length); i++) {
+            result[i] &= ~other.bits[i];
+        }
+        return fromTrimmed(trim(result));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && containsOrdinal(OperationRegistry.find((String) o));
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (!(c instanceof OperationSet)) {
+            return super.containsAll(c);
+        }
+
+        long[] other = ((OperationSet) c).bits;
+        if (other.length > bits.length) {
+            return false;
+        }
+        for (int i = 0; i < other.length; i++) {
+            if ((other[i] & ~bits[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int  word = 0;
+            private long remaining = bits.length == 0 ? 0 : bits[0];
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0 && word < bits.length - 1) {
+                    remaining = bits[++word];
+                }
+                return remaining != 0;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int ordinal = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return OperationRegistry.operation(ordinal);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof OperationSet) {
+            return Arrays.equals(bits, ((OperationSet) o).bits);
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * The hash code of a Set is the sum of the hash codes of its elements, so it is computed from the strings once and
+     * kept.
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && size > 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    private static OperationSet fromTrimmed(long[] bits) {
+        return bits.length == 0 ? EMPTY : new OperationSet(bits);
+    }
+
+    /**
+     * @return the bits without trailing zero words, or the same array if it has none.
+     */
+    private static long[] trim(long[] bits) {
+        int length = bits.length;
+        while (length > 0 && bits[length - 1] == 0) {
+            length--;
+        }
+        return length == bits.length ? bits : Arrays.copyOf(bits, length);
+    }
+}
@@ -0,0 +1,85 @@
+package gov.nist.csd.pm.pap;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Releases the memory of a direct or mapped buffer at once, instead of when the collector finds the buffer
+ * unreachable.  The JDK has no public method for this, so the cleaner is called through sun.misc.Unsafe.invokeCleaner
+ * on Java 9 and later, or through the buffer's own cleaner on Java 8.  If neither can be reached, buffers are left for
+ * the collector.
+ *
+ * A released buffer must not be used again, as its memory is given back to the operating system.
+ */
+final class BufferCleaner {
+
+    private static final Logger LOGGER = Logger.getLogger(BufferCleaner.class.getName());
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            }
+            catch (ReflectiveOperationException | RuntimeException e1) {
+                LOGGER.warning("buffers cannot be released explicitly, their memory is given back when they are "
+                        + "collected: " + e1);
+                cleaner = null;
+                clean = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    private BufferCleaner() {}
+
+    /**
+     * Give back the memory of the buffer.
+     * @param buffer a direct or mapped buffer, not a duplicate or slice of one.
+     * @return true if the memory was given back, false if it is left for the collector.
+     */
+    static boolean release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return false;
+        }
+
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            } else if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                    return true;
+                }
+            }
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warning("could not release a buffer, it is left for the collector: " + e);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,239 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.util.LongArray;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Node records kept outside of the heap.  Records are appended to a log of buffers from a BufferStorage, and each slot
+ * holds the position of its record in the log.  A record is its length, the ordinal of its type, its name, and the
+ * number of its properties followed by their keys and values, with strings written as their UTF-8 length and bytes.
+ *
+ * The log grows in chunks that double in size up to 16MB.  Replaced and removed records are left in the log as
+ * garbage.  Once there is more garbage than live records, the live records are copied to a new log and the old one is
+ * freed.
+ *
+ * Not thread safe.
+ */
+class BufferNodeRecords implements NodeRecords {
+
+    private static final int        MIN_CHUNK_BYTES = 64 << 10;
+    private static final int        CHUNK_BYTES     = 16 << 20;
+    private static final NodeType[] TYPES           = NodeType.values();
+
+    private BufferStorage    storage;
+    /**
+     * The chunk of each record in the high int and its offset in the low int, plus one, so 0 marks an empty slot.
+     */
+    private LongArray        positions;
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private int              writeOffset;
+    private long             liveBytes;
+    private long             garbageBytes;
+
+    BufferNodeRecords(BufferStorage storage) {
+        this.storage = storage;
+        this.positions = storage.longs(0);
+    }
+
+    @Override
+    public void ensureCapacity(int slots) {
+        if (slots > positions.length()) {
+            positions = storage.resize(positions, slots);
+        }
+    }
+
+    @Override
+    public void set(int slot, String name, NodeType type, Map<String, String> properties) {
+        discard(slot);
+        positions.set(slot, append(encode(name, type, properties)) + 1);
+
+        if (garbageBytes > CHUNK_BYTES && garbageBytes > liveBytes) {
+            rewrite();
+        }
+    }
+
+    @Override
+    public void remove(int slot) {
+        discard(slot);
+        positions.set(slot, 0);
+    }
+
+    @Override
+    public String getName(int slot) {
+        ByteBuffer record = record(slot);
+        record.position(record.position() + 5);
+        return readString(record);
+    }
+
+    @Override
+    public NodeType getType(int slot) {
+        long position = positions.get(slot) - 1;
+        if (position < 0) {
+            return null;
+        }
+        return TYPES[chunks.get((int) (position >>> 32)).get((int) position + 4)];
+    }
+
+    @Override
+    public Map<String, String> getProperties(int slot) {
+        ByteBuffer record = record(slot);
+        record.position(record.position() + 5);
+        readString(record);
+        int count = record.getInt();
+        Map<String, String> properties = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            properties.put(readString(record), readString(record));
+        }
+        return properties;
+    }
+
+    @Override
+    public boolean hasProperties(int slot, Map<String, String> props) {
+        if (props == null || props.isEmpty()) {
+            return true;
+        }
+
+        Map<String, String> properties = getProperties(slot);
+        for (Map.Entry<String, String> prop : props.entrySet()) {
+            if (!properties.containsKey(prop.getKey())
+                    || !Objects.equals(properties.get(prop.getKey()), prop.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long bytes() {
+        long bytes = 8L * positions.length();
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a view of the record of the slot, positioned at its start.
+     */
+    private ByteBuffer record(int slot) {
+        long position = positions.get(slot) - 1;
+        ByteBuffer record = chunks.get((int) (position >>> 32)).duplicate();
+        record.position((int) position);
+        return record;
+    }
+
+    private void discard(int slot) {
+        long position = positions.get(slot) - 1;
+        if (position >= 0) {
+            int length = chunks.get((int) (position >>> 32)).getInt((int) position);
+            liveBytes -= length;
+            garbageBytes += length;
+        }
+    }
+
+    /**
+     * @return the position the record was written at.
+     */
+    private long append(byte[] record) {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.capacity() - writeOffset < record.length) {
+            // chunks double in size up to CHUNK_BYTES, so a small graph does not take a large chunk
+            int size = chunk == null ? MIN_CHUNK_BYTES : Math.min(CHUNK_BYTES, chunk.capacity() * 2);
+            chunk = storage.allocate(Math.max(size, record.length));
+            chunks.add(chunk);
+            writeOffset = 0;
+        }
+
+        long position = ((long) (chunks.size() - 1) << 32) | writeOffset;
+        ByteBuffer view = chunk.duplicate();
+        view.position(writeOffset);
+        view.put(record);
+        writeOffset += record.length;
+        liveBytes += record.length;
+        return position;
+    }
+
+    /**
+     * Copy the live records to a new log.
+     */
+    private void rewrite() {
+        List<ByteBuffer> old = chunks;
+        chunks = new ArrayList<>();
+        writeOffset = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+
+        for (int slot = 0; slot < positions.length(); slot++) {
+            long position = positions.get(slot) - 1;
+            if (position < 0) {
+                continue;
+            }
+            ByteBuffer chunk = old.get((int) (position >>> 32));
+            byte[] record = new byte[chunk.getInt((int) position)];
+            ByteBuffer view = chunk.duplicate();
+            view.position((int) position);
+            view.get(record);
+            positions.set(slot, append(record) + 1);
+        }
+
+        for (ByteBuffer chunk : old) {
+            storage.free(chunk);
+        }
+    }
+
+    private static byte[] encode(String name, NodeType type, Map<String, String> properties) {
+        byte[] nameBytes = utf8(name);
+        List<byte[]> strings = new ArrayList<>();
+        if (properties != null) {
+            for (Map.Entry<String, String> prop : properties.entrySet()) {
+                strings.add(utf8(prop.getKey()));
+                strings.add(utf8(prop.getValue()));
+            }
+        }
+
+        int length = 4 + 1 + 4 + nameBytes.length + 4;
+        for (byte[] str : strings) {
+            length += 4 + (str == null ? 0 : str.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length);
+        record.put((byte) type.ordinal());
+        writeString(record, nameBytes);
+        record.putInt(strings.size() / 2);
+        for (byte[] str : strings) {
+            writeString(record, str);
+        }
+        return record.array();
+    }
+
+    private static byte[] utf8(String str) {
+        return str == null ? null : str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] str) {
+        if (str == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(str.length);
+            buffer.put(str);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,214 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.util.IntArray;
+import gov.nist.csd.pm.common.util.LongArray;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Graph storage outside of the heap, so the collector does not have to trace or copy the graph however large it grows.
+ * Arrays are kept in direct buffers, or in buffers mapped from files in a directory so the operating system can page
+ * them out under memory pressure.  A mapped file is deleted as soon as it is mapped, so nothing is left behind if the
+ * process dies, and its space is given back once the buffer is unmapped.
+ *
+ * An array larger than a buffer can hold is split into segments of 1GB.  The buffers of a freed array are released at
+ * once with BufferCleaner, so rebuilding an array does not leave the old copy waiting for a collection.  Where buffers
+ * cannot be released, a freed buffer is counted as off heap until the collector finds it unreachable.
+ *
+ * Not thread safe.
+ */
+class BufferStorage extends GraphStorage {
+
+    private static final int SEGMENT_SHIFT = 30;
+
+    private Path directory;
+    private long offHeapBytes;
+
+    /**
+     * The freed buffers that could not be released, and their sizes, until they are collected.
+     */
+    private ReferenceQueue<ByteBuffer>          collected  = new ReferenceQueue<>();
+    private Map<Reference<ByteBuffer>, Integer> unreleased = new HashMap<>();
+
+    /**
+     * @param directory the directory to create mapped files in, or null to use direct buffers.
+     */
+    BufferStorage(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public IntArray ints(int length) {
+        return new BufferIntArray(segments(4L * length), length);
+    }
+
+    @Override
+    public LongArray longs(int length) {
+        return new BufferLongArray(segments(8L * length), length);
+    }
+
+    @Override
+    NodeRecords records() {
+        return new BufferNodeRecords(this);
+    }
+
+    @Override
+    public void free(IntArray array) {
+        for (ByteBuffer segment : ((BufferIntArray) array).segments) {
+            free(segment);
+        }
+    }
+
+    @Override
+    public void free(LongArray array) {
+        for (ByteBuffer segment : ((BufferLongArray) array).segments) {
+            free(segment);
+        }
+    }
+
+    /**
+     * @return the bytes allocated outside of the heap and not yet given back, including freed buffers that are waiting
+     * to be collected.
+     */
+    @Override
+    long getOffHeapBytes() {
+        pollCollected();
+        return offHeapBytes;
+    }
+
+    /**
+     * @return a new buffer of zeros, in big endian order.
+     */
+    ByteBuffer allocate(int bytes) {
+        pollCollected();
+        ByteBuffer buffer;
+        if (directory == null) {
+            buffer = ByteBuffer.allocateDirect(bytes);
+        } else {
+            buffer = map(bytes);
+        }
+        offHeapBytes += bytes;
+        return buffer;
+    }
+
+    /**
+     * Give back the memory of a buffer from allocate that is no longer used.  The buffer must not be used again.
+     */
+    void free(ByteBuffer buffer) {
+        if (BufferCleaner.release(buffer)) {
+            offHeapBytes -= buffer.capacity();
+        } else {
+            unreleased.put(new PhantomReference<>(buffer, collected), buffer.capacity());
+        }
+    }
+
+    /**
+     * Stop counting the freed buffers the collector has found unreachable.
+     */
+    private void pollCollected() {
+        Reference<? extends ByteBuffer> ref;
+        while ((ref = collected.poll()) != null) {
+            Integer bytes = unreleased.remove(ref);
+            if (bytes != null) {
+                offHeapBytes -= bytes;
+            }
+        }
+    }
+
+    private ByteBuffer map(int bytes) {
+        try {
+            Path file = Files.createTempFile(directory, "graph", ".seg");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // mapping past the end of the file grows it, and the new pages read as zeros
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            } finally {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    // some platforms cannot delete a mapped file
+                    file.toFile().deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("could not map %d bytes in %s", bytes, directory), e);
+        }
+    }
+
+    private ByteBuffer[] segments(long bytes) {
+        int count = (int) ((bytes + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+        ByteBuffer[] segments = new ByteBuffer[Math.max(1, count)];
+        for (int i = 0; i < segments.length; i++) {
+            int size = (int) Math.min(1L << SEGMENT_SHIFT, bytes - ((long) i << SEGMENT_SHIFT));
+            segments[i] = allocate(size).order(ByteOrder.nativeOrder());
+        }
+        return segments;
+    }
+
+    private static final class BufferIntArray implements IntArray {
+        private static final int SHIFT = SEGMENT_SHIFT - 2;
+        private static final int MASK  = (1 << SHIFT) - 1;
+
+        private final ByteBuffer[] segments;
+        private final int          length;
+
+        BufferIntArray(ByteBuffer[] segments, int length) {
+            this.segments = segments;
+            this.length = length;
+        }
+
+        @Override
+        public int get(int index) {
+            return segments[index >>> SHIFT].getInt((index & MASK) << 2);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            segments[index >>> SHIFT].putInt((index & MASK) << 2, value);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+    }
+
+    private static final class BufferLongArray implements LongArray {
+        private static final int SHIFT = SEGMENT_SHIFT - 3;
+        private static final int MASK  = (1 << SHIFT) - 1;
+
+        private final ByteBuffer[] segments;
+        private final int          length;
+
+        BufferLongArray(ByteBuffer[] segments, int length) {
+            this.segments = segments;
+            this.length = length;
+        }
+
+        @Override
+        public long get(int index) {
+            return segments[index >>> SHIFT].getLong((index & MASK) << 3);
+        }
+
+        @Override
+        public void set(int index, long value) {
+            segments[index >>> SHIFT].putLong((index & MASK) << 3, value);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+
+/**
+ * A read made while no change to the policy is half committed, so every change already written to the database has
+ * also been applied in memory.  Pass one to GraphPAP.readCommitted() and ProhibitionsPAP.readCommitted().
+ * @param <T> the type of the value read.
+ */
+public interface CommittedRead<T> {
+
+    /**
+     * @return the value read.
+     * @throws PMException if there is an error reading the value.
+     */
+    T read() throws PMException;
+}
@@ -0,0 +1,400 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.util.IntArray;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The edges out of each node of a CompactGraph, from dense node slots to dense node slots, optionally with an int
+ * label on each edge.
+ *
+ * Most edges are kept in compressed sparse row form: one int array of the edges of every node, sorted by target within
+ * each node, and an array of where each node's edges start.  Edges added since the arrays were built go to a small
+ * open addressing hash table per node, and removed edges are marked in a bit set instead of being moved.  Once the
+ * added and removed edges make up a quarter of the arrays, the arrays are rebuilt with them.  Looking up an edge is a
+ * binary search of the node's sorted edges and a probe of its table.
+ *
+ * The sorted arrays are allocated by a GraphStorage, so they can be kept off the heap.  The tables of added edges and
+ * the set of removed edges stay on the heap, and are bounded by the rebuild.
+ *
+ * Not thread safe.
+ */
+class CompactAdjacency {
+
+    /**
+     * Visits the edges of a node.
+     */
+    interface EdgeVisitor {
+        void visit(int target, int label);
+    }
+
+    private static final int EMPTY       = -1;
+    private static final int MIN_REBUILD = 1024;
+    private static final int MIN_TABLE   = 4;
+
+    private GraphStorage storage;
+    private boolean      labeled;
+
+    private IntArray offsets;
+    private IntArray targets;
+    private IntArray labels;
+    private BitSet   removedEdges = new BitSet();
+
+    private int[][] added       = new int[0][];
+    private int[][] addedLabels;
+    private int[]   addedCounts = new int[0];
+
+    private int edges;
+    private int changes;
+
+    /**
+     * @param labeled whether edges have labels.
+     */
+    CompactAdjacency(boolean labeled) {
+        this(GraphStorage.heap(), labeled);
+    }
+
+    /**
+     * @param storage where the sorted arrays are allocated.
+     * @param labeled whether edges have labels.
+     */
+    CompactAdjacency(GraphStorage storage, boolean labeled) {
+        this.storage = storage;
+        this.labeled = labeled;
+        offsets = storage.ints(1);
+        targets = storage.ints(0);
+        if (labeled) {
+            labels = storage.ints(0);
+            addedLabels = new int[0][];
+        }
+    }
+
+    /**
+     * @return the number of edges.
+     */
+    int size() {
+        return edges;
+    }
+
+    /**
+     * Add an edge, or change the label of the edge if it exists.
+     * @return true if the edge did not exist.
+     */
+    boolean add(int from, int to, int label) {
+        int pos = find(from, to);
+        if (pos >= 0) {
+            if (labeled) {
+                labels.set(pos, label);
+            }
+            return false;
+        }
+
+        ensureSlots(from + 1);
+        int[] table = added[from];
+        if (table != null) {
+            int i = probe(table, to);
+            if (table[i] == to) {
+                if (labeled) {
+                    addedLabels[from][i] = label;
+                }
+                return false;
+            }
+        }
+
+        if (table == null || (addedCounts[from] + 1) * 4 > table.length * 3) {
+            grow(from);
+            table = added[from];
+        }
+        int i = probe(table, to);
+        table[i] = to;
+        if (labeled) {
+            addedLabels[from][i] = label;
+        }
+        addedCounts[from]++;
+        edges++;
+        changed();
+        return true;
+    }
+
+    /**
+     * @return true if the edge existed.
+     */
+    boolean remove(int from, int to) {
+        int pos = find(from, to);
+        if (pos >= 0) {
+            removedEdges.set(pos);
+            edges--;
+            changed();
+            return true;
+        }
+
+        if (from >= added.length || added[from] == null) {
+            return false;
+        }
+        int[] table = added[from];
+        int i = probe(table, to);
+        if (table[i] != to) {
+            return false;
+        }
+
+        deleteFromTable(from, i);
+        addedCounts[from]--;
+        if (addedCounts[from] == 0) {
+            added[from] = null;
+            if (labeled) {
+                addedLabels[from] = null;
+            }
+        }
+        edges--;
+        changed();
+        return true;
+    }
+
+    boolean contains(int from, int to) {
+        if (find(from, to) >= 0) {
+            return true;
+        }
+        if (from < added.length && added[from] != null) {
+            int[] table = added[from];
+            return table[probe(table, to)] == to;
+        }
+        return false;
+    }
+
+    /**
+     * @return the label of the edge, or -1 if the edges are not labeled or the edge does not exist.
+     */
+    int label(int from, int to) {
+        if (!labeled) {
+            return EMPTY;
+        }
+
+        int pos = find(from, to);
+        if (pos >= 0) {
+            return labels.get(pos);
+        }
+        if (from < added.length && added[from] != null) {
+            int i = probe(added[from], to);
+            if (added[from][i] == to) {
+                return addedLabels[from][i];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return the number of edges out of the node.
+     */
+    int degree(int from) {
+        int degree = from < added.length ? addedCounts[from] : 0;
+        if (from < offsets.length() - 1) {
+            for (int pos = offsets.get(from), end = offsets.get(from + 1); pos < end; pos++) {
+                if (!removedEdges.get(pos)) {
+                    degree++;
+                }
+            }
+        }
+        return degree;
+    }
+
+    void forEach(int from, EdgeVisitor visitor) {
+        if (from < offsets.length() - 1) {
+            for (int pos = offsets.get(from), end = offsets.get(from + 1); pos < end; pos++) {
+                if (!removedEdges.get(pos)) {
+                    visitor.visit(targets.get(pos), labeled ? labels.get(pos) : EMPTY);
+                }
+            }
+        }
+        if (from < added.length && added[from] != null) {
+            int[] table = added[from];
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != EMPTY) {
+                    visitor.visit(table[i], labeled ? addedLabels[from][i] : EMPTY);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the targets of the edges out of the node.
+     */
+    int[] targets(int from) {
+        int[] result = new int[degree(from)];
+        int[] count = new int[1];
+        forEach(from, (target, label) -> result[count[0]++] = target);
+        return result;
+    }
+
+    /**
+     * Rebuild the sorted arrays with the added and removed edges.  The old arrays are freed as soon as they have been
+     * copied, which releases their buffers at once when the storage is off the heap.
+     */
+    void rebuild() {
+        int slots = Math.max(offsets.length() - 1, added.length);
+        IntArray newOffsets = storage.ints(slots + 1);
+        IntArray newTargets = storage.ints(edges);
+        IntArray newLabels = labeled ? storage.ints(edges) : null;
+
+        int pos = 0;
+        long[] merged = new long[0];
+        for (int from = 0; from < slots; from++) {
+            newOffsets.set(from, pos);
+            int degree = degree(from);
+            if (merged.length < degree) {
+                merged = new long[Math.max(degree, merged.length * 2)];
+            }
+            long[] buffer = merged;
+            int[] counter = new int[1];
+            // sort by target, carrying the label in the low bits
+            forEach(from, (target, label) -> buffer[counter[0]++] = ((long) target << 32) | (label & 0xffffffffL));
+            int count = counter[0];
+            Arrays.sort(buffer, 0, count);
+            for (int i = 0; i < count; i++) {
+                newTargets.set(pos, (int) (buffer[i] >>> 32));
+                if (labeled) {
+                    newLabels.set(pos, (int) buffer[i]);
+                }
+                pos++;
+            }
+        }
+        newOffsets.set(slots, pos);
+
+        storage.free(offsets);
+        storage.free(targets);
+        if (labeled) {
+            storage.free(labels);
+        }
+        offsets = newOffsets;
+        targets = newTargets;
+        labels = newLabels;
+        removedEdges = new BitSet();
+        // the tables of added edges are allocated again when edges are next added
+        added = new int[0][];
+        addedCounts = new int[0];
+        if (labeled) {
+            addedLabels = new int[0][];
+        }
+        changes = 0;
+    }
+
+    /**
+     * @return an estimate of the bytes used by the edges.
+     */
+    long bytes() {
+        long bytes = 4L * offsets.length() + 4L * targets.length() + (labeled ? 4L * labels.length() : 0)
+                + removedEdges.size() / 8 + 8L * added.length + 4L * addedCounts.length;
+        for (int from = 0; from < added.length; from++) {
+            if (added[from] != null) {
+                bytes += 16 + 4L * added[from].length * (labeled ? 2 : 1);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the position of the edge in the sorted arrays, or -1 if it is not there or has been removed.
+     */
+    private int find(int from, int to) {
+        if (from >= offsets.length() - 1) {
+            return -1;
+        }
+
+        int low = offsets.get(from);
+        int high = offsets.get(from + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int target = targets.get(mid);
+            if (target < to) {
+                low = mid + 1;
+            } else if (target > to) {
+                high = mid - 1;
+            } else {
+                return removedEdges.get(mid) ? -1 : mid;
+            }
+        }
+        return -1;
+    }
+
+    private void changed() {
+        if (++changes > MIN_REBUILD && changes > targets.length() / 4) {
+            rebuild();
+        }
+    }
+
+    private void ensureSlots(int slots) {
+        if (slots <= added.length) {
+            return;
+        }
+
+        int capacity = Math.max(slots, Math.max(16, added.length + (added.length >> 1)));
+        added = Arrays.copyOf(added, capacity);
+        addedCounts = Arrays.copyOf(addedCounts, capacity);
+        if (labeled) {
+            addedLabels = Arrays.copyOf(addedLabels, capacity);
+        }
+    }
+
+    private void grow(int from) {
+        int[] old = added[from];
+        int[] oldLabels = labeled ? addedLabels[from] : null;
+        int[] table = new int[old == null ? MIN_TABLE : old.length * 2];
+        Arrays.fill(table, EMPTY);
+        int[] tableLabels = labeled ? new int[table.length] : null;
+        if (old != null) {
+            for (int i = 0; i < old.length; i++) {
+                if (old[i] != EMPTY) {
+                    int j = probe(table, old[i]);
+                    table[j] = old[i];
+                    if (labeled) {
+                        tableLabels[j] = oldLabels[i];
+                    }
+                }
+            }
+        }
+        added[from] = table;
+        if (labeled) {
+            addedLabels[from] = tableLabels;
+        }
+    }
+
+    /**
+     * Remove an entry from a node's table and move the entries after it back to keep every probe sequence unbroken.
+     */
+    private void deleteFromTable(int from, int removed) {
+        int[] table = added[from];
+        int[] tableLabels = labeled ? addedLabels[from] : null;
+        int mask = table.length - 1;
+        int gap = removed;
+        int i = (gap + 1) & mask;
+        while (table[i] != EMPTY) {
+            int home = hash(table[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                table[gap] = table[i];
+                if (labeled) {
+                    tableLabels[gap] = tableLabels[i];
+                }
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        table[gap] = EMPTY;
+    }
+
+    /**
+     * @return the index of the target in the table, or of the empty entry it would go in.
+     */
+    private static int probe(int[] table, int target) {
+        int mask = table.length - 1;
+        int i = hash(target) & mask;
+        while (table[i] != EMPTY && table[i] != target) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(int target) {
+        int h = target * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,300 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.common.util.LongArray;
+import gov.nist.csd.pm.common.util.LongIntMap;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+
+import java.util.*;
+
+/**
+ * An in-memory graph that uses much less heap than MemGraph, for large policies.  It can be used in place of MemGraph
+ * in GraphPAP.
+ *
+ * Each node is given a dense int slot, and its ID, name, type, and properties are kept in arrays indexed by slot.  A
+ * primitive hash map finds the slot of an ID.  The slots of deleted nodes are reused.  Assignments and associations are
+ * kept in both directions as CompactAdjacency edges between slots, so no edge is a boxed Long or an object of its own.
+ * The operations of an association are interned, so each association holds only an int.  Properties are kept as arrays
+ * of keys and values, with the keys interned.  The slot index, IDs, node records, and sorted edge arrays are allocated
+ * by a GraphStorage, which keeps them on the heap here and off the heap in a MappedGraph.
+ *
+ * Nodes returned by this graph are built when they are asked for, so changing one does not change the graph.  The
+ * operations of associations are returned as the interned OperationSets, which cannot be changed.
+ *
+ * Not thread safe.  GraphPAP guards it with its read/write lock.
+ */
+public class CompactGraph implements Graph {
+
+    private static final int MIN_SLOTS = 16;
+
+    private GraphStorage storage;
+    private LongIntMap   slots;
+    private LongArray    ids;
+    private NodeRecords  records;
+    private int          used;
+    private int[]        free = new int[MIN_SLOTS];
+    private int          freeCount;
+
+    private CompactAdjacency parents;
+    private CompactAdjacency children;
+    private CompactAdjacency sourceAssociations;
+    private CompactAdjacency targetAssociations;
+    private OperationSets    operationSets = new OperationSets();
+
+    private Set<Long> policies = new HashSet<>();
+
+    public CompactGraph() {
+        this(GraphStorage.heap());
+    }
+
+    CompactGraph(GraphStorage storage) {
+        this.storage = storage;
+        slots = new LongIntMap(storage);
+        ids = storage.longs(MIN_SLOTS);
+        records = storage.records();
+        records.ensureCapacity(MIN_SLOTS);
+        parents = new CompactAdjacency(storage, false);
+        children = new CompactAdjacency(storage, false);
+        sourceAssociations = new CompactAdjacency(storage, true);
+        targetAssociations = new CompactAdjacency(storage, true);
+    }
+
+    @Override
+    public Node createNode(long id, String name, NodeType type, Map<String, String> props) throws PMException {
+        if (id == 0) {
+            throw new IllegalArgumentException("id was 0");
+        } else if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("a null name was provided when creating a new node");
+        } else if (type == null) {
+            throw new IllegalArgumentException("a null type was provided when creating a new node");
+        } else if (slots.get(id) >= 0) {
+            throw new PMGraphException(String.format("a node with the ID %d already exists", id));
+        }
+
+        int slot = allocate();
+        slots.put(id, slot);
+        ids.set(slot, id);
+        records.set(slot, name, type, props);
+        if (type == NodeType.PC) {
+            policies.add(id);
+        }
+        return toNode(slot);
+    }
+
+    @Override
+    public void updateNode(long id, String name, Map<String, String> props) throws PMException {
+        int slot = slot(id);
+        if ((name == null || name.isEmpty()) && props == null) {
+            return;
+        }
+        records.set(slot,
+                name == null || name.isEmpty() ? records.getName(slot) : name,
+                records.getType(slot),
+                props == null ? records.getProperties(slot) : props);
+    }
+
+    @Override
+    public void deleteNode(long id) {
+        int slot = slots.remove(id);
+        if (slot < 0) {
+            return;
+        }
+
+        for (int parent : parents.targets(slot)) {
+            children.remove(parent, slot);
+            parents.remove(slot, parent);
+        }
+        for (int child : children.targets(slot)) {
+            parents.remove(child, slot);
+            children.remove(slot, child);
+        }
+        for (int target : sourceAssociations.targets(slot)) {
+            targetAssociations.remove(target, slot);
+            sourceAssociations.remove(slot, target);
+        }
+        for (int source : targetAssociations.targets(slot)) {
+            sourceAssociations.remove(source, slot);
+            targetAssociations.remove(slot, source);
+        }
+
+        policies.remove(id);
+        records.remove(slot);
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = slot;
+    }
+
+    @Override
+    public boolean exists(long id) {
+        return slots.get(id) >= 0;
+    }
+
+    @Override
+    public Collection<Node> getNodes() {
+        List<Node> nodes = new ArrayList<>(slots.size());
+        for (int slot = 0; slot < used; slot++) {
+            if (records.getType(slot) != null) {
+                nodes.add(toNode(slot));
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public Set<Long> getPolicies() {
+        return new HashSet<>(policies);
+    }
+
+    @Override
+    public Set<Long> getChildren(long id) throws PMException {
+        return toIDs(children, slot(id));
+    }
+
+    @Override
+    public Set<Long> getParents(long id) throws PMException {
+        return toIDs(parents, slot(id));
+    }
+
+    @Override
+    public void assign(long childID, long parentID) throws PMException {
+        int child = slot(childID);
+        int parent = slot(parentID);
+        parents.add(child, parent, 0);
+        children.add(parent, child, 0);
+    }
+
+    @Override
+    public void deassign(long childID, long parentID) {
+        int child = slots.get(childID);
+        int parent = slots.get(parentID);
+        if (child >= 0 && parent >= 0) {
+            parents.remove(child, parent);
+            children.remove(parent, child);
+        }
+    }
+
+    @Override
+    public void associate(long uaID, long targetID, Set<String> operations) throws PMException {
+        int ua = slot(uaID);
+        int target = slot(targetID);
+        int ops = operationSets.intern(operations == null ? Collections.emptySet() : operations);
+        sourceAssociations.add(ua, target, ops);
+        targetAssociations.add(target, ua, ops);
+    }
+
+    @Override
+    public void dissociate(long uaID, long targetID) {
+        int ua = slots.get(uaID);
+        int target = slots.get(targetID);
+        if (ua >= 0 && target >= 0) {
+            sourceAssociations.remove(ua, target);
+            targetAssociations.remove(target, ua);
+        }
+    }
+
+    @Override
+    public Map<Long, Set<String>> getSourceAssociations(long id) throws PMException {
+        return toAssociations(sourceAssociations, slot(id));
+    }
+
+    @Override
+    public Map<Long, Set<String>> getTargetAssociations(long id) throws PMException {
+        return toAssociations(targetAssociations, slot(id));
+    }
+
+    /**
+     * Compare every node with the search.  A null or empty name or type matches any node, and a node matches the
+     * properties if it has every one of them.
+     */
+    @Override
+    public Set<Node> search(String name, String type, Map<String, String> props) {
+        NodeType nodeType = null;
+        if (type != null && !type.isEmpty()) {
+            nodeType = NodeType.toNodeType(type);
+            if (nodeType == null) {
+                return new HashSet<>();
+            }
+        }
+
+        Set<Node> found = new HashSet<>();
+        for (int slot = 0; slot < used; slot++) {
+            NodeType slotType = records.getType(slot);
+            if (slotType == null
+                    || (nodeType != null && slotType != nodeType)
+                    || (name != null && !name.isEmpty() && !name.equals(records.getName(slot)))
+                    || !records.hasProperties(slot, props)) {
+                continue;
+            }
+            found.add(toNode(slot));
+        }
+        return found;
+    }
+
+    @Override
+    public Node getNode(long id) throws PMException {
+        return toNode(slot(id));
+    }
+
+    /**
+     * Rebuild the sorted edge arrays with every change made since they were last built.  This is done as the graph
+     * changes, and can be done after a bulk load so the graph starts out packed.
+     */
+    public void compact() {
+        parents.rebuild();
+        children.rebuild();
+        sourceAssociations.rebuild();
+        targetAssociations.rebuild();
+    }
+
+    /**
+     * @return the number of nodes, assignments, and associations and an estimate of the memory they use.
+     */
+    public GraphFootprint getFootprint() {
+        long nodeBytes = 8L * ids.length() + 4L * free.length + slots.bytes() + records.bytes();
+        long edgeBytes = parents.bytes() + children.bytes();
+        long associationBytes = sourceAssociations.bytes() + targetAssociations.bytes();
+        return new GraphFootprint(slots.size(), children.size(), sourceAssociations.size(), operationSets.size(),
+                nodeBytes, edgeBytes, associationBytes, storage.getOffHeapBytes());
+    }
+
+    private int slot(long id) throws PMGraphException {
+        int slot = slots.get(id);
+        if (slot < 0) {
+            throw new PMGraphException(String.format("node with the ID %d could not be found", id));
+        }
+        return slot;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+
+        if (used == ids.length()) {
+            int capacity = ids.length() + (ids.length() >> 1);
+            ids = storage.resize(ids, capacity);
+            records.ensureCapacity(capacity);
+        }
+        return used++;
+    }
+
+    private Node toNode(int slot) {
+        return new Node(ids.get(slot), records.getName(slot), records.getType(slot), records.getProperties(slot));
+    }
+
+    private Set<Long> toIDs(CompactAdjacency edges, int slot) {
+        Set<Long> result = new HashSet<>();
+        edges.forEach(slot, (target, label) -> result.add(ids.get(target)));
+        return result;
+    }
+
+    private Map<Long, Set<String>> toAssociations(CompactAdjacency edges, int slot) {
+        Map<Long, Set<String>> result = new HashMap<>();
+        edges.forEach(slot, (target, label) -> result.put(ids.get(target), operationSets.get(label)));
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package gov.nist.csd.pm.pap;
+
+/**
+ * The size of a CompactGraph and an estimate of the memory it uses.  The estimate counts the arrays of the graph and
+ * the strings of node names and property values, and assumes compressed object pointers.  Of the total, the bytes a
+ * MappedGraph keeps outside of the heap are also given on their own.
+ */
+public class GraphFootprint {
+
+    private long nodes;
+    private long assignments;
+    private long associations;
+    private long operationSets;
+    private long nodeBytes;
+    private long assignmentBytes;
+    private long associationBytes;
+    private long offHeapBytes;
+
+    public GraphFootprint(long nodes, long assignments, long associations, long operationSets,
+                          long nodeBytes, long assignmentBytes, long associationBytes, long offHeapBytes) {
+        this.nodes = nodes;
+        this.assignments = assignments;
+        this.associations = associations;
+        this.operationSets = operationSets;
+        this.nodeBytes = nodeBytes;
+        this.assignmentBytes = assignmentBytes;
+        this.associationBytes = associationBytes;
+        this.offHeapBytes = offHeapBytes;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getAssignments() {
+        return assignments;
+    }
+
+    public long getAssociations() {
+        return associations;
+    }
+
+    /**
+     * @return the number of distinct operation sets of the associations.
+     */
+    public long getOperationSets() {
+        return operationSets;
+    }
+
+    /**
+     * @return the bytes used by node IDs, names, types, and properties, and the index of node IDs.
+     */
+    public long getNodeBytes() {
+        return nodeBytes;
+    }
+
+    /**
+     * @return the bytes used by assignments, kept in both directions.
+     */
+    public long getAssignmentBytes() {
+        return assignmentBytes;
+    }
+
+    /**
+     * @return the bytes used by associations, kept in both directions.
+     */
+    public long getAssociationBytes() {
+        return associationBytes;
+    }
+
+    /**
+     * @return the bytes of the total that are kept outside of the heap.
+     */
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    public long getTotalBytes() {
+        return nodeBytes + assignmentBytes + associationBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d nodes, %d assignments, %d associations (%d operation sets) in about %dMB "
+                        + "(nodes %dMB, assignments %dMB, associations %dMB, off heap %dMB)", nodes, assignments,
+                associations, operationSets, getTotalBytes() >> 20, nodeBytes >> 20, assignmentBytes >> 20,
+                associationBytes >> 20, offHeapBytes >> 20);
+    }
+}
@@ -2,126 +2,563 @@ package gov.nist.csd.pm.pap;
 
 import gov.nist.csd.pm.common.exceptions.PMDBException;
 import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.common.util.OperationSet;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.Graph;
-import gov.nist.csd.pm.graph.MemGraph;
 import gov.nist.csd.pm.graph.model.nodes.Node;
 import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.graph.model.relationships.Assignment;
+import gov.nist.csd.pm.graph.model.relationships.Association;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.pip.loader.graph.GraphLoadStats;
+import gov.nist.csd.pm.pip.loader.graph.Neo4jGraphLoader;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
 
+import static gov.nist.csd.pm.common.constants.Properties.NAMESPACE_PROPERTY;
+
+/**
+ * The graph used by the PDP.  Reads are served from the in-memory graph and writes go to the database and then the
+ * in-memory graph.
+ *
+ * The in-memory graph is not thread safe, so it is guarded by a read/write lock.  Reads hold the read lock and
+ * return copies of the graph's collections, so callers can iterate them while the graph changes.  The operations of
+ * associations are copied as immutable OperationSets, which is a few words instead of a HashSet and is free when the
+ * graph already keeps them that way.
+ *
+ * Writes hold a separate commit lock from their checks until their listeners have been told, so one write at a time
+ * goes to the database and then the in-memory graph, and both see writes in the same order.  A write takes the write
+ * lock only to apply the committed change to the in-memory graph, so readers wait at most for an in-memory update and
+ * never for a database round trip.  If a committed change cannot be applied, the in-memory graph no longer matches
+ * the database, so it is reloaded from the database.
+ *
+ * Registered PolicyListeners are told about every change once it has been applied to the in-memory graph.
+ */
 public class GraphPAP implements Graph {
 
-    private Graph dbGraph;
-    private MemGraph memGraph;
-    private HashMap<String, Long> namespaceNames;
+    /**
+     * The parts of a search that are indexed when no others are configured.
+     */
+    public static final List<String> DEFAULT_SEARCH_INDEXES = Collections.unmodifiableList(
+            Arrays.asList(SearchIndex.TYPE, NAMESPACE_PROPERTY));
+
+    private static final Logger LOGGER = Logger.getLogger(GraphPAP.class.getName());
+
+    private Neo4jGraph dbGraph;
+    private Graph memGraph;
+    private ReadWriteLock lock;
+    private Lock commitLock;
+    private List<PolicyListener> listeners;
+    private SearchIndex searchIndex;
+    private NamespaceIndex namespaces;
 
-    public GraphPAP(MemGraph memGraph, Graph dbGraph) throws PMException {
+    public GraphPAP(Graph memGraph, Neo4jGraph dbGraph) throws PMException {
+        this(memGraph, dbGraph, DEFAULT_SEARCH_INDEXES);
+    }
+
+    /**
+     * @param memGraph the in-memory graph, a MemGraph or a CompactGraph.
+     * @param dbGraph the database graph.
+     * @param searchIndexes "type" to index node types for search, and the property keys whose values to index.  Node
+     *                      names are always indexed.
+     */
+    public GraphPAP(Graph memGraph, Neo4jGraph dbGraph, Collection<String> searchIndexes) throws PMException {
         this.memGraph = memGraph;
         this.dbGraph = dbGraph;
-        this.namespaceNames = new HashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.commitLock = new ReentrantLock();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.searchIndex = new SearchIndex(memGraph.getNodes(), searchIndexes);
+        this.namespaces = new NamespaceIndex(memGraph.getNodes());
+    }
+
+    /**
+     * Start a unit of work to make several changes to the graph atomically.  The changes are written to the database in
+     * one transaction when the unit of work is committed, and applied to the in-memory graph only if it commits.
+     * @return a new unit of work on this graph.
+     */
+    public GraphUnitOfWork beginWork() {
+        return new GraphUnitOfWork(this, memGraph, namespaces, dbGraph, lock, commitLock);
+    }
+
+    /**
+     * Make a read holding the commit lock, so no commit is between writing to the database and applying to the
+     * in-memory graph while it runs.  A database epoch read this way is later than every change in the in-memory graph,
+     * and earlier than every change not yet in it.
+     * @param read the read to make.
+     * @return the value read.
+     * @throws PMException if there is an error making the read.
+     */
+    public <T> T readCommitted(CommittedRead<T> read) throws PMException {
+        commitLock.lock();
+        try {
+            return read.read();
+        }
+        finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Check that no node has the name and type in the namespace of the given properties.  This is a lookup in the
+     * namespace index, and the check is made again when the node is committed.
+     * @throws PMGraphException if a node with the same name and type exists in the namespace.
+     */
+    public void checkNamespace(String name, NodeType type, Map<String, String> properties) throws PMGraphException {
+        NamespaceIndex.Key key = NamespaceIndex.key(name, type, properties);
+        if (namespaces.getOwner(key) != null) {
+            throw NamespaceIndex.taken(key);
+        }
+    }
+
+    /**
+     * @return the size and estimated heap use of the in-memory graph, or null if it is not a CompactGraph.
+     */
+    public GraphFootprint getFootprint() {
+        if (!(memGraph instanceof CompactGraph)) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            return ((CompactGraph) memGraph).getFootprint();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Register a listener to be told about every change to the graph.
+     * @param listener the listener to add.
+     */
+    public void addListener(PolicyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PolicyListener listener) {
+        listeners.remove(listener);
     }
 
+    /**
+     * Each write is a unit of work with one change, so it is checked against the in-memory graph, written to the
+     * database, and only then applied to the in-memory graph.
+     */
     @Override
     public Node createNode(long id, String name, NodeType nodeType, Map<String, String> properties) throws PMException {
-        // check that the node namespace, name, and type do not already exist
-        /*if(namespaceNames.get(nodeToNamespace(node)) != null) {
-            throw new PMGraphException(String.format("a node with the name %s and type %s already exists in the name space %s",
-                    node.getName(), node.getType(), node.getProperties().get(NAMESPACE_PROPERTY)));
-        }*/
-
-        Node node = dbGraph.createNode(id, name, nodeType, properties);
-        memGraph.createNode(id, name, nodeType, properties);
+        GraphUnitOfWork work = beginWork();
+        Node node = work.createNode(id, name, nodeType, properties);
+        work.commit();
         return node;
     }
 
     @Override
     public void updateNode(long id, String name, Map<String, String> properties) throws PMException {
-        dbGraph.updateNode(id, name, properties);
-        memGraph.updateNode(id, name, properties);
+        GraphUnitOfWork work = beginWork();
+        work.updateNode(id, name, properties);
+        work.commit();
     }
 
     @Override
     public void deleteNode(long nodeID) throws PMException {
-        dbGraph.deleteNode(nodeID);
-        memGraph.deleteNode(nodeID);
+        GraphUnitOfWork work = beginWork();
+        work.deleteNode(nodeID);
+        work.commit();
     }
 
     @Override
     public boolean exists(long nodeID) {
-        return memGraph.exists(nodeID);
+        lock.readLock().lock();
+        try {
+            return memGraph.exists(nodeID);
+        }
+        catch (PMException e) {
+            throw inMemoryError(e);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Collection<Node> getNodes() {
-        return memGraph.getNodes();
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(memGraph.getNodes());
+        }
+        catch (PMException e) {
+            throw inMemoryError(e);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Set<Long> getPolicies() {
-        return memGraph.getPolicies();
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(memGraph.getPolicies());
+        }
+        catch (PMException e) {
+            throw inMemoryError(e);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Set<Long> getChildren(long nodeID) throws PMException {
-        return memGraph.getChildren(nodeID);
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(memGraph.getChildren(nodeID));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Set<Long> getParents(long nodeID) throws PMException {
-        return memGraph.getParents(nodeID);
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(memGraph.getParents(nodeID));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public void assign(long childID, long parentID) throws PMException {
-        dbGraph.assign(childID, parentID);
-        memGraph.assign(childID, parentID);
+        GraphUnitOfWork work = beginWork();
+        work.assign(childID, parentID);
+        work.commit();
     }
 
     @Override
     public void deassign(long childID, long parentID) throws PMException {
-        dbGraph.deassign(childID, parentID);
-        memGraph.deassign(childID, parentID);
+        GraphUnitOfWork work = beginWork();
+        work.deassign(childID, parentID);
+        work.commit();
     }
 
     @Override
     public void associate(long uaID, long targetID, Set<String> operations) throws PMException {
-        dbGraph.associate(uaID, targetID, operations);
-        memGraph.associate(uaID, targetID, operations);
+        GraphUnitOfWork work = beginWork();
+        work.associate(uaID, targetID, operations);
+        work.commit();
     }
 
     @Override
     public void dissociate(long uaID, long targetID) throws PMException {
-        dbGraph.dissociate(uaID, targetID);
-        memGraph.dissociate(uaID, targetID);
+        GraphUnitOfWork work = beginWork();
+        work.dissociate(uaID, targetID);
+        work.commit();
     }
 
     @Override
     public Map<Long, Set<String>> getSourceAssociations(long sourceID) throws PMException {
-        return memGraph.getSourceAssociations(sourceID);
+        lock.readLock().lock();
+        try {
+            return copy(memGraph.getSourceAssociations(sourceID));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Map<Long, Set<String>> getTargetAssociations(long targetID) throws PMException {
-        return memGraph.getTargetAssociations(targetID);
+        lock.readLock().lock();
+        try {
+            return copy(memGraph.getTargetAssociations(targetID));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Set<Node> search(String name, String type, Map<String, String> properties) {
-        return memGraph.search(name, type, properties);
+        lock.readLock().lock();
+        try {
+            Set<Node> nodes = searchIndex.search(memGraph, name, type, properties);
+            return nodes != null ? nodes : new HashSet<>(memGraph.search(name, type, properties));
+        }
+        catch (PMException e) {
+            throw inMemoryError(e);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the nodes with the given name and type from the search index, without scanning the graph.  Names are always
+     * indexed, so this never falls back to a scan whatever search.indexes lists.  Logins look up their user this way.
+     * @param name the name of the nodes.
+     * @param type the type of the nodes.
+     * @return the nodes with the name and type, or an empty set if the name is null or empty.
+     */
+    public Set<Node> findNodes(String name, NodeType type) {
+        if (name == null || name.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            return searchIndex.search(memGraph, name, type.toString(), null);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the node with the given ID in one read of the in-memory graph, so a node deleted at the same time is either
+     * returned whole or not at all.
+     * @param id the ID of the node.
+     * @return the node, or null if there is no node with the ID.
+     * @throws PMException if there is an error reading the in-memory graph.
+     */
+    public Node findNode(long id) throws PMException {
+        lock.readLock().lock();
+        try {
+            return memGraph.exists(id) ? memGraph.getNode(id) : null;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
     public Node getNode(long id) throws PMException {
-        return memGraph.getNode(id);
+        lock.readLock().lock();
+        try {
+            return memGraph.getNode(id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Create all of the given nodes.  The nodes are written to the database in chunks of the database graph's batch
+     * size, and each chunk is added to the in-memory graph only after it has been committed.  The namespace keys of a
+     * chunk are claimed before it is written, so no chunk is written if one of its nodes is a duplicate.
+     * @param nodes the nodes to create.
+     * @throws PMGraphException if a node with the same name and type as one of the nodes already exists in its
+     * namespace.
+     * @throws PMException if there is an error creating the nodes.
+     */
+    public void createNodes(Collection<Node> nodes) throws PMException {
+        for (List<Node> chunk : Neo4jGraph.partition(nodes, dbGraph.getBatchSize())) {
+            commitLock.lock();
+            try {
+                List<NamespaceIndex.Key> keys = new ArrayList<>();
+                for (Node node : chunk) {
+                    NamespaceIndex.Key key = NamespaceIndex.key(node.getName(), node.getType(), node.getProperties());
+                    if (!namespaces.claim(key, node.getID())) {
+                        releaseAll(keys, chunk);
+                        throw NamespaceIndex.taken(key);
+                    }
+                    keys.add(key);
+                }
+
+                try {
+                    dbGraph.createNodes(chunk);
+                }
+                catch (PMException | RuntimeException e) {
+                    releaseAll(keys, chunk);
+                    throw e;
+                }
+
+                List<GraphMutation> mutations = new ArrayList<>();
+                for (Node node : chunk) {
+                    mutations.add(GraphMutation.createNode(node.getID(), node.getName(), node.getType(), node.getProperties()));
+                }
+                applyCommitted(mutations);
+            }
+            finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    private void releaseAll(List<NamespaceIndex.Key> keys, List<Node> chunk) {
+        for (int i = 0; i < keys.size(); i++) {
+            namespaces.release(keys.get(i), chunk.get(i).getID());
+        }
+    }
+
+    /**
+     * Create all of the given assignments.  The assignments are written to the database in chunks of the database
+     * graph's batch size, and each chunk is added to the in-memory graph only after it has been committed.
+     * @param assignments the assignments to create.
+     * @throws PMException if there is an error creating the assignments.
+     */
+    public void assignAll(Collection<Assignment> assignments) throws PMException {
+        for (List<Assignment> chunk : Neo4jGraph.partition(assignments, dbGraph.getBatchSize())) {
+            commitLock.lock();
+            try {
+                dbGraph.assignAll(chunk);
+
+                List<GraphMutation> mutations = new ArrayList<>();
+                for (Assignment assignment : chunk) {
+                    mutations.add(GraphMutation.assign(assignment.getSourceID(), assignment.getTargetID()));
+                }
+                applyCommitted(mutations);
+            }
+            finally {
+                commitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Create all of the given associations.  The associations are written to the database in chunks of the database
+     * graph's batch size, and each chunk is added to the in-memory graph only after it has been committed.
+     * @param associations the associations to create.
+     * @throws PMException if there is an error creating the associations.
+     */
+    public void associateAll(Collection<Association> associations) throws PMException {
+        for (List<Association> chunk : Neo4jGraph.partition(associations, dbGraph.getBatchSize())) {
+            commitLock.lock();
+            try {
+                dbGraph.associateAll(chunk);
+
+                List<GraphMutation> mutations = new ArrayList<>();
+                for (Association association : chunk) {
+                    mutations.add(GraphMutation.associate(association.getSourceID(), association.getTargetID(),
+                            association.getOperations()));
+                }
+                applyCommitted(mutations);
+            }
+            finally {
+                commitLock.unlock();
+            }
+        }
     }
 
     public void reset() throws PMException {
-        Collection<Node> nodes = memGraph.getNodes();
-        for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext();) {
-            Node n = iterator.next();
-            dbGraph.deleteNode(n.getID());
-            iterator.remove();
+        for (Node node : getNodes()) {
+            GraphUnitOfWork work = beginWork();
+            work.deleteNode(node.getID());
+            work.commit();
+        }
+    }
+
+    /**
+     * Apply changes that have been committed to the database to the in-memory graph, and tell the listeners.  This is
+     * called holding the commit lock, so changes are applied and reported in the order they were committed.  If a
+     * change cannot be applied, the in-memory graph no longer matches the database, so it is reloaded from the database
+     * and the listeners are told the whole graph may have changed.
+     * @return true if the changes were applied, or false if the graph was reloaded instead.
+     * @throws IllegalStateException if the graph could not be reloaded.
+     */
+    boolean applyCommitted(List<GraphMutation> mutations) {
+        boolean applied = true;
+        lock.writeLock().lock();
+        try {
+            for (GraphMutation mutation : mutations) {
+                searchIndex.apply(mutation, memGraph);
+                apply(mutation);
+            }
+        }
+        catch (PMException | RuntimeException e) {
+            LOGGER.severe(String.format("could not apply a committed change to the in-memory graph, reloading it from "
+                    + "the database: %s", e.getMessage()));
+            reload();
+            applied = false;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        for (PolicyListener listener : listeners) {
+            if (applied) {
+                listener.graphChanged(Collections.unmodifiableList(mutations));
+            } else {
+                listener.graphReloaded();
+            }
+        }
+        return applied;
+    }
+
+    private void apply(GraphMutation mutation) throws PMException {
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+                memGraph.createNode(mutation.getSourceID(), mutation.getName(), mutation.getType(), mutation.getProperties());
+                break;
+            case UPDATE_NODE:
+                memGraph.updateNode(mutation.getSourceID(), mutation.getName(), mutation.getProperties());
+                break;
+            case DELETE_NODE:
+                memGraph.deleteNode(mutation.getSourceID());
+                break;
+            case ASSIGN:
+                memGraph.assign(mutation.getSourceID(), mutation.getTargetID());
+                break;
+            case DEASSIGN:
+                memGraph.deassign(mutation.getSourceID(), mutation.getTargetID());
+                break;
+            case ASSOCIATE:
+                memGraph.associate(mutation.getSourceID(), mutation.getTargetID(), mutation.getOperations());
+                break;
+            case DISSOCIATE:
+                memGraph.dissociate(mutation.getSourceID(), mutation.getTargetID());
+                break;
+        }
+    }
+
+    /**
+     * Empty the in-memory graph and load it again from the database, and rebuild the indexes on it.  Called holding
+     * the commit lock and the write lock, so nothing reads or writes the graph while it is loaded.
+     */
+    private void reload() {
+        try {
+            for (Node node : new ArrayList<>(memGraph.getNodes())) {
+                memGraph.deleteNode(node.getID());
+            }
+
+            GraphLoadStats stats = new Neo4jGraphLoader(dbGraph.getContext()).load(memGraph);
+            if (memGraph instanceof CompactGraph) {
+                ((CompactGraph) memGraph).compact();
+            }
+
+            Collection<Node> nodes = memGraph.getNodes();
+            searchIndex.reset(nodes);
+            namespaces.reset(nodes);
+            LOGGER.info("reloaded the in-memory graph: " + stats);
+        }
+        catch (PMException e) {
+            throw new IllegalStateException("the in-memory graph could not be reloaded from the database: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The in-memory graph does not read from anywhere, so an error reading it means it is broken rather than something
+     * the caller can handle.
+     */
+    private static IllegalStateException inMemoryError(PMException e) {
+        return new IllegalStateException("error reading the in-memory graph: " + e.getMessage(), e);
+    }
+
+    private static Map<Long, Set<String>> copy(Map<Long, Set<String>> associations) {
+        Map<Long, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> entry : associations.entrySet()) {
+            copy.put(entry.getKey(), OperationSet.of(entry.getValue()));
         }
+        return copy;
     }
 }
@@ -0,0 +1,74 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.util.ArrayAllocator;
+import gov.nist.csd.pm.common.util.IntArray;
+import gov.nist.csd.pm.common.util.LongArray;
+
+/**
+ * Where a CompactGraph keeps its arrays and node records: on the heap, or in buffers outside of it.  The graph asks
+ * for a new array whenever one grows or is rebuilt, and frees the old one.
+ */
+abstract class GraphStorage implements ArrayAllocator {
+
+    /**
+     * @return a new store of node names, types, and properties.
+     */
+    abstract NodeRecords records();
+
+    /**
+     * @return the bytes allocated outside of the heap.
+     */
+    abstract long getOffHeapBytes();
+
+    /**
+     * @return storage that keeps everything in ordinary Java arrays and objects.
+     */
+    static GraphStorage heap() {
+        return new Heap();
+    }
+
+    private static class Heap extends GraphStorage {
+
+        private final ArrayAllocator arrays = ArrayAllocator.heap();
+
+        @Override
+        public IntArray ints(int length) {
+            return arrays.ints(length);
+        }
+
+        @Override
+        public LongArray longs(int length) {
+            return arrays.longs(length);
+        }
+
+        @Override
+        NodeRecords records() {
+            return new HeapNodeRecords();
+        }
+
+        @Override
+        public void free(IntArray array) {
+            arrays.free(array);
+        }
+
+        @Override
+        public void free(LongArray array) {
+            arrays.free(array);
+        }
+
+        @Override
+        long getOffHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        public IntArray resize(IntArray array, int length) {
+            return arrays.resize(array, length);
+        }
+
+        @Override
+        public LongArray resize(LongArray array, int length) {
+            return arrays.resize(array, length);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.graph.model.relationships.Assignment;
+import gov.nist.csd.pm.graph.model.relationships.Association;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * A group of graph changes that are written together.  Each change is checked against the in-memory graph, plus the
+ * changes already made in this unit of work, when it is added.  Nothing is written until commit(), which writes every
+ * change to Neo4j in one transaction and, only if that transaction commits, applies them to the in-memory graph.  If
+ * a check or the transaction fails, neither graph is changed.
+ *
+ * Get a unit of work from GraphPAP.beginWork().  The checks hold the read lock of the in-memory graph and applying the
+ * committed changes holds the write lock, so the graph never shows part of a unit of work.  Two units of work are not
+ * isolated from each other before they commit.  Commits hold the commit lock of the GraphPAP from the first check to
+ * the last listener, so one unit of work commits at a time and Neo4j and the in-memory graph see commits in the same
+ * order.  Holding the lock, a commit checks every change again against the in-memory graph as it is then, so a change
+ * made invalid by another commit fails before anything is written.
+ */
+public class GraphUnitOfWork {
+
+    private GraphPAP             graphPAP;
+    private Graph                memGraph;
+    private NamespaceIndex       namespaces;
+    private Neo4jGraph           dbGraph;
+    private ReadWriteLock        lock;
+    private Lock                 commitLock;
+    private List<GraphMutation>  mutations;
+
+    /**
+     * The current state of the nodes created or updated in this unit of work, and the IDs of the nodes deleted.
+     */
+    private Map<Long, Node> nodes;
+    private Set<Long>       deleted;
+    private boolean         finished;
+
+    /**
+     * The namespace key each created or renamed node will hold, and the key each renamed or deleted node held before
+     * this unit of work.
+     */
+    private Map<Long, NamespaceIndex.Key> claimed;
+    private Map<NamespaceIndex.Key, Long> claimants;
+    private Map<Long, NamespaceIndex.Key> released;
+
+    GraphUnitOfWork(GraphPAP graphPAP, Graph memGraph, NamespaceIndex namespaces, Neo4jGraph dbGraph,
+                    ReadWriteLock lock, Lock commitLock) {
+        this.graphPAP = graphPAP;
+        this.memGraph = memGraph;
+        this.namespaces = namespaces;
+        this.dbGraph = dbGraph;
+        this.lock = lock;
+        this.commitLock = commitLock;
+        this.mutations = new ArrayList<>();
+        this.nodes = new HashMap<>();
+        this.deleted = new HashSet<>();
+        this.claimed = new HashMap<>();
+        this.claimants = new HashMap<>();
+        this.released = new HashMap<>();
+    }
+
+    /**
+     * Add the creation of a node.
+     * @return the node that will be created.
+     * @throws IllegalArgumentException if the ID is 0, the name is null or empty, or the type is null.
+     * @throws PMGraphException if a node with the ID already exists, or a node with the same name and type already
+     * exists in the node's namespace.
+     */
+    public Node createNode(long id, String name, NodeType type, Map<String, String> properties) throws PMException {
+        checkNotFinished();
+        if (id == 0) {
+            throw new IllegalArgumentException("id was 0");
+        } else if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("a null name was provided when creating a new node");
+        } else if (type == null) {
+            throw new IllegalArgumentException("a null type was provided when creating a new node");
+        } else if (exists(id)) {
+            throw new PMGraphException(String.format("a node with the ID %d already exists", id));
+        }
+
+        NamespaceIndex.Key key = NamespaceIndex.key(name, type, properties);
+        checkKey(key, id);
+
+        GraphMutation mutation = GraphMutation.createNode(id, name, type, properties);
+        mutations.add(mutation);
+        claim(id, key);
+
+        Node node = new Node(id, name, type, mutation.getProperties());
+        nodes.put(id, node);
+        deleted.remove(id);
+        return node;
+    }
+
+    /**
+     * Add an update to a node.  A null or empty name keeps the current name, and null properties keep the current
+     * properties.
+     * @throws PMGraphException if the node does not exist, or the new name or namespace is taken by another node of the
+     * same type.
+     */
+    public void updateNode(long id, String name, Map<String, String> properties) throws PMException {
+        checkNotFinished();
+        Node node = getNode(id);
+        if (name == null || name.isEmpty()) {
+            name = node.getName();
+        }
+        if (properties == null) {
+            properties = node.getProperties();
+        }
+
+        NamespaceIndex.Key key = NamespaceIndex.key(name, node.getType(), properties);
+        NamespaceIndex.Key current = NamespaceIndex.key(node.getName(), node.getType(), node.getProperties());
+        if (!key.equals(current)) {
+            checkKey(key, id);
+        }
+
+        GraphMutation mutation = GraphMutation.updateNode(id, name, node.getType(), properties);
+        mutations.add(mutation);
+        if (!key.equals(current)) {
+            releaseCommitted(id);
+            claim(id, key);
+        }
+        nodes.put(id, new Node(id, name, node.getType(), mutation.getProperties()));
+    }
+
+    /**
+     * Add the deletion of a node.  Deleting a node that does not exist is not an error.
+     */
+    public void deleteNode(long id) throws PMException {
+        checkNotFinished();
+        NodeType type = exists(id) ? getNode(id).getType() : null;
+        mutations.add(GraphMutation.deleteNode(id, type));
+        releaseCommitted(id);
+        unclaim(id);
+        nodes.remove(id);
+        deleted.add(id);
+    }
+
+    /**
+     * Add an assignment.
+     * @throws PMGraphException if either node does not exist or the assignment is not valid.
+     */
+    public void assign(long childID, long parentID) throws PMException {
+        checkNotFinished();
+        Assignment.checkAssignment(getNode(childID).getType(), getNode(parentID).getType());
+        mutations.add(GraphMutation.assign(childID, parentID));
+    }
+
+    /**
+     * Add the deletion of an assignment.
+     * @throws PMGraphException if either node does not exist.
+     */
+    public void deassign(long childID, long parentID) throws PMException {
+        checkNotFinished();
+        getNode(childID);
+        getNode(parentID);
+        mutations.add(GraphMutation.deassign(childID, parentID));
+    }
+
+    /**
+     * Add an association, or an update to the operations of an existing association.
+     * @throws PMGraphException if either node does not exist or the association is not valid.
+     */
+    public void associate(long uaID, long targetID, Set<String> operations) throws PMException {
+        checkNotFinished();
+        Association.checkAssociation(getNode(uaID).getType(), getNode(targetID).getType());
+        mutations.add(GraphMutation.associate(uaID, targetID, operations));
+    }
+
+    /**
+     * Add the deletion of an association.
+     * @throws PMGraphException if either node does not exist.
+     */
+    public void dissociate(long uaID, long targetID) throws PMException {
+        checkNotFinished();
+        getNode(uaID);
+        getNode(targetID);
+        mutations.add(GraphMutation.dissociate(uaID, targetID));
+    }
+
+    /**
+     * Write every change to Neo4j in one transaction, then apply them to the in-memory graph and tell the graph's
+     * listeners.  If a change is no longer valid nothing is written, and if the transaction fails it is rolled back, so
+     * either way neither graph is changed.  A unit of work can only be committed once.
+     * @throws PMGraphException if a change is no longer valid because of a change committed since it was added.
+     * @throws PMException if the transaction fails.
+     */
+    public void commit() throws PMException {
+        checkNotFinished();
+        finished = true;
+
+        commitLock.lock();
+        try {
+            validate();
+
+            // claim the namespace keys before writing, so no other write can create a node with the same key
+            List<Map.Entry<Long, NamespaceIndex.Key>> taken = new ArrayList<>();
+            for (Map.Entry<Long, NamespaceIndex.Key> claim : claimed.entrySet()) {
+                NamespaceIndex.Key key = claim.getValue();
+                if (claim.getKey().equals(namespaces.getOwner(key))) {
+                    continue;
+                } else if (!namespaces.claim(key, claim.getKey())) {
+                    giveBack(taken);
+                    throw NamespaceIndex.taken(key);
+                }
+                taken.add(claim);
+            }
+
+            try {
+                dbGraph.write(mutations);
+            }
+            catch (PMException | RuntimeException e) {
+                giveBack(taken);
+                throw e;
+            }
+
+            // after a reload the namespace index was rebuilt from the database, so there is nothing to give back
+            if (graphPAP.applyCommitted(mutations)) {
+                for (Map.Entry<Long, NamespaceIndex.Key> release : released.entrySet()) {
+                    if (!release.getValue().equals(claimed.get(release.getKey()))) {
+                        namespaces.release(release.getValue(), release.getKey());
+                    }
+                }
+            }
+        }
+        finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Discard every change.  Nothing has been written, so neither graph changes.
+     */
+    public void rollback() {
+        finished = true;
+        mutations.clear();
+    }
+
+    /**
+     * Check every change again, in order, against the in-memory graph as it is now.  Another unit of work can have
+     * deleted a node since a change to it was added.  This is called holding the commit lock, when the in-memory graph
+     * matches the database, so a change that passes cannot fail to apply once it is written.
+     */
+    private void validate() throws PMException {
+        // the type of each node created or deleted so far, null if it was deleted
+        Map<Long, NodeType> types = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (GraphMutation mutation : mutations) {
+                long sourceID = mutation.getSourceID();
+                switch (mutation.getKind()) {
+                    case CREATE_NODE:
+                        if (types.containsKey(sourceID) ? types.get(sourceID) != null : memGraph.exists(sourceID)) {
+                            throw new PMGraphException(String.format("a node with the ID %d already exists", sourceID));
+                        }
+                        types.put(sourceID, mutation.getType());
+                        break;
+                    case UPDATE_NODE:
+                        getType(types, sourceID);
+                        break;
+                    case DELETE_NODE:
+                        types.put(sourceID, null);
+                        break;
+                    case ASSIGN:
+                        Assignment.checkAssignment(getType(types, sourceID), getType(types, mutation.getTargetID()));
+                        break;
+                    case ASSOCIATE:
+                        Association.checkAssociation(getType(types, sourceID), getType(types, mutation.getTargetID()));
+                        break;
+                    case DEASSIGN:
+                    case DISSOCIATE:
+                        getType(types, sourceID);
+                        getType(types, mutation.getTargetID());
+                        break;
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private NodeType getType(Map<Long, NodeType> types, long id) throws PMException {
+        NodeType type;
+        if (types.containsKey(id)) {
+            type = types.get(id);
+        } else {
+            type = memGraph.exists(id) ? memGraph.getNode(id).getType() : null;
+        }
+
+        if (type == null) {
+            throw new PMGraphException(String.format("node with ID %d does not exist", id));
+        }
+        return type;
+    }
+
+    /**
+     * Check that no other node holds the key, or will hold it when this unit of work commits.  A key given back by a
+     * node in this unit of work is not free until the unit of work commits.
+     */
+    private void checkKey(NamespaceIndex.Key key, long id) throws PMGraphException {
+        Long owner = namespaces.getOwner(key);
+        Long claimant = claimants.get(key);
+        if ((owner != null && owner != id) || (claimant != null && claimant != id)) {
+            throw NamespaceIndex.taken(key);
+        }
+    }
+
+    private void claim(long id, NamespaceIndex.Key key) {
+        unclaim(id);
+        claimed.put(id, key);
+        claimants.put(key, id);
+    }
+
+    private void unclaim(long id) {
+        NamespaceIndex.Key key = claimed.remove(id);
+        if (key != null) {
+            claimants.remove(key);
+        }
+    }
+
+    /**
+     * Remember the key a node held before this unit of work, to give back when it commits.
+     */
+    private void releaseCommitted(long id) {
+        if (released.containsKey(id)) {
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (memGraph.exists(id)) {
+                Node node = memGraph.getNode(id);
+                released.put(id, NamespaceIndex.key(node.getName(), node.getType(), node.getProperties()));
+            }
+        }
+        catch (PMException e) {
+            // the node does not exist, so it holds no key
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void giveBack(List<Map.Entry<Long, NamespaceIndex.Key>> taken) {
+        for (Map.Entry<Long, NamespaceIndex.Key> claim : taken) {
+            namespaces.release(claim.getValue(), claim.getKey());
+        }
+    }
+
+    private boolean exists(long id) throws PMException {
+        if (nodes.containsKey(id)) {
+            return true;
+        } else if (deleted.contains(id)) {
+            return false;
+        }
+
+        lock.readLock().lock();
+        try {
+            return memGraph.exists(id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node getNode(long id) throws PMException {
+        Node node = nodes.get(id);
+        if (node != null) {
+            return node;
+        } else if (deleted.contains(id)) {
+            throw new PMGraphException(String.format("node with ID %d does not exist", id));
+        }
+
+        lock.readLock().lock();
+        try {
+            if (!memGraph.exists(id)) {
+                throw new PMGraphException(String.format("node with ID %d does not exist", id));
+            }
+            return memGraph.getNode(id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("this unit of work has already been committed or rolled back");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Node records kept in arrays on the heap.  Properties are kept as arrays of alternating keys and values, with the keys
+ * interned.
+ */
+class HeapNodeRecords implements NodeRecords {
+
+    private String[]            names = new String[0];
+    private NodeType[]          types = new NodeType[0];
+    private String[][]          properties = new String[0][];
+    private Map<String, String> keys = new HashMap<>();
+
+    @Override
+    public void ensureCapacity(int slots) {
+        if (slots > names.length) {
+            names = Arrays.copyOf(names, slots);
+            types = Arrays.copyOf(types, slots);
+            properties = Arrays.copyOf(properties, slots);
+        }
+    }
+
+    @Override
+    public void set(int slot, String name, NodeType type, Map<String, String> props) {
+        names[slot] = name;
+        types[slot] = type;
+        properties[slot] = pack(props);
+    }
+
+    @Override
+    public void remove(int slot) {
+        names[slot] = null;
+        types[slot] = null;
+        properties[slot] = null;
+    }
+
+    @Override
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    @Override
+    public NodeType getType(int slot) {
+        return types[slot];
+    }
+
+    @Override
+    public Map<String, String> getProperties(int slot) {
+        Map<String, String> props = new HashMap<>();
+        String[] packed = properties[slot];
+        if (packed != null) {
+            for (int i = 0; i < packed.length; i += 2) {
+                props.put(packed[i], packed[i + 1]);
+            }
+        }
+        return props;
+    }
+
+    @Override
+    public boolean hasProperties(int slot, Map<String, String> props) {
+        if (props == null || props.isEmpty()) {
+            return true;
+        }
+
+        String[] packed = properties[slot];
+        if (packed == null) {
+            return false;
+        }
+        int matched = 0;
+        for (int i = 0; i < packed.length; i += 2) {
+            if (props.containsKey(packed[i])) {
+                if (!Objects.equals(props.get(packed[i]), packed[i + 1])) {
+                    return false;
+                }
+                matched++;
+            }
+        }
+        return matched == props.size();
+    }
+
+    /**
+     * The estimate counts the arrays and the strings of names and property values, and assumes compressed object
+     * pointers.
+     */
+    @Override
+    public long bytes() {
+        long bytes = 4L * names.length + 4L * types.length + 4L * properties.length;
+        for (int slot = 0; slot < names.length; slot++) {
+            if (types[slot] != null) {
+                bytes += stringBytes(names[slot]);
+                if (properties[slot] != null) {
+                    bytes += 16 + 4L * properties[slot].length;
+                    for (int i = 1; i < properties[slot].length; i += 2) {
+                        bytes += stringBytes(properties[slot][i]);
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the properties as alternating keys and values, or null if there are none.
+     */
+    private String[] pack(Map<String, String> props) {
+        if (props == null || props.isEmpty()) {
+            return null;
+        }
+
+        String[] packed = new String[props.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> prop : props.entrySet()) {
+            packed[i++] = keys.computeIfAbsent(prop.getKey(), k -> k);
+            packed[i++] = prop.getValue();
+        }
+        return packed;
+    }
+
+    private static long stringBytes(String str) {
+        return str == null ? 0 : 40 + 2L * str.length();
+    }
+}
@@ -0,0 +1,36 @@
+package gov.nist.csd.pm.pap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A CompactGraph that keeps its node IDs, node records, and sorted edge arrays outside of the heap, for policies too
+ * large to hold on the heap without long collector pauses.  The collector does not trace or copy what is off the heap,
+ * so pause times stay about the same as the policy grows.
+ *
+ * The memory is either direct buffers, which count against -XX:MaxDirectMemorySize, or files mapped from a directory,
+ * which the operating system can page in and out like its file cache.  Mapped files are deleted as soon as they are
+ * mapped, so no files are left in the directory.  What stays on the heap is the edges changed since the arrays were
+ * last rebuilt, the interned operation sets, and the IDs of the policy classes.
+ *
+ * Not thread safe.  GraphPAP guards it with its read/write lock.
+ */
+public class MappedGraph extends CompactGraph {
+
+    /**
+     * Create a graph in direct buffers.
+     */
+    public MappedGraph() {
+        super(new BufferStorage(null));
+    }
+
+    /**
+     * Create a graph in files mapped from the given directory.
+     * @param directory the directory to map files from.  It is created if it does not exist.
+     * @throws IOException if the directory cannot be created.
+     */
+    public MappedGraph(Path directory) throws IOException {
+        super(new BufferStorage(Files.createDirectories(directory)));
+    }
+}
@@ -0,0 +1,129 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static gov.nist.csd.pm.common.constants.Properties.DEFAULT_NAMESPACE;
+import static gov.nist.csd.pm.common.constants.Properties.NAMESPACE_PROPERTY;
+
+/**
+ * The node that holds each namespace, name, and type, so a node with the same namespace, name, and type as another
+ * cannot be created.  A node without a namespace property is in the default namespace.
+ *
+ * A unit of work claims the keys of the nodes it creates or renames when it commits, before it writes to the database.
+ * Claiming a key is one atomic put, so two units of work cannot both claim it, and a unit of work that fails gives its
+ * keys back.  The keys of deleted and renamed nodes are given back once the change is applied to the in-memory graph.
+ */
+class NamespaceIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(NamespaceIndex.class.getName());
+
+    private ConcurrentHashMap<Key, Long> owners;
+
+    NamespaceIndex(Collection<Node> nodes) {
+        this.owners = new ConcurrentHashMap<>();
+        reset(nodes);
+    }
+
+    /**
+     * Drop every key and add the keys of the given nodes, after the in-memory graph is reloaded.  No key can be
+     * claimed while this runs, because keys are only claimed holding the commit lock of GraphPAP.
+     */
+    void reset(Collection<Node> nodes) {
+        owners.clear();
+        for (Node node : nodes) {
+            Key key = key(node.getName(), node.getType(), node.getProperties());
+            Long owner = owners.putIfAbsent(key, node.getID());
+            if (owner != null) {
+                LOGGER.warning(String.format("nodes %d and %d both have the name %s and type %s in the namespace %s",
+                        owner, node.getID(), key.name, key.type, key.namespace));
+            }
+        }
+    }
+
+    /**
+     * @return the ID of the node with the key, or null if no node has it.
+     */
+    Long getOwner(Key key) {
+        return owners.get(key);
+    }
+
+    /**
+     * Claim a key for a node.
+     * @return true if the key was free or already held by the node.
+     */
+    boolean claim(Key key, long id) {
+        Long owner = owners.putIfAbsent(key, id);
+        return owner == null || owner == id;
+    }
+
+    /**
+     * Give back a key if the node holds it.
+     */
+    void release(Key key, long id) {
+        owners.remove(key, id);
+    }
+
+    int size() {
+        return owners.size();
+    }
+
+    /**
+     * @return the error for a node whose key is held by another node.
+     */
+    static PMGraphException taken(Key key) {
+        return new PMGraphException(String.format("a node with the name \"%s\" and type %s already exists in the "
+                + "namespace \"%s\"", key.name, key.type, key.namespace));
+    }
+
+    static Key key(String name, NodeType type, Map<String, String> properties) {
+        String namespace = properties == null ? null : properties.get(NAMESPACE_PROPERTY);
+        return new Key(namespace == null ? DEFAULT_NAMESPACE : namespace, name, type);
+    }
+
+    static final class Key {
+        private final String   namespace;
+        private final String   name;
+        private final NodeType type;
+
+        private Key(String namespace, String name, NodeType type) {
+            this.namespace = namespace;
+            this.name = name;
+            this.type = type;
+        }
+
+        String getNamespace() {
+            return namespace;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        NodeType getType() {
+            return type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return namespace.equals(key.namespace) && Objects.equals(name, key.name) && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(namespace, name, type);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+
+import java.util.Map;
+
+/**
+ * The names, types, and properties of the nodes of a CompactGraph, indexed by node slot.  A slot without a record has
+ * a null type.
+ *
+ * Not thread safe.
+ */
+interface NodeRecords {
+
+    /**
+     * Make room for the given number of slots.
+     */
+    void ensureCapacity(int slots);
+
+    /**
+     * Set the record of a slot, replacing the one it had.
+     * @param properties the properties, or null if there are none.
+     */
+    void set(int slot, String name, NodeType type, Map<String, String> properties);
+
+    void remove(int slot);
+
+    String getName(int slot);
+
+    /**
+     * @return the type of the node, or null if the slot has no record.
+     */
+    NodeType getType(int slot);
+
+    /**
+     * @return a new map of the node's properties.
+     */
+    Map<String, String> getProperties(int slot);
+
+    /**
+     * @return true if the node has every one of the properties.
+     */
+    boolean hasProperties(int slot, Map<String, String> properties);
+
+    /**
+     * @return an estimate of the bytes used by the records.
+     */
+    long bytes();
+}
@@ -0,0 +1,47 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.util.OperationSet;
+
+import java.util.*;
+
+/**
+ * Interns the operation sets of associations so each distinct set is stored once and an association holds only its
+ * int ID.  A set is kept as an OperationSet, a bit mask of the OperationRegistry ordinals of its operations, so two
+ * sets are the same set if their masks are equal.  A policy has few distinct operation sets, so sets are never
+ * removed.
+ *
+ * Not thread safe.
+ */
+class OperationSets {
+
+    private Map<OperationSet, Integer> ids = new HashMap<>();
+    private List<OperationSet>         sets = new ArrayList<>();
+
+    /**
+     * @return the ID of the set with the given operations.
+     */
+    int intern(Set<String> ops) {
+        OperationSet set = OperationSet.of(ops);
+        Integer id = ids.get(set);
+        if (id == null) {
+            id = sets.size();
+            ids.put(set, id);
+            sets.add(set);
+        }
+        return id;
+    }
+
+    /**
+     * @return the operations of the set with the given ID.  The set cannot be changed.
+     */
+    OperationSet get(int id) {
+        return sets.get(id);
+    }
+
+    /**
+     * @return the number of distinct sets.
+     */
+    int size() {
+        return sets.size();
+    }
+}
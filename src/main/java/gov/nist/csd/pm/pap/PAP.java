@@ -9,16 +9,38 @@ import gov.nist.csd.pm.graph.model.nodes.Node;
 import gov.nist.csd.pm.graph.model.nodes.NodeType;
 import gov.nist.csd.pm.graph.model.relationships.Assignment;
 import gov.nist.csd.pm.graph.model.relationships.Association;
+import gov.nist.csd.pm.pip.db.ConnectionPoolConfig;
 import gov.nist.csd.pm.pip.db.DatabaseContext;
+import gov.nist.csd.pm.pap.ids.BlockIDAllocator;
+import gov.nist.csd.pm.pap.ids.IDAllocator;
+import gov.nist.csd.pm.pap.sessions.FileSessionStore;
+import gov.nist.csd.pm.pap.sessions.PasswordVerifier;
 import gov.nist.csd.pm.pap.sessions.SessionManager;
 import gov.nist.csd.pm.pip.graph.Neo4jGraph;
-import gov.nist.csd.pm.pip.loader.graph.GraphLoader;
+import gov.nist.csd.pm.pip.ids.Neo4jIDBlockSource;
+import gov.nist.csd.pm.pip.loader.graph.GraphLoadStats;
 import gov.nist.csd.pm.pip.loader.graph.Neo4jGraphLoader;
+import gov.nist.csd.pm.pip.loader.prohibitions.Neo4jProhibitionsLoader;
+import gov.nist.csd.pm.pap.snapshot.PolicySnapshot;
+import gov.nist.csd.pm.pdp.decider.CachingPolicyDecider;
+import gov.nist.csd.pm.pdp.decider.CapabilityIndex;
+import gov.nist.csd.pm.pdp.decider.ExplainEngine;
+import gov.nist.csd.pm.pdp.decider.PosSnapshots;
+import gov.nist.csd.pm.pdp.decider.PolicyClassIndex;
+import gov.nist.csd.pm.pdp.decider.PolicyDecider;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 import static gov.nist.csd.pm.common.constants.Operations.ALL_OPERATIONS;
 import static gov.nist.csd.pm.common.constants.Properties.*;
@@ -38,9 +60,54 @@ public class PAP {
      */
     private static PAP PAP;
 
+    private static final Logger LOGGER = Logger.getLogger(PAP.class.getName());
+
+    /**
+     * The values of graph.store: a MemGraph, a CompactGraph that uses less heap, or a MappedGraph kept off the heap.
+     */
+    public static final String MEM_STORE     = "mem";
+    public static final String COMPACT_STORE = "compact";
+    public static final String MAPPED_STORE  = "mapped";
+
+    private DatabaseContext dbCtx;
+    private int             batchSize = Neo4jGraph.DEFAULT_BATCH_SIZE;
+    private boolean         streamingLoad = true;
+    private int             loadPageSize = Neo4jGraphLoader.DEFAULT_PAGE_SIZE;
+    private GraphLoadStats  loadStats;
+    private Path            snapshotPath;
+    private long            snapshotInterval = 300000;
+    private ScheduledExecutorService snapshotWriter;
+    private boolean         decisionCacheEnabled = true;
+    private int             decisionCacheSize = 100000;
+    private boolean         capabilityIndexEnabled = false;
+    private int             capabilityMaxEntries = 100000;
+    private int             capabilityMaxUsers = 1000;
+    private int             explainMaxPaths = 100;
+    private int             explainCacheSize = 10000;
+    private int             posCacheSize = 1000;
+    private long            sessionIdleTimeout = SessionManager.DEFAULT_IDLE_TIMEOUT;
+    private long            sessionMaxLifetime = SessionManager.DEFAULT_MAX_LIFETIME;
+    private int             maxSessions = SessionManager.DEFAULT_MAX_SESSIONS;
+    private long            sessionSweepInterval = SessionManager.DEFAULT_SWEEP_INTERVAL;
+    private Path            sessionStorePath;
+    private int             loginThreads = Runtime.getRuntime().availableProcessors();
+    private int             loginQueueSize = PasswordVerifier.DEFAULT_QUEUE_SIZE;
+    private long            loginTimeout = PasswordVerifier.DEFAULT_TIMEOUT;
+    private int             hashIterations = NodeUtils.DEFAULT_HASH_ITERATIONS;
+    private List<String>    searchIndexes = GraphPAP.DEFAULT_SEARCH_INDEXES;
+    private String          graphStore = MEM_STORE;
+    private Path            graphStorePath;
+    private int             idBlockSize = BlockIDAllocator.DEFAULT_BLOCK_SIZE;
+    private int             idThreadBlockSize = BlockIDAllocator.DEFAULT_THREAD_BLOCK_SIZE;
+    private IDAllocator     idAllocator;
     private GraphPAP        graphPAP;
     private ProhibitionsPAP prohibitionsPAP;
+    private PolicyClassIndex policyClassIndex;
+    private PolicyDecider   decider;
+    private ExplainEngine   explainEngine;
+    private PosSnapshots    posSnapshots;
     private SessionManager  sessionManager;
+    private PasswordVerifier passwordVerifier;
 
     private Node superPC;
     private Node superPCRep;
@@ -76,6 +143,9 @@ public class PAP {
      * @throws PMAuthorizationException if the current user cannot carryout an action.
      */
     public static synchronized void getPAP(DatabaseContext ctx) throws PMException {
+        if (PAP != null) {
+            PAP.close();
+        }
         PAP = new PAP(ctx);
     }
 
@@ -93,11 +163,59 @@ public class PAP {
                     Integer.valueOf(props.getProperty("port")),
                     props.getProperty("username"),
                     props.getProperty("password"),
-                    props.getProperty("schema")
+                    props.getProperty("schema"),
+                    ConnectionPoolConfig.fromProperties(props)
             );
+            batchSize = Integer.parseInt(props.getProperty("batchSize", String.valueOf(batchSize)));
+            streamingLoad = Boolean.parseBoolean(props.getProperty("loader.streaming", String.valueOf(streamingLoad)));
+            loadPageSize = Integer.parseInt(props.getProperty("loader.pageSize", String.valueOf(loadPageSize)));
+            String snapshot = props.getProperty("snapshot.path", "");
+            if (!snapshot.isEmpty()) {
+                snapshotPath = Paths.get(snapshot);
+            }
+            snapshotInterval = Long.parseLong(props.getProperty("snapshot.interval", String.valueOf(snapshotInterval)));
+            decisionCacheEnabled = Boolean.parseBoolean(props.getProperty("decider.cache.enabled", String.valueOf(decisionCacheEnabled)));
+            decisionCacheSize = Integer.parseInt(props.getProperty("decider.cache.size", String.valueOf(decisionCacheSize)));
+            capabilityIndexEnabled = Boolean.parseBoolean(props.getProperty("capability.enabled", String.valueOf(capabilityIndexEnabled)));
+            capabilityMaxEntries = Integer.parseInt(props.getProperty("capability.maxEntries", String.valueOf(capabilityMaxEntries)));
+            capabilityMaxUsers = Integer.parseInt(props.getProperty("capability.maxUsers", String.valueOf(capabilityMaxUsers)));
+            explainMaxPaths = Integer.parseInt(props.getProperty("explain.maxPaths", String.valueOf(explainMaxPaths)));
+            explainCacheSize = Integer.parseInt(props.getProperty("explain.cache.size", String.valueOf(explainCacheSize)));
+            posCacheSize = Integer.parseInt(props.getProperty("pos.cache.size", String.valueOf(posCacheSize)));
+            sessionIdleTimeout = Long.parseLong(props.getProperty("session.idleTimeout", String.valueOf(sessionIdleTimeout)));
+            sessionMaxLifetime = Long.parseLong(props.getProperty("session.maxLifetime", String.valueOf(sessionMaxLifetime)));
+            maxSessions = Integer.parseInt(props.getProperty("session.max", String.valueOf(maxSessions)));
+            sessionSweepInterval = Long.parseLong(props.getProperty("session.sweepInterval", String.valueOf(sessionSweepInterval)));
+            String sessionStore = props.getProperty("session.store.path", "");
+            if (!sessionStore.isEmpty()) {
+                sessionStorePath = Paths.get(sessionStore);
+            }
+            int threads = Integer.parseInt(props.getProperty("login.threads", "0"));
+            if (threads > 0) {
+                loginThreads = threads;
+            }
+            loginQueueSize = Integer.parseInt(props.getProperty("login.queueSize", String.valueOf(loginQueueSize)));
+            loginTimeout = Long.parseLong(props.getProperty("login.timeout", String.valueOf(loginTimeout)));
+            hashIterations = Integer.parseInt(props.getProperty("login.hashIterations", String.valueOf(hashIterations)));
+            String indexes = props.getProperty("search.indexes");
+            if (indexes != null) {
+                searchIndexes = new ArrayList<>();
+                for (String index : indexes.split(",")) {
+                    if (!index.trim().isEmpty()) {
+                        searchIndexes.add(index.trim());
+                    }
+                }
+            }
+            graphStore = props.getProperty("graph.store", graphStore);
+            String graphStoreDir = props.getProperty("graph.store.path", "");
+            if (!graphStoreDir.isEmpty()) {
+                graphStorePath = Paths.get(graphStoreDir);
+            }
+            idBlockSize = Integer.parseInt(props.getProperty("id.blockSize", String.valueOf(idBlockSize)));
+            idThreadBlockSize = Integer.parseInt(props.getProperty("id.threadBlockSize", String.valueOf(idThreadBlockSize)));
             init(dbCtx);
         }
-        catch (IOException e) {
+        catch (IOException | NumberFormatException e) {
             throw new PMConfigurationException(e.getMessage());
         }
     }
@@ -114,37 +232,182 @@ public class PAP {
      * @param ctx the database connection information.
      */
     private void init(DatabaseContext ctx) throws PMException {
-        // load the graph from the database into memory
-        GraphLoader loader = new Neo4jGraphLoader(ctx);
-        MemGraph memGraph = new MemGraph();
+        this.dbCtx = ctx;
+
+        Neo4jGraphLoader loader = new Neo4jGraphLoader(ctx, loadPageSize);
+        Graph memGraph = null;
+        List<Prohibition> prohibitions = null;
 
-        Set<Node> nodes = loader.getNodes();
-        for(Node node : nodes) {
-            memGraph.createNode(node.getID(), node.getName(), node.getType(), node.getProperties());
+        // start from the snapshot if there is one, and catch up on the changes made since it was written
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            try {
+                long start = System.currentTimeMillis();
+                PolicySnapshot snapshot = PolicySnapshot.read(snapshotPath, newGraph());
+                long changes = loader.catchUp(snapshot.getGraph(), snapshot.getEpoch());
+                if (!loader.prohibitionsChangedSince(snapshot.getEpoch())) {
+                    prohibitions = snapshot.getProhibitions();
+                }
+
+                memGraph = snapshot.getGraph();
+                loadStats = new GraphLoadStats(snapshot.getNodeCount(), snapshot.getAssignmentCount(),
+                        snapshot.getAssociationCount(), System.currentTimeMillis() - start);
+                LOGGER.info(String.format("loaded %s from the snapshot %s and applied %d changes", loadStats, snapshotPath, changes));
+            }
+            catch (IOException | PMException e) {
+                LOGGER.warning(String.format("could not load the snapshot %s, loading the graph from the database: %s",
+                        snapshotPath, e.getMessage()));
+            }
         }
 
-        Set<Assignment> assignments = loader.getAssignments();
-        for(Assignment assignment : assignments) {
-            long childID = assignment.getSourceID();
-            long parentID = assignment.getTargetID();
-            memGraph.assign(childID, parentID);
+        // load the graph from the database into memory
+        if (memGraph == null) {
+            long epoch = loader.getEpoch();
+            memGraph = newGraph();
+            if (streamingLoad) {
+                loadStats = loader.load(memGraph);
+            } else {
+                long start = System.currentTimeMillis();
+
+                Set<Node> nodes = loader.getNodes();
+                for(Node node : nodes) {
+                    memGraph.createNode(node.getID(), node.getName(), node.getType(), node.getProperties());
+                }
+
+                Set<Assignment> assignments = loader.getAssignments();
+                for(Assignment assignment : assignments) {
+                    long childID = assignment.getSourceID();
+                    long parentID = assignment.getTargetID();
+                    memGraph.assign(childID, parentID);
+                }
+
+                Set<Association> associations = loader.getAssociations();
+                for(Association association : associations) {
+                    long uaID = association.getSourceID();
+                    long targetID = association.getTargetID();
+                    Set<String> operations = association.getOperations();
+                    memGraph.associate(uaID, targetID, operations);
+                }
+
+                loadStats = new GraphLoadStats(nodes.size(), assignments.size(), associations.size(),
+                        System.currentTimeMillis() - start);
+            }
+
+            // without snapshots no tombstones are written, so only ones left from when snapshots were enabled are pruned,
+            // with snapshots they are pruned when one is written
+            if (snapshotPath == null) {
+                loader.pruneTombstones(epoch);
+            }
         }
 
-        Set<Association> associations = loader.getAssociations();
-        for(Association association : associations) {
-            long uaID = association.getSourceID();
-            long targetID = association.getTargetID();
-            Set<String> operations = association.getOperations();
-            memGraph.associate(uaID, targetID, operations);
+        if (memGraph instanceof CompactGraph) {
+            ((CompactGraph) memGraph).compact();
+            LOGGER.info("in-memory graph: " + ((CompactGraph) memGraph).getFootprint());
         }
 
         // create a new graph pap with the in memory graph and db graph
-        graphPAP = new GraphPAP(memGraph, new Neo4jGraph(ctx));
-        prohibitionsPAP = new ProhibitionsPAP(ctx);
-        sessionManager = new SessionManager();
+        // deletes only need to leave tombstones for a snapshot to catch up on
+        boolean tombstones = snapshotPath != null;
+        if (prohibitions == null) {
+            prohibitions = new Neo4jProhibitionsLoader(ctx).loadProhibitions();
+        }
+        graphPAP = new GraphPAP(memGraph, new Neo4jGraph(ctx, batchSize, tombstones), searchIndexes);
+        prohibitionsPAP = new ProhibitionsPAP(ctx, prohibitions, tombstones);
+        policyClassIndex = new PolicyClassIndex(graphPAP);
+        decider = new CachingPolicyDecider(graphPAP, prohibitionsPAP, policyClassIndex, decisionCacheSize, decisionCacheEnabled);
+        if (capabilityIndexEnabled) {
+            decider.setCapabilityIndex(new CapabilityIndex(graphPAP, prohibitionsPAP, capabilityMaxEntries, capabilityMaxUsers));
+        }
+        explainEngine = new ExplainEngine(graphPAP, policyClassIndex, explainMaxPaths, explainCacheSize);
+        posSnapshots = new PosSnapshots(graphPAP, policyClassIndex, posCacheSize);
+        sessionManager = new SessionManager(sessionIdleTimeout, sessionMaxLifetime, maxSessions, sessionSweepInterval,
+                sessionStorePath == null ? null : new FileSessionStore(sessionStorePath));
+        passwordVerifier = new PasswordVerifier(loginThreads, loginQueueSize, loginTimeout, hashIterations);
+        idAllocator = new BlockIDAllocator(new Neo4jIDBlockSource(ctx), idBlockSize, idThreadBlockSize);
 
         // check that the super nodes are created
         loadSuper();
+
+        if (snapshotPath != null) {
+            snapshotWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "pap-snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotWriter.scheduleWithFixedDelay(() -> {
+                try {
+                    writeSnapshot();
+                }
+                catch (IOException | PMException | RuntimeException e) {
+                    LOGGER.warning(String.format("could not write the snapshot %s: %s", snapshotPath, e.getMessage()));
+                }
+            }, 0, snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return a new empty in-memory graph of the kind set by graph.store.
+     * @throws PMConfigurationException if graph.store is not a known kind of graph.
+     */
+    private Graph newGraph() throws PMConfigurationException {
+        switch (graphStore) {
+            case MEM_STORE:
+                return new MemGraph();
+            case COMPACT_STORE:
+                return new CompactGraph();
+            case MAPPED_STORE:
+                if (graphStorePath == null) {
+                    return new MappedGraph();
+                }
+                try {
+                    return new MappedGraph(graphStorePath);
+                }
+                catch (IOException e) {
+                    throw new PMConfigurationException(String.format("could not use %s for graph.store.path: %s",
+                            graphStorePath, e.getMessage()));
+                }
+            default:
+                throw new PMConfigurationException(String.format("unknown graph.store %s, expected %s, %s, or %s",
+                        graphStore, MEM_STORE, COMPACT_STORE, MAPPED_STORE));
+        }
+    }
+
+    /**
+     * Write a snapshot of the in-memory graph and prohibitions to the configured snapshot file, then delete the
+     * tombstones in the database that the snapshot makes unnecessary.  The database epoch is read before the policy, while
+     * no graph or prohibition change is half committed, so every change stamped before the epoch is in the snapshot and
+     * any change made while the snapshot is written is caught up on the next startup.
+     * @throws IOException if there is an error writing the snapshot file.
+     * @throws PMException if there is an error reading the policy or the database epoch.
+     */
+    public synchronized void writeSnapshot() throws IOException, PMException {
+        if (snapshotPath == null) {
+            return;
+        }
+
+        Neo4jGraphLoader loader = new Neo4jGraphLoader(dbCtx);
+        long epoch = graphPAP.readCommitted(() -> prohibitionsPAP.readCommitted(loader::getEpoch));
+        long start = System.currentTimeMillis();
+        PolicySnapshot.write(snapshotPath, epoch, graphPAP, prohibitionsPAP.getProhibitions());
+        loader.pruneTombstones(epoch);
+        LOGGER.info(String.format("wrote the snapshot %s in %dms", snapshotPath, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Stop writing snapshots and stop the decider listening for changes.  Called when this PAP is replaced.
+     */
+    private void close() {
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdownNow();
+        }
+        decider.close();
+        if (decider.getCapabilityIndex() != null) {
+            decider.getCapabilityIndex().close();
+        }
+        explainEngine.close();
+        posSnapshots.close();
+        policyClassIndex.close();
+        sessionManager.close();
+        passwordVerifier.close();
     }
 
     /**
@@ -152,59 +415,68 @@ public class PAP {
      * exist but should
      */
     public void loadSuper() throws PMException {
-        Random rand = new Random();
         HashMap<String, String> props = NodeUtils.toProperties(NAMESPACE_PROPERTY, "super");
 
+        // collect the super nodes that are missing and create them together
+        List<Node> newNodes = new ArrayList<>();
+
         Set<Node> nodes = getGraphPAP().search("super_ua1", UA.toString(), props);
         if(nodes.isEmpty()) {
-            superUA1 = getGraphPAP().createNode(rand.nextLong(), "super_ua1", UA, props);
+            superUA1 = new Node(idAllocator.nextID(), "super_ua1", UA, new HashMap<>(props));
+            newNodes.add(superUA1);
         } else {
             superUA1 = nodes.iterator().next();
         }
         nodes = getGraphPAP().search("super_ua2", UA.toString(), props);
         if(nodes.isEmpty()) {
-            superUA2 = getGraphPAP().createNode(rand.nextLong(), "super_ua2", UA, props);
+            superUA2 = new Node(idAllocator.nextID(), "super_ua2", UA, new HashMap<>(props));
+            newNodes.add(superUA2);
         } else {
             superUA2 = nodes.iterator().next();
         }
         nodes = getGraphPAP().search("super", NodeType.U.toString(), props);
         if(nodes.isEmpty()) {
+            HashMap<String, String> userProps = new HashMap<>(props);
             try {
-                props.put(PASSWORD_PROPERTY, generatePasswordHash("super"));
+                userProps.put(PASSWORD_PROPERTY, generatePasswordHash("super", hashIterations));
             }
             catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
                 throw new PMGraphException(e.getMessage());
             }
-            superU = getGraphPAP().createNode(rand.nextLong(), "super", NodeType.U, props);
-            props.remove(PASSWORD_PROPERTY);
+            superU = new Node(idAllocator.nextID(), "super", NodeType.U, userProps);
+            newNodes.add(superU);
         } else {
             superU = nodes.iterator().next();
         }
 
         nodes = getGraphPAP().search("super", NodeType.OA.toString(), props);
         if(nodes.isEmpty()) {
-            superOA = getGraphPAP().createNode(rand.nextLong(), "super", NodeType.OA, props);
+            superOA = new Node(idAllocator.nextID(), "super", NodeType.OA, new HashMap<>(props));
+            newNodes.add(superOA);
         } else {
             superOA = nodes.iterator().next();
         }
         nodes = getGraphPAP().search("super", NodeType.O.toString(), props);
         if(nodes.isEmpty()) {
-            superO = getGraphPAP().createNode(rand.nextLong(), "super", NodeType.O, props);
+            superO = new Node(idAllocator.nextID(), "super", NodeType.O, new HashMap<>(props));
+            newNodes.add(superO);
         } else {
             superO = nodes.iterator().next();
         }
         nodes = getGraphPAP().search("super rep", NodeType.OA.toString(), props);
         if(nodes.isEmpty()) {
-            superPCRep = getGraphPAP().createNode(rand.nextLong(), "super rep", NodeType.OA, props);
+            superPCRep = new Node(idAllocator.nextID(), "super rep", NodeType.OA, new HashMap<>(props));
+            newNodes.add(superPCRep);
         } else {
             superPCRep = nodes.iterator().next();
         }
         nodes = getGraphPAP().search("super", NodeType.PC.toString(), props);
         if(nodes.isEmpty()) {
             // add the rep oa ID to the properties
-            props.put(REP_PROPERTY, String.valueOf(superPCRep.getID()));
-            superPC = getGraphPAP().createNode(rand.nextLong(), "super", NodeType.PC, props);
-            props.remove(REP_PROPERTY);
+            HashMap<String, String> pcProps = new HashMap<>(props);
+            pcProps.put(REP_PROPERTY, String.valueOf(superPCRep.getID()));
+            superPC = new Node(idAllocator.nextID(), "super", NodeType.PC, pcProps);
+            newNodes.add(superPC);
         } else {
             superPC = nodes.iterator().next();
 
@@ -219,44 +491,60 @@ public class PAP {
             }
         }
 
-        // check super ua1 is assigned to super pc
+        getGraphPAP().createNodes(newNodes);
+
+        // collect the missing super assignments and create them together
+        List<Assignment> newAssignments = new ArrayList<>();
+
+        // check super ua1, super ua2, and super oa are assigned to super pc
         Set<Long> children = getGraphPAP().getChildren(superPC.getID());
         if(!children.contains(superUA1.getID())) {
-            getGraphPAP().assign(superUA1.getID(), superPC.getID());
+            newAssignments.add(new Assignment(superUA1.getID(), superPC.getID()));
         }
-        // check super ua2 is assigned to super pc
-        children = getGraphPAP().getChildren(superPC.getID());
         if(!children.contains(superUA2.getID())) {
-            getGraphPAP().assign(superUA2.getID(), superPC.getID());
+            newAssignments.add(new Assignment(superUA2.getID(), superPC.getID()));
+        }
+        if(!children.contains(superOA.getID())) {
+            newAssignments.add(new Assignment(superOA.getID(), superPC.getID()));
         }
         // check super user is assigned to super ua1
         children = getGraphPAP().getChildren(superUA1.getID());
         if(!children.contains(superU.getID())) {
-            getGraphPAP().assign(superU.getID(), superUA1.getID());
+            newAssignments.add(new Assignment(superU.getID(), superUA1.getID()));
         }
         // check super user is assigned to super ua2
         children = getGraphPAP().getChildren(superUA2.getID());
         if(!children.contains(superU.getID())) {
-            getGraphPAP().assign(superU.getID(),superUA2.getID());
-        }
-        // check super oa is assigned to super pc
-        children = getGraphPAP().getChildren(superPC.getID());
-        if(!children.contains(superOA.getID())) {
-            getGraphPAP().assign(superOA.getID(), superPC.getID());
+            newAssignments.add(new Assignment(superU.getID(), superUA2.getID()));
         }
-        // check that the super rep is assigned to super oa
+        // check that the super rep and super o are assigned to super oa
         children = getGraphPAP().getChildren(superOA.getID());
         if(!children.contains(superPCRep.getID())) {
-            getGraphPAP().assign(superPCRep.getID(), superOA.getID());
+            newAssignments.add(new Assignment(superPCRep.getID(), superOA.getID()));
         }
-        // check super o is assigned to super oa
         if(!children.contains(superO.getID())) {
-            getGraphPAP().assign(superO.getID(), superOA.getID());
+            newAssignments.add(new Assignment(superO.getID(), superOA.getID()));
         }
 
+        getGraphPAP().assignAll(newAssignments);
+
         // associate super ua to super oa
-        getGraphPAP().associate(superUA2.getID(), superOA.getID(), new HashSet<>(Arrays.asList(ALL_OPERATIONS)));
-        getGraphPAP().associate(superUA1.getID(), superUA2.getID(), new HashSet<>(Arrays.asList(ALL_OPERATIONS)));
+        Set<String> ops = new HashSet<>(Arrays.asList(ALL_OPERATIONS));
+        getGraphPAP().associateAll(Arrays.asList(
+                new Association(superUA2.getID(), superOA.getID(), ops),
+                new Association(superUA1.getID(), superUA2.getID(), ops)
+        ));
+    }
+
+    public DatabaseContext getDatabaseContext() {
+        return dbCtx;
+    }
+
+    /**
+     * @return the number of elements loaded into the in-memory graph when the PAP was initialized and how long it took.
+     */
+    public GraphLoadStats getLoadStats() {
+        return loadStats;
     }
 
     public GraphPAP getGraphPAP() {
@@ -267,10 +555,60 @@ public class PAP {
         return prohibitionsPAP;
     }
 
+    /**
+     * @return the decision engine shared by every request, which decides on this PAP's graph and prohibitions.
+     */
+    public PolicyDecider getDecider() {
+        return decider;
+    }
+
+    /**
+     * @return the policy classes each node in this PAP's graph is in.
+     */
+    public PolicyClassIndex getPolicyClassIndex() {
+        return policyClassIndex;
+    }
+
+    /**
+     * @return the engine that explains permissions on this PAP's graph.
+     */
+    public ExplainEngine getExplainEngine() {
+        return explainEngine;
+    }
+
+    /**
+     * @return the sorted POS of the users who recently paged through their POS.
+     */
+    public PosSnapshots getPosSnapshots() {
+        return posSnapshots;
+    }
+
     public SessionManager getSessionManager() {
         return sessionManager;
     }
 
+    /**
+     * @return the verifier that checks passwords when users log in.
+     */
+    public PasswordVerifier getPasswordVerifier() {
+        return passwordVerifier;
+    }
+
+    /**
+     * @return the allocator that gives new nodes their IDs.
+     */
+    public IDAllocator getIDAllocator() {
+        return idAllocator;
+    }
+
+    /**
+     * Replace the allocator that gives new nodes their IDs.
+     * @param idAllocator the allocator to use from now on.  It must not allocate the ID of a node in the graph.
+     */
+    public void setIDAllocator(IDAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
     public Node getSuperPC() {
         return superPC;
     }
@@ -312,6 +650,7 @@ public class PAP {
      * the updated graph from the database.
      */
     public void reinitialize() throws PMException {
+        close();
         PAP = new PAP();
     }
 }
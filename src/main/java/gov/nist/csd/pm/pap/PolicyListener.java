@@ -0,0 +1,32 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.List;
+
+/**
+ * Notified when the policy in the PAP changes.  Register a listener with GraphPAP.addListener() and
+ * ProhibitionsPAP.addListener().  Listeners are called on the thread that made the change, after the change has been
+ * written to the database and applied in memory, so they should be quick and should not throw.  Graph listeners are
+ * called holding the commit lock of GraphPAP, so they are told about changes in the order they were committed.
+ */
+public interface PolicyListener {
+
+    /**
+     * Called after a group of graph changes is committed.
+     * @param mutations the changes, in the order they were made.
+     */
+    void graphChanged(List<GraphMutation> mutations);
+
+    /**
+     * Called after the in-memory graph is reloaded from the database, when any part of it may have changed.
+     */
+    void graphReloaded();
+
+    /**
+     * Called after a prohibition is created, updated, or deleted.
+     * @param prohibition the prohibition that changed. For a delete, the prohibition as it was before it was deleted.
+     */
+    void prohibitionChanged(Prohibition prohibition);
+}
@@ -3,38 +3,77 @@ package gov.nist.csd.pm.pap;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.pip.db.DatabaseContext;
 import gov.nist.csd.pm.pip.loader.prohibitions.Neo4jProhibitionsLoader;
-import gov.nist.csd.pm.pip.loader.prohibitions.ProhibitionsLoader;
 import gov.nist.csd.pm.pip.prohibitions.Neo4jProhibitionsDAO;
 import gov.nist.csd.pm.prohibitions.MemProhibitionsDAO;
 import gov.nist.csd.pm.prohibitions.ProhibitionsDAO;
 import gov.nist.csd.pm.prohibitions.model.Prohibition;
 
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * The prohibitions used by the PDP.  Reads are served from memory and writes go to the database and then memory.
+ *
+ * The in-memory prohibitions are copy-on-write: a write builds a new set of prohibitions from the current one and
+ * publishes it once the database write succeeds.  A published set is never changed, so readers use whichever set is
+ * current without taking a lock.  Writes are serialized, which is cheap because there are far fewer prohibitions than
+ * graph elements and they change rarely.  Registered PolicyListeners are told about each change once it is published.
+ */
 public class ProhibitionsPAP implements ProhibitionsDAO {
-    private ProhibitionsDAO    dbProhibitions;
-    private MemProhibitionsDAO memProhibitions;
+    private ProhibitionsDAO             dbProhibitions;
+    private volatile MemProhibitionsDAO memProhibitions;
+    private List<PolicyListener>        listeners = new CopyOnWriteArrayList<>();
 
     public ProhibitionsPAP(DatabaseContext ctx) throws PMException {
-        dbProhibitions = new Neo4jProhibitionsDAO(ctx);
-        ProhibitionsLoader loader = new Neo4jProhibitionsLoader(ctx);
-        memProhibitions = new MemProhibitionsDAO();
-        List<Prohibition> prohibitions = loader.loadProhibitions();
-        for(Prohibition prohibition : prohibitions) {
-            memProhibitions.createProhibition(prohibition);
-        }
+        this(ctx, new Neo4jProhibitionsLoader(ctx).loadProhibitions());
+    }
+
+    /**
+     * Create a ProhibitionsPAP with prohibitions that have already been loaded, such as from a snapshot.
+     * @param ctx the database connection information.
+     * @param prohibitions the prohibitions to keep in memory.
+     * @throws PMException if there is an error connecting to the database.
+     */
+    public ProhibitionsPAP(DatabaseContext ctx, List<Prohibition> prohibitions) throws PMException {
+        this(ctx, prohibitions, true);
+    }
+
+    /**
+     * Create a ProhibitionsPAP with prohibitions that have already been loaded, such as from a snapshot.
+     * @param ctx the database connection information.
+     * @param prohibitions the prohibitions to keep in memory.
+     * @param tombstones true to leave a tombstone in the database for every deleted prohibition, for snapshots.
+     * @throws PMException if there is an error connecting to the database.
+     */
+    public ProhibitionsPAP(DatabaseContext ctx, List<Prohibition> prohibitions, boolean tombstones) throws PMException {
+        dbProhibitions = new Neo4jProhibitionsDAO(ctx, tombstones);
+        memProhibitions = copy(prohibitions);
     }
 
     @Override
-    public void createProhibition(Prohibition prohibition) throws PMException {
+    public synchronized void createProhibition(Prohibition prohibition) throws PMException {
         dbProhibitions.createProhibition(prohibition);
-        memProhibitions.createProhibition(prohibition);
+        MemProhibitionsDAO copy = copy(memProhibitions.getProhibitions());
+        copy.createProhibition(prohibition);
+        memProhibitions = copy;
+        fireProhibitionChanged(prohibition);
+    }
+
+    /**
+     * Make a read while no prohibition is being written, so every prohibition change already written to the database
+     * has also been published in memory.
+     * @param read the read to make.
+     * @return the value read.
+     * @throws PMException if there is an error making the read.
+     */
+    public synchronized <T> T readCommitted(CommittedRead<T> read) throws PMException {
+        return read.read();
     }
 
     @Override
     public List<Prohibition> getProhibitions() {
-        return memProhibitions.getProhibitions();
+        return new ArrayList<>(memProhibitions.getProhibitions());
     }
 
     @Override
@@ -43,23 +82,69 @@ public class ProhibitionsPAP implements ProhibitionsDAO {
     }
 
     @Override
-    public void updateProhibition(Prohibition prohibition) throws PMException {
+    public synchronized void updateProhibition(Prohibition prohibition) throws PMException {
         dbProhibitions.updateProhibition(prohibition);
-        memProhibitions.updateProhibition(prohibition);
+        MemProhibitionsDAO copy = copy(memProhibitions.getProhibitions());
+        copy.updateProhibition(prohibition);
+        memProhibitions = copy;
+        fireProhibitionChanged(prohibition);
     }
 
     @Override
-    public void deleteProhibition(String prohibitionName) throws PMException {
+    public synchronized void deleteProhibition(String prohibitionName) throws PMException {
         dbProhibitions.deleteProhibition(prohibitionName);
-        memProhibitions.deleteProhibition(prohibitionName);
+        Prohibition deleted = find(prohibitionName);
+        MemProhibitionsDAO copy = copy(memProhibitions.getProhibitions());
+        copy.deleteProhibition(prohibitionName);
+        memProhibitions = copy;
+        if (deleted != null) {
+            fireProhibitionChanged(deleted);
+        }
     }
 
-    public void reset() throws PMException {
+    public synchronized void reset() throws PMException {
         List<Prohibition> prohibitions = memProhibitions.getProhibitions();
-        for (Iterator<Prohibition> iterator = prohibitions.iterator(); iterator.hasNext();) {
-            Prohibition p = iterator.next();
-            dbProhibitions.deleteProhibition(p.getName());
-            iterator.remove();
+        for (Prohibition prohibition : prohibitions) {
+            dbProhibitions.deleteProhibition(prohibition.getName());
+        }
+        memProhibitions = new MemProhibitionsDAO();
+        for (Prohibition prohibition : prohibitions) {
+            fireProhibitionChanged(prohibition);
+        }
+    }
+
+    /**
+     * Register a listener to be told about every change to the prohibitions.
+     * @param listener the listener to add.
+     */
+    public void addListener(PolicyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PolicyListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireProhibitionChanged(Prohibition prohibition) {
+        for (PolicyListener listener : listeners) {
+            listener.prohibitionChanged(prohibition);
+        }
+    }
+
+    private Prohibition find(String prohibitionName) {
+        for (Prohibition prohibition : memProhibitions.getProhibitions()) {
+            if (prohibition.getName().equals(prohibitionName)) {
+                return prohibition;
+            }
+        }
+        return null;
+    }
+
+    private static MemProhibitionsDAO copy(List<Prohibition> prohibitions) throws PMException {
+        MemProhibitionsDAO copy = new MemProhibitionsDAO();
+        for (Prohibition prohibition : prohibitions) {
+            copy.createProhibition(prohibition);
         }
+        return copy;
     }
 }
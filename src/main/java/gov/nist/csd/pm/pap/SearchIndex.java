@@ -0,0 +1,205 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+
+import java.util.*;
+
+/**
+ * Secondary indexes on the nodes of the in-memory graph, so searches do not have to compare every node.  Node names
+ * are always indexed.  Node types and the values of chosen property keys are indexed if configured.  Each index maps a
+ * value to the IDs of the nodes that have it.
+ *
+ * A search starts from the smallest set of IDs among the indexed parts of the search, keeps the IDs that are in the
+ * other sets, and compares the parts of the search that are not indexed with each remaining node.  A search with no
+ * indexed part returns null, and the graph is scanned instead.
+ *
+ * The index is not thread safe.  GraphPAP changes it while holding the write lock of the in-memory graph, in the same
+ * critical section as the change to the graph, and searches it while holding the read lock.
+ */
+class SearchIndex {
+
+    /**
+     * The value of search.indexes that indexes node types.
+     */
+    static final String TYPE = "type";
+
+    private Collection<String>                  indexes;
+    private Map<String, Set<Long>>              names;
+    private Map<NodeType, Set<Long>>            types;
+    private Map<String, Map<String, Set<Long>>> properties;
+
+    /**
+     * Index the nodes of the graph.
+     * @param nodes the nodes to index.
+     * @param indexes "type" to index node types, and the property keys whose values to index.
+     */
+    SearchIndex(Collection<Node> nodes, Collection<String> indexes) {
+        this.indexes = new ArrayList<>(indexes);
+        reset(nodes);
+    }
+
+    /**
+     * Drop everything in the index and index the given nodes, after the in-memory graph is reloaded.
+     */
+    void reset(Collection<Node> nodes) {
+        names = new HashMap<>();
+        types = null;
+        properties = new HashMap<>();
+        for (String index : indexes) {
+            if (index.equals(TYPE)) {
+                types = new EnumMap<>(NodeType.class);
+            } else {
+                properties.put(index, new HashMap<>());
+            }
+        }
+
+        for (Node node : nodes) {
+            add(node.getID(), node.getName(), node.getType(), node.getProperties());
+        }
+    }
+
+    /**
+     * Update the index for a change that is about to be applied to the in-memory graph.  The index is changed first so
+     * the state of an updated or deleted node before the change can be read from the graph.
+     */
+    void apply(GraphMutation mutation, Graph graph) throws PMException {
+        long id = mutation.getSourceID();
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+                add(id, mutation.getName(), mutation.getType(), mutation.getProperties());
+                break;
+            case UPDATE_NODE:
+                remove(graph.getNode(id));
+                add(id, mutation.getName(), mutation.getType(), mutation.getProperties());
+                break;
+            case DELETE_NODE:
+                if (graph.exists(id)) {
+                    remove(graph.getNode(id));
+                }
+                break;
+            default:
+                // relations are not indexed
+                break;
+        }
+    }
+
+    /**
+     * Search the graph for the nodes that match.  A null or empty name or type matches any node, and a node matches
+     * the properties if it has every one of them.
+     * @return the matching nodes, or null if no part of the search is indexed.
+     * @throws IllegalStateException if an indexed node is not in the graph, which means the index is out of date.
+     */
+    Set<Node> search(Graph graph, String name, String type, Map<String, String> properties) {
+        List<Set<Long>> postings = new ArrayList<>();
+        Map<String, String> unindexed = new HashMap<>();
+        if (name != null && !name.isEmpty()) {
+            postings.add(names.getOrDefault(name, Collections.emptySet()));
+        }
+        if (type != null && !type.isEmpty()) {
+            NodeType nodeType = NodeType.toNodeType(type);
+            if (nodeType == null) {
+                return new HashSet<>();
+            } else if (types != null) {
+                postings.add(types.getOrDefault(nodeType, Collections.emptySet()));
+            }
+        }
+        if (properties != null) {
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                Map<String, Set<Long>> values = this.properties.get(property.getKey());
+                if (values == null) {
+                    unindexed.put(property.getKey(), property.getValue());
+                } else {
+                    postings.add(values.getOrDefault(property.getValue(), Collections.emptySet()));
+                }
+            }
+        }
+        if (postings.isEmpty()) {
+            return null;
+        }
+
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Node> found = new HashSet<>();
+        candidates:
+        for (long id : postings.get(0)) {
+            for (int i = 1; i < postings.size(); i++) {
+                if (!postings.get(i).contains(id)) {
+                    continue candidates;
+                }
+            }
+
+            Node node = getNode(graph, id);
+            if ((types == null && type != null && !type.isEmpty() && node.getType() != NodeType.toNodeType(type))
+                    || !hasProperties(node, unindexed)) {
+                continue;
+            }
+            found.add(node);
+        }
+        return found;
+    }
+
+    private void add(long id, String name, NodeType type, Map<String, String> nodeProperties) {
+        names.computeIfAbsent(name, k -> new HashSet<>()).add(id);
+        if (types != null) {
+            types.computeIfAbsent(type, k -> new HashSet<>()).add(id);
+        }
+        for (Map.Entry<String, Map<String, Set<Long>>> index : properties.entrySet()) {
+            String value = nodeProperties == null ? null : nodeProperties.get(index.getKey());
+            if (value != null) {
+                index.getValue().computeIfAbsent(value, k -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    private void remove(Node node) {
+        removeID(names, node.getName(), node.getID());
+        if (types != null) {
+            removeID(types, node.getType(), node.getID());
+        }
+        for (Map.Entry<String, Map<String, Set<Long>>> index : properties.entrySet()) {
+            String value = node.getProperties() == null ? null : node.getProperties().get(index.getKey());
+            if (value != null) {
+                removeID(index.getValue(), value, node.getID());
+            }
+        }
+    }
+
+    private static <K> void removeID(Map<K, Set<Long>> index, K value, long id) {
+        Set<Long> ids = index.get(value);
+        if (ids == null) {
+            return;
+        }
+
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    private static Node getNode(Graph graph, long id) {
+        Node node = null;
+        try {
+            node = graph.getNode(id);
+        }
+        catch (PMException e) {
+            // reported below
+        }
+        if (node == null) {
+            throw new IllegalStateException(String.format("node %d is in the search index but not the graph", id));
+        }
+        return node;
+    }
+
+    private static boolean hasProperties(Node node, Map<String, String> properties) {
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String value = node.getProperties() == null ? null : node.getProperties().get(property.getKey());
+            if (!Objects.equals(property.getValue(), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
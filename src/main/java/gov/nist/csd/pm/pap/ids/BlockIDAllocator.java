@@ -0,0 +1,87 @@
+package gov.nist.csd.pm.pap.ids;
+
+import gov.nist.csd.pm.exceptions.PMException;
+
+/**
+ * Allocates increasing node IDs from blocks reserved from an IDBlockSource, so the source is only asked once per block.
+ * Each thread takes a small part of the current block and allocates from it without locking, so only taking a new
+ * part is synchronized.  The IDs allocated by each thread increase, and IDs allocated by different threads are close
+ * together, so they can index arrays and are stored near each other in the database.
+ *
+ * IDs in a part of a block that a thread never uses, and in the rest of the block when the PAP stops, are not
+ * allocated.
+ */
+public class BlockIDAllocator implements IDAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE        = 10000;
+    public static final int DEFAULT_THREAD_BLOCK_SIZE = 100;
+
+    private IDBlockSource source;
+    private int           blockSize;
+    private int           threadBlockSize;
+
+    /**
+     * The unused range of the current block, guarded by this.
+     */
+    private long next;
+    private long end;
+
+    /**
+     * Incremented by skipPast() so every thread drops its part of the old block.
+     */
+    private volatile long generation;
+
+    /**
+     * The range each thread allocates from, and the generation it was taken in.
+     */
+    private ThreadLocal<long[]> parts = ThreadLocal.withInitial(() -> new long[]{0, 0, -1});
+
+    /**
+     * @param source the source to reserve blocks from.
+     * @param blockSize the number of IDs to reserve from the source at a time.
+     * @param threadBlockSize the number of IDs a thread takes from the current block at a time.
+     */
+    public BlockIDAllocator(IDBlockSource source, int blockSize, int threadBlockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("the ID block size must be greater than 0");
+        } else if (threadBlockSize <= 0 || threadBlockSize > blockSize) {
+            throw new IllegalArgumentException("the ID thread block size must be greater than 0 and at most the block size");
+        }
+
+        this.source = source;
+        this.blockSize = blockSize;
+        this.threadBlockSize = threadBlockSize;
+    }
+
+    @Override
+    public long nextID() throws PMException {
+        long[] part = parts.get();
+        if (part[0] == part[1] || part[2] != generation) {
+            take(part);
+        }
+        return part[0]++;
+    }
+
+    @Override
+    public synchronized void skipPast(long id) throws PMException {
+        if (id >= next) {
+            next = source.reserve(blockSize, id);
+            end = next + blockSize;
+        }
+
+        // the parts threads already took may start at or below the ID
+        generation++;
+    }
+
+    private synchronized void take(long[] part) throws PMException {
+        if (next == end) {
+            next = source.reserve(blockSize, 0);
+            end = next + blockSize;
+        }
+
+        part[0] = next;
+        part[1] = Math.min(end, next + threadBlockSize);
+        part[2] = generation;
+        next = part[1];
+    }
+}
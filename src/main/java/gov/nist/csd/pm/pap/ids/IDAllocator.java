@@ -0,0 +1,24 @@
+package gov.nist.csd.pm.pap.ids;
+
+import gov.nist.csd.pm.exceptions.PMException;
+
+/**
+ * Allocates the IDs of new nodes.  Every ID allocated is greater than 0 and is never allocated again, even if the node
+ * it was allocated for is never created.
+ */
+public interface IDAllocator {
+
+    /**
+     * @return a new node ID.
+     * @throws PMException if there is an error reserving more IDs.
+     */
+    long nextID() throws PMException;
+
+    /**
+     * Make sure no ID at or below the given ID is allocated from now on.  Called after nodes are created with IDs that
+     * were not allocated, such as the nodes of a loaded configuration.
+     * @param id the largest ID in use.
+     * @throws PMException if there is an error reserving more IDs.
+     */
+    void skipPast(long id) throws PMException;
+}
@@ -0,0 +1,19 @@
+package gov.nist.csd.pm.pap.ids;
+
+import gov.nist.csd.pm.exceptions.PMException;
+
+/**
+ * Reserves ranges of node IDs for a BlockIDAllocator.  Ranges are never reserved twice, including by other PAPs sharing
+ * the same source, and each range starts after every range reserved before it.
+ */
+public interface IDBlockSource {
+
+    /**
+     * Reserve a range of IDs.
+     * @param size the number of IDs to reserve.
+     * @param after the reserved range must start after this ID.
+     * @return the first ID of the range.  The range ends at the returned ID plus the size, exclusive.
+     * @throws PMException if there is an error reserving the range, or there are no more IDs.
+     */
+    long reserve(int size, long after) throws PMException;
+}
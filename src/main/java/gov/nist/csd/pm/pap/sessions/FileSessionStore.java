@@ -0,0 +1,119 @@
+package gov.nist.csd.pm.pap.sessions;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A SessionStore that appends each saved and deleted session to a file.  Loading the file replays it and rewrites it
+ * with only the sessions that were not deleted, so the file does not grow across restarts.
+ *
+ * Each line is either "+ hash userID createdAt" for a saved session or "- hash" for a deleted one, where hash is the
+ * hash of the session ID.  The file is created readable and writable by its owner only, where the file system supports
+ * POSIX permissions.
+ */
+public class FileSessionStore implements SessionStore {
+
+    private Path           path;
+    private BufferedWriter writer;
+
+    public FileSessionStore(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized Collection<Session> load() throws IOException {
+        close();
+        Map<String, Session> sessions = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    if (parts.length == 4 && parts[0].equals("+")) {
+                        sessions.put(parts[1], new Session(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3]), now));
+                    } else if (parts.length == 2 && parts[0].equals("-")) {
+                        sessions.remove(parts[1]);
+                    }
+                    // anything else is a partly written last line
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new IOException(String.format("the session file %s is corrupt: %s", path, e.getMessage()));
+            }
+        }
+
+        // rewrite the file with only the live sessions
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        createOwnerOnly(tmp);
+        try (BufferedWriter compacted = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Session session : sessions.values()) {
+                compacted.write(saved(session));
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return sessions.values();
+    }
+
+    @Override
+    public synchronized void save(Session session) throws IOException {
+        append(saved(session));
+    }
+
+    @Override
+    public synchronized void delete(String hashedID) throws IOException {
+        append("- " + hashedID + "\n");
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Close the file.  It is opened again by the next save or delete.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void append(String line) throws IOException {
+        if (writer == null) {
+            if (!Files.exists(path)) {
+                createOwnerOnly(path);
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        }
+        writer.write(line);
+        writer.flush();
+    }
+
+    private static void createOwnerOnly(Path file) throws IOException {
+        if (Files.getFileStore(file.toAbsolutePath().getParent()).supportsFileAttributeView("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+    }
+
+    private static String saved(Session session) {
+        return String.format("+ %s %d %d\n", session.getID(), session.getUserID(), session.getCreatedAt());
+    }
+}
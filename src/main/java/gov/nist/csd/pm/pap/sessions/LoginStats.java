@@ -0,0 +1,88 @@
+package gov.nist.csd.pm.pap.sessions;
+
+/**
+ * The password checks made by a PasswordVerifier up to one point in time.  Latencies are the time to check a password,
+ * including the time spent waiting for a thread, in microseconds.
+ */
+public class LoginStats {
+
+    private long verified;
+    private long failed;
+    private long rejected;
+    private long timedOut;
+    private long rehashed;
+    private long p50;
+    private long p95;
+    private long p99;
+    private long max;
+
+    public LoginStats(long verified, long failed, long rejected, long timedOut, long rehashed,
+                      long p50, long p95, long p99, long max) {
+        this.verified = verified;
+        this.failed = failed;
+        this.rejected = rejected;
+        this.timedOut = timedOut;
+        this.rehashed = rehashed;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of passwords checked, whether or not they matched.
+     */
+    public long getVerified() {
+        return verified;
+    }
+
+    /**
+     * @return the number of passwords that did not match.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the number of logins turned away because every thread was busy and the queue was full.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of logins turned away because the password was not checked within the timeout.
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return the number of passwords hashed again with more iterations after they matched.
+     */
+    public long getRehashed() {
+        return rehashed;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP95() {
+        return p95;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("verified=%d failed=%d rejected=%d timedOut=%d rehashed=%d p50=%dus p95=%dus p99=%dus "
+                + "max=%dus", verified, failed, rejected, timedOut, rehashed, p50, p95, p99, max);
+    }
+}
@@ -0,0 +1,163 @@
+package gov.nist.csd.pm.pap.sessions;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.common.exceptions.PMUnavailableException;
+import gov.nist.csd.pm.common.util.LatencyHistogram;
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks passwords on a fixed number of threads, so a burst of logins cannot use every request thread hashing
+ * passwords.  Checks wait in a bounded queue for a thread.  When the queue is full, or a check is not done within the
+ * timeout, the login is turned away with a PMUnavailableException instead of waiting, and can be retried.
+ *
+ * A password that matches a hash made with fewer iterations than the configured number is hashed again on the same
+ * thread, so stored hashes are upgraded as users log in.
+ */
+public class PasswordVerifier {
+
+    public static final int  DEFAULT_QUEUE_SIZE = 64;
+    public static final long DEFAULT_TIMEOUT    = 5000;
+
+    private ThreadPoolExecutor executor;
+    private long               timeout;
+    private int                hashIterations;
+    private LatencyHistogram   latencies = new LatencyHistogram();
+    private LongAdder          failed    = new LongAdder();
+    private LongAdder          rejected  = new LongAdder();
+    private LongAdder          timedOut  = new LongAdder();
+    private LongAdder          rehashed  = new LongAdder();
+
+    /**
+     * @param threads the number of threads that check passwords.
+     * @param queueSize the number of checks that can wait for a thread.
+     * @param timeout the milliseconds to wait for a check, including the time waiting for a thread, or 0 to wait
+     *                until it is done.
+     * @param hashIterations the number of iterations a stored hash should have.  Hashes with fewer are replaced when
+     *                       the password matches.
+     */
+    public PasswordVerifier(int threads, int queueSize, long timeout, int hashIterations) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("the number of password threads must be greater than 0");
+        } else if (queueSize <= 0) {
+            throw new IllegalArgumentException("the password queue size must be greater than 0");
+        } else if (hashIterations <= 0) {
+            throw new IllegalArgumentException("the number of hash iterations must be greater than 0");
+        }
+
+        this.timeout = timeout;
+        this.hashIterations = hashIterations;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "pap-password-verifier-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return the number of iterations new password hashes are made with.
+     */
+    public int getHashIterations() {
+        return hashIterations;
+    }
+
+    /**
+     * Check a password against the stored hash.
+     * @param stored the hash of the user's password.
+     * @param password the password to check.
+     * @return whether the password matched, and a new hash to store if the stored hash has too few iterations.
+     * @throws PMUnavailableException if the password could not be checked now because too many are being checked.
+     * @throws PMGraphException if there is an error hashing the password.
+     */
+    public Result verify(String stored, String password) throws PMException {
+        long start = System.nanoTime();
+        Future<Result> future;
+        try {
+            future = executor.submit(() -> check(stored, password));
+        }
+        catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PMUnavailableException("too many logins are in progress, try again later");
+        }
+
+        try {
+            Result result = timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            if (!result.matches()) {
+                failed.increment();
+            } else if (result.getRehash() != null) {
+                rehashed.increment();
+            }
+            return result;
+        }
+        catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new PMUnavailableException("the login timed out, try again later");
+        }
+        catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PMUnavailableException("the login was interrupted, try again later");
+        }
+        catch (ExecutionException e) {
+            throw new PMGraphException(e.getCause().getMessage());
+        }
+    }
+
+    public LoginStats getStats() {
+        return new LoginStats(latencies.getCount(), failed.sum(), rejected.sum(), timedOut.sum(), rehashed.sum(),
+                latencies.getPercentile(50), latencies.getPercentile(95), latencies.getPercentile(99),
+                latencies.getMax());
+    }
+
+    /**
+     * Stop the threads.  Checks that have not started are cancelled.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private Result check(String stored, String password) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        if (!NodeUtils.checkPasswordHash(stored, password)) {
+            return new Result(false, null);
+        } else if (NodeUtils.getHashIterations(stored) < hashIterations) {
+            return new Result(true, NodeUtils.generatePasswordHash(password, hashIterations));
+        }
+        return new Result(true, null);
+    }
+
+    /**
+     * The outcome of checking a password.
+     */
+    public static class Result {
+        private boolean matches;
+        private String  rehash;
+
+        Result(boolean matches, String rehash) {
+            this.matches = matches;
+            this.rehash = rehash;
+        }
+
+        public boolean matches() {
+            return matches;
+        }
+
+        /**
+         * @return a hash of the password with the configured number of iterations to replace the stored hash, or null
+         * if the stored hash already has enough.
+         */
+        public String getRehash() {
+            return rehash;
+        }
+    }
+}
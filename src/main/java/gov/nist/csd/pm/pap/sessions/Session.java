@@ -0,0 +1,87 @@
+package gov.nist.csd.pm.pap.sessions;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A session of an authenticated user.  A session is identified by the hash of its session ID, so the IDs given to
+ * clients are not kept in memory or written to a SessionStore.
+ */
+public class Session {
+
+    private String        id;
+    private long          userID;
+    private long          createdAt;
+    private volatile long lastAccessedAt;
+
+    /**
+     * @param id the hash of the session ID.
+     */
+    public Session(String id, long userID, long createdAt, long lastAccessedAt) {
+        this.id = id;
+        this.userID = userID;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    /**
+     * @return the hash of the session ID.
+     */
+    public String getID() {
+        return id;
+    }
+
+    public long getUserID() {
+        return userID;
+    }
+
+    /**
+     * @return the time the session was created, in milliseconds since the epoch.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @return the time the session was last used, in milliseconds since the epoch.
+     */
+    public long getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    /**
+     * Record that the session was used.  The time is only written if it has moved on by at least the resolution, so
+     * threads using the same session do not all write to it on every request.
+     */
+    void touch(long now, long resolution) {
+        if (now - lastAccessedAt >= resolution) {
+            lastAccessedAt = now;
+        }
+    }
+
+    /**
+     * @return the SHA-256 hash of the session ID, in hex.
+     */
+    public static String hashID(String sessionID) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(sessionID.getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, hash));
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param idleTimeout the milliseconds a session can go unused, or 0 for no limit.
+     * @param maxLifetime the milliseconds a session can exist, or 0 for no limit.
+     * @return true if the session has expired at the given time.
+     */
+    boolean isExpired(long now, long idleTimeout, long maxLifetime) {
+        return (idleTimeout > 0 && now - lastAccessedAt > idleTimeout)
+                || (maxLifetime > 0 && now - createdAt > maxLifetime);
+    }
+}
@@ -1,37 +1,291 @@
 package gov.nist.csd.pm.pap.sessions;
 
+import gov.nist.csd.pm.common.exceptions.PMAuthenticationException;
+
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
 
 /**
- * Class to store active sessions in memory.  Since sessions are not persisted if the server shuts down, there is no need
- * to store them in the database.
+ * Class to store active sessions in memory.  Sessions are kept in a ConcurrentHashMap, so resolving a session on every
+ * request never waits for a lock.
+ *
+ * A session expires when it has not been used for the idle timeout, or when it is older than the maximum lifetime.
+ * Expired sessions are removed when they are next used, and by a background sweep so unused sessions do not stay in
+ * memory.  A session takes one of the maximum number of places before it is added, so concurrent logins cannot go over
+ * the maximum.  When there is no free place, creating a session evicts the least recently used of a small sample of
+ * sessions, or an expired one if the sample has one.  Each sample continues where the last one stopped, so all of the
+ * sessions are sampled in turn.
+ *
+ * Sessions are kept by the hash of their session ID, and looked up by hashing the ID each request gives.
+ *
+ * If a SessionStore is given, sessions are saved to it when they are created and deleted, and loaded from it when the
+ * manager is created, so sessions survive a restart.
  */
 public class SessionManager {
 
-    private HashMap<String, Long> sessions;
+    private static final Logger LOGGER = Logger.getLogger(SessionManager.class.getName());
+
+    public static final long DEFAULT_IDLE_TIMEOUT   = TimeUnit.MINUTES.toMillis(30);
+    public static final long DEFAULT_MAX_LIFETIME   = TimeUnit.HOURS.toMillis(24);
+    public static final int  DEFAULT_MAX_SESSIONS   = 100000;
+    public static final long DEFAULT_SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The last used time of a session is only updated when it has moved on by at least this many milliseconds.
+     */
+    private static final long TOUCH_RESOLUTION = 1000;
+
+    /**
+     * The number of sessions compared to choose one to evict.
+     */
+    private static final int EVICTION_SAMPLE = 16;
 
+    private ConcurrentHashMap<String, Session> sessions;
+    private long                               idleTimeout;
+    private long                               maxLifetime;
+    private int                                maxSessions;
+    private AtomicInteger                      places = new AtomicInteger();
+    private Iterator<Session>                  evictionCursor;
+    private final Object                       evictionLock = new Object();
+    private SessionStore                       store;
+    private ScheduledExecutorService           sweeper;
+    private LongAdder                          created = new LongAdder();
+    private LongAdder                          expired = new LongAdder();
+    private LongAdder                          evicted = new LongAdder();
+
+    /**
+     * Create a session manager with the default timeouts and maximum number of sessions, that does not persist
+     * sessions.
+     */
     public SessionManager() {
-        sessions = new HashMap<>();
+        this(DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_LIFETIME, DEFAULT_MAX_SESSIONS, DEFAULT_SWEEP_INTERVAL, null);
+    }
+
+    /**
+     * @param idleTimeout the milliseconds a session can go unused before it expires, or 0 for no limit.
+     * @param maxLifetime the milliseconds a session can exist before it expires, or 0 for no limit.
+     * @param maxSessions the maximum number of sessions.
+     * @param sweepInterval the milliseconds between sweeps for expired sessions, or 0 to not sweep.
+     * @param store the store to persist sessions to, or null to keep them in memory only.
+     */
+    public SessionManager(long idleTimeout, long maxLifetime, int maxSessions, long sweepInterval, SessionStore store) {
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("the maximum number of sessions must be greater than 0");
+        }
+
+        this.sessions = new ConcurrentHashMap<>();
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.maxSessions = maxSessions;
+        this.store = store;
+
+        if (store != null) {
+            try {
+                for (Session session : store.load()) {
+                    if (sessions.put(session.getID(), session) == null) {
+                        places.incrementAndGet();
+                    }
+                }
+            }
+            catch (IOException e) {
+                LOGGER.warning(String.format("could not load the saved sessions: %s", e.getMessage()));
+            }
+        }
+
+        if (sweepInterval > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "pap-session-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void createSession(String sessionID, long userID) {
-        sessions.put(sessionID, userID);
+        reservePlace();
+
+        long now = System.currentTimeMillis();
+        Session session = new Session(Session.hashID(sessionID), userID, now, now);
+        if (sessions.put(session.getID(), session) != null) {
+            // the replaced session gives its place to this one
+            places.decrementAndGet();
+        }
+        created.increment();
+        if (store != null) {
+            try {
+                store.save(session);
+            }
+            catch (IOException e) {
+                LOGGER.warning(String.format("could not save a session of user %d: %s", userID, e.getMessage()));
+            }
+        }
     }
 
-    public long getSessionUserID(String sessionID) {
-        return sessions.get(sessionID);
+    /**
+     * @return the ID of the user of the session.
+     * @throws PMAuthenticationException if the session does not exist or has expired.
+     */
+    public long getSessionUserID(String sessionID) throws PMAuthenticationException {
+        Session session = sessionID == null ? null : sessions.get(Session.hashID(sessionID));
+        if (session == null) {
+            throw new PMAuthenticationException(String.format("session %s does not exist", sessionID));
+        }
+
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now, idleTimeout, maxLifetime)) {
+            remove(session, expired);
+            throw new PMAuthenticationException(String.format("session %s has expired", sessionID));
+        }
+
+        session.touch(now, TOUCH_RESOLUTION);
+        return session.getUserID();
     }
 
     public void deleteSession(String sessionID) {
-        sessions.remove(sessionID);
+        Session session = sessionID == null ? null : sessions.get(Session.hashID(sessionID));
+        if (session != null) {
+            remove(session, null);
+        }
     }
 
+    /**
+     * @return a copy of the active sessions, mapping the hash of each session ID to the ID of its user.
+     */
     public Map<String, Long> getSessions() {
-        return sessions;
+        Map<String, Long> copy = new HashMap<>();
+        for (Session session : sessions.values()) {
+            copy.put(session.getID(), session.getUserID());
+        }
+        return copy;
+    }
+
+    public SessionStats getStats() {
+        return new SessionStats(sessions.size(), maxSessions, created.sum(), expired.sum(), evicted.sum());
     }
 
     public void reset() {
-        sessions.clear();
+        for (Session session : sessions.values()) {
+            if (sessions.remove(session.getID(), session)) {
+                places.decrementAndGet();
+            }
+        }
+        if (store != null) {
+            try {
+                store.clear();
+            }
+            catch (IOException e) {
+                LOGGER.warning(String.format("could not clear the saved sessions: %s", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Stop sweeping for expired sessions and close the store.  Sessions are kept in the store.
+     */
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        if (store != null) {
+            try {
+                store.close();
+            }
+            catch (IOException e) {
+                LOGGER.warning(String.format("could not close the session store: %s", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Remove every expired session.  Lookups are not blocked while the sessions are swept.
+     */
+    void sweep() {
+        long now = System.currentTimeMillis();
+        for (Session session : sessions.values()) {
+            if (session.isExpired(now, idleTimeout, maxLifetime)) {
+                remove(session, expired);
+            }
+        }
+    }
+
+    /**
+     * Take one of the places for sessions, evicting sessions until one is free.
+     */
+    private void reservePlace() {
+        while (true) {
+            int taken = places.get();
+            if (taken < maxSessions) {
+                if (places.compareAndSet(taken, taken + 1)) {
+                    return;
+                }
+            } else if (!evictSample()) {
+                // every place is reserved by a session that is not added yet
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Remove an expired session from the next sample of sessions, or else the least recently used one.
+     * @return true if a session was removed.
+     */
+    private boolean evictSample() {
+        long now = System.currentTimeMillis();
+        Session victim = null;
+        synchronized (evictionLock) {
+            for (int i = 0; i < EVICTION_SAMPLE; i++) {
+                if (evictionCursor == null || !evictionCursor.hasNext()) {
+                    evictionCursor = sessions.values().iterator();
+                    if (!evictionCursor.hasNext()) {
+                        break;
+                    }
+                }
+
+                Session session = evictionCursor.next();
+                if (session.isExpired(now, idleTimeout, maxLifetime)) {
+                    victim = session;
+                    break;
+                }
+                if (victim == null || session.getLastAccessedAt() < victim.getLastAccessedAt()) {
+                    victim = session;
+                }
+            }
+        }
+
+        return victim != null && remove(victim, victim.isExpired(now, idleTimeout, maxLifetime) ? expired : evicted);
+    }
+
+    /**
+     * Remove the session if it has not been replaced, and count it if this call removed it.
+     * @return true if this call removed the session.
+     */
+    private boolean remove(Session session, LongAdder counter) {
+        if (!sessions.remove(session.getID(), session)) {
+            return false;
+        }
+
+        places.decrementAndGet();
+        if (counter != null) {
+            counter.increment();
+        }
+        if (store != null) {
+            try {
+                store.delete(session.getID());
+            }
+            catch (IOException e) {
+                LOGGER.warning(String.format("could not delete saved session %s: %s", session.getID(), e.getMessage()));
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,53 @@
+package gov.nist.csd.pm.pap.sessions;
+
+/**
+ * The state of a SessionManager at one point in time.
+ */
+public class SessionStats {
+
+    private int  active;
+    private int  maxSessions;
+    private long created;
+    private long expired;
+    private long evicted;
+
+    public SessionStats(int active, int maxSessions, long created, long expired, long evicted) {
+        this.active = active;
+        this.maxSessions = maxSessions;
+        this.created = created;
+        this.expired = expired;
+        this.evicted = evicted;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return the number of sessions removed because they were idle too long or reached their maximum lifetime.
+     */
+    public long getExpired() {
+        return expired;
+    }
+
+    /**
+     * @return the number of sessions removed to make room for new ones when the maximum number of sessions was reached.
+     */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d sessions active, %d created, %d expired, %d evicted",
+                active, maxSessions, created, expired, evicted);
+    }
+}
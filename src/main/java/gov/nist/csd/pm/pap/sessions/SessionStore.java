@@ -0,0 +1,34 @@
+package gov.nist.csd.pm.pap.sessions;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Persists sessions so they survive a restart of the server.  Only the creation and deletion of sessions are
+ * persisted, so a loaded session is treated as last used when it is loaded.  Sessions are saved and deleted by the
+ * hash of their session ID, never by the ID itself.
+ */
+public interface SessionStore {
+
+    /**
+     * @return the sessions that were saved and not deleted.
+     */
+    Collection<Session> load() throws IOException;
+
+    void save(Session session) throws IOException;
+
+    /**
+     * @param hashedID the hash of the session ID.
+     */
+    void delete(String hashedID) throws IOException;
+
+    /**
+     * Delete every session.
+     */
+    void clear() throws IOException;
+
+    /**
+     * Release any resources held by the store.
+     */
+    default void close() throws IOException {}
+}
@@ -0,0 +1,319 @@
+package gov.nist.csd.pm.pap.snapshot;
+
+import gov.nist.csd.pm.common.util.OperationSet;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A binary snapshot of the in-memory policy: the nodes, assignments, and associations of the graph and the
+ * prohibitions, along with the database epoch the snapshot was taken at.  The PAP writes a snapshot periodically and
+ * loads it on startup instead of reading the whole policy from the database.
+ *
+ * The file is a magic number and format version, the epoch, the nodes, the assignments, the associations, the
+ * prohibitions, and a CRC32 checksum of everything before it.  Strings are written as a length and UTF-8 bytes.
+ */
+public class PolicySnapshot {
+
+    private static final int MAGIC   = 0x504d534e; // PMSN
+    private static final int VERSION = 1;
+
+    private long               epoch;
+    private Graph              graph;
+    private List<Prohibition>  prohibitions;
+    private int                nodeCount;
+    private int                assignmentCount;
+    private int                associationCount;
+
+    private PolicySnapshot(long epoch, Graph graph, List<Prohibition> prohibitions, int nodeCount,
+                           int assignmentCount, int associationCount) {
+        this.epoch = epoch;
+        this.graph = graph;
+        this.prohibitions = prohibitions;
+        this.nodeCount = nodeCount;
+        this.assignmentCount = assignmentCount;
+        this.associationCount = associationCount;
+    }
+
+    /**
+     * @return the database epoch the snapshot was taken at. Changes stamped at or after it are not guaranteed to be
+     * in the snapshot.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return the graph read from the snapshot.
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the prohibitions read from the snapshot.
+     */
+    public List<Prohibition> getProhibitions() {
+        return prohibitions;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getAssignmentCount() {
+        return assignmentCount;
+    }
+
+    public int getAssociationCount() {
+        return associationCount;
+    }
+
+    /**
+     * Write a snapshot of the given graph and prohibitions to the given file.  The snapshot is written to a temporary
+     * file in the same directory first and then moved over the file, so a crash while writing never leaves a partial
+     * snapshot behind.
+     *
+     * @param file the file to write the snapshot to.
+     * @param epoch the database epoch taken before the graph and prohibitions were read.
+     * @param graph the graph to write.
+     * @param prohibitions the prohibitions to write.
+     * @throws IOException if there is an error writing the file.
+     * @throws PMException if there is an error reading the graph.
+     */
+    public static void write(Path file, long epoch, Graph graph, List<Prohibition> prohibitions) throws IOException, PMException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(os), crc);
+                DataOutputStream out = new DataOutputStream(checked);
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(epoch);
+
+                Collection<Node> nodes = new ArrayList<>(graph.getNodes());
+                out.writeInt(nodes.size());
+                for (Node node : nodes) {
+                    out.writeLong(node.getID());
+                    writeString(out, node.getName());
+                    writeString(out, node.getType().toString());
+                    Map<String, String> props = node.getProperties() == null ? new HashMap<>() : node.getProperties();
+                    out.writeInt(props.size());
+                    for (Map.Entry<String, String> entry : props.entrySet()) {
+                        writeString(out, entry.getKey());
+                        writeString(out, entry.getValue());
+                    }
+                }
+
+                List<long[]> assignments = new ArrayList<>();
+                List<Object[]> associations = new ArrayList<>();
+                for (Node node : nodes) {
+                    for (long parentID : graph.getParents(node.getID())) {
+                        assignments.add(new long[]{node.getID(), parentID});
+                    }
+                    if (node.getType() == NodeType.UA) {
+                        for (Map.Entry<Long, Set<String>> entry : graph.getSourceAssociations(node.getID()).entrySet()) {
+                            associations.add(new Object[]{node.getID(), entry.getKey(), entry.getValue()});
+                        }
+                    }
+                }
+
+                out.writeInt(assignments.size());
+                for (long[] assignment : assignments) {
+                    out.writeLong(assignment[0]);
+                    out.writeLong(assignment[1]);
+                }
+
+                out.writeInt(associations.size());
+                for (Object[] association : associations) {
+                    out.writeLong((long) association[0]);
+                    out.writeLong((long) association[1]);
+                    writeStrings(out, (Set<String>) association[2]);
+                }
+
+                out.writeInt(prohibitions.size());
+                for (Prohibition prohibition : prohibitions) {
+                    writeString(out, prohibition.getName());
+                    Prohibition.Subject subject = prohibition.getSubject();
+                    out.writeBoolean(subject != null);
+                    if (subject != null) {
+                        out.writeLong(subject.getSubjectID());
+                        writeString(out, subject.getSubjectType().toString());
+                    }
+                    out.writeBoolean(prohibition.isIntersection());
+                    writeStrings(out, prohibition.getOperations());
+                    List<Prohibition.Node> prNodes = prohibition.getNodes();
+                    out.writeInt(prNodes.size());
+                    for (Prohibition.Node prNode : prNodes) {
+                        out.writeLong(prNode.getID());
+                        out.writeBoolean(prNode.isComplement());
+                    }
+                }
+
+                out.flush();
+                // the checksum itself is not part of the checksum
+                new DataOutputStream(os).writeLong(crc.getValue());
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Read a snapshot from the given file.  The file is memory-mapped and its checksum verified before anything is
+     * read from it.
+     *
+     * @param file the snapshot file.
+     * @return the snapshot, with the graph read into a new MemGraph.
+     * @throws IOException if the file cannot be read, is not a snapshot, or its checksum does not match.
+     * @throws PMException if there is an error building the graph from the snapshot.
+     */
+    public static PolicySnapshot read(Path file) throws IOException, PMException {
+        return read(file, new MemGraph());
+    }
+
+    /**
+     * Read a snapshot from the given file into the given graph.
+     *
+     * @param file the snapshot file.
+     * @param graph the empty in-memory graph to read the nodes, assignments, and associations into.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read, is not a snapshot, or its checksum does not match.
+     * @throws PMException if there is an error building the graph from the snapshot.
+     */
+    public static PolicySnapshot read(Path file, Graph graph) throws IOException, PMException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 24 || size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is not a policy snapshot", file));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) size - 8);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (crc.getValue() != buffer.getLong((int) size - 8)) {
+                throw new IOException(String.format("the checksum of the snapshot %s does not match", file));
+            }
+
+            try {
+                return read(buffer, graph);
+            }
+            catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+                throw new IOException(String.format("the snapshot %s is malformed: %s", file, e.getMessage()));
+            }
+        }
+    }
+
+    private static PolicySnapshot read(ByteBuffer in, Graph graph) throws IOException, PMException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("not a policy snapshot");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("unsupported snapshot version %d", version));
+        }
+        long epoch = in.getLong();
+
+        int nodes = in.getInt();
+        for (int i = 0; i < nodes; i++) {
+            long id = in.getLong();
+            String name = readString(in);
+            NodeType type = NodeType.toNodeType(readString(in));
+            int propCount = in.getInt();
+            Map<String, String> props = new HashMap<>();
+            for (int j = 0; j < propCount; j++) {
+                props.put(readString(in), readString(in));
+            }
+            graph.createNode(id, name, type, props);
+        }
+
+        int assignments = in.getInt();
+        for (int i = 0; i < assignments; i++) {
+            graph.assign(in.getLong(), in.getLong());
+        }
+
+        int associations = in.getInt();
+        for (int i = 0; i < associations; i++) {
+            long uaID = in.getLong();
+            long targetID = in.getLong();
+            graph.associate(uaID, targetID, OperationSet.of(readStrings(in)));
+        }
+
+        List<Prohibition> prohibitions = new ArrayList<>();
+        int prohibitionCount = in.getInt();
+        for (int i = 0; i < prohibitionCount; i++) {
+            String name = readString(in);
+            Prohibition.Subject subject = null;
+            if (in.get() != 0) {
+                long subjectID = in.getLong();
+                subject = new Prohibition.Subject(subjectID, Prohibition.Subject.Type.toType(readString(in)));
+            }
+            boolean intersection = in.get() != 0;
+            Set<String> ops = readStrings(in);
+            int prNodeCount = in.getInt();
+            List<Prohibition.Node> prNodes = new ArrayList<>();
+            for (int j = 0; j < prNodeCount; j++) {
+                long id = in.getLong();
+                prNodes.add(new Prohibition.Node(id, in.get() != 0));
+            }
+            prohibitions.add(new Prohibition(name, subject, prNodes, ops, intersection));
+        }
+
+        return new PolicySnapshot(epoch, graph, prohibitions, nodes, assignments, associations);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> strs) throws IOException {
+        out.writeInt(strs.size());
+        for (String str : strs) {
+            writeString(out, str);
+        }
+    }
+
+    private static Set<String> readStrings(ByteBuffer in) {
+        int count = in.getInt();
+        Set<String> strs = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            strs.add(readString(in));
+        }
+        return strs;
+    }
+}
@@ -0,0 +1,308 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.OperationSet;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A PolicyDecider that caches the permissions a user has on a target.  hasPermissions() and listPermissions() are
+ * answered from the cache when the cached permissions are still valid, and computed and cached otherwise.
+ *
+ * A cached decision records the versions of the parts of the policy it depends on when it is computed, and is valid
+ * while none of them has changed:
+ * <ul>
+ *     <li>the global policy epoch, advanced by changes that could affect any decision, such as a prohibition
+ *     change, the deletion of an attribute, or a large group of changes.</li>
+ *     <li>the versions of the user and the target, advanced when a user or object is assigned, deassigned, or
+ *     deleted.  Users and objects have nothing assigned to them, so these changes only affect their own decisions.</li>
+ *     <li>the versions of the policy classes the user and target are in, advanced when an attribute in a policy class
+ *     is deassigned, associated, or dissociated.  Assigning an attribute advances the global epoch instead, because
+ *     it can put the decisions it affects in policy classes they did not depend on when they were made.</li>
+ * </ul>
+ * The versions are read before a decision is computed, so a change made while it is computed makes it stale.
+ *
+ * The cache can be turned off with setEnabled(false), which answers every request from the underlying decider, to
+ * compare the cached decisions with uncached ones.
+ */
+public class CachingPolicyDecider extends PolicyDecider {
+
+    /**
+     * Larger groups of changes, like a configuration load, advance the global epoch instead of finding the policy
+     * classes each change affects.
+     */
+    private static final int MAX_TRACKED_MUTATIONS = 100;
+
+    private GraphPAP                      graphPAP;
+    private PolicyClassIndex              pcIndex;
+    private boolean                       ownsIndex;
+    private DecisionCache<Decision>       cache;
+    private volatile boolean              enabled;
+    private AtomicLong                    epoch         = new AtomicLong();
+    private ConcurrentHashMap<Long, Long> nodeVersions  = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Long, Long> pcVersions    = new ConcurrentHashMap<>();
+    private LongAdder                     invalidations = new LongAdder();
+
+    /**
+     * Create a caching decider for the given graph and prohibitions, and register it to be told when they change.
+     * The policy classes of nodes are found with the given index.
+     * @param graphPAP the graph to decide on.
+     * @param prohibitionsPAP the prohibitions to decide on.
+     * @param pcIndex the policy classes of the nodes in the graph.
+     * @param capacity the maximum number of decisions to cache.
+     * @param enabled false to answer every request from the underlying decider until the cache is enabled.
+     */
+    public CachingPolicyDecider(GraphPAP graphPAP, ProhibitionsPAP prohibitionsPAP, PolicyClassIndex pcIndex,
+                                int capacity, boolean enabled) {
+        super(graphPAP, prohibitionsPAP);
+        this.graphPAP = graphPAP;
+        this.pcIndex = pcIndex;
+        this.cache = new DecisionCache<>(capacity);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Create a caching decider with its own index of the policy classes of the nodes in the graph.
+     * @throws PMException if there is an error reading the graph to build the index.
+     */
+    public CachingPolicyDecider(GraphPAP graphPAP, ProhibitionsPAP prohibitionsPAP, int capacity, boolean enabled)
+            throws PMException {
+        this(graphPAP, prohibitionsPAP, new PolicyClassIndex(graphPAP), capacity, enabled);
+        this.ownsIndex = true;
+    }
+
+    /**
+     * Turn the cache on or off.  Turning it off empties it.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            cache.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public DecisionCacheStats getStats() {
+        return new DecisionCacheStats(enabled, cache.size(), cache.getCapacity(), cache.getHits(), cache.getMisses(),
+                cache.getEvictions(), invalidations.sum());
+    }
+
+    @Override
+    public boolean hasPermissions(long userID, long targetID, String... perms) throws PMException {
+        if (!enabled) {
+            return super.hasPermissions(userID, targetID, perms);
+        }
+
+        return allows(listPermissions(userID, targetID), perms);
+    }
+
+    @Override
+    public Set<String> listPermissions(long userID, long targetID) throws PMException {
+        if (!enabled) {
+            return super.listPermissions(userID, targetID);
+        }
+
+        Decision decision = cache.get(userID, targetID);
+        if (decision != null) {
+            if (decision.isValid()) {
+                cache.recordHit();
+                return decision.permissions;
+            }
+            cache.remove(userID, targetID);
+            invalidations.increment();
+        }
+        cache.recordMiss();
+
+        // read the versions before the policy so a change made while deciding makes the decision stale
+        long decisionEpoch = epoch.get();
+        long userVersion = version(nodeVersions, userID);
+        long targetVersion = version(nodeVersions, targetID);
+        Set<Long> pcs = policyClasses(userID);
+        pcs.addAll(policyClasses(targetID));
+        long[] pcIDs = new long[pcs.size()];
+        long[] pcVersionsRead = new long[pcs.size()];
+        int i = 0;
+        for (long pc : pcs) {
+            pcIDs[i] = pc;
+            pcVersionsRead[i] = version(pcVersions, pc);
+            i++;
+        }
+
+        Set<String> permissions = OperationSet.of(super.listPermissions(userID, targetID));
+        cache.put(userID, targetID, new Decision(permissions, decisionEpoch, userID, userVersion, targetID,
+                targetVersion, pcIDs, pcVersionsRead));
+        return permissions;
+    }
+
+    @Override
+    public void graphChanged(List<GraphMutation> mutations) {
+        super.graphChanged(mutations);
+
+        if (mutations.size() > MAX_TRACKED_MUTATIONS) {
+            advanceEpoch();
+            return;
+        }
+
+        try {
+            for (GraphMutation mutation : mutations) {
+                invalidate(mutation);
+            }
+        }
+        catch (PMException e) {
+            // the affected policy classes could not be found, so assume every decision is affected
+            advanceEpoch();
+        }
+    }
+
+    @Override
+    public void graphReloaded() {
+        super.graphReloaded();
+        advanceEpoch();
+    }
+
+    @Override
+    public void prohibitionChanged(Prohibition prohibition) {
+        super.prohibitionChanged(prohibition);
+
+        // an update can change the subject, so the old subject is not known
+        advanceEpoch();
+    }
+
+    private void invalidate(GraphMutation mutation) throws PMException {
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+            case UPDATE_NODE:
+                // a new node has no decisions yet and names and properties are not used in decisions
+                break;
+            case DELETE_NODE:
+                if (isLeaf(mutation.getType())) {
+                    advance(nodeVersions, mutation.getSourceID());
+                } else if (mutation.getType() != null) {
+                    advanceEpoch();
+                }
+                break;
+            case ASSIGN:
+            case DEASSIGN:
+                invalidateAssignment(mutation);
+                break;
+            case ASSOCIATE:
+            case DISSOCIATE:
+                // every affected decision is on a target that reaches the association's target, so it depends on the
+                // target's policy classes
+                Set<Long> targetPCs = policyClasses(mutation.getTargetID());
+                if (targetPCs.isEmpty()) {
+                    advanceEpoch();
+                } else {
+                    advance(pcVersions, targetPCs);
+                }
+                break;
+        }
+    }
+
+    /**
+     * This is called after the change is applied to the graph.
+     */
+    private void invalidateAssignment(GraphMutation mutation) throws PMException {
+        long childID = mutation.getSourceID();
+        if (isLeaf(graphPAP.getNode(childID).getType())) {
+            advance(nodeVersions, childID);
+            return;
+        }
+
+        // an assign can put the user or target of an affected decision in policy classes the decision did not depend
+        // on when it was made, so only a deassign can be narrowed.  Before a deassign, every affected user or target
+        // reached the parent, so its decisions depend on the parent's policy classes.
+        Set<Long> parentPCs = mutation.getKind() == GraphMutation.Kind.DEASSIGN ?
+                policyClasses(mutation.getTargetID()) : Collections.emptySet();
+        if (parentPCs.isEmpty()) {
+            advanceEpoch();
+        } else {
+            advance(pcVersions, parentPCs);
+        }
+    }
+
+    /**
+     * @return the policy classes the node is in.
+     */
+    private Set<Long> policyClasses(long nodeID) {
+        return pcIndex.getPolicyClasses(nodeID);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (ownsIndex) {
+            pcIndex.close();
+        }
+    }
+
+    private static boolean isLeaf(NodeType type) {
+        return type == NodeType.U || type == NodeType.O;
+    }
+
+    private void advanceEpoch() {
+        epoch.incrementAndGet();
+    }
+
+    private static void advance(ConcurrentHashMap<Long, Long> versions, long id) {
+        versions.merge(id, 1L, Long::sum);
+    }
+
+    private static void advance(ConcurrentHashMap<Long, Long> versions, Set<Long> ids) {
+        for (long id : ids) {
+            advance(versions, id);
+        }
+    }
+
+    private static long version(ConcurrentHashMap<Long, Long> versions, long id) {
+        return versions.getOrDefault(id, 0L);
+    }
+
+    private class Decision {
+        private Set<String> permissions;
+        private long        epoch;
+        private long        userID;
+        private long        userVersion;
+        private long        targetID;
+        private long        targetVersion;
+        private long[]      pcIDs;
+        private long[]      pcVersions;
+
+        Decision(Set<String> permissions, long epoch, long userID, long userVersion, long targetID, long targetVersion,
+                 long[] pcIDs, long[] pcVersions) {
+            this.permissions = permissions;
+            this.epoch = epoch;
+            this.userID = userID;
+            this.userVersion = userVersion;
+            this.targetID = targetID;
+            this.targetVersion = targetVersion;
+            this.pcIDs = pcIDs;
+            this.pcVersions = pcVersions;
+        }
+
+        boolean isValid() {
+            if (epoch != CachingPolicyDecider.this.epoch.get()
+                    || userVersion != version(nodeVersions, userID)
+                    || targetVersion != version(nodeVersions, targetID)) {
+                return false;
+            }
+            for (int i = 0; i < pcIDs.length; i++) {
+                if (pcVersions[i] != version(CachingPolicyDecider.this.pcVersions, pcIDs[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
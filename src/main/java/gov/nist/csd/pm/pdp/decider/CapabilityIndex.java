@@ -0,0 +1,412 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.OperationSet;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.PolicyListener;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A materialized map, for each user, of every node the user has permissions on to those permissions, so decisions
+ * are a map lookup.
+ *
+ * A user's capabilities are built with a PermissionSweep the first time they are needed, and kept up to date as the
+ * policy changes:
+ * <ul>
+ *     <li>assigning, deassigning, or deleting a user or object updates that one node in every user's capabilities,
+ *     because nothing is assigned to users or objects.</li>
+ *     <li>assigning or deassigning a user, or an association from an attribute, rebuilds the capabilities of the
+ *     users it applies to the next time they are needed.</li>
+ *     <li>any other change to the hierarchy or the prohibitions rebuilds every user's capabilities the next time they
+ *     are needed.</li>
+ * </ul>
+ *
+ * Capabilities that are out of date are dropped as soon as they are invalidated, and decisions are made by traversing
+ * the graph until the rebuilt capabilities are published, so a revoked permission is never read from the index.  One
+ * thread rebuilds a user's capabilities at a time, and other requests for the user do not wait for it.
+ *
+ * A user with more than the maximum number of entries is not indexed, and their decisions are made by traversing the
+ * graph.  Only nodes of type U are indexed, and at most the maximum number of users are indexed at once, with the
+ * least recently used user dropped to make room for another.
+ */
+public class CapabilityIndex implements PolicyListener {
+
+    /**
+     * Larger groups of changes, like a configuration load, rebuild every user's capabilities.
+     */
+    private static final int MAX_TRACKED_MUTATIONS = 100;
+
+    /**
+     * Rough sizes used to estimate the memory used by a user's capabilities: an entry in a ConcurrentHashMap with its
+     * boxed key, and an OperationSet with its bitset, and each word of the bitset.
+     */
+    private static final int ENTRY_BYTES = 64;
+    private static final int SET_BYTES   = 48;
+    private static final int WORD_BYTES  = 8;
+
+    private GraphPAP                              graphPAP;
+    private ProhibitionsPAP                       prohibitionsPAP;
+    private int                                   maxEntries;
+    private LinkedHashMap<Long, UserCapabilities> users;
+
+    /**
+     * Create an index on the given graph and prohibitions, and register it to be told when they change.
+     * @param graphPAP the graph.
+     * @param prohibitionsPAP the prohibitions.
+     * @param maxEntries the maximum number of entries for one user.
+     * @param maxUsers the maximum number of users to index at once.
+     */
+    public CapabilityIndex(GraphPAP graphPAP, ProhibitionsPAP prohibitionsPAP, int maxEntries, int maxUsers) {
+        this.graphPAP = graphPAP;
+        this.prohibitionsPAP = prohibitionsPAP;
+        this.maxEntries = maxEntries;
+        this.users = new LinkedHashMap<Long, UserCapabilities>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserCapabilities> eldest) {
+                return size() > maxUsers;
+            }
+        };
+
+        graphPAP.addListener(this);
+        prohibitionsPAP.addListener(this);
+    }
+
+    /**
+     * @return the permissions the user has on the target, or null if the user is not indexed or the target does not
+     * exist, in which case the decision must be made another way.
+     */
+    Set<String> listPermissions(long userID, long targetID) {
+        Map<Long, OperationSet> entries = get(userID);
+        if (entries == null) {
+            return null;
+        }
+
+        OperationSet ops = entries.get(targetID);
+        if (ops != null) {
+            return ops;
+        }
+        return graphPAP.exists(targetID) ? OperationSet.EMPTY : null;
+    }
+
+    /**
+     * @return the nodes the user has the permissions on, or null if the user is not indexed.
+     */
+    Set<Long> filter(long userID, Collection<Long> nodes, String... perms) {
+        Map<Long, OperationSet> entries = get(userID);
+        if (entries == null) {
+            return null;
+        }
+
+        Set<Long> allowed = new HashSet<>();
+        for (long nodeID : nodes) {
+            OperationSet ops = entries.get(nodeID);
+            if (ops != null && PolicyDecider.allows(ops, perms)) {
+                allowed.add(nodeID);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * @return the size of each indexed user's capabilities.
+     */
+    public List<CapabilityIndexStats> getStats() {
+        List<UserCapabilities> indexed;
+        synchronized (users) {
+            indexed = new ArrayList<>(users.values());
+        }
+
+        List<CapabilityIndexStats> stats = new ArrayList<>();
+        for (UserCapabilities capabilities : indexed) {
+            stats.add(capabilities.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void graphChanged(List<GraphMutation> mutations) {
+        if (mutations.size() > MAX_TRACKED_MUTATIONS) {
+            invalidateAll();
+            return;
+        }
+
+        for (GraphMutation mutation : mutations) {
+            try {
+                apply(mutation);
+            }
+            catch (PMException e) {
+                invalidateAll();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void graphReloaded() {
+        invalidateAll();
+    }
+
+    @Override
+    public void prohibitionChanged(Prohibition prohibition) {
+        // an update can change the subject, so the users it applied to before are not known
+        invalidateAll();
+    }
+
+    /**
+     * Stop listening for changes to the policy.
+     */
+    public void close() {
+        graphPAP.removeListener(this);
+        prohibitionsPAP.removeListener(this);
+    }
+
+    private void apply(GraphMutation mutation) throws PMException {
+        long sourceID = mutation.getSourceID();
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+            case UPDATE_NODE:
+                break;
+            case DELETE_NODE:
+                if (isLeaf(mutation.getType())) {
+                    for (UserCapabilities capabilities : indexed()) {
+                        capabilities.forget(sourceID);
+                    }
+                    if (mutation.getType() == NodeType.U) {
+                        synchronized (users) {
+                            users.remove(sourceID);
+                        }
+                    }
+                } else if (mutation.getType() != null) {
+                    invalidateAll();
+                }
+                break;
+            case ASSIGN:
+            case DEASSIGN:
+                NodeType type = graphPAP.getNode(sourceID).getType();
+                if (isLeaf(type)) {
+                    for (UserCapabilities capabilities : indexed()) {
+                        if (capabilities.userID == sourceID) {
+                            capabilities.invalidate();
+                        } else {
+                            capabilities.refresh(sourceID);
+                        }
+                    }
+                } else {
+                    invalidateAll();
+                }
+                break;
+            case ASSOCIATE:
+            case DISSOCIATE:
+                for (UserCapabilities capabilities : indexed()) {
+                    if (capabilities.hasAttribute(sourceID)) {
+                        capabilities.invalidate();
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return the user's capabilities, built if they are not up to date, or null if the user is not indexed or another
+     * thread is building them.
+     */
+    private Map<Long, OperationSet> get(long userID) {
+        UserCapabilities capabilities;
+        synchronized (users) {
+            capabilities = users.get(userID);
+        }
+        if (capabilities == null) {
+            // only users take a place in the index, so requests for other IDs cannot push users out
+            if (!isUser(userID)) {
+                return null;
+            }
+            synchronized (users) {
+                capabilities = users.computeIfAbsent(userID, UserCapabilities::new);
+            }
+        }
+        capabilities.buildIfInvalid();
+        return capabilities.entries;
+    }
+
+    private boolean isUser(long userID) {
+        try {
+            return graphPAP.exists(userID) && graphPAP.getNode(userID).getType() == NodeType.U;
+        }
+        catch (PMException e) {
+            // the node was deleted after it was found
+            return false;
+        }
+    }
+
+    private List<UserCapabilities> indexed() {
+        synchronized (users) {
+            return new ArrayList<>(users.values());
+        }
+    }
+
+    private void invalidateAll() {
+        for (UserCapabilities capabilities : indexed()) {
+            capabilities.invalidate();
+        }
+    }
+
+    private static boolean isLeaf(NodeType type) {
+        return type == NodeType.U || type == NodeType.O;
+    }
+
+    private class UserCapabilities {
+        private long                                userID;
+        private volatile boolean                    valid;
+        private volatile boolean                    overCap;
+        private volatile Map<Long, OperationSet>    entries;
+        private AtomicInteger                       generation = new AtomicInteger();
+        private AtomicBoolean                       building = new AtomicBoolean();
+        private PermissionSweep                     sweep;
+        private Map<OperationSet, OperationSet>     opSets;
+        private long                                buildMillis;
+
+        UserCapabilities(long userID) {
+            this.userID = userID;
+        }
+
+        /**
+         * Rebuild the capabilities if a change has made them invalid.  If another thread is already building them,
+         * return without waiting, and the caller falls back to traversal.  A change made during the build invalidates
+         * them again: the generation is read before the build and checked after the result is published, and
+         * invalidate() changes the generation before it drops the entries, so either the build or invalidate() drops
+         * the result.
+         */
+        void buildIfInvalid() {
+            if (valid || !building.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                synchronized (this) {
+                    if (valid) {
+                        return;
+                    }
+                    int built = generation.get();
+                    build();
+                    if (generation.get() != built) {
+                        valid = false;
+                        entries = null;
+                    }
+                }
+            }
+            finally {
+                building.set(false);
+            }
+        }
+
+        private void build() {
+            long start = System.currentTimeMillis();
+            try {
+                PermissionSweep sweep = new PermissionSweep(graphPAP, prohibitionsPAP.getProhibitions(), userID);
+                opSets = new HashMap<>();
+                Map<Long, OperationSet> built = new ConcurrentHashMap<>();
+                overCap = false;
+                for (long nodeID : sweep.getCandidates()) {
+                    OperationSet ops = sweep.listPermissions(nodeID);
+                    if (!ops.isEmpty()) {
+                        built.put(nodeID, intern(ops));
+                    }
+                    if (built.size() > maxEntries) {
+                        overCap = true;
+                        break;
+                    }
+                }
+
+                if (overCap) {
+                    // the user's decisions are made by traversal, so release the memory
+                    this.sweep = null;
+                    opSets = null;
+                    entries = null;
+                } else {
+                    this.sweep = sweep;
+                    entries = built;
+                }
+                valid = true;
+            }
+            catch (PMException e) {
+                // the user could not be found, so try again the next time they are needed
+                valid = false;
+                entries = null;
+            }
+            buildMillis = System.currentTimeMillis() - start;
+        }
+
+        /**
+         * Drop the capabilities so nothing reads them until they are rebuilt.
+         */
+        void invalidate() {
+            generation.incrementAndGet();
+            valid = false;
+            entries = null;
+        }
+
+        synchronized boolean hasAttribute(long uaID) {
+            return sweep != null && sweep.getUserAttributes().contains(uaID);
+        }
+
+        /**
+         * Update the permissions on one user or object after it is assigned or deassigned.
+         */
+        synchronized void refresh(long leafID) throws PMException {
+            // invalidate() can drop the entries at any time, so read them once
+            Map<Long, OperationSet> entries = this.entries;
+            if (!valid || entries == null) {
+                return;
+            }
+
+            sweep.refresh(leafID);
+            OperationSet ops = sweep.listPermissions(leafID);
+            if (ops.isEmpty()) {
+                entries.remove(leafID);
+            } else {
+                entries.put(leafID, intern(ops));
+                if (entries.size() > maxEntries) {
+                    invalidate();
+                }
+            }
+        }
+
+        synchronized void forget(long leafID) {
+            if (sweep != null) {
+                sweep.forget(leafID);
+            }
+            Map<Long, OperationSet> entries = this.entries;
+            if (entries != null) {
+                entries.remove(leafID);
+            }
+        }
+
+        synchronized CapabilityIndexStats getStats() {
+            Map<Long, OperationSet> entries = this.entries;
+            long bytes = 0;
+            if (entries != null) {
+                bytes = (long) entries.size() * ENTRY_BYTES;
+                for (OperationSet ops : opSets.keySet()) {
+                    bytes += SET_BYTES + (long) ops.toBits().length * WORD_BYTES;
+                }
+            }
+            return new CapabilityIndexStats(userID, entries == null ? 0 : entries.size(), bytes, overCap, buildMillis);
+        }
+
+        /**
+         * Many nodes have the same permissions, so each distinct set of operations is stored once.
+         */
+        private OperationSet intern(OperationSet ops) {
+            OperationSet interned = opSets.putIfAbsent(ops, ops);
+            return interned == null ? ops : interned;
+        }
+    }
+}
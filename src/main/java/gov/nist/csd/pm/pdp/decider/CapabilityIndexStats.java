@@ -0,0 +1,60 @@
+package gov.nist.csd.pm.pdp.decider;
+
+/**
+ * The size of one user's entry in the capability index.
+ */
+public class CapabilityIndexStats {
+
+    private long    userID;
+    private int     entries;
+    private long    estimatedBytes;
+    private boolean overCap;
+    private long    buildMillis;
+
+    public CapabilityIndexStats(long userID, int entries, long estimatedBytes, boolean overCap, long buildMillis) {
+        this.userID = userID;
+        this.entries = entries;
+        this.estimatedBytes = estimatedBytes;
+        this.overCap = overCap;
+        this.buildMillis = buildMillis;
+    }
+
+    public long getUserID() {
+        return userID;
+    }
+
+    /**
+     * @return the number of nodes the user has permissions on.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return an estimate of the memory used by the user's capabilities.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * @return true if the user has permissions on more nodes than the index holds for one user, so their decisions are
+     * made by traversing the graph.
+     */
+    public boolean isOverCap() {
+        return overCap;
+    }
+
+    /**
+     * @return how long the user's capabilities took to build the last time they were built.
+     */
+    public long getBuildMillis() {
+        return buildMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("user %d: %d entries (~%d bytes)%s, built in %dms", userID, entries, estimatedBytes,
+                overCap ? ", over the cap" : "", buildMillis);
+    }
+}
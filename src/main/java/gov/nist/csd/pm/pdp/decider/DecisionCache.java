@@ -0,0 +1,162 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of values keyed by a user ID and a target ID, evicting the least recently used entry when full.
+ *
+ * The cache is split into segments, each a LinkedHashMap in access order guarded by its own lock, so threads looking up
+ * different keys rarely wait for each other.  Each segment holds an equal share of the capacity, so eviction is least
+ * recently used within a segment.
+ *
+ * @param <V> the type of the cached values.
+ */
+class DecisionCache<V> {
+
+    private static final int SEGMENTS = 16;
+
+    private Segment<V>[] segments;
+    private int          capacity;
+    private LongAdder    hits      = new LongAdder();
+    private LongAdder    misses    = new LongAdder();
+    private LongAdder    evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    DecisionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("the capacity of the decision cache must be greater than 0");
+        }
+
+        this.capacity = capacity;
+        this.segments = new Segment[SEGMENTS];
+        int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(segmentCapacity, evictions);
+        }
+    }
+
+    /**
+     * Hits and misses are not counted here because only the caller knows if a cached value is still valid.  Count them
+     * with recordHit() and recordMiss().
+     * @return the cached value, or null if there is none.
+     */
+    V get(long userID, long targetID) {
+        Key key = new Key(userID, targetID);
+        Segment<V> segment = segment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    void put(long userID, long targetID, V value) {
+        Key key = new Key(userID, targetID);
+        Segment<V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    void remove(long userID, long targetID) {
+        Key key = new Key(userID, targetID);
+        Segment<V> segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void clear() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment<V> segment(Key key) {
+        return segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+
+    private static class Segment<V> extends LinkedHashMap<Key, V> {
+        private int       capacity;
+        private LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class Key {
+        private long userID;
+        private long targetID;
+
+        Key(long userID, long targetID) {
+            this.userID = userID;
+            this.targetID = targetID;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return userID == key.userID && targetID == key.targetID;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = userID * 31 + targetID;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
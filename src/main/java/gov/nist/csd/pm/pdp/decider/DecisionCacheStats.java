@@ -0,0 +1,72 @@
+package gov.nist.csd.pm.pdp.decider;
+
+/**
+ * The state of a decision cache at one point in time.
+ */
+public class DecisionCacheStats {
+
+    private boolean enabled;
+    private int     size;
+    private int     capacity;
+    private long    hits;
+    private long    misses;
+    private long    evictions;
+    private long    invalidations;
+
+    public DecisionCacheStats(boolean enabled, int size, int capacity, long hits, long misses, long evictions,
+                              long invalidations) {
+        this.enabled = enabled;
+        this.size = size;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of cached decisions found to be stale because the policy changed after they were made.
+     * These are also counted as misses.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache.
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d decisions cached, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations",
+                size, capacity, hits, misses, getHitRate() * 100, evictions, invalidations);
+    }
+}
@@ -0,0 +1,288 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.PolicyListener;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Explains a user's permissions on a target by listing the paths through which operations are granted.
+ *
+ * The paths from a node up to each of its ancestors are found once per node and shared: each path is a chain of links
+ * that shares its tail with the paths it extends, and the paths of a user or target are reused by every explanation
+ * that starts from it until the graph changes.  At most the maximum number of paths are kept to each ancestor and
+ * returned for each policy class, and an explanation is marked truncated only if it leaves out a path through one of
+ * the associations it reports.
+ *
+ * Explanations are cached by user and target.  Every change to the graph advances the policy epoch, and cached
+ * explanations and paths from an earlier epoch are not used.
+ */
+public class ExplainEngine implements PolicyListener {
+
+    private GraphPAP                                   graphPAP;
+    private PolicyClassIndex                           pcIndex;
+    private int                                        maxPaths;
+    private int                                        cacheSize;
+    private AtomicLong                                 epoch     = new AtomicLong();
+    private DecisionCache<Cached<Explanation>>         cache;
+    private ConcurrentHashMap<Long, Cached<Ancestors>> ancestors = new ConcurrentHashMap<>();
+
+    /**
+     * Create an engine for the given graph, and register it to be told when the graph changes.
+     * @param graphPAP the graph.
+     * @param pcIndex the policy classes of the nodes in the graph.
+     * @param maxPaths the maximum number of paths to each ancestor of a node, and in each policy class of an
+     *                 explanation.
+     * @param cacheSize the maximum number of explanations, and of nodes' paths to their ancestors, to cache.
+     */
+    public ExplainEngine(GraphPAP graphPAP, PolicyClassIndex pcIndex, int maxPaths, int cacheSize) {
+        if (maxPaths <= 0) {
+            throw new IllegalArgumentException("the maximum number of paths must be greater than 0");
+        }
+
+        this.graphPAP = graphPAP;
+        this.pcIndex = pcIndex;
+        this.maxPaths = maxPaths;
+        this.cacheSize = cacheSize;
+        this.cache = new DecisionCache<>(cacheSize);
+
+        graphPAP.addListener(this);
+    }
+
+    /**
+     * @return the paths through which the user is granted operations on the target.
+     * @throws PMException if the user or target does not exist.
+     */
+    public Explanation explain(long userID, long targetID) throws PMException {
+        return explain(userID, targetID, new HashMap<>());
+    }
+
+    /**
+     * Explain many pairs of users and targets.  The paths of each distinct user and target are found once for the whole
+     * call and kept until it returns, however many pairs share them and whatever happens to the shared cache of paths
+     * meanwhile.
+     * @param pairs the user and target IDs, each an array of two longs.
+     * @return the explanation of each pair, in the same order.
+     * @throws PMException if a user or target does not exist.
+     */
+    public List<Explanation> explainAll(List<long[]> pairs) throws PMException {
+        Map<Long, Ancestors> found = new HashMap<>();
+        List<Explanation> explanations = new ArrayList<>(pairs.size());
+        for (long[] pair : pairs) {
+            explanations.add(explain(pair[0], pair[1], found));
+        }
+        return explanations;
+    }
+
+    private Explanation explain(long userID, long targetID, Map<Long, Ancestors> found) throws PMException {
+        long current = epoch.get();
+        Cached<Explanation> cached = cache.get(userID, targetID);
+        if (cached != null && cached.epoch == current) {
+            cache.recordHit();
+            return cached.value;
+        }
+        cache.recordMiss();
+
+        Explanation explanation = compute(userID, targetID, current, found);
+        cache.put(userID, targetID, new Cached<>(explanation, current));
+        return explanation;
+    }
+
+    @Override
+    public void graphChanged(List<GraphMutation> mutations) {
+        epoch.incrementAndGet();
+        ancestors.clear();
+    }
+
+    @Override
+    public void graphReloaded() {
+        graphChanged(Collections.emptyList());
+    }
+
+    @Override
+    public void prohibitionChanged(Prohibition prohibition) {
+        // paths are made of assignments and associations only
+    }
+
+    /**
+     * Stop listening for changes to the graph.
+     */
+    public void close() {
+        graphPAP.removeListener(this);
+    }
+
+    private Explanation compute(long userID, long targetID, long current, Map<Long, Ancestors> found)
+            throws PMException {
+        if (!graphPAP.exists(userID) || !graphPAP.exists(targetID)) {
+            throw new PMGraphException(String.format("cannot explain the permissions of %d on %d, one of the nodes "
+                    + "does not exist", userID, targetID));
+        }
+
+        Ancestors userPaths = ancestors(userID, current, found);
+        Ancestors targetPaths = ancestors(targetID, current, found);
+
+        Map<Long, List<ExplainPath>> pcPaths = new HashMap<>();
+        boolean truncated = false;
+        for (Map.Entry<Long, List<Link>> ua : userPaths.paths.entrySet()) {
+            if (ua.getKey() == userID) {
+                continue;
+            }
+
+            for (Map.Entry<Long, Set<String>> assoc : graphPAP.getSourceAssociations(ua.getKey()).entrySet()) {
+                List<Link> toAssocTarget = targetPaths.paths.get(assoc.getKey());
+                if (toAssocTarget == null) {
+                    continue;
+                }
+                if (userPaths.truncated.contains(ua.getKey()) || targetPaths.truncated.contains(assoc.getKey())) {
+                    truncated = true;
+                }
+
+                // the association grants its operations in each policy class its target is in
+                for (long pcID : pcIndex.getPolicyClasses(assoc.getKey())) {
+                    List<ExplainPath> paths = pcPaths.computeIfAbsent(pcID, k -> new ArrayList<>());
+                    add:
+                    for (Link userLink : ua.getValue()) {
+                        for (Link targetLink : toAssocTarget) {
+                            if (paths.size() == maxPaths) {
+                                truncated = true;
+                                break add;
+                            }
+                            paths.add(new ExplainPath(names(userLink), names(targetLink), assoc.getValue()));
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, List<ExplainPath>> byName = new HashMap<>();
+        for (Map.Entry<Long, List<ExplainPath>> entry : pcPaths.entrySet()) {
+            byName.put(graphPAP.getNode(entry.getKey()).getName(), entry.getValue());
+        }
+        return new Explanation(userID, targetID, byName, truncated);
+    }
+
+    /**
+     * @return the paths from the node up to each of its ancestors, found once per call in the given map.
+     */
+    private Ancestors ancestors(long nodeID, long current, Map<Long, Ancestors> found) throws PMException {
+        Ancestors nodeAncestors = found.get(nodeID);
+        if (nodeAncestors == null) {
+            nodeAncestors = ancestors(nodeID, current);
+            found.put(nodeID, nodeAncestors);
+        }
+        return nodeAncestors;
+    }
+
+    /**
+     * @return the paths from the node up to each of its ancestors, found in this epoch.
+     */
+    private Ancestors ancestors(long nodeID, long current) throws PMException {
+        Cached<Ancestors> cached = ancestors.get(nodeID);
+        if (cached != null && cached.epoch == current) {
+            return cached.value;
+        }
+
+        Ancestors nodeAncestors = findAncestors(nodeID);
+        if (ancestors.size() >= cacheSize) {
+            ancestors.clear();
+        }
+        if (epoch.get() == current) {
+            ancestors.put(nodeID, new Cached<>(nodeAncestors, current));
+        }
+        return nodeAncestors;
+    }
+
+    /**
+     * Find the paths from the node to each of its ancestors.  A node's paths are extended to its parents once all of
+     * the node's children between it and the starting node have been visited, so every path to the node is known.  A
+     * node is marked truncated if paths to it were cut, or to any node its paths run through.
+     */
+    private Ancestors findAncestors(long nodeID) throws PMException {
+        // the ancestors, and the number of each one's children that are also ancestors
+        Map<Long, Integer> pending = new HashMap<>();
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        pending.put(nodeID, 0);
+        queue.add(nodeID);
+        while (!queue.isEmpty()) {
+            long id = queue.poll();
+            Set<Long> nodeParents = graphPAP.getParents(id);
+            parents.put(id, nodeParents);
+            for (long parentID : nodeParents) {
+                if (pending.merge(parentID, 1, Integer::sum) == 1) {
+                    queue.add(parentID);
+                }
+            }
+        }
+
+        Ancestors ancestors = new Ancestors();
+        ancestors.paths.put(nodeID, new ArrayList<>(Collections.singletonList(new Link(nodeID, null))));
+        queue.add(nodeID);
+        while (!queue.isEmpty()) {
+            long id = queue.poll();
+            List<Link> paths = ancestors.paths.get(id);
+            for (long parentID : parents.get(id)) {
+                List<Link> parentPaths = ancestors.paths.computeIfAbsent(parentID, k -> new ArrayList<>());
+                if (ancestors.truncated.contains(id)) {
+                    ancestors.truncated.add(parentID);
+                }
+                for (Link link : paths) {
+                    if (parentPaths.size() == maxPaths) {
+                        ancestors.truncated.add(parentID);
+                        break;
+                    }
+                    parentPaths.add(new Link(parentID, link));
+                }
+                if (pending.merge(parentID, -1, Integer::sum) == 0) {
+                    queue.add(parentID);
+                }
+            }
+        }
+        return ancestors;
+    }
+
+    /**
+     * @return the names of the nodes in the path, from the starting node to the last.
+     */
+    private List<String> names(Link link) throws PMException {
+        LinkedList<String> names = new LinkedList<>();
+        for (; link != null; link = link.previous) {
+            names.addFirst(graphPAP.getNode(link.nodeID).getName());
+        }
+        return names;
+    }
+
+    /**
+     * The last node of a path, and the path to the node before it.
+     */
+    private static class Link {
+        private long nodeID;
+        private Link previous;
+
+        Link(long nodeID, Link previous) {
+            this.nodeID = nodeID;
+            this.previous = previous;
+        }
+    }
+
+    private static class Ancestors {
+        private Map<Long, List<Link>> paths = new HashMap<>();
+        private Set<Long>             truncated = new HashSet<>();
+    }
+
+    private static class Cached<T> {
+        private T    value;
+        private long epoch;
+
+        Cached(T value, long epoch) {
+            this.value = value;
+            this.epoch = epoch;
+        }
+    }
+}
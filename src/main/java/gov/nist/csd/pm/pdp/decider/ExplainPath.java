@@ -0,0 +1,42 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One way a user is granted operations on a target: the assignments from the user up to a user attribute, an
+ * association from that attribute, and the assignments from the target up to the association's target.
+ */
+public class ExplainPath {
+
+    private List<String> userPath;
+    private List<String> targetPath;
+    private Set<String>  operations;
+
+    public ExplainPath(List<String> userPath, List<String> targetPath, Set<String> operations) {
+        this.userPath = userPath;
+        this.targetPath = targetPath;
+        this.operations = operations;
+    }
+
+    /**
+     * @return the names of the nodes from the user to the user attribute of the association.
+     */
+    public List<String> getUserPath() {
+        return userPath;
+    }
+
+    /**
+     * @return the names of the nodes from the target to the target of the association.
+     */
+    public List<String> getTargetPath() {
+        return targetPath;
+    }
+
+    /**
+     * @return the operations the association grants.
+     */
+    public Set<String> getOperations() {
+        return operations;
+    }
+}
@@ -0,0 +1,42 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The paths through which a user is granted operations on a target, grouped by the name of the policy class each path
+ * is in.
+ */
+public class Explanation {
+
+    private long                           userID;
+    private long                           targetID;
+    private Map<String, List<ExplainPath>> paths;
+    private boolean                        truncated;
+
+    public Explanation(long userID, long targetID, Map<String, List<ExplainPath>> paths, boolean truncated) {
+        this.userID = userID;
+        this.targetID = targetID;
+        this.paths = paths;
+        this.truncated = truncated;
+    }
+
+    public long getUserID() {
+        return userID;
+    }
+
+    public long getTargetID() {
+        return targetID;
+    }
+
+    public Map<String, List<ExplainPath>> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return true if there are more paths than the limit and some were left out.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+}
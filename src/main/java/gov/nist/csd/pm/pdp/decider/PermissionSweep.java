@@ -0,0 +1,328 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.OperationSet;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the permissions one user has on many targets at once.
+ *
+ * Deciding on each target separately searches the user's attributes and the target's ancestors again for every
+ * target.  A sweep finds the user's attributes and the operations their associations grant on each association target
+ * (the user's frontier) once.  Then it computes, for each node the targets reach, the operations granted through the
+ * node in each policy class it is in.  Each node's result is computed once and shared by every target below it, so
+ * the cost of the sweep is the size of the part of the graph the targets reach rather than the number of targets
+ * times the depth of the graph.
+ *
+ * A user has an operation on a target if it is granted in every policy class the target is in and not denied by a
+ * prohibition on the user or one of the user's attributes.
+ *
+ * Operations are carried as bitsets of their OperationRegistry ordinals, so merging the operations of parents is an
+ * OR, the operations granted in every policy class are an AND, and prohibited operations are removed with an AND NOT.
+ */
+class PermissionSweep {
+
+    /**
+     * Candidate sets at least this large are decided in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 10000;
+
+    private static final long[] NONE = new long[0];
+
+    private Graph                                      graph;
+    private Set<Long>                                  policies;
+    private Set<Long>                                  userAttrs;
+    private Map<Long, long[]>                          frontier;
+    private List<Prohibition>                          prohibitions;
+    private List<long[]>                               prohibitedOps;
+    private Map<Long, Set<Long>>                       prohibitionNodeMembers;
+    private ConcurrentHashMap<Long, Map<Long, long[]>> granted;
+
+    /**
+     * Find the frontier of the user and the prohibitions that apply to them.
+     * @param graph the graph to decide on.
+     * @param prohibitions all of the prohibitions.
+     * @param userID the ID of the user.
+     * @throws PMException if there is an error reading the graph.
+     */
+    PermissionSweep(Graph graph, List<Prohibition> prohibitions, long userID) throws PMException {
+        this.graph = graph;
+        this.policies = graph.getPolicies();
+        this.granted = new ConcurrentHashMap<>();
+
+        // the user's attributes and the operations they are granted on each association target
+        this.userAttrs = ancestors(userID);
+        this.frontier = new HashMap<>();
+        for (long uaID : userAttrs) {
+            if (uaID == userID) {
+                continue;
+            }
+            for (Map.Entry<Long, Set<String>> entry : graph.getSourceAssociations(uaID).entrySet()) {
+                long[] ops = OperationSet.of(entry.getValue()).toBits();
+                frontier.merge(entry.getKey(), ops, PolicyClassIndex::or);
+            }
+        }
+
+        // the prohibitions on the user or one of their attributes, and the nodes contained in each prohibition node
+        this.prohibitions = new ArrayList<>();
+        this.prohibitedOps = new ArrayList<>();
+        this.prohibitionNodeMembers = new HashMap<>();
+        for (Prohibition prohibition : prohibitions) {
+            Prohibition.Subject subject = prohibition.getSubject();
+            if (subject == null || subject.getSubjectType() == Prohibition.Subject.Type.PROCESS
+                    || !userAttrs.contains(subject.getSubjectID())) {
+                continue;
+            }
+
+            this.prohibitions.add(prohibition);
+            // the granted operations are all registered by now, so unregistered ones cannot be taken away from them
+            this.prohibitedOps.add(OperationSet.find(prohibition.getOperations()).toBits());
+            for (Prohibition.Node node : prohibition.getNodes()) {
+                if (!prohibitionNodeMembers.containsKey(node.getID())) {
+                    prohibitionNodeMembers.put(node.getID(), descendants(node.getID()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the user and every attribute the user is assigned to, directly or indirectly.
+     */
+    Set<Long> getUserAttributes() {
+        return userAttrs;
+    }
+
+    /**
+     * @return every node the user could have a permission on: the targets of the user's associations and every node
+     * assigned to them, directly or indirectly.
+     */
+    Set<Long> getCandidates() throws PMException {
+        Set<Long> candidates = new HashSet<>();
+        for (long targetID : frontier.keySet()) {
+            if (!candidates.contains(targetID)) {
+                candidates.addAll(descendants(targetID));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Bring the sweep up to date after a user or object is assigned or deassigned.  Nothing is assigned to users or
+     * objects, so only the node's own result and its membership in the prohibition nodes change.
+     * @param leafID the ID of the user or object.
+     */
+    void refresh(long leafID) throws PMException {
+        granted.remove(leafID);
+        Set<Long> parents = graph.getParents(leafID);
+        for (Map.Entry<Long, Set<Long>> entry : prohibitionNodeMembers.entrySet()) {
+            if (entry.getKey() == leafID) {
+                // a prohibition node always contains itself
+                continue;
+            }
+
+            Set<Long> members = entry.getValue();
+            members.remove(leafID);
+            for (long parentID : parents) {
+                if (members.contains(parentID)) {
+                    members.add(leafID);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget a deleted user or object.
+     * @param leafID the ID of the user or object.
+     */
+    void forget(long leafID) {
+        granted.remove(leafID);
+        for (Set<Long> members : prohibitionNodeMembers.values()) {
+            members.remove(leafID);
+        }
+    }
+
+    /**
+     * @return the targets the user has the given permissions on, with the same meaning of the permissions as
+     * Decider.hasPermissions().  A target that cannot be decided on, because it was deleted during the sweep, is left
+     * out.
+     */
+    Set<Long> filter(Collection<Long> targets, String... perms) {
+        if (targets.size() < PARALLEL_THRESHOLD) {
+            Set<Long> allowed = new HashSet<>();
+            for (long targetID : targets) {
+                if (hasPermissions(targetID, perms)) {
+                    allowed.add(targetID);
+                }
+            }
+            return allowed;
+        }
+
+        return targets.parallelStream()
+                .filter(targetID -> hasPermissions(targetID, perms))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @return the operations the user has on the target.
+     */
+    OperationSet listPermissions(long targetID) throws PMException {
+        Map<Long, long[]> pcOps = granted(targetID);
+        if (pcOps.isEmpty()) {
+            return OperationSet.EMPTY;
+        }
+
+        // the operations granted in every policy class the target is in
+        long[] ops = null;
+        for (long[] pcOpBits : pcOps.values()) {
+            ops = ops == null ? pcOpBits.clone() : and(ops, pcOpBits);
+        }
+
+        for (int i = 0; i < prohibitions.size(); i++) {
+            if (applies(prohibitions.get(i), targetID)) {
+                andNot(ops, prohibitedOps.get(i));
+            }
+        }
+        return OperationSet.fromBits(ops);
+    }
+
+    private boolean hasPermissions(long targetID, String... perms) {
+        Set<String> permissions;
+        try {
+            permissions = listPermissions(targetID);
+        }
+        catch (PMException e) {
+            return false;
+        }
+
+        return PolicyDecider.allows(permissions, perms);
+    }
+
+    /**
+     * @return the operations granted to the user through the node, in each policy class the node is in.  The maps and
+     * bitsets are shared between nodes and must not be changed.
+     */
+    private Map<Long, long[]> granted(long nodeID) throws PMException {
+        Map<Long, long[]> result = granted.get(nodeID);
+        if (result != null) {
+            return result;
+        }
+
+        if (policies.contains(nodeID)) {
+            result = Collections.singletonMap(nodeID, NONE);
+        } else {
+            Set<Long> parents = graph.getParents(nodeID);
+            if (parents.size() == 1) {
+                // a node with one parent shares its parent's result unless it is granted something itself
+                result = granted(parents.iterator().next());
+            } else {
+                Map<Long, long[]> merged = new HashMap<>();
+                for (long parentID : parents) {
+                    for (Map.Entry<Long, long[]> entry : granted(parentID).entrySet()) {
+                        merged.merge(entry.getKey(), entry.getValue(), PolicyClassIndex::or);
+                    }
+                }
+                result = merged;
+            }
+        }
+
+        long[] ops = frontier.get(nodeID);
+        if (ops != null && !result.isEmpty()) {
+            Map<Long, long[]> withOps = new HashMap<>();
+            for (Map.Entry<Long, long[]> entry : result.entrySet()) {
+                withOps.put(entry.getKey(), PolicyClassIndex.or(entry.getValue(), ops));
+            }
+            result = withOps;
+        }
+
+        Map<Long, long[]> existing = granted.putIfAbsent(nodeID, result);
+        return existing == null ? result : existing;
+    }
+
+    private boolean applies(Prohibition prohibition, long targetID) {
+        boolean intersection = prohibition.isIntersection();
+        List<Prohibition.Node> nodes = prohibition.getNodes();
+        if (nodes.isEmpty()) {
+            return false;
+        }
+
+        for (Prohibition.Node node : nodes) {
+            boolean contained = prohibitionNodeMembers.get(node.getID()).contains(targetID);
+            if (node.isComplement()) {
+                contained = !contained;
+            }
+
+            if (intersection && !contained) {
+                return false;
+            } else if (!intersection && contained) {
+                return true;
+            }
+        }
+        return intersection;
+    }
+
+    /**
+     * AND the second bitset into the first, in place.
+     * @return the first bitset.
+     */
+    private static long[] and(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] &= i < b.length ? b[i] : 0;
+        }
+        return a;
+    }
+
+    /**
+     * Clear the bits of the second bitset from the first, in place.
+     */
+    private static void andNot(long[] a, long[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            a[i] &= ~b[i];
+        }
+    }
+
+    /**
+     * @return the node and every node it is assigned to, directly or indirectly.
+     */
+    private Set<Long> ancestors(long nodeID) throws PMException {
+        Set<Long> visited = new HashSet<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        visited.add(nodeID);
+        queue.add(nodeID);
+        while (!queue.isEmpty()) {
+            for (long parentID : graph.getParents(queue.poll())) {
+                if (visited.add(parentID)) {
+                    queue.add(parentID);
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return the node and every node assigned to it, directly or indirectly.
+     */
+    private Set<Long> descendants(long nodeID) throws PMException {
+        Set<Long> visited = new HashSet<>();
+        if (!graph.exists(nodeID)) {
+            return visited;
+        }
+
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        visited.add(nodeID);
+        queue.add(nodeID);
+        while (!queue.isEmpty()) {
+            for (long childID : graph.getChildren(queue.poll())) {
+                if (visited.add(childID)) {
+                    queue.add(childID);
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,303 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.PolicyListener;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The policy classes each node in the graph is in, kept up to date as the graph changes.
+ *
+ * Each policy class is given an ordinal when it is created, and the policy classes a node is in are stored as a bitset
+ * of those ordinals in an array of longs.  A policy class is in itself.  A node's bitset is the union of its parents'
+ * bitsets, so assigning or deassigning a node recomputes its bitset from its parents, and then the bitsets of the nodes
+ * assigned to it, stopping at nodes whose bitset does not change.
+ *
+ * Deleting an attribute, or a large group of changes, rebuilds the whole index the next time it is read, because the
+ * nodes that were assigned to a deleted attribute are not known.
+ *
+ * Bitsets returned by this index must not be changed.
+ */
+public class PolicyClassIndex implements PolicyListener {
+
+    /**
+     * Larger groups of changes, like a configuration load, rebuild the index.
+     */
+    private static final int MAX_TRACKED_MUTATIONS = 100;
+
+    private static final long[] EMPTY = new long[0];
+
+    private GraphPAP          graphPAP;
+    private volatile State    state;
+    private volatile boolean  stale;
+
+    /**
+     * Build the index for the given graph, and register it to be told when the graph changes.
+     * @param graphPAP the graph to index.
+     * @throws PMException if there is an error reading the graph.
+     */
+    public PolicyClassIndex(GraphPAP graphPAP) throws PMException {
+        this.graphPAP = graphPAP;
+        this.state = build();
+
+        graphPAP.addListener(this);
+    }
+
+    /**
+     * @return the bitset of the policy classes the node is in, empty if the node does not exist.
+     */
+    public long[] getBits(long nodeID) {
+        long[] bits = current().reach.get(nodeID);
+        return bits == null ? EMPTY : bits;
+    }
+
+    /**
+     * @return the IDs of the policy classes the node is in.
+     */
+    public Set<Long> getPolicyClasses(long nodeID) {
+        return toIDs(getBits(nodeID));
+    }
+
+    /**
+     * @return the IDs of the policy classes in the bitset.
+     */
+    public Set<Long> toIDs(long[] bits) {
+        long[] pcIDs = current().pcIDs;
+        Set<Long> ids = new HashSet<>();
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0) {
+                int ordinal = word * 64 + Long.numberOfTrailingZeros(w);
+                ids.add(pcIDs[ordinal]);
+                w &= w - 1;
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized void graphChanged(List<GraphMutation> mutations) {
+        if (stale) {
+            return;
+        }
+        if (mutations.size() > MAX_TRACKED_MUTATIONS) {
+            stale = true;
+            return;
+        }
+
+        try {
+            for (GraphMutation mutation : mutations) {
+                apply(mutation);
+            }
+        }
+        catch (PMException e) {
+            // a node was changed again before this change was seen, so rebuild from the graph as it is now
+            stale = true;
+        }
+    }
+
+    @Override
+    public synchronized void graphReloaded() {
+        stale = true;
+    }
+
+    @Override
+    public void prohibitionChanged(Prohibition prohibition) {
+        // prohibitions do not change the policy classes nodes are in
+    }
+
+    /**
+     * Stop listening for changes to the graph.
+     */
+    public void close() {
+        graphPAP.removeListener(this);
+    }
+
+    private void apply(GraphMutation mutation) throws PMException {
+        State state = this.state;
+        long nodeID = mutation.getSourceID();
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+                if (mutation.getType() == NodeType.PC) {
+                    state.reach.put(nodeID, state.bit(state.intern(nodeID)));
+                } else {
+                    state.reach.put(nodeID, EMPTY);
+                }
+                break;
+            case DELETE_NODE:
+                if (mutation.getType() == NodeType.U || mutation.getType() == NodeType.O) {
+                    state.reach.remove(nodeID);
+                } else {
+                    stale = true;
+                }
+                break;
+            case ASSIGN:
+            case DEASSIGN:
+                propagate(state, nodeID);
+                break;
+            default:
+                // names, properties, and associations do not change the policy classes nodes are in
+                break;
+        }
+    }
+
+    /**
+     * Recompute the node's bitset from its parents, and the bitsets of the nodes assigned to it if it changed.
+     */
+    private void propagate(State state, long nodeID) throws PMException {
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        queue.add(nodeID);
+        while (!queue.isEmpty()) {
+            long id = queue.poll();
+            long[] bits = state.compute(id);
+            if (!Arrays.equals(bits, state.reach.get(id))) {
+                state.reach.put(id, bits);
+                queue.addAll(graphPAP.getChildren(id));
+            }
+        }
+    }
+
+    private State current() {
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    try {
+                        // clear the flag first so a change made during the build makes the index stale again
+                        stale = false;
+                        state = build();
+                    }
+                    catch (PMException e) {
+                        stale = true;
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    private State build() throws PMException {
+        State built = new State();
+        for (long pcID : graphPAP.getPolicies()) {
+            built.intern(pcID);
+        }
+        for (Node node : graphPAP.getNodes()) {
+            built.reach(node.getID());
+        }
+        return built;
+    }
+
+    /**
+     * @return the union of the two bitsets.
+     */
+    public static long[] or(long[] a, long[] b) {
+        if (a.length < b.length) {
+            long[] t = a;
+            a = b;
+            b = t;
+        }
+        long[] result = a.clone();
+        for (int i = 0; i < b.length; i++) {
+            result[i] |= b[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the intersection of the two bitsets.
+     */
+    public static long[] and(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = a[i] & b[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return true if every policy class in the second bitset is in the first.
+     */
+    public static boolean containsAll(long[] a, long[] b) {
+        for (int i = 0; i < b.length; i++) {
+            long w = i < a.length ? a[i] : 0;
+            if ((b[i] & ~w) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long w : bits) {
+            if (w != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class State {
+        private ConcurrentHashMap<Long, Integer> ordinals = new ConcurrentHashMap<>();
+        private volatile long[]                  pcIDs    = new long[0];
+        private ConcurrentHashMap<Long, long[]>  reach    = new ConcurrentHashMap<>();
+
+        int intern(long pcID) {
+            Integer ordinal = ordinals.get(pcID);
+            if (ordinal != null) {
+                return ordinal;
+            }
+
+            // ordinals of deleted policy classes are not reused until the index is rebuilt
+            ordinal = pcIDs.length;
+            long[] grown = Arrays.copyOf(pcIDs, ordinal + 1);
+            grown[ordinal] = pcID;
+            pcIDs = grown;
+            ordinals.put(pcID, ordinal);
+            return ordinal;
+        }
+
+        long[] bit(int ordinal) {
+            long[] bits = new long[ordinal / 64 + 1];
+            bits[ordinal / 64] = 1L << (ordinal % 64);
+            return bits;
+        }
+
+        /**
+         * @return the node's bitset, computed from its parents' current bitsets.
+         */
+        long[] compute(long nodeID) throws PMException {
+            Integer ordinal = ordinals.get(nodeID);
+            long[] bits = ordinal == null ? EMPTY : bit(ordinal);
+            for (long parentID : graphPAP.getParents(nodeID)) {
+                long[] parentBits = reach.get(parentID);
+                if (parentBits != null) {
+                    bits = or(bits, parentBits);
+                }
+            }
+            return bits;
+        }
+
+        /**
+         * @return the node's bitset, computing its parents' bitsets first if they have not been computed.
+         */
+        long[] reach(long nodeID) throws PMException {
+            long[] bits = reach.get(nodeID);
+            if (bits != null) {
+                return bits;
+            }
+
+            Integer ordinal = ordinals.get(nodeID);
+            bits = ordinal == null ? EMPTY : bit(ordinal);
+            for (long parentID : graphPAP.getParents(nodeID)) {
+                bits = or(bits, reach(parentID));
+            }
+            reach.put(nodeID, bits);
+            return bits;
+        }
+    }
+}
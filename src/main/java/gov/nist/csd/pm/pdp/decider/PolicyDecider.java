@@ -0,0 +1,145 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.decider.Decider;
+import gov.nist.csd.pm.decider.PReviewDecider;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.PolicyListener;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static gov.nist.csd.pm.common.constants.Operations.ALL_OPERATIONS;
+import static gov.nist.csd.pm.common.constants.Operations.ANY_OPERATIONS;
+
+/**
+ * The decision engine shared by every request to the PDP.  It makes decisions with a PReviewDecider over the PAP's
+ * in-memory graph and prohibitions, and is owned by the PAP so it lives as long as the policy it decides on.
+ *
+ * The graph is read live through GraphPAP, so graph changes need nothing from the decider.  The prohibitions are given
+ * to the PReviewDecider when it is created, so a new one is published whenever a prohibition changes.  Deciders that
+ * cache decisions can extend this class and override the PolicyListener methods to invalidate them.
+ *
+ * If a CapabilityIndex is set, decisions for the users it indexes are looked up in it instead.
+ */
+public class PolicyDecider implements Decider, PolicyListener {
+
+    private GraphPAP                graphPAP;
+    private ProhibitionsPAP         prohibitionsPAP;
+    private volatile PReviewDecider decider;
+    private volatile CapabilityIndex index;
+
+    /**
+     * Create a decider for the given graph and prohibitions, and register it to be told when they change.
+     * @param graphPAP the graph to decide on.
+     * @param prohibitionsPAP the prohibitions to decide on.
+     */
+    public PolicyDecider(GraphPAP graphPAP, ProhibitionsPAP prohibitionsPAP) {
+        this.graphPAP = graphPAP;
+        this.prohibitionsPAP = prohibitionsPAP;
+        this.decider = new PReviewDecider(graphPAP, prohibitionsPAP.getProhibitions());
+
+        graphPAP.addListener(this);
+        prohibitionsPAP.addListener(this);
+    }
+
+    /**
+     * Look up decisions in the given index when it has the user.  Pass null to stop using an index.
+     * @param index the capability index to use.
+     */
+    public void setCapabilityIndex(CapabilityIndex index) {
+        this.index = index;
+    }
+
+    public CapabilityIndex getCapabilityIndex() {
+        return index;
+    }
+
+    @Override
+    public boolean hasPermissions(long userID, long targetID, String... perms) throws PMException {
+        CapabilityIndex index = this.index;
+        Set<String> permissions = index == null ? null : index.listPermissions(userID, targetID);
+        if (permissions != null) {
+            return allows(permissions, perms);
+        }
+        return decider.hasPermissions(userID, targetID, perms);
+    }
+
+    @Override
+    public Set<String> listPermissions(long userID, long targetID) throws PMException {
+        CapabilityIndex index = this.index;
+        Set<String> permissions = index == null ? null : index.listPermissions(userID, targetID);
+        if (permissions != null) {
+            return permissions;
+        }
+        return decider.listPermissions(userID, targetID);
+    }
+
+    /**
+     * Decide on all of the nodes from the capability index if it has the user.  Otherwise decide in one sweep of the
+     * graph, which finds the user's attributes and associations once and visits each node the given nodes are
+     * assigned to once.  Large sets of nodes are decided in parallel.
+     * @return the set of the given nodes the user has the permissions on.
+     */
+    @Override
+    public Collection<Long> filter(long userID, Collection<Long> nodes, String... perms) {
+        CapabilityIndex index = this.index;
+        Set<Long> allowed = index == null ? null : index.filter(userID, nodes, perms);
+        if (allowed != null) {
+            return allowed;
+        }
+
+        try {
+            return new PermissionSweep(graphPAP, prohibitionsPAP.getProhibitions(), userID).filter(nodes, perms);
+        }
+        catch (PMException e) {
+            // the user could not be found in the graph
+            return decider.filter(userID, nodes, perms);
+        }
+    }
+
+    @Override
+    public void graphChanged(List<GraphMutation> mutations) {
+        // decisions read the graph through GraphPAP, so they already see the change
+    }
+
+    @Override
+    public void graphReloaded() {
+        // decisions read the graph through GraphPAP, so they already see the reloaded graph
+    }
+
+    @Override
+    public void prohibitionChanged(Prohibition prohibition) {
+        decider = new PReviewDecider(graphPAP, prohibitionsPAP.getProhibitions());
+    }
+
+    /**
+     * Check a set of permissions against the permissions a user has on a target, the same way hasPermissions() does.
+     * @param permissions the permissions the user has.
+     * @param perms the permissions to check for. ANY_OPERATIONS checks for at least one permission.
+     * @return true if the permissions allow the requested ones.
+     */
+    static boolean allows(Set<String> permissions, String... perms) {
+        if (perms.length == 1 && perms[0].equals(ANY_OPERATIONS)) {
+            return !permissions.isEmpty();
+        } else if (permissions.contains(ALL_OPERATIONS)) {
+            return true;
+        } else if (permissions.isEmpty()) {
+            return false;
+        }
+        return permissions.containsAll(Arrays.asList(perms));
+    }
+
+    /**
+     * Stop listening for changes to the policy.  Called when the PAP that owns this decider is replaced.
+     */
+    public void close() {
+        graphPAP.removeListener(this);
+        prohibitionsPAP.removeListener(this);
+    }
+}
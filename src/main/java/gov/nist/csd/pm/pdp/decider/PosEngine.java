@@ -0,0 +1,240 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.LongIntMap;
+import gov.nist.csd.pm.common.util.OperationSet;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+
+import java.util.*;
+
+/**
+ * Finds a user's Personal Object System (POS): the targets of the user's attributes' associations that the user has at
+ * least one operation on in every policy class the target is in.
+ *
+ * Operations are bits of their OperationRegistry ordinals, so the operations granted on a target in a policy class are
+ * a bitmask.  A
+ * target's label is one bitmask for each policy class the user's attributes are in, and the target is in the POS if
+ * the AND of the bitmasks of the policy classes the target is in is not empty.  Node IDs are kept in primitive arrays
+ * and LongIntMaps, so finding the POS does not box an ID or copy a set of policy classes for each operation.
+ */
+public class PosEngine {
+
+    private Graph            graph;
+    private PolicyClassIndex pcIndex;
+
+    /**
+     * @param graph the graph to search.
+     * @param pcIndex the policy classes of the nodes in the graph.
+     */
+    public PosEngine(Graph graph, PolicyClassIndex pcIndex) {
+        this.graph = graph;
+        this.pcIndex = pcIndex;
+    }
+
+    /**
+     * @param userID the ID of the user.
+     * @return the IDs of the nodes in the user's POS.
+     * @throws PMException if there is an error reading the graph.
+     */
+    public long[] find(long userID) throws PMException {
+        PrimitiveIterator.OfLong it = iterate(userID);
+        long[] pos = new long[16];
+        int size = 0;
+        while (it.hasNext()) {
+            pos = set(pos, size++, it.nextLong());
+        }
+        return Arrays.copyOf(pos, size);
+    }
+
+    /**
+     * Find the user's attributes and label the targets of their associations, and return an iterator that decides
+     * whether each target is in the POS as it is iterated, so the first node can be used before the rest are decided.
+     * @param userID the ID of the user.
+     * @return the IDs of the nodes in the user's POS.
+     * @throws PMException if there is an error reading the graph.
+     */
+    public PrimitiveIterator.OfLong iterate(long userID) throws PMException {
+        // the associations of the user's attributes, found with a BFS up from the user
+        int numAssocs = 0;
+        long[] assocTargets = new long[16];
+        long[][] assocPcs = new long[16][];
+        long[][] assocOps = new long[16][];
+        int opWords = 1;
+
+        // each visited node is mapped to its position in the queue
+        long[] queue = new long[16];
+        int head = 0;
+        int tail = 0;
+        LongIntMap visited = new LongIntMap(64);
+        for (long parentID : graph.getParents(userID)) {
+            if (visited.putIfAbsent(parentID, tail) == tail) {
+                queue = set(queue, tail++, parentID);
+            }
+        }
+        while (head < tail) {
+            long uaID = queue[head++];
+
+            Map<Long, Set<String>> assocs = graph.getSourceAssociations(uaID);
+            if (!assocs.isEmpty()) {
+                long[] uaPcs = pcIndex.getBits(uaID);
+                for (Map.Entry<Long, Set<String>> assoc : assocs.entrySet()) {
+                    long[] opBits = OperationSet.of(assoc.getValue()).toBits();
+                    opWords = Math.max(opWords, opBits.length);
+
+                    if (numAssocs == assocTargets.length) {
+                        assocTargets = Arrays.copyOf(assocTargets, numAssocs * 2);
+                        assocPcs = Arrays.copyOf(assocPcs, numAssocs * 2);
+                        assocOps = Arrays.copyOf(assocOps, numAssocs * 2);
+                    }
+                    assocTargets[numAssocs] = assoc.getKey();
+                    assocPcs[numAssocs] = uaPcs;
+                    assocOps[numAssocs] = opBits;
+                    numAssocs++;
+                }
+            }
+
+            for (long parentID : graph.getParents(uaID)) {
+                if (visited.putIfAbsent(parentID, tail) == tail) {
+                    queue = set(queue, tail++, parentID);
+                }
+            }
+        }
+
+        // number the policy classes the user's attributes are in from 0, so labels are only as large as they need to be
+        long[] userPcs = new long[0];
+        for (int i = 0; i < numAssocs; i++) {
+            userPcs = PolicyClassIndex.or(userPcs, assocPcs[i]);
+        }
+        int[] localPcs = new int[userPcs.length * 64];
+        Arrays.fill(localPcs, -1);
+        int numLocalPcs = 0;
+        for (int ordinal = 0; ordinal < localPcs.length; ordinal++) {
+            if ((userPcs[ordinal >>> 6] & (1L << ordinal)) != 0) {
+                localPcs[ordinal] = numLocalPcs++;
+            }
+        }
+
+        // label each target with the operations granted on it in each policy class
+        int stride = numLocalPcs * opWords;
+        LongIntMap targetSlots = new LongIntMap(numAssocs);
+        long[] targets = new long[16];
+        long[] labels = new long[16 * stride];
+        for (int i = 0; i < numAssocs; i++) {
+            int slot = targetSlots.putIfAbsent(assocTargets[i], targetSlots.size());
+            if (slot == targets.length) {
+                targets = Arrays.copyOf(targets, slot * 2);
+                labels = Arrays.copyOf(labels, slot * 2 * stride);
+            }
+            targets[slot] = assocTargets[i];
+
+            long[] pcs = assocPcs[i];
+            for (int word = 0; word < pcs.length; word++) {
+                for (long w = pcs[word]; w != 0; w &= w - 1) {
+                    int ordinal = word * 64 + Long.numberOfTrailingZeros(w);
+                    int base = slot * stride + localPcs[ordinal] * opWords;
+                    long[] opBits = assocOps[i];
+                    for (int op = 0; op < opBits.length; op++) {
+                        labels[base + op] |= opBits[op];
+                    }
+                }
+            }
+        }
+
+        return new PosIterator(targets, targetSlots.size(), labels, stride, localPcs, opWords);
+    }
+
+    /**
+     * @param targetPcs the policy classes the target is in.
+     * @param granted a scratch array of opWords longs.
+     * @return true if the AND of the target's label for each of its policy classes is not empty.
+     */
+    private static boolean isGrantedInEveryPc(long[] targetPcs, long[] labels, int labelStart, int[] localPcs,
+                                              int opWords, long[] granted) {
+        boolean first = true;
+        for (int word = 0; word < targetPcs.length; word++) {
+            for (long w = targetPcs[word]; w != 0; w &= w - 1) {
+                int ordinal = word * 64 + Long.numberOfTrailingZeros(w);
+                int local = ordinal < localPcs.length ? localPcs[ordinal] : -1;
+                if (local < 0) {
+                    // none of the user's attributes are in this policy class
+                    return false;
+                }
+
+                int base = labelStart + local * opWords;
+                long any = 0;
+                for (int i = 0; i < opWords; i++) {
+                    granted[i] = first ? labels[base + i] : granted[i] & labels[base + i];
+                    any |= granted[i];
+                }
+                if (any == 0) {
+                    return false;
+                }
+                first = false;
+            }
+        }
+
+        // a target in no policy class has no operations granted on it
+        return !first;
+    }
+
+    /**
+     * Decides whether each labelled target is in the POS when the iterator reaches it.
+     */
+    private class PosIterator implements PrimitiveIterator.OfLong {
+        private long[] targets;
+        private int    numTargets;
+        private long[] labels;
+        private int    stride;
+        private int[]  localPcs;
+        private int    opWords;
+        private long[] granted;
+        private int    slot = -1;
+
+        PosIterator(long[] targets, int numTargets, long[] labels, int stride, int[] localPcs, int opWords) {
+            this.targets = targets;
+            this.numTargets = numTargets;
+            this.labels = labels;
+            this.stride = stride;
+            this.localPcs = localPcs;
+            this.opWords = opWords;
+            this.granted = new long[opWords];
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < numTargets;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long targetID = targets[slot];
+            advance();
+            return targetID;
+        }
+
+        /**
+         * Move to the next target that is in the POS: a target some operation is granted on in every policy class it
+         * is in.
+         */
+        private void advance() {
+            for (slot++; slot < numTargets; slot++) {
+                if (isGrantedInEveryPc(pcIndex.getBits(targets[slot]), labels, slot * stride, localPcs, opWords,
+                        granted)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static long[] set(long[] array, int index, long value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+}
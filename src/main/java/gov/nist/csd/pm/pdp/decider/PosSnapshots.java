@@ -0,0 +1,99 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.PolicyListener;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the sorted POS of recent users, so the pages of a user's POS are cut from one search of the graph instead of a
+ * search for each page.
+ *
+ * Every change to the graph advances the policy epoch, and a snapshot from an earlier epoch is not used, so a page
+ * never comes from a POS older than the last change.  At most the maximum number of users' snapshots are kept, and all
+ * of them are dropped when there is no room for another.
+ */
+public class PosSnapshots implements PolicyListener {
+
+    private GraphPAP                          graphPAP;
+    private PolicyClassIndex                  pcIndex;
+    private int                               maxUsers;
+    private AtomicLong                        epoch     = new AtomicLong();
+    private ConcurrentHashMap<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Create the snapshots for the given graph, and register them to be told when the graph changes.
+     * @param graphPAP the graph.
+     * @param pcIndex the policy classes of the nodes in the graph.
+     * @param maxUsers the maximum number of users' snapshots to keep.
+     */
+    public PosSnapshots(GraphPAP graphPAP, PolicyClassIndex pcIndex, int maxUsers) {
+        this.graphPAP = graphPAP;
+        this.pcIndex = pcIndex;
+        this.maxUsers = maxUsers;
+
+        graphPAP.addListener(this);
+    }
+
+    /**
+     * @return the IDs of the nodes in the user's POS, in order.  The array is shared, so it must not be changed.
+     * @throws PMException if there is an error reading the graph.
+     */
+    public long[] get(long userID) throws PMException {
+        long current = epoch.get();
+        Snapshot snapshot = snapshots.get(userID);
+        if (snapshot != null && snapshot.epoch == current) {
+            return snapshot.pos;
+        }
+
+        long[] pos = new PosEngine(graphPAP, pcIndex).find(userID);
+        Arrays.sort(pos);
+        if (snapshots.size() >= maxUsers) {
+            snapshots.clear();
+        }
+        if (epoch.get() == current) {
+            snapshots.put(userID, new Snapshot(pos, current));
+        }
+        return pos;
+    }
+
+    @Override
+    public void graphChanged(List<GraphMutation> mutations) {
+        epoch.incrementAndGet();
+        snapshots.clear();
+    }
+
+    @Override
+    public void graphReloaded() {
+        graphChanged(Collections.emptyList());
+    }
+
+    @Override
+    public void prohibitionChanged(Prohibition prohibition) {
+        // the POS is made of associations and assignments only
+    }
+
+    /**
+     * Stop listening for changes to the graph.
+     */
+    public void close() {
+        graphPAP.removeListener(this);
+    }
+
+    private static class Snapshot {
+        private long[] pos;
+        private long   epoch;
+
+        Snapshot(long[] pos, long epoch) {
+            this.pos = pos;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.google.gson.GsonBuilder;
 import gov.nist.csd.pm.common.exceptions.*;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.relationships.Assignment;
+import gov.nist.csd.pm.graph.model.relationships.Association;
 import gov.nist.csd.pm.pap.PAP;
 import gov.nist.csd.pm.prohibitions.model.Prohibition;
 
@@ -69,8 +71,11 @@ public class ConfigurationService extends Service {
 
         JsonGraph graph = configuration.getGraph();
         Collection<Node> nodes = graph.getNodes();
+        List<Node> newNodes = new ArrayList<>();
+        long maxID = 0;
         for(Node node : nodes) {
             long id = node.getID();
+            maxID = Math.max(maxID, id);
             Map<String, String> properties = node.getProperties();
 
             //if a password is present encrypt it.
@@ -79,27 +84,35 @@ public class ConfigurationService extends Service {
                     properties.get(PASSWORD_PROPERTY) != null &&
                     properties.get(PASSWORD_PROPERTY).length() < HASH_LENGTH) {
                 try {
-                    properties.put(PASSWORD_PROPERTY, generatePasswordHash(properties.get(PASSWORD_PROPERTY)));
+                    properties.put(PASSWORD_PROPERTY, generatePasswordHash(properties.get(PASSWORD_PROPERTY),
+                            getPasswordVerifier().getHashIterations()));
                 }
                 catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
                     throw new PMGraphException(e.getMessage());
                 }
             }
 
-            getGraphPAP().createNode(id, node.getName(), node.getType(), properties);
+            newNodes.add(new Node(id, node.getName(), node.getType(), properties));
         }
+        getGraphPAP().createNodes(newNodes);
+        // the loaded nodes keep their IDs, so new nodes must be allocated IDs after them
+        getIDAllocator().skipPast(maxID);
 
         Set<JsonAssignment> assignments = graph.getAssignments();
+        List<Assignment> newAssignments = new ArrayList<>();
         for(JsonAssignment assignment : assignments) {
-            getGraphPAP().assign(assignment.getChild(), assignment.getParent());
+            newAssignments.add(new Assignment(assignment.getChild(), assignment.getParent()));
         }
+        getGraphPAP().assignAll(newAssignments);
 
         Set<JsonAssociation> associations = graph.getAssociations();
+        List<Association> newAssociations = new ArrayList<>();
         for(JsonAssociation association : associations) {
             long uaID = association.getUa();
             long targetID = association.getTarget();
-            getGraphPAP().associate(uaID, targetID, association.getOps());
+            newAssociations.add(new Association(uaID, targetID, association.getOps()));
         }
+        getGraphPAP().associateAll(newAssociations);
 
         // prohibitions
         List<Prohibition> prohibitions = configuration.getProhibitions();
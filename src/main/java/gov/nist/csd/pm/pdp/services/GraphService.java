@@ -1,13 +1,13 @@
 package gov.nist.csd.pm.pdp.services;
 
 import gov.nist.csd.pm.common.exceptions.*;
-import gov.nist.csd.pm.common.util.NodeUtils;
 import gov.nist.csd.pm.decider.Decider;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.model.nodes.Node;
 import gov.nist.csd.pm.graph.model.nodes.NodeType;
 import gov.nist.csd.pm.graph.model.relationships.Assignment;
 import gov.nist.csd.pm.graph.model.relationships.Association;
+import gov.nist.csd.pm.pap.GraphUnitOfWork;
 import gov.nist.csd.pm.pap.PAP;
 
 import java.security.NoSuchAlgorithmException;
@@ -68,18 +68,19 @@ public class GraphService extends Service {
         if(properties == null) {
             properties = new HashMap<>();
         }
+        // check that the intended namespace does not already have the node name before hashing the password
+        getGraphPAP().checkNamespace(name, type, properties);
         if(properties.containsKey(PASSWORD_PROPERTY)) {
             try {
-                properties.put(PASSWORD_PROPERTY, generatePasswordHash(properties.get(PASSWORD_PROPERTY)));
+                properties.put(PASSWORD_PROPERTY, generatePasswordHash(properties.get(PASSWORD_PROPERTY),
+                        getPasswordVerifier().getHashIterations()));
             }
             catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
                 throw new PMGraphException(e.getMessage());
             }
         }
 
-        checkNamespace(name, type, properties);
-
-        long id = new Random().nextLong();
+        long id = getIDAllocator().nextID();
         // create the node
         if(type.equals(PC)) {
             return createPolicyClass(id, name, properties);
@@ -88,22 +89,6 @@ public class GraphService extends Service {
         }
     }
 
-    private void checkNamespace(String name, NodeType type, Map<String, String> properties) throws PMException {
-        // check that the intended namespace does not already have the node name
-        String namespace = properties.get(NAMESPACE_PROPERTY);
-        if(namespace == null) {
-            namespace = DEFAULT_NAMESPACE;
-        }
-
-        // search the graph for any node with the same name, type, and namespace
-        Set<Node> search = getGraphPAP().search(name, type.toString(),
-                NodeUtils.toProperties(NAMESPACE_PROPERTY, namespace));
-        if(!search.isEmpty()) {
-            throw new PMGraphException(String.format("a node with the name \"%s\" and type %s already exists in the namespace \"%s\"",
-                    name, type, namespace));
-        }
-    }
-
     private Node createNonPolicyClass(long parentID, long id, String name, NodeType type, Map<String, String> properties) throws PMException {
         //check that the parent node exists
         if(!exists(parentID)) {
@@ -126,11 +111,11 @@ public class GraphService extends Service {
             throw new PMAuthorizationException(String.format("unauthorized permission %s on node with ID %d", ASSIGN_TO, parentID));
         }
 
-        //create the node
-        Node node = getGraphPAP().createNode(id, name, type, properties);
-
-        // assign the node to the specified parent node
-        getGraphPAP().assign(id, parentID);
+        // create the node and assign it to the specified parent node in one unit of work
+        GraphUnitOfWork work = getGraphPAP().beginWork();
+        Node node = work.createNode(id, name, type, properties);
+        work.assign(id, parentID);
+        work.commit();
 
         return node;
     }
@@ -147,17 +132,20 @@ public class GraphService extends Service {
         HashMap<String, String> repProps = new HashMap<>();
         properties.forEach(repProps::putIfAbsent);
         
-        long repID = new Random().nextLong();
-        getGraphPAP().createNode(repID, name + " rep", NodeType.OA, repProps);
+        // the rep node, the pc node, and the rep's assignment are created in one unit of work
+        GraphUnitOfWork work = getGraphPAP().beginWork();
+        long repID = getIDAllocator().nextID();
+        work.createNode(repID, name + " rep", NodeType.OA, repProps);
 
         // add the ID of the rep node to the properties of the policy class node
         properties.put(REP_PROPERTY, String.valueOf(repID));
         
         // create pc node
-        Node pcNode = getGraphPAP().createNode(id, name, PC, properties);
+        Node pcNode = work.createNode(id, name, PC, properties);
         
         // assign the rep object in the super pc
-        getGraphPAP().assign(repID, getPAP().getSuperOA().getID());
+        work.assign(repID, getPAP().getSuperOA().getID());
+        work.commit();
 
         return pcNode;
     }
@@ -270,7 +258,7 @@ public class GraphService extends Service {
         for(Node node : nodes) {
             nodeIDs.add(node.getID());
         }
-        Collection<Long> filteredNodes = getDecider().filter(getUserID(), nodeIDs, ANY_OPERATIONS);
+        Set<Long> filteredNodes = new HashSet<>(getDecider().filter(getUserID(), nodeIDs, ANY_OPERATIONS));
         nodes.removeIf(n -> !filteredNodes.contains(n.getID()));
         return new HashSet<>(nodes);
     }
@@ -589,14 +577,14 @@ public class GraphService extends Service {
     public Set<Node> search(String name, String type, Map<String, String> properties) throws PMException {
         // user the PAP searcher to search for the intended nodes
         Set<Node> nodes = getGraphPAP().search(name, type, properties);
-        nodes.removeIf(x -> {
-            try {
-                return !getDecider().hasPermissions(getUserID(), x.getID(), ANY_OPERATIONS);
-            }
-            catch (PMException e) {
-                return true;
-            }
-        });
+        List<Long> nodeIDs = new ArrayList<>();
+        for(Node node : nodes) {
+            nodeIDs.add(node.getID());
+        }
+
+        // decide on all of the matching nodes at once
+        Set<Long> filteredNodes = new HashSet<>(getDecider().filter(getUserID(), nodeIDs, ANY_OPERATIONS));
+        nodes.removeIf(n -> !filteredNodes.contains(n.getID()));
         return nodes;
     }
 
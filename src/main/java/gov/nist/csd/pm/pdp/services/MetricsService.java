@@ -0,0 +1,56 @@
+package gov.nist.csd.pm.pdp.services;
+
+import gov.nist.csd.pm.common.exceptions.PMAuthorizationException;
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pap.GraphFootprint;
+import gov.nist.csd.pm.pap.PAP;
+import gov.nist.csd.pm.pdp.decider.CachingPolicyDecider;
+import gov.nist.csd.pm.pdp.decider.PolicyDecider;
+import gov.nist.csd.pm.pip.db.neo4j.Neo4jConnection;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static gov.nist.csd.pm.common.constants.Operations.ALL_OPERATIONS;
+
+/**
+ * Methods to report the runtime state of the Policy Machine, such as database connection pool usage and
+ * decision cache hit rates.  Only a user with all operations on the super object can read them.
+ */
+public class MetricsService extends Service {
+
+    public MetricsService(long userID, long processID) throws PMGraphException {
+        super(userID, processID);
+    }
+
+    /**
+     * Get a snapshot of the metrics of each component of the PAP, keyed by the name of the component.
+     * @return the metrics of each component.
+     * @throws PMAuthorizationException if the user does not have all operations on the super object.
+     * @throws PMException if there is an error getting the PAP.
+     */
+    public Map<String, Object> getMetrics() throws PMException {
+        if (!getDecider().hasPermissions(getUserID(), PAP.getPAP().getSuperO().getID(), ALL_OPERATIONS)) {
+            throw new PMAuthorizationException("unauthorized permissions to read the metrics");
+        }
+
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("neo4jPool", Neo4jConnection.getPool(PAP.getPAP().getDatabaseContext()).getMetrics());
+        metrics.put("graphLoad", PAP.getPAP().getLoadStats());
+        GraphFootprint footprint = PAP.getPAP().getGraphPAP().getFootprint();
+        if (footprint != null) {
+            metrics.put("graphFootprint", footprint);
+        }
+        PolicyDecider decider = PAP.getPAP().getDecider();
+        if (decider instanceof CachingPolicyDecider) {
+            metrics.put("decisionCache", ((CachingPolicyDecider) decider).getStats());
+        }
+        if (decider.getCapabilityIndex() != null) {
+            metrics.put("capabilityIndex", decider.getCapabilityIndex().getStats());
+        }
+        metrics.put("sessions", PAP.getPAP().getSessionManager().getStats());
+        metrics.put("login", PAP.getPAP().getPasswordVerifier().getStats());
+        return metrics;
+    }
+}
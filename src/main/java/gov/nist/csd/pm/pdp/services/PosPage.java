@@ -0,0 +1,30 @@
+package gov.nist.csd.pm.pdp.services;
+
+import gov.nist.csd.pm.graph.model.nodes.Node;
+
+import java.util.List;
+
+/**
+ * One page of a user's Personal Object System, in order of node ID.
+ */
+public class PosPage {
+
+    private List<Node> nodes;
+    private Long       next;
+
+    public PosPage(List<Node> nodes, Long next) {
+        this.nodes = nodes;
+        this.next = next;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the cursor to request the next page with, or null if this is the last page.
+     */
+    public Long getNext() {
+        return next;
+    }
+}
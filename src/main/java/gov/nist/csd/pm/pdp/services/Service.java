@@ -2,11 +2,15 @@ package gov.nist.csd.pm.pdp.services;
 
 import gov.nist.csd.pm.common.exceptions.*;
 import gov.nist.csd.pm.decider.Decider;
-import gov.nist.csd.pm.decider.PReviewDecider;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.pap.GraphPAP;
 import gov.nist.csd.pm.pap.PAP;
 import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pap.ids.IDAllocator;
+import gov.nist.csd.pm.pdp.decider.ExplainEngine;
+import gov.nist.csd.pm.pdp.decider.PosSnapshots;
+import gov.nist.csd.pm.pdp.decider.PolicyClassIndex;
+import gov.nist.csd.pm.pap.sessions.PasswordVerifier;
 import gov.nist.csd.pm.pap.sessions.SessionManager;
 
 /**
@@ -70,7 +74,30 @@ public class Service {
         return PAP.getPAP().getSessionManager();
     }
 
+    PasswordVerifier getPasswordVerifier() throws PMException {
+        return PAP.getPAP().getPasswordVerifier();
+    }
+
+    IDAllocator getIDAllocator() throws PMException {
+        return PAP.getPAP().getIDAllocator();
+    }
+
+    /**
+     * @return the PAP's shared decider, which decides on both the graph and the prohibitions.
+     */
     public Decider getDecider() throws PMException {
-        return new PReviewDecider(getGraphPAP());
+        return PAP.getPAP().getDecider();
+    }
+
+    PolicyClassIndex getPolicyClassIndex() throws PMException {
+        return PAP.getPAP().getPolicyClassIndex();
+    }
+
+    ExplainEngine getExplainEngine() throws PMException {
+        return PAP.getPAP().getExplainEngine();
+    }
+
+    PosSnapshots getPosSnapshots() throws PMException {
+        return PAP.getPAP().getPosSnapshots();
     }
 }
@@ -4,17 +4,20 @@ import gov.nist.csd.pm.common.exceptions.*;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.model.nodes.Node;
 import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pap.sessions.PasswordVerifier;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.logging.Logger;
 
 import static gov.nist.csd.pm.common.constants.Properties.PASSWORD_PROPERTY;
-import static gov.nist.csd.pm.common.util.NodeUtils.checkPasswordHash;
 
 public class SessionsService extends Service {
 
+    private static final Logger LOGGER = Logger.getLogger(SessionsService.class.getName());
+
     public SessionsService() {}
 
     /**
@@ -27,11 +30,12 @@ public class SessionsService extends Service {
      *
      * @throws PMGraphException If a node with the user's name does not exist.
      * @throws PMAuthenticationException If the provided password does not match the stored password.
+     * @throws PMUnavailableException If too many passwords are being checked to check this one now.
      * @throws PMGraphException If there is an error hashing the provided user password.
      */
     public String createSession(String username, String password) throws PMException {
         //get the user node
-        Set<Node> nodes = getGraphPAP().search(username, NodeType.U.toString(), null);
+        Set<Node> nodes = getGraphPAP().findNodes(username, NodeType.U);
         if (nodes.isEmpty()) {
             throw new PMGraphException(String.format("node with name %s could not be found", username));
         }
@@ -40,13 +44,25 @@ public class SessionsService extends Service {
 
         //check password
         String storedPass = userNode.getProperties().get(PASSWORD_PROPERTY);
-        try {
-            if (!checkPasswordHash(storedPass, password)) {
-                throw new PMAuthenticationException("username or password did not match");
-            }
+        if (storedPass == null || password == null) {
+            throw new PMAuthenticationException("username or password did not match");
+        }
+        PasswordVerifier.Result result = getPasswordVerifier().verify(storedPass, password);
+        if (!result.matches()) {
+            throw new PMAuthenticationException("username or password did not match");
         }
-        catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new PMGraphException(e.getMessage());
+
+        //store the password with the configured number of iterations
+        if (result.getRehash() != null) {
+            Map<String, String> properties = new HashMap<>(userNode.getProperties());
+            properties.put(PASSWORD_PROPERTY, result.getRehash());
+            try {
+                getGraphPAP().updateNode(userNode.getID(), null, properties);
+            }
+            catch (PMException e) {
+                LOGGER.warning(String.format("could not store the new password hash of %s: %s", username,
+                        e.getMessage()));
+            }
         }
 
         //create session id
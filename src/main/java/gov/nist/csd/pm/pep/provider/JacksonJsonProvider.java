@@ -13,12 +13,22 @@ import javax.ws.rs.ext.Provider;
 @Produces({MediaType.APPLICATION_JSON})
 public class JacksonJsonProvider extends JacksonJaxbJsonProvider {
 
+    /**
+     * The mapper for every JSON response.  It is thread safe once configured, so one is shared.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .registerModule(new JodaModule())
+            .setDateFormat(new RFC3339DateFormat());
+
     public JacksonJsonProvider() {
-        ObjectMapper objectMapper = new ObjectMapper()
-                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-                .registerModule(new JodaModule())
-                .setDateFormat(new RFC3339DateFormat());
+        setMapper(OBJECT_MAPPER);
+    }
 
-        setMapper(objectMapper);
+    /**
+     * @return the mapper used for JSON responses, for resources that write JSON themselves, such as streams.
+     */
+    public static ObjectMapper getObjectMapper() {
+        return OBJECT_MAPPER;
     }
 }
@@ -10,14 +10,26 @@ import javax.ws.rs.ext.Provider;
 
 @Provider
 public class PMExceptionMapper implements ExceptionMapper<PMException> {
+
+    private static final int RETRY_AFTER_SECONDS = 1;
+
     @Override
     public Response toResponse(PMException e) {
         e.printStackTrace();
 
         Errors err = Errors.toException(e);
 
-        return ApiResponse.Builder
+        Response response = ApiResponse.Builder
                 .error(err, e)
                 .build();
+
+        // a busy server is the one error that is not reported with a 200, so clients and load balancers back off
+        if (err == Errors.ERR_UNAVAILABLE) {
+            return Response.fromResponse(response)
+                    .status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        return response;
     }
 }
@@ -0,0 +1,22 @@
+package gov.nist.csd.pm.pep.requests;
+
+public class ExplainRequest {
+    private long user;
+    private long target;
+
+    public long getUser() {
+        return user;
+    }
+
+    public void setUser(long user) {
+        this.user = user;
+    }
+
+    public long getTarget() {
+        return target;
+    }
+
+    public void setTarget(long target) {
+        this.target = target;
+    }
+}
@@ -1,17 +1,31 @@
 package gov.nist.csd.pm.pep.resources;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.nist.csd.pm.common.exceptions.*;
 
 import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pdp.decider.Explanation;
 import gov.nist.csd.pm.pdp.services.AnalyticsService;
 import gov.nist.csd.pm.pdp.services.SessionsService;
+import gov.nist.csd.pm.pep.provider.JacksonJsonProvider;
+import gov.nist.csd.pm.pep.requests.ExplainRequest;
 import gov.nist.csd.pm.pep.response.ApiResponse;
 
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -19,14 +33,61 @@ import java.util.Set;
 
 @Path("/analytics")
 public class AnalyticsResource {
+    /**
+     * The size of a page of the POS when a cursor is given without a limit.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * Stream the nodes of the POS as newline delimited JSON, one node per line.
+     */
+    private static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Nodes written to a streamed POS between flushes.  The first node is always flushed on its own.
+     */
+    private static final int STREAM_FLUSH_INTERVAL = 64;
+
+    /**
+     * Get the POS of the session's user.  With no query parameters, the whole POS is returned in one response.  With a
+     * limit, one page of the POS is returned, with the cursor to pass to get the next page.  With stream=true, the nodes
+     * are written as newline delimited JSON as they are found.
+     */
     @Path("/pos")
     @GET
     public Response getPos(@QueryParam("session") String session,
-                           @QueryParam("process") long process) throws PMException {
+                           @QueryParam("process") long process,
+                           @QueryParam("cursor") Long cursor,
+                           @QueryParam("limit") Integer limit,
+                           @QueryParam("stream") boolean stream) throws PMException {
         AnalyticsService analyticsService = new AnalyticsService(new SessionsService().getSessionUserID(session), process);
+        if (stream) {
+            StreamingOutput output = os -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+                ObjectMapper mapper = JacksonJsonProvider.getObjectMapper();
+                int[] written = {0};
+                try {
+                    analyticsService.streamPos(node -> {
+                        writer.write(mapper.writeValueAsString(node));
+                        writer.write('\n');
+                        if (written[0]++ % STREAM_FLUSH_INTERVAL == 0) {
+                            writer.flush();
+                        }
+                    });
+                }
+                catch (PMException e) {
+                    throw new WebApplicationException(e);
+                }
+                writer.flush();
+            };
+            return Response.ok(output, NDJSON).build();
+        }
+
+        Object entity = limit == null && cursor == null ?
+                analyticsService.getPos() : analyticsService.getPos(cursor, limit == null ? DEFAULT_PAGE_SIZE : limit);
         return ApiResponse.Builder
                 .success()
-                .entity(analyticsService.getPos())
+                .entity(entity)
                 .build();
     }
 
@@ -56,4 +117,35 @@ public class AnalyticsResource {
                 .entity(explain)
                 .build();
     }
+
+    @Path("/explanation")
+    @GET
+    public Response getExplanation(@QueryParam("user") long userID,
+                                   @QueryParam("target") long targetID,
+                                   @QueryParam("session") String session,
+                                   @QueryParam("process") long process) throws PMException {
+        AnalyticsService service = new AnalyticsService(new SessionsService().getSessionUserID(session), process);
+        Explanation explanation = service.getExplanation(userID, targetID);
+        return ApiResponse.Builder
+                .success()
+                .entity(explanation)
+                .build();
+    }
+
+    @Path("/explain")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response explainAll(List<ExplainRequest> requests,
+                               @QueryParam("session") String session,
+                               @QueryParam("process") long process) throws PMException {
+        AnalyticsService service = new AnalyticsService(new SessionsService().getSessionUserID(session), process);
+        List<long[]> pairs = new ArrayList<>();
+        for (ExplainRequest request : requests) {
+            pairs.add(new long[]{request.getUser(), request.getTarget()});
+        }
+        return ApiResponse.Builder
+                .success()
+                .entity(service.explainAll(pairs))
+                .build();
+    }
 }
@@ -0,0 +1,28 @@
+package gov.nist.csd.pm.pep.resources;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pdp.services.MetricsService;
+import gov.nist.csd.pm.pdp.services.SessionsService;
+import gov.nist.csd.pm.pep.response.ApiResponse;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @GET
+    public Response getMetrics(@QueryParam("session") String session,
+                               @QueryParam("process") long process) throws PMException {
+        MetricsService metricsService = new MetricsService(new SessionsService().getSessionUserID(session), process);
+        return ApiResponse.Builder
+                .success()
+                .entity(metricsService.getMetrics())
+                .build();
+    }
+}
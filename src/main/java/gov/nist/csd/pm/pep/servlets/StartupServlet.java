@@ -4,13 +4,18 @@ import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.pap.PAP;
 
 import javax.servlet.http.HttpServlet;
+import java.util.logging.Logger;
 
 public class StartupServlet extends HttpServlet {
 
+    private static final Logger LOGGER = Logger.getLogger(StartupServlet.class.getName());
+
     @Override
     public void init() {
         try {
-            PAP.getPAP();
+            LOGGER.info("loading the graph into memory");
+            PAP pap = PAP.getPAP();
+            LOGGER.info("PAP initialized, loaded " + pap.getLoadStats());
         }
         catch (PMException e) {
             e.printStackTrace();
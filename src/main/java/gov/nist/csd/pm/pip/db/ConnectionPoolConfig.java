@@ -0,0 +1,123 @@
+package gov.nist.csd.pm.pip.db;
+
+import java.util.Properties;
+
+/**
+ * Settings for a database connection pool.  The values can be read from the pool.* properties in /resource/db.config.
+ * Any property that is not present will use the default value.
+ */
+public class ConnectionPoolConfig {
+
+    public static final String MAX_SIZE_PROPERTY            = "pool.maxSize";
+    public static final String MIN_IDLE_PROPERTY            = "pool.minIdle";
+    public static final String BORROW_TIMEOUT_PROPERTY      = "pool.borrowTimeout";
+    public static final String IDLE_TIMEOUT_PROPERTY        = "pool.idleTimeout";
+    public static final String VALIDATION_INTERVAL_PROPERTY = "pool.validationInterval";
+    public static final String EVICTION_INTERVAL_PROPERTY   = "pool.evictionInterval";
+    public static final String STATEMENT_CACHE_PROPERTY     = "pool.statementCacheSize";
+
+    private int  maxSize            = 20;
+    private int  minIdle            = 2;
+    private long borrowTimeout      = 5000;
+    private long idleTimeout        = 300000;
+    private long validationInterval = 30000;
+    private long evictionInterval   = 60000;
+    private int  statementCacheSize = 64;
+
+    public ConnectionPoolConfig() {}
+
+    /**
+     * Create a pool configuration from the given properties.
+     * @param props the properties to read the pool settings from.
+     * @return the pool configuration.
+     * @throws NumberFormatException if a pool property is not a number.
+     */
+    public static ConnectionPoolConfig fromProperties(Properties props) {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.maxSize = Integer.parseInt(props.getProperty(MAX_SIZE_PROPERTY, String.valueOf(config.maxSize)));
+        config.minIdle = Integer.parseInt(props.getProperty(MIN_IDLE_PROPERTY, String.valueOf(config.minIdle)));
+        config.borrowTimeout = Long.parseLong(props.getProperty(BORROW_TIMEOUT_PROPERTY, String.valueOf(config.borrowTimeout)));
+        config.idleTimeout = Long.parseLong(props.getProperty(IDLE_TIMEOUT_PROPERTY, String.valueOf(config.idleTimeout)));
+        config.validationInterval = Long.parseLong(props.getProperty(VALIDATION_INTERVAL_PROPERTY, String.valueOf(config.validationInterval)));
+        config.evictionInterval = Long.parseLong(props.getProperty(EVICTION_INTERVAL_PROPERTY, String.valueOf(config.evictionInterval)));
+        config.statementCacheSize = Integer.parseInt(props.getProperty(STATEMENT_CACHE_PROPERTY, String.valueOf(config.statementCacheSize)));
+        return config;
+    }
+
+    /**
+     * @return the maximum number of connections that can be open at one time.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the number of idle connections the evictor will always leave open.
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    /**
+     * @return the number of milliseconds to wait for a connection before failing.
+     */
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(long borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * @return the number of milliseconds a connection can be idle before it is closed by the evictor.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @return the number of milliseconds a connection can be idle before it is validated when it is borrowed.
+     */
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * @return the number of milliseconds between runs of the idle connection evictor.
+     */
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    /**
+     * @return the number of prepared statements to cache on each connection. 0 disables the cache.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
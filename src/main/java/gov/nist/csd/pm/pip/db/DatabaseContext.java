@@ -1,5 +1,7 @@
 package gov.nist.csd.pm.pip.db;
 
+import java.util.Objects;
+
 /**
  * Class to hold information about a database connection.  This can be used for Neo4j and MySQL. The schema field
  * will be ignored for Neo4j.
@@ -11,13 +13,19 @@ public class DatabaseContext {
     private String username;
     private String password;
     private String schema;
+    private ConnectionPoolConfig poolConfig;
 
     public DatabaseContext(String host, int port, String username, String password, String schema) {
+        this(host, port, username, password, schema, new ConnectionPoolConfig());
+    }
+
+    public DatabaseContext(String host, int port, String username, String password, String schema, ConnectionPoolConfig poolConfig) {
         this.host = host;
         this.port = port;
         this.username = username;
         this.password = password;
         this.schema = schema;
+        this.poolConfig = poolConfig;
     }
 
     public String getHost() {
@@ -39,4 +47,33 @@ public class DatabaseContext {
     public String getSchema() {
         return schema;
     }
+
+    public ConnectionPoolConfig getPoolConfig() {
+        return poolConfig;
+    }
+
+    /**
+     * Two contexts are equal if they point to the same database with the same credentials.  The pool configuration
+     * is not considered.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DatabaseContext)) {
+            return false;
+        }
+        DatabaseContext ctx = (DatabaseContext) o;
+        return port == ctx.port &&
+                Objects.equals(host, ctx.host) &&
+                Objects.equals(username, ctx.username) &&
+                Objects.equals(password, ctx.password) &&
+                Objects.equals(schema, ctx.schema);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, username, password, schema);
+    }
 }
@@ -1,24 +1,86 @@
 package gov.nist.csd.pm.pip.db.neo4j;
 
 import gov.nist.csd.pm.common.exceptions.PMDBException;
+import gov.nist.csd.pm.pip.db.ConnectionPoolConfig;
+import gov.nist.csd.pm.pip.db.DatabaseContext;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Object that stores a connection to a neo4j database.
+ * A bounded pool of connections to a Neo4j database.  Connections returned by getConnection() are borrowed from the
+ * pool and are returned to the pool when they are closed, so callers can keep using try-with-resources. There is one
+ * pool per DatabaseContext, which is shared by all of the DAOs that use that context.
  */
 public class Neo4jConnection {
 
+    /**
+     * The pools that have been created, keyed by the database context they connect to.
+     */
+    private static final Map<DatabaseContext, Neo4jConnection> POOLS = new HashMap<>();
+
     private String host;
     private int port;
     private String username;
     private String password;
 
+    private ConnectionPoolConfig            config;
+    private BlockingDeque<PooledConnection> idle;
+    private Semaphore                       permits;
+    private ScheduledExecutorService        evictor;
+    private volatile boolean                closed;
+
+    private AtomicInteger active          = new AtomicInteger();
+    private AtomicLong    borrows         = new AtomicLong();
+    private AtomicLong    timeouts        = new AtomicLong();
+    private AtomicLong    created         = new AtomicLong();
+    private AtomicLong    destroyed       = new AtomicLong();
+    private AtomicLong    totalWaitNano   = new AtomicLong();
+    private AtomicLong    maxWaitNano     = new AtomicLong();
+    private AtomicLong    statementHits   = new AtomicLong();
+    private AtomicLong    statementMisses = new AtomicLong();
+
+    /**
+     * Get the connection pool for the given database context.  If a pool does not exist for the context yet, one
+     * will be created using the context's pool configuration.
+     * @param ctx the database connection information.
+     * @return the connection pool for the given context.
+     * @throws PMDBException if the Neo4j driver could not be registered.
+     */
+    public static synchronized Neo4jConnection getPool(DatabaseContext ctx) throws PMDBException {
+        Neo4jConnection pool = POOLS.get(ctx);
+        if(pool == null || pool.closed) {
+            pool = new Neo4jConnection(ctx.getHost(), ctx.getPort(), ctx.getUsername(), ctx.getPassword(), ctx.getPoolConfig());
+            POOLS.put(ctx, pool);
+        }
+        return pool;
+    }
+
     /**
-     * Establishes a new connection to a Neo4j database.
+     * Close every connection pool that has been created.
+     */
+    public static synchronized void closePools() {
+        for(Neo4jConnection pool : POOLS.values()) {
+            pool.close();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Establishes a new connection pool for a Neo4j database using the default pool configuration.
      * @param host the hostname of the Neo4j instance.
      * @param port the port the Neo4j instance is running on.
      * @param username the name of the Neo4j user.
@@ -26,10 +88,26 @@ public class Neo4jConnection {
      * @throws PMDBException When there's ann error connecting to the Neo4j instance.
      */
     public Neo4jConnection(String host, int port, String username, String password) throws PMDBException {
+        this(host, port, username, password, new ConnectionPoolConfig());
+    }
+
+    /**
+     * Establishes a new connection pool for a Neo4j database.
+     * @param host the hostname of the Neo4j instance.
+     * @param port the port the Neo4j instance is running on.
+     * @param username the name of the Neo4j user.
+     * @param password the password of the Neo4j user.
+     * @param config the size and timeouts of the pool.
+     * @throws PMDBException When there's ann error connecting to the Neo4j instance.
+     */
+    public Neo4jConnection(String host, int port, String username, String password, ConnectionPoolConfig config) throws PMDBException {
         this.host = host;
         this.port = port;
         this.username = username;
         this.password = password;
+        this.config = config;
+        this.idle = new LinkedBlockingDeque<>();
+        this.permits = new Semaphore(config.getMaxSize(), true);
 
         try {
             Driver driver = new org.neo4j.jdbc.Driver();
@@ -37,18 +115,397 @@ public class Neo4jConnection {
         } catch (SQLException e) {
             throw new PMDBException(e.getMessage());
         }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "neo4j-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, config.getEvictionInterval(),
+                config.getEvictionInterval(), TimeUnit.MILLISECONDS);
     }
 
     /**
+     * Borrow a connection from the pool.  Closing the returned connection returns it to the pool. If all connections
+     * are in use, wait up to the configured borrow timeout for one to be returned.
      * @return the connection to the Neo4j instance.
-     * @throws PMDBException if there is an error establishing the connection.
+     * @throws PMDBException if there is an error establishing the connection, or if no connection became available
+     * before the borrow timeout.
      */
     public Connection getConnection() throws PMDBException {
+        if(closed) {
+            throw new PMDBException("the neo4j connection pool has been closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeout(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new PMDBException(String.format("timed out after %dms waiting for a neo4j connection (active=%d, idle=%d)",
+                        config.getBorrowTimeout(), active.get(), idle.size()));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PMDBException(e.getMessage());
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (validate(pooled)) {
+                    break;
+                }
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = open();
+            }
+
+            active.incrementAndGet();
+            borrows.incrementAndGet();
+            return pooled.proxy();
+        }
+        catch (PMDBException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return a snapshot of the current state of the pool.
+     */
+    public Metrics getMetrics() {
+        long count = borrows.get();
+        return new Metrics(active.get(), idle.size(), config.getMaxSize(), permits.getQueueLength(), count,
+                timeouts.get(), created.get(), destroyed.get(),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNano.get() / count),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNano.get()), statementHits.get(), statementMisses.get());
+    }
+
+    /**
+     * Close all idle connections and stop the evictor.  Connections that are currently borrowed will be closed when
+     * they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    private PooledConnection open() throws PMDBException {
         try {
-            return DriverManager.getConnection("jdbc:neo4j:bolt://" + host + ":" + port + "", username, password);
+            Connection conn = DriverManager.getConnection("jdbc:neo4j:bolt://" + host + ":" + port + "", username, password);
+            created.incrementAndGet();
+            return new PooledConnection(conn);
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
         }
     }
+
+    /**
+     * A connection is valid if it is open.  If it has been idle for longer than the validation interval, also check
+     * that the database can still be reached through it.
+     */
+    private boolean validate(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            long idleTime = System.currentTimeMillis() - pooled.lastUsed;
+            if (idleTime < config.getValidationInterval()) {
+                return true;
+            }
+            int timeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(config.getBorrowTimeout()));
+            return pooled.physical.isValid(timeout);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Return a borrowed connection to the pool.  Any open transaction is rolled back so the next borrower gets a
+     * connection in auto commit mode.
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        }
+        catch (SQLException e) {
+            destroy(pooled);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        destroyed.incrementAndGet();
+        try {
+            pooled.physical.close();
+        }
+        catch (SQLException e) {
+            // the connection is being discarded so there is nothing else to do
+        }
+    }
+
+    /**
+     * Close connections that have been idle for longer than the idle timeout, leaving at least the minimum number of
+     * idle connections open. Idle connections are returned to the head of the deque, so the oldest are at the tail.
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        while (idle.size() > config.getMinIdle()) {
+            PooledConnection oldest = idle.peekLast();
+            if (oldest == null || now - oldest.lastUsed < config.getIdleTimeout()) {
+                return;
+            }
+            if (idle.removeLastOccurrence(oldest)) {
+                destroy(oldest);
+            }
+        }
+    }
+
+    private void recordWait(long waitNano) {
+        totalWaitNano.addAndGet(waitNano);
+        long max;
+        while (waitNano > (max = maxWaitNano.get())) {
+            if (maxWaitNano.compareAndSet(max, waitNano)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Call the given method on the target, unwrapping any exception thrown by the method.
+     */
+    private static Object delegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.  Each connection keeps an LRU cache of the statements prepared on it,
+     * keyed by the cypher text.  Since the cypher used by the DAOs is a fixed set of parameterized templates, a statement
+     * is only prepared once per connection.
+     */
+    private class PooledConnection {
+        private Connection physical;
+        private volatile long lastUsed;
+        private LinkedHashMap<String, PreparedStatement> statements;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.lastUsed = System.currentTimeMillis();
+            this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= config.getStatementCacheSize()) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Create a handle to this connection for a single borrower.  Closing the handle returns the connection to the
+         * pool, any other call is passed to the physical connection.
+         */
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                    new Handle(this));
+        }
+
+        /**
+         * Get the cached statement for the given cypher, or prepare and cache a new one.  The returned statement
+         * ignores close() so it stays open in the cache.
+         */
+        PreparedStatement prepare(String cypher) throws SQLException {
+            if (config.getStatementCacheSize() <= 0) {
+                statementMisses.incrementAndGet();
+                return physical.prepareStatement(cypher);
+            }
+
+            PreparedStatement stmt = statements.get(cypher);
+            if (stmt != null && !stmt.isClosed()) {
+                statementHits.incrementAndGet();
+                stmt.clearParameters();
+            } else {
+                statementMisses.incrementAndGet();
+                stmt = physical.prepareStatement(cypher);
+                statements.put(cypher, stmt);
+            }
+
+            PreparedStatement cached = stmt;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            return null;
+                        }
+                        return delegate(cached, method, args);
+                    });
+        }
+
+        private void closeQuietly(PreparedStatement stmt) {
+            try {
+                stmt.close();
+            }
+            catch (SQLException e) {
+                // the statement is being discarded so there is nothing else to do
+            }
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        private PooledConnection pooled;
+        private boolean          released;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (released) {
+                        throw new SQLException("the connection has been returned to the pool");
+                    }
+                    if (method.getName().equals("prepareStatement") && args.length == 1) {
+                        return pooled.prepare((String) args[0]);
+                    }
+                    return delegate(pooled.physical, method, args);
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the state of a connection pool.  Wait times are in microseconds.
+     */
+    public static class Metrics {
+        private int  active;
+        private int  idle;
+        private int  maxSize;
+        private int  waiting;
+        private long borrows;
+        private long timeouts;
+        private long created;
+        private long destroyed;
+        private long avgWait;
+        private long maxWait;
+        private long statementHits;
+        private long statementMisses;
+
+        Metrics(int active, int idle, int maxSize, int waiting, long borrows, long timeouts, long created,
+                long destroyed, long avgWait, long maxWait, long statementHits, long statementMisses) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.waiting = waiting;
+            this.borrows = borrows;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.avgWait = avgWait;
+            this.maxWait = maxWait;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        public long getAvgWait() {
+            return avgWait;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        /**
+         * @return the fraction of statements that were served from a connection's statement cache.
+         */
+        public double getStatementHitRate() {
+            long total = statementHits + statementMisses;
+            return total == 0 ? 0 : (double) statementHits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d max=%d waiting=%d borrows=%d timeouts=%d created=%d destroyed=%d avgWait=%dus maxWait=%dus statementHitRate=%.2f",
+                    active, idle, maxSize, waiting, borrows, timeouts, created, destroyed, avgWait, maxWait, getStatementHitRate());
+        }
+    }
 }
@@ -3,7 +3,9 @@ package gov.nist.csd.pm.pip.db.neo4j;
 import gov.nist.csd.pm.common.exceptions.PMDBException;
 import gov.nist.csd.pm.common.exceptions.PMGraphException;
 import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.RelationshipType;
 
@@ -24,6 +26,18 @@ public class Neo4jHelper {
     public static final String TYPE_PROPERTY       = "type";
     public static final String OPERATIONS_PROPERTY = "operations";
 
+    /**
+     * Cypher to read prohibitions in one pass.  The %s is the property map to match the prohibition on (empty for all
+     * prohibitions).  The nodes are collected into a list so each prohibition is one row, which can be converted with
+     * getProhibitionFromResultSet.
+     */
+    public static final String PROHIBITIONS_CYPHER =
+            "match(p:prohibition%s) " +
+            "optional match(p)<-[:prohibition]-(n:prohibition_node) with p, collect(n) as nodes " +
+            "optional match(p)<-[:prohibition]-(s:prohibition_subject) " +
+            "return p.name, p.operations, p.intersection, s.subjectID, s.subjectType, " +
+            "[n in nodes | {id: n.id, complement: n.complement}]";
+
     public enum RelTypes implements RelationshipType
     {
         ASSIGNED_TO,
@@ -53,6 +67,39 @@ public class Neo4jHelper {
         }
     }
 
+    /**
+     * Convert the current row of a ResultSet returned by PROHIBITIONS_CYPHER to a Prohibition.
+     *
+     * @param rs the ResultSet positioned at the row to convert.
+     * @return the Prohibition the row represents.
+     * @throws SQLException if there is an error reading the row.
+     * @throws PMException if there is an error converting the subject type.
+     */
+    public static Prohibition getProhibitionFromResultSet(ResultSet rs) throws SQLException, PMException {
+        String name = rs.getString(1);
+        HashSet<String> ops = getStringSetFromJson(rs.getString(2));
+        boolean inter = rs.getBoolean(3);
+
+        Prohibition.Subject subject = null;
+        String subjectType = rs.getString(5);
+        if (subjectType != null) {
+            subject = new Prohibition.Subject(rs.getLong(4), Prohibition.Subject.Type.toType(subjectType));
+        }
+
+        List<Prohibition.Node> nodes = new ArrayList<>();
+        List rows = (List) rs.getObject(6);
+        if (rows != null) {
+            for (Object o : rows) {
+                Map map = (Map) o;
+                long id = ((Number) map.get("id")).longValue();
+                boolean comp = Boolean.TRUE.equals(map.get("complement"));
+                nodes.add(new Prohibition.Node(id, comp));
+            }
+        }
+
+        return new Prohibition(name, subject, nodes, ops, inter);
+    }
+
     /**
      * Given a map of properties representing a Node, return a Node object.  If the given map is null, then return null.
      * @param map the map to convert into a Node
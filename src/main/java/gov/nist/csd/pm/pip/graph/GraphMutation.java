@@ -0,0 +1,127 @@
+package gov.nist.csd.pm.pip.graph;
+
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One change to a graph, recorded so a group of changes can be written to the database in one transaction with
+ * Neo4jGraph.write() and then applied to an in-memory graph.  The source and target are the node for node changes, the
+ * child and parent for assignments, and the user attribute and target for associations.
+ */
+public class GraphMutation {
+
+    public enum Kind {
+        CREATE_NODE,
+        UPDATE_NODE,
+        DELETE_NODE,
+        ASSIGN,
+        DEASSIGN,
+        ASSOCIATE,
+        DISSOCIATE
+    }
+
+    private Kind                kind;
+    private long                sourceID;
+    private long                targetID;
+    private String              name;
+    private NodeType            type;
+    private Map<String, String> properties;
+    private Set<String>         operations;
+
+    private GraphMutation(Kind kind, long sourceID, long targetID) {
+        this.kind = kind;
+        this.sourceID = sourceID;
+        this.targetID = targetID;
+    }
+
+    public static GraphMutation createNode(long id, String name, NodeType type, Map<String, String> properties) {
+        GraphMutation mutation = new GraphMutation(Kind.CREATE_NODE, id, 0);
+        mutation.name = name;
+        mutation.type = type;
+        mutation.properties = properties == null ? new HashMap<>() : new HashMap<>(properties);
+        return mutation;
+    }
+
+    /**
+     * The full state of the node is needed because neo4j replaces all of a node's properties when it is updated.
+     */
+    public static GraphMutation updateNode(long id, String name, NodeType type, Map<String, String> properties) {
+        GraphMutation mutation = createNode(id, name, type, properties);
+        mutation.kind = Kind.UPDATE_NODE;
+        return mutation;
+    }
+
+    /**
+     * The type is not needed to delete the node, but lets whoever is told about the change know what kind of node was
+     * deleted.  It is null if the node did not exist.
+     */
+    public static GraphMutation deleteNode(long id, NodeType type) {
+        GraphMutation mutation = new GraphMutation(Kind.DELETE_NODE, id, 0);
+        mutation.type = type;
+        return mutation;
+    }
+
+    public static GraphMutation assign(long childID, long parentID) {
+        return new GraphMutation(Kind.ASSIGN, childID, parentID);
+    }
+
+    public static GraphMutation deassign(long childID, long parentID) {
+        return new GraphMutation(Kind.DEASSIGN, childID, parentID);
+    }
+
+    /**
+     * The operations are copied but not registered with the OperationRegistry, as the association may not be
+     * committed.  They are registered when the association is added to the in-memory graph.
+     * @throws IllegalArgumentException if an operation is null.
+     */
+    public static GraphMutation associate(long uaID, long targetID, Set<String> operations) {
+        Set<String> copy = new HashSet<>();
+        for (String operation : operations) {
+            if (operation == null) {
+                throw new IllegalArgumentException("an operation cannot be null");
+            }
+            copy.add(operation);
+        }
+
+        GraphMutation mutation = new GraphMutation(Kind.ASSOCIATE, uaID, targetID);
+        mutation.operations = Collections.unmodifiableSet(copy);
+        return mutation;
+    }
+
+    public static GraphMutation dissociate(long uaID, long targetID) {
+        return new GraphMutation(Kind.DISSOCIATE, uaID, targetID);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getSourceID() {
+        return sourceID;
+    }
+
+    public long getTargetID() {
+        return targetID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public Set<String> getOperations() {
+        return operations;
+    }
+}
@@ -2,6 +2,7 @@ package gov.nist.csd.pm.pip.graph;
 
 import gov.nist.csd.pm.common.exceptions.PMDBException;
 import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.common.util.OperationSet;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.Graph;
 import gov.nist.csd.pm.graph.model.nodes.Node;
@@ -25,34 +26,206 @@ import static gov.nist.csd.pm.pip.db.neo4j.Neo4jHelper.mapToNode;
  */
 public class Neo4jGraph implements Graph {
 
+    /*
+     * Cypher templates for each operation.  Values are always sent as parameters so the query text is the same for
+     * every call, which lets Neo4j reuse the query plan and lets the connection pool reuse the prepared statement.
+     * Labels cannot be parameters, so templates that need the node type as a label are formatted with the type first.
+     * Every lookup by ID matches on the NODE label so the planner can seek on the unique NODE(id) index.
+     *
+     * Every write stamps what it creates or changes with the database time in _epoch, and, when tombstones are enabled,
+     * every delete leaves a pm_tombstone with the time, so a PAP started from a snapshot can catch up on the changes
+     * made after it.
+     */
+    private static final String CREATE_NODE_CYPHER              = "create(n:NODE:%s) set n = {1}, n._epoch = timestamp()";
+    private static final String UPDATE_NODE_CYPHER              = "match(n:NODE{id:{1}}) set n = {2}, n._epoch = timestamp()";
+    private static final String DELETE_NODE_CYPHER              = "match(n:NODE{id:{1}}) detach delete n";
+    private static final String EXISTS_CYPHER                   = "match(n:NODE{id:{1}}) return n.id";
+    private static final String GET_NODES_CYPHER                = "match(n:NODE) return n";
+    private static final String GET_NODE_CYPHER                 = "match(n:NODE{id:{1}}) return n";
+    private static final String SEARCH_CYPHER                   = "match(n:NODE%s) where ({1} is null or n.name = {1}) " +
+            "and all(key in keys({2}) where n[key] = {2}[key]) return n";
+    private static final String GET_POLICIES_CYPHER             = "match(n:PC) return n.id";
+    private static final String GET_CHILDREN_CYPHER             = "match(n:NODE{id:{1}})<-[:assigned_to]-(m) return m.id";
+    private static final String GET_PARENTS_CYPHER              = "match(n:NODE{id:{1}})-[:assigned_to]->(m) return m.id";
+    private static final String ASSIGN_CYPHER                   = "match(a:NODE{id:{1}}), (b:NODE{id:{2}}) " +
+            "create (a)-[:assigned_to{_epoch: timestamp()}]->(b)";
+    private static final String DEASSIGN_CYPHER                 = "match(a:NODE{id:{1}})-[r:assigned_to]->(b:NODE{id:{2}}) delete r";
+    private static final String ASSOCIATE_CYPHER                = "match(ua:NODE:UA{id:{1}}), (target:NODE{id:{2}}) " +
+            "merge (ua)-[a:associated_with]->(target) set a.operations = {3}, a._epoch = timestamp()";
+    private static final String DISSOCIATE_CYPHER               = "match(ua:NODE:UA{id:{1}})-[r:associated_with]->(target:NODE{id:{2}}) delete r";
+    private static final String NODE_TOMBSTONE_CYPHER           = " create (:pm_tombstone{kind: 'node', id: {1}, _epoch: timestamp()})";
+    private static final String ASSIGNMENT_TOMBSTONE_CYPHER     = " create (:pm_tombstone{kind: 'assignment', id: {1}, target: {2}, _epoch: timestamp()})";
+    private static final String ASSOCIATION_TOMBSTONE_CYPHER    = " create (:pm_tombstone{kind: 'association', id: {1}, target: {2}, _epoch: timestamp()})";
+    private static final String GET_SOURCE_ASSOCIATIONS_CYPHER  = "match(source:NODE:UA{id:{1}})-[a:associated_with]->(target) return target.id, a.operations";
+    private static final String GET_TARGET_ASSOCIATIONS_CYPHER  = "match(source)-[a:associated_with]->(target:NODE{id:{1}}) return source.id, a.operations";
+
+    /*
+     * Bulk templates.  Each one writes a whole chunk of elements in one statement by unwinding a list parameter.
+     */
+    private static final String CREATE_NODES_CYPHER             = "unwind {1} as props create(n:NODE:%s) set n = props, n._epoch = timestamp()";
+    private static final String GET_TYPES_CYPHER                = "unwind {1} as id match(n:NODE{id:id}) return n.id, n.type";
+    private static final String ASSIGN_ALL_CYPHER               = "unwind {1} as row match(a:NODE{id:row.child}), (b:NODE{id:row.parent}) " +
+            "create (a)-[:assigned_to{_epoch: timestamp()}]->(b)";
+    private static final String ASSOCIATE_ALL_CYPHER            = "unwind {1} as row match(ua:NODE:UA{id:row.ua}), (target:NODE{id:row.target}) " +
+            "merge (ua)-[a:associated_with]->(target) set a.operations = row.operations, a._epoch = timestamp()";
+
+    /**
+     * The default number of elements written per statement by the bulk methods.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /*
+     * Schema statements for the NODE(id) uniqueness constraint.  A unique constraint is backed by an index, so it
+     * replaces the plain index created by earlier versions, which has to be dropped before the constraint can be added.
+     */
+    private static final String CREATE_ID_CONSTRAINT_CYPHER     = "create constraint on (n:NODE) assert n.id is unique";
+    private static final String DROP_ID_INDEX_CYPHER            = "drop index on :NODE(id)";
+    private static final String ID_INDEX_CONFLICT_MESSAGE       = "already exists an index";
+    private static final String GET_INDEXES_CYPHER              = "call db.indexes() yield description, state, type return description, state, type";
+    private static final String ID_INDEX_DESCRIPTION            = ":NODE(id)";
+
     /**
-     * Object to store a connection to a Neo4j database.
+     * The connection information of the database, and its connection pool, shared with the other DAOs using the same
+     * context.
      */
+    private DatabaseContext ctx;
     private Neo4jConnection neo4j;
 
     /**
-     * Receive context information about the database connection, and create a new connection to the Neo4j instance.
+     * The maximum number of elements the bulk methods write in one statement and transaction.
+     */
+    private int batchSize;
+
+    /**
+     * The statements for deletes, which leave a tombstone if tombstones are enabled.
+     */
+    private String deleteNodeCypher;
+    private String deassignCypher;
+    private String dissociateCypher;
+
+    /**
+     * Receive context information about the database connection, and get the connection pool for the Neo4j instance.
      * @param ctx Context information about the Neo4j connection.
      * @throws PMDBException When there is an error connecting to Neo4j.
      */
     public Neo4jGraph(DatabaseContext ctx) throws PMDBException {
-        this.neo4j = new Neo4jConnection(ctx.getHost(), ctx.getPort(), ctx.getUsername(), ctx.getPassword());
+        this(ctx, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Receive context information about the database connection, and get the connection pool for the Neo4j instance.
+     * @param ctx Context information about the Neo4j connection.
+     * @param batchSize the number of elements the bulk methods write per chunk.
+     * @throws PMDBException When there is an error connecting to Neo4j.
+     * @throws IllegalArgumentException if the batch size is less than 1.
+     */
+    public Neo4jGraph(DatabaseContext ctx, int batchSize) throws PMDBException {
+        this(ctx, batchSize, true);
+    }
+
+    /**
+     * Receive context information about the database connection, and get the connection pool for the Neo4j instance.
+     * @param ctx Context information about the Neo4j connection.
+     * @param batchSize the number of elements the bulk methods write per chunk.
+     * @param tombstones true to leave a pm_tombstone for every delete, which is only needed to catch up a snapshot.
+     * @throws PMDBException When there is an error connecting to Neo4j.
+     * @throws IllegalArgumentException if the batch size is less than 1.
+     */
+    public Neo4jGraph(DatabaseContext ctx, int batchSize, boolean tombstones) throws PMDBException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("the batch size must be at least 1");
+        }
+
+        this.ctx = ctx;
+        this.neo4j = Neo4jConnection.getPool(ctx);
+        this.batchSize = batchSize;
+        this.deleteNodeCypher = tombstones ? DELETE_NODE_CYPHER + NODE_TOMBSTONE_CYPHER : DELETE_NODE_CYPHER;
+        this.deassignCypher = tombstones ? DEASSIGN_CYPHER + ASSIGNMENT_TOMBSTONE_CYPHER : DEASSIGN_CYPHER;
+        this.dissociateCypher = tombstones ? DISSOCIATE_CYPHER + ASSOCIATION_TOMBSTONE_CYPHER : DISSOCIATE_CYPHER;
+
+        createIdConstraint();
+        checkIdIndex();
+    }
+
+    /**
+     * Make sure node IDs are unique and indexed.  If the database has the plain NODE(id) index from an earlier version,
+     * drop it and create the constraint in its place.
+     * @throws PMDBException if the constraint could not be created, for example if there are duplicate node IDs.
+     */
+    private void createIdConstraint() throws PMDBException {
+        try {
+            execute(CREATE_ID_CONSTRAINT_CYPHER);
+        }
+        catch (SQLException e) {
+            if (!isIndexConflict(e)) {
+                throw new PMDBException(String.format("could not create the unique constraint on node IDs: %s", e.getMessage()));
+            }
+
+            try {
+                execute(DROP_ID_INDEX_CYPHER);
+                execute(CREATE_ID_CONSTRAINT_CYPHER);
+            }
+            catch (SQLException e1) {
+                throw new PMDBException(String.format("could not replace the NODE(id) index with a unique constraint: %s (first attempt: %s)",
+                        e1.getMessage(), e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * @param e the error from creating the NODE(id) constraint.
+     * @return true if the constraint could not be created because a plain index on NODE(id) already exists.
+     */
+    private static boolean isIndexConflict(SQLException e) {
+        String message = e.getMessage();
+        return message != null && message.contains(ID_INDEX_CONFLICT_MESSAGE);
+    }
+
+    /**
+     * Check that the index backing the NODE(id) constraint is online and unique.  Every lookup by ID is planned as a
+     * seek on this index, if it is missing or still populating the lookups fall back to scanning all NODEs.
+     * @throws PMDBException if the index does not exist, is not unique, or has failed.
+     */
+    private void checkIdIndex() throws PMDBException {
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(GET_INDEXES_CYPHER);
+                ResultSet rs = stmt.executeQuery()
+        ) {
+            while (rs.next()) {
+                String description = rs.getString(1);
+                if (description == null || !description.contains(ID_INDEX_DESCRIPTION)) {
+                    continue;
+                }
+
+                String state = rs.getString(2);
+                String type = rs.getString(3);
+                if (type == null || !type.toLowerCase().contains("unique")) {
+                    throw new PMDBException(String.format("the index %s is not unique (%s)", description, type));
+                } else if ("FAILED".equalsIgnoreCase(state)) {
+                    throw new PMDBException(String.format("the index %s has failed", description));
+                }
+                return;
+            }
+            throw new PMDBException(String.format("there is no index on %s, node lookups will scan every node", ID_INDEX_DESCRIPTION));
+        }
+        catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+    }
 
-        // create an index on node IDs
-        // this will improve read performance
-        String cypher = "create index on :NODE(id)";
+    private void execute(String cypher) throws PMDBException, SQLException {
         try (
                 Connection conn = neo4j.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(cypher)
         ) {
             stmt.executeQuery();
-        } catch (SQLException e) {
-            throw new PMDBException(e.getMessage());
         }
     }
 
     /**
-     * Create a new node with the information provided in node. The ID is a random long value.
+     * Create a new node with the information provided in node. The ID is chosen by the caller, normally from the
+     * PAP's IDAllocator, which reserves IDs from the sequence kept by Neo4jIDBlockSource.
      *
      * @return the ID of the created node.
      * @throws IllegalArgumentException if the ID is 0.
@@ -75,26 +248,12 @@ public class Neo4jGraph implements Graph {
            properties = new HashMap<>();
         }
 
-        // generate a random ID
-        String cypher = String.format("create(n:NODE:%s{id: %d, name: '%s', type: '%s'})",
-                nodeType, id,name, nodeType);
-
-        // build a string for the node's properties
-        StringBuilder propStr = new StringBuilder();
-        for (String key : properties.keySet()) {
-            if (propStr.length() == 0) {
-                propStr.append(String.format("%s: '%s'", key, properties.get(key)));
-            }
-            else {
-                propStr.append(String.format(", %s: '%s'", key, properties.get(key)));
-            }
-        }
-        cypher += String.format(" set n += {%s}", propStr.toString());
-
+        String cypher = String.format(CREATE_NODE_CYPHER, nodeType);
         try(
                 Connection conn = neo4j.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(cypher)
         ) {
+            stmt.setObject(1, toNodeMap(id, name, nodeType, properties));
             stmt.executeQuery();
             return new Node(id, name, nodeType, properties);
         } catch (SQLException e) {
@@ -117,43 +276,21 @@ public class Neo4jGraph implements Graph {
         }
 
         Node exNode = getNode(id);
-
-        String cypher = String.format("match(n:NODE:%s{id:%d}) set n={} ", exNode.getType(), id);
-        // have to reset the ID etc because neo4j will erase all properties
-        // build a string for the node's name and properties
-        StringBuilder propStr = new StringBuilder();
-        propStr.append(String.format("id: %s", id));
-        propStr.append(String.format(", type: '%s'", exNode.getType()));
-        if (name != null && !name.isEmpty()) {
-            propStr.append(String.format(", name: '%s'", name));
-        } else {
-            propStr.append(String.format(", name: '%s'", exNode.getName()));
+        if (name == null || name.isEmpty()) {
+            name = exNode.getName();
         }
 
-        if (properties != null) {
-            for (String key : properties.keySet()) {
-                if (propStr.length() == 0) {
-                    propStr.append(String.format("%s: '%s'", key, properties.get(key)));
-                }
-                else {
-                    propStr.append(String.format(", %s: '%s'", key, properties.get(key)));
-                }
-            }
+        // have to reset the ID etc because neo4j will erase all properties
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(UPDATE_NODE_CYPHER)
+        ) {
+            stmt.setLong(1, id);
+            stmt.setObject(2, toNodeMap(id, name, exNode.getType(), properties));
+            stmt.executeQuery();
         }
-
-        // if name or properties are being updated, send to Neo4j
-        if (propStr.length() > 0) {
-            cypher += String.format(" set n += {%s}", propStr.toString());
-
-            try (
-                    Connection conn = neo4j.getConnection();
-                    PreparedStatement stmt = conn.prepareStatement(cypher)
-            ) {
-                stmt.executeQuery();
-            }
-            catch (SQLException e) {
-                throw new PMDBException(e.getMessage());
-            }
+        catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
         }
     }
 
@@ -164,11 +301,11 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public void deleteNode(long nodeID) throws PMDBException {
-        String cypher = String.format("MATCH (n) where n.id=%d DETACH DELETE n", nodeID);
         try (
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher)
+                PreparedStatement stmt = conn.prepareStatement(deleteNodeCypher)
         ) {
+            stmt.setLong(1, nodeID);
             stmt.executeQuery();
         }
         catch (SQLException e) {
@@ -184,13 +321,14 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public boolean exists(long nodeID) throws PMDBException {
-        String cypher = String.format("match(n{id: %d}) return n", nodeID);
         try (
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(EXISTS_CYPHER)
         ) {
-            return rs.next();
+            stmt.setLong(1, nodeID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
@@ -205,10 +343,9 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public Collection<Node> getNodes() throws PMDBException {
-        String cypher = "match(n:NODE) return n";
         try (
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
+                PreparedStatement stmt = conn.prepareStatement(GET_NODES_CYPHER);
                 ResultSet rs = stmt.executeQuery()
         ) {
             HashSet<Node> nodes = new HashSet<>();
@@ -237,17 +374,16 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public Node getNode(long id) throws PMDBException, PMGraphException {
-        // get the cypher query
-        String cypher = String.format("match(n{id:%d}) return n", id);
-        // query neo4j for the nodes
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(GET_NODE_CYPHER)
         ) {
-            if(rs.next()) {
-                HashMap map = (HashMap) rs.getObject(1);
-                return Neo4jHelper.mapToNode(map);
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    HashMap map = (HashMap) rs.getObject(1);
+                    return Neo4jHelper.mapToNode(map);
+                }
             }
             throw new PMGraphException(String.format("node with ID %d does not exist", id));
         }
@@ -268,43 +404,35 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public Set<Node> search(String name, String type, Map<String, String> properties) throws PMDBException, PMGraphException {
-        // get the cypher query
-        String cypher = getSearchCypher(name, type, properties);
-        // query neo4j for the nodes
-        try(
-                Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
-        ) {
-            return Neo4jHelper.getNodesFromResultSet(rs);
-        } catch (SQLException e) {
-            throw new PMDBException(e.getMessage());
-        }
-    }
-
-    private static String getSearchCypher(String name, String type, Map<String,String> properties) {
-        String propsStr = "";
-        if (name != null && !name.isEmpty()){
-            propsStr = String.format("name: \"%s\"", name);
-        }
-
+        // the type is the only part of the search that is a label, the name and properties are parameters
         String typeStr = "";
         if (type != null && !type.isEmpty()){
-            typeStr = String.format(":%s", type);
+            NodeType nodeType = NodeType.toNodeType(type);
+            if (nodeType == null) {
+                return new HashSet<>();
+            }
+            typeStr = ":" + nodeType;
+        }
+        if (name != null && name.isEmpty()) {
+            name = null;
+        }
+        if (properties == null) {
+            properties = new HashMap<>();
         }
 
-        if (properties != null) {
-            for (String key : properties.keySet()) {
-                String value = properties.get(key);
-                if (propsStr.isEmpty()) {
-                    propsStr += String.format("%s: \"%s\"", key, value);
-                } else {
-                    propsStr += String.format(", %s: \"%s\"", key, value);
-                }
+        String cypher = String.format(SEARCH_CYPHER, typeStr);
+        try(
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(cypher)
+        ) {
+            stmt.setObject(1, name);
+            stmt.setObject(2, new HashMap<String, Object>(properties));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return Neo4jHelper.getNodesFromResultSet(rs);
             }
+        } catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
         }
-
-        return String.format("match(n%s{%s}) return n", typeStr, propsStr);
     }
 
     /**
@@ -315,10 +443,9 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public HashSet<Long> getPolicies() throws PMDBException {
-        String cypher = "match(n) where n:PC return n.id";
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
+                PreparedStatement stmt = conn.prepareStatement(GET_POLICIES_CYPHER);
                 ResultSet rs = stmt.executeQuery()
         ) {
             HashSet<Long> nodeIDs = new HashSet<>();
@@ -340,17 +467,18 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public Set<Long> getChildren(long nodeID) throws PMDBException, PMGraphException {
-        String cypher = String.format("match(n{id:%d})<-[:assigned_to]-(m) return m.id", nodeID);
         try (
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(GET_CHILDREN_CYPHER)
         ) {
-            Set<Long> children = new HashSet<>();
-            while(rs.next()) {
-                children.add(rs.getLong(1));
+            stmt.setLong(1, nodeID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<Long> children = new HashSet<>();
+                while (rs.next()) {
+                    children.add(rs.getLong(1));
+                }
+                return children;
             }
-            return children;
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
@@ -366,17 +494,18 @@ public class Neo4jGraph implements Graph {
      */
     @Override
     public Set<Long> getParents(long nodeID) throws PMDBException, PMGraphException {
-        String cypher = String.format("match(n{id:%d})-[:assigned_to]->(m) return m.id", nodeID);
         try (
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(GET_PARENTS_CYPHER)
         ) {
-            Set<Long> parents = new HashSet<>();
-            while(rs.next()) {
-                parents.add(rs.getLong(1));
+            stmt.setLong(1, nodeID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<Long> parents = new HashSet<>();
+                while (rs.next()) {
+                    parents.add(rs.getLong(1));
+                }
+                return parents;
             }
-            return parents;
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
@@ -397,13 +526,12 @@ public class Neo4jGraph implements Graph {
 
         Assignment.checkAssignment(child.getType(), parent.getType());
 
-        String cypher = String.format("MATCH (a:%s{id: %d}), (b:%s{id: %d}) " +
-                        "CREATE (a)-[:assigned_to]->(b)",child.getType(), child.getID(),
-                parent.getType(), parent.getID());
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher)
+                PreparedStatement stmt = conn.prepareStatement(ASSIGN_CYPHER)
         ){
+            stmt.setLong(1, child.getID());
+            stmt.setLong(2, parent.getID());
             stmt.executeQuery();
         }
         catch (SQLException e) {
@@ -423,12 +551,12 @@ public class Neo4jGraph implements Graph {
         Node child = getNode(childID);
         Node parent = getNode(parentID);
 
-        String cypher = String.format("match (a:%s{id: %d})-[r:assigned_to]->(b:%s{id: %d}) delete r",
-                child.getType(), child.getID(), parent.getType(), parent.getID());
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher)
+                PreparedStatement stmt = conn.prepareStatement(deassignCypher)
         ){
+            stmt.setLong(1, child.getID());
+            stmt.setLong(2, parent.getID());
             stmt.executeQuery();
         }
         catch (SQLException e) {
@@ -451,14 +579,13 @@ public class Neo4jGraph implements Graph {
 
         Association.checkAssociation(ua.getType(), target.getType());
 
-        String operationsStr = Neo4jHelper.setToCypherArray(operations);
-        String cypher = String.format("MATCH (ua:UA{id: %d}), (target:%s{id: %d}) " +
-                        "merge (ua)-[a:associated_with]->(target) set a.operations = %s", ua.getID(),
-                target.getType(), target.getID(), operationsStr);
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher)
+                PreparedStatement stmt = conn.prepareStatement(ASSOCIATE_CYPHER)
         ) {
+            stmt.setLong(1, ua.getID());
+            stmt.setLong(2, target.getID());
+            stmt.setObject(3, new ArrayList<>(operations));
             stmt.executeQuery();
         }
         catch (SQLException e) {
@@ -478,12 +605,12 @@ public class Neo4jGraph implements Graph {
         Node ua = getNode(uaID);
         Node target = getNode(targetID);
 
-        String cypher = String.format("match (ua:UA{id:%d})-[r:associated_with]->(target%s{id:%d}) delete r",
-                ua.getID(), target.getType(), target.getID());
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher)
+                PreparedStatement stmt = conn.prepareStatement(dissociateCypher)
         ) {
+            stmt.setLong(1, ua.getID());
+            stmt.setLong(2, target.getID());
             stmt.executeQuery();
         }
         catch (SQLException e) {
@@ -495,25 +622,27 @@ public class Neo4jGraph implements Graph {
      * Get the associations that the provided node is the source of. Note: Only user attributes can be source nodes in
      * an association.
      *
+     * The operations of each association are returned as an immutable OperationSet.
+     *
      * @return a map of target node IDs and operations given to the source node for each association.
      * @throws PMDBException if there is an exception retrieving the associations for the source node in the database.
      */
     @Override
     public Map<Long, Set<String>> getSourceAssociations(long sourceID) throws PMDBException {
-        String cypher = String.format("match(source:UA{id:%d})-[a:associated_with]->(target) return target.id, a.operations", sourceID);
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(GET_SOURCE_ASSOCIATIONS_CYPHER)
         ) {
-            Map<Long, Set<String>> associations = new HashMap<>();
-            while (rs.next()) {
-                long targetID = rs.getLong(1);
-                HashSet<String> opsSet = new HashSet<>((Collection<String>) rs.getObject(2));
-                associations.put(targetID, opsSet);
-            }
+            stmt.setLong(1, sourceID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Map<Long, Set<String>> associations = new HashMap<>();
+                while (rs.next()) {
+                    long targetID = rs.getLong(1);
+                    associations.put(targetID, OperationSet.of((Collection<String>) rs.getObject(2)));
+                }
 
-            return associations;
+                return associations;
+            }
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
@@ -524,28 +653,321 @@ public class Neo4jGraph implements Graph {
      * Get the associations that the provided node is the target of. Note: Only user attributes and Object Attributes
      * can be target nodes in an association.
      *
+     * The operations of each association are returned as an immutable OperationSet.
+     *
      * @return a map of source node IDs and operations the source nodes have on the given target ID through each association.
      * @throws PMDBException if there is an exception retrieving the associations for the target node in the database.
      */
     @Override
     public Map<Long, Set<String>> getTargetAssociations(long targetID) throws PMDBException {
-        String cypher = String.format("match(source)-[a:associated_with]->(target{id:%d}) return source.id, a.operations", targetID);
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(GET_TARGET_ASSOCIATIONS_CYPHER)
         ) {
-            Map<Long, Set<String>> associations = new HashMap<>();
-            while (rs.next()) {
-                long sourceID = rs.getLong(1);
-                HashSet<String> opsSet = new HashSet<>((Collection) rs.getObject(2));
-                associations.put(sourceID, opsSet);
+            stmt.setLong(1, targetID);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Map<Long, Set<String>> associations = new HashMap<>();
+                while (rs.next()) {
+                    long sourceID = rs.getLong(1);
+                    associations.put(sourceID, OperationSet.of((Collection<String>) rs.getObject(2)));
+                }
+
+                return associations;
             }
+        }
+        catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the connection information of the database.
+     */
+    public DatabaseContext getContext() {
+        return ctx;
+    }
 
-            return associations;
+    /**
+     * @return the maximum number of elements the bulk methods write in one statement and transaction.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Create all of the given nodes.  The nodes are written in chunks of the batch size, each chunk in its own
+     * transaction.  Labels cannot be parameters, so each chunk runs one UNWIND statement for every node type in it.
+     *
+     * @param nodes the nodes to create.
+     * @throws IllegalArgumentException if any node has an ID of 0, a null or empty name, or a null type.
+     * @throws PMDBException if there is an error creating the nodes in the database.  Chunks that committed before the
+     * error are not rolled back.
+     */
+    public void createNodes(Collection<Node> nodes) throws PMDBException {
+        for (Node node : nodes) {
+            if (node.getID() == 0) {
+                throw new IllegalArgumentException("id was 0");
+            } else if (node.getName() == null || node.getName().isEmpty()) {
+                throw new IllegalArgumentException("a null name was provided when creating a new node");
+            } else if (node.getType() == null) {
+                throw new IllegalArgumentException("a null type was provided when creating a new node");
+            }
+        }
+
+        for (List<Node> chunk : partition(nodes, batchSize)) {
+            Map<NodeType, List<Map<String, Object>>> byType = new EnumMap<>(NodeType.class);
+            for (Node node : chunk) {
+                byType.computeIfAbsent(node.getType(), k -> new ArrayList<>())
+                        .add(toNodeMap(node.getID(), node.getName(), node.getType(), node.getProperties()));
+            }
+
+            try (Connection conn = neo4j.getConnection()) {
+                inTransaction(conn, () -> {
+                    for (NodeType type : byType.keySet()) {
+                        try (PreparedStatement stmt = conn.prepareStatement(String.format(CREATE_NODES_CYPHER, type))) {
+                            stmt.setObject(1, byType.get(type));
+                            stmt.executeQuery();
+                        }
+                    }
+                });
+            }
+            catch (SQLException e) {
+                throw new PMDBException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Create all of the given assignments.  The types of the nodes in each chunk are read in one query to check each
+     * assignment is valid before anything in the chunk is written.  Each chunk is written in its own transaction.
+     *
+     * @param assignments the assignments to create.
+     * @throws PMGraphException if a node in an assignment does not exist, or an assignment is not valid.
+     * @throws PMDBException if there is an error creating the assignments in the database.  Chunks that committed
+     * before the error are not rolled back.
+     */
+    public void assignAll(Collection<Assignment> assignments) throws PMException {
+        for (List<Assignment> chunk : partition(assignments, batchSize)) {
+            Set<Long> ids = new HashSet<>();
+            for (Assignment assignment : chunk) {
+                ids.add(assignment.getSourceID());
+                ids.add(assignment.getTargetID());
+            }
+
+            try (Connection conn = neo4j.getConnection()) {
+                Map<Long, NodeType> types = getTypes(conn, ids);
+
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (Assignment assignment : chunk) {
+                    Assignment.checkAssignment(getType(types, assignment.getSourceID()), getType(types, assignment.getTargetID()));
+
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("child", assignment.getSourceID());
+                    row.put("parent", assignment.getTargetID());
+                    rows.add(row);
+                }
+
+                inTransaction(conn, () -> {
+                    try (PreparedStatement stmt = conn.prepareStatement(ASSIGN_ALL_CYPHER)) {
+                        stmt.setObject(1, rows);
+                        stmt.executeQuery();
+                    }
+                });
+            }
+            catch (SQLException e) {
+                throw new PMDBException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Create all of the given associations.  If an association already exists, its operations are replaced.  The types
+     * of the nodes in each chunk are read in one query to check each association is valid before anything in the chunk
+     * is written.  Each chunk is written in its own transaction.
+     *
+     * @param associations the associations to create.
+     * @throws PMGraphException if a node in an association does not exist, or an association is not valid.
+     * @throws PMDBException if there is an error creating the associations in the database.  Chunks that committed
+     * before the error are not rolled back.
+     */
+    public void associateAll(Collection<Association> associations) throws PMException {
+        for (List<Association> chunk : partition(associations, batchSize)) {
+            Set<Long> ids = new HashSet<>();
+            for (Association association : chunk) {
+                ids.add(association.getSourceID());
+                ids.add(association.getTargetID());
+            }
+
+            try (Connection conn = neo4j.getConnection()) {
+                Map<Long, NodeType> types = getTypes(conn, ids);
+
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (Association association : chunk) {
+                    Association.checkAssociation(getType(types, association.getSourceID()), getType(types, association.getTargetID()));
+
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("ua", association.getSourceID());
+                    row.put("target", association.getTargetID());
+                    row.put("operations", new ArrayList<>(association.getOperations()));
+                    rows.add(row);
+                }
+
+                inTransaction(conn, () -> {
+                    try (PreparedStatement stmt = conn.prepareStatement(ASSOCIATE_ALL_CYPHER)) {
+                        stmt.setObject(1, rows);
+                        stmt.executeQuery();
+                    }
+                });
+            }
+            catch (SQLException e) {
+                throw new PMDBException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write all of the given mutations, in order, in one transaction.  Either all of them are committed or none are.
+     * The mutations are expected to have been validated by the caller, for example against an in-memory graph, so no
+     * existence or type checks are made here.
+     *
+     * @param mutations the mutations to write.
+     * @throws PMDBException if there is an error writing a mutation, in which case the transaction is rolled back.
+     */
+    public void write(List<GraphMutation> mutations) throws PMDBException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = neo4j.getConnection()) {
+            inTransaction(conn, () -> {
+                for (GraphMutation mutation : mutations) {
+                    write(conn, mutation);
+                }
+            });
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
         }
     }
+
+    private void write(Connection conn, GraphMutation mutation) throws SQLException {
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+                try (PreparedStatement stmt = conn.prepareStatement(String.format(CREATE_NODE_CYPHER, mutation.getType()))) {
+                    stmt.setObject(1, toNodeMap(mutation.getSourceID(), mutation.getName(), mutation.getType(), mutation.getProperties()));
+                    stmt.executeQuery();
+                }
+                break;
+            case UPDATE_NODE:
+                try (PreparedStatement stmt = conn.prepareStatement(UPDATE_NODE_CYPHER)) {
+                    stmt.setLong(1, mutation.getSourceID());
+                    stmt.setObject(2, toNodeMap(mutation.getSourceID(), mutation.getName(), mutation.getType(), mutation.getProperties()));
+                    stmt.executeQuery();
+                }
+                break;
+            case DELETE_NODE:
+                try (PreparedStatement stmt = conn.prepareStatement(deleteNodeCypher)) {
+                    stmt.setLong(1, mutation.getSourceID());
+                    stmt.executeQuery();
+                }
+                break;
+            case ASSOCIATE:
+                try (PreparedStatement stmt = conn.prepareStatement(ASSOCIATE_CYPHER)) {
+                    stmt.setLong(1, mutation.getSourceID());
+                    stmt.setLong(2, mutation.getTargetID());
+                    stmt.setObject(3, new ArrayList<>(mutation.getOperations()));
+                    stmt.executeQuery();
+                }
+                break;
+            case ASSIGN:
+                writeRelationship(conn, ASSIGN_CYPHER, mutation);
+                break;
+            case DEASSIGN:
+                writeRelationship(conn, deassignCypher, mutation);
+                break;
+            case DISSOCIATE:
+                writeRelationship(conn, dissociateCypher, mutation);
+                break;
+        }
+    }
+
+    private void writeRelationship(Connection conn, String cypher, GraphMutation mutation) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(cypher)) {
+            stmt.setLong(1, mutation.getSourceID());
+            stmt.setLong(2, mutation.getTargetID());
+            stmt.executeQuery();
+        }
+    }
+
+    /**
+     * Split the given elements into lists of at most size elements, in iteration order.
+     */
+    public static <T> List<List<T>> partition(Collection<T> elements, int size) {
+        List<T> list = new ArrayList<>(elements);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            chunks.add(list.subList(i, Math.min(list.size(), i + size)));
+        }
+        return chunks;
+    }
+
+    private Map<Long, NodeType> getTypes(Connection conn, Set<Long> ids) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(GET_TYPES_CYPHER)) {
+            stmt.setObject(1, new ArrayList<>(ids));
+            try (ResultSet rs = stmt.executeQuery()) {
+                Map<Long, NodeType> types = new HashMap<>();
+                while (rs.next()) {
+                    types.put(rs.getLong(1), NodeType.toNodeType(rs.getString(2)));
+                }
+                return types;
+            }
+        }
+    }
+
+    private static NodeType getType(Map<Long, NodeType> types, long id) throws PMGraphException {
+        NodeType type = types.get(id);
+        if (type == null) {
+            throw new PMGraphException(String.format("node with ID %d does not exist", id));
+        }
+        return type;
+    }
+
+    /**
+     * Run the given work in one transaction on the connection, committing if it completes and rolling back if it throws.
+     * Anything the work throws is rolled back before autocommit is restored, because restoring it commits the open
+     * transaction.
+     */
+    private static void inTransaction(Connection conn, SQLWork work) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            work.run();
+            conn.commit();
+        }
+        catch (SQLException | RuntimeException | Error e) {
+            conn.rollback();
+            throw e;
+        }
+        finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private interface SQLWork {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Build the parameter map of neo4j properties for a node.  The node's properties are stored alongside the id,
+     * name, and type.
+     */
+    private static Map<String, Object> toNodeMap(long id, String name, NodeType type, Map<String, String> properties) {
+        Map<String, Object> map = new HashMap<>();
+        if (properties != null) {
+            map.putAll(properties);
+        }
+        map.put("id", id);
+        map.put("name", name);
+        map.put("type", type.toString());
+        return map;
+    }
 }
@@ -0,0 +1,85 @@
+package gov.nist.csd.pm.pip.ids;
+
+import gov.nist.csd.pm.common.exceptions.PMDBException;
+import gov.nist.csd.pm.pap.ids.IDBlockSource;
+import gov.nist.csd.pm.pip.db.DatabaseContext;
+import gov.nist.csd.pm.pip.db.neo4j.Neo4jConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reserves node IDs from a sequence stored in Neo4j, so IDs are not reused after a restart and PAPs sharing a database
+ * do not allocate the same IDs.  The sequence is a pm_id_sequence node holding the next free ID.  Reserving a range
+ * reads and increments it in one statement, which Neo4j runs holding a write lock on the node.
+ *
+ * The sequence is created the first time it is needed, starting after the largest node ID in the database.  A unique
+ * constraint on pm_id_sequence(name) makes PAPs that create it at the same time share one sequence node, where the
+ * merge alone could create one each.
+ */
+public class Neo4jIDBlockSource implements IDBlockSource {
+
+    private static final String RESERVE_CYPHER = "match(s:pm_id_sequence{name: 'node'}) " +
+            "set s.next = case when s.next > {2} then s.next else {2} + 1 end + {1} return s.next - {1}";
+    private static final String CREATE_CYPHER  = "optional match(n:NODE) with coalesce(max(n.id), 0) as top " +
+            "merge(s:pm_id_sequence{name: 'node'}) on create set s.next = case when top > 0 then top + 1 else 1 end";
+    private static final String CREATE_CONSTRAINT_CYPHER = "create constraint on (s:pm_id_sequence) assert s.name is unique";
+
+    private Neo4jConnection neo4j;
+
+    /**
+     * @param ctx the database connection information.
+     * @throws PMDBException if there is an error establishing a connection to the Neo4j instance, or the unique
+     * constraint on the sequence could not be created, for example if there are duplicate sequences.
+     */
+    public Neo4jIDBlockSource(DatabaseContext ctx) throws PMDBException {
+        this.neo4j = Neo4jConnection.getPool(ctx);
+
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(CREATE_CONSTRAINT_CYPHER)
+        ) {
+            stmt.executeQuery().close();
+        }
+        catch (SQLException e) {
+            throw new PMDBException(String.format("could not create the unique constraint on the ID sequence: %s",
+                    e.getMessage()));
+        }
+    }
+
+    @Override
+    public synchronized long reserve(int size, long after) throws PMDBException {
+        if (after > Long.MAX_VALUE - size - 1) {
+            throw new PMDBException("there are no more node IDs after " + after);
+        }
+
+        try (Connection conn = neo4j.getConnection()) {
+            Long start = reserve(conn, size, after);
+            if (start == null) {
+                try (PreparedStatement stmt = conn.prepareStatement(CREATE_CYPHER)) {
+                    stmt.executeQuery().close();
+                }
+                start = reserve(conn, size, after);
+            }
+            if (start == null || start <= 0 || start > Long.MAX_VALUE - size) {
+                throw new PMDBException("there are no more node IDs");
+            }
+            return start;
+        }
+        catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+    }
+
+    private static Long reserve(Connection conn, int size, long after) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RESERVE_CYPHER)) {
+            stmt.setInt(1, size);
+            stmt.setLong(2, after);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+}
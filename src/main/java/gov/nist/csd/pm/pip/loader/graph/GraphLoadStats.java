@@ -0,0 +1,49 @@
+package gov.nist.csd.pm.pip.loader.graph;
+
+/**
+ * The number of elements loaded into memory by a graph load and how long it took.
+ */
+public class GraphLoadStats {
+
+    private long nodes;
+    private long assignments;
+    private long associations;
+    private long elapsedMillis;
+
+    public GraphLoadStats(long nodes, long assignments, long associations, long elapsedMillis) {
+        this.nodes = nodes;
+        this.assignments = assignments;
+        this.associations = associations;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getAssignments() {
+        return assignments;
+    }
+
+    public long getAssociations() {
+        return associations;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the number of nodes, assignments, and associations loaded per second.
+     */
+    public double getElementsPerSecond() {
+        long total = nodes + assignments + associations;
+        return elapsedMillis == 0 ? total : total * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d nodes, %d assignments, %d associations in %dms (%.0f elements/s)",
+                nodes, assignments, associations, elapsedMillis, getElementsPerSecond());
+    }
+}
@@ -2,6 +2,9 @@ package gov.nist.csd.pm.pip.loader.graph;
 
 import gov.nist.csd.pm.common.exceptions.PMDBException;
 import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.common.util.OperationSet;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
 import gov.nist.csd.pm.graph.model.nodes.Node;
 import gov.nist.csd.pm.graph.model.relationships.Assignment;
 import gov.nist.csd.pm.graph.model.relationships.Association;
@@ -13,27 +16,96 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
 
 /**
  * A Neo4j implementation of the GraphLoader interface.
  */
 public class Neo4jGraphLoader implements GraphLoader {
 
+    private static final Logger LOGGER = Logger.getLogger(Neo4jGraphLoader.class.getName());
+
+    /*
+     * Keyset paged queries used by load().  Each page starts after the largest ID of the previous page ({1} is null for
+     * the first page) and covers at most {2} nodes.  Assignment and association pages cover all of the relationships
+     * of the nodes in the page, so a page can have more rows than the page size.
+     */
+    private static final String NODES_PAGE_CYPHER        = "match(n:NODE) where {1} is null or n.id > {1} " +
+            "return n.id, n order by n.id limit {2}";
+    private static final String ASSIGNMENTS_PAGE_CYPHER  = "match(n:NODE)-[:assigned_to]->() where {1} is null or n.id > {1} " +
+            "with distinct n order by n.id limit {2} " +
+            "match(n)-[:assigned_to]->(m) return n.id, m.id";
+    private static final String ASSOCIATIONS_PAGE_CYPHER = "match(ua:NODE:UA)-[:associated_with]->() where {1} is null or ua.id > {1} " +
+            "with distinct ua order by ua.id limit {2} " +
+            "match(ua)-[a:associated_with]->(target) return ua.id, target.id, a.operations";
+
+    /*
+     * Queries to catch a graph loaded from a snapshot up with the changes made after the snapshot's epoch.  Neo4jGraph
+     * stamps every write with _epoch and leaves a pm_tombstone for every delete.
+     */
+    private static final String EPOCH_CYPHER                 = "return timestamp()";
+    private static final String TOMBSTONES_SINCE_CYPHER      = "match(t:pm_tombstone) where t._epoch >= {1} and t.kind <> 'prohibition' " +
+            "return t.kind, t.id, t.target order by t._epoch";
+    private static final String NODES_SINCE_CYPHER           = "match(n:NODE) where n._epoch >= {1} return n";
+    private static final String ASSIGNMENTS_SINCE_CYPHER     = "match(n:NODE)-[r:assigned_to]->(m:NODE) where r._epoch >= {1} return n.id, m.id";
+    private static final String ASSOCIATIONS_SINCE_CYPHER    = "match(ua:NODE:UA)-[a:associated_with]->(target:NODE) where a._epoch >= {1} " +
+            "return ua.id, target.id, a.operations";
+    private static final String PROHIBITIONS_SINCE_CYPHER    = "optional match(p:prohibition) where p._epoch >= {1} with count(p) as changed " +
+            "optional match(t:pm_tombstone{kind: 'prohibition'}) where t._epoch >= {1} return changed + count(t)";
+    private static final String PRUNE_TOMBSTONES_CYPHER      = "match(t:pm_tombstone) where t._epoch < {1} delete t";
+
+    /**
+     * The default number of nodes read per page by load().
+     */
+    public static final int DEFAULT_PAGE_SIZE = 10000;
+
+    /**
+     * The number of pages of each kind that can be read ahead of the inserts into memory.
+     */
+    private static final int PAGES_AHEAD = 4;
+
+    /**
+     * The minimum number of milliseconds between progress log messages.
+     */
+    private static final long PROGRESS_INTERVAL = 5000;
+
     /**
      * Object to hold connection to Neo4j instance.
      */
     protected Neo4jConnection neo4j;
 
+    /**
+     * The number of nodes read per page by load().
+     */
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
     /**
      * Create a new GraphLoader from Neo4j, using the provided database connection parameters.
      * @param ctx the parameters to connect to the database
      * @throws PMDBException if a connection cannot be made to the database.
      */
     public Neo4jGraphLoader(DatabaseContext ctx) throws PMDBException {
-        neo4j = new Neo4jConnection(ctx.getHost(), ctx.getPort(), ctx.getUsername(), ctx.getPassword());
+        neo4j = Neo4jConnection.getPool(ctx);
+    }
+
+    /**
+     * Create a new GraphLoader from Neo4j, using the provided database connection parameters.
+     * @param ctx the parameters to connect to the database
+     * @param pageSize the number of nodes read per page by load().
+     * @throws PMDBException if a connection cannot be made to the database.
+     * @throws IllegalArgumentException if the page size is less than 1.
+     */
+    public Neo4jGraphLoader(DatabaseContext ctx, int pageSize) throws PMDBException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("the page size must be at least 1");
+        }
+
+        neo4j = Neo4jConnection.getPool(ctx);
+        this.pageSize = pageSize;
     }
 
     @Override
@@ -79,11 +151,325 @@ public class Neo4jGraphLoader implements GraphLoader {
             HashSet<Association> associations = new HashSet<>();
             while (rs.next()) {
                 Collection<String> ops = (Collection) rs.getObject(3);
-                associations.add(new Association(rs.getLong(1), rs.getLong(2), new HashSet<>(ops)));
+                associations.add(new Association(rs.getLong(1), rs.getLong(2), OperationSet.of(ops)));
             }
             return associations;
         }  catch (SQLException e) {
             throw new PMDBException(e.getMessage());
         }
     }
+
+    /**
+     * Stream the graph into the given in-memory graph.  Nodes, assignments, and associations are read in pages on three
+     * connections at the same time, and each page is inserted as soon as it arrives. Assignments and associations are
+     * only inserted after all of the nodes, but their first pages are read while the nodes are being inserted. Only a
+     * few pages of each kind are held in memory at once.  Progress is logged as the load runs.
+     *
+     * @param graph the in-memory graph to load into.
+     * @return the number of elements loaded and how long it took.
+     * @throws PMDBException if there is an error reading from the database.
+     * @throws PMException if there is an error inserting into the in-memory graph.
+     */
+    public GraphLoadStats load(Graph graph) throws PMException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(3, r -> {
+            Thread thread = new Thread(r, "neo4j-graph-loader-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Progress progress = new Progress();
+        try {
+            BlockingQueue<Page<Node>> nodes = readPages(executor, NODES_PAGE_CYPHER,
+                    rs -> Neo4jHelper.mapToNode((Map) rs.getObject(2)), Node::getID);
+            BlockingQueue<Page<Assignment>> assignments = readPages(executor, ASSIGNMENTS_PAGE_CYPHER,
+                    rs -> new Assignment(rs.getLong(1), rs.getLong(2)), Assignment::getSourceID);
+            BlockingQueue<Page<Association>> associations = readPages(executor, ASSOCIATIONS_PAGE_CYPHER,
+                    rs -> new Association(rs.getLong(1), rs.getLong(2),
+                            OperationSet.of((Collection<String>) rs.getObject(3))),
+                    Association::getSourceID);
+
+            progress.nodes = insertPages(nodes, progress,
+                    node -> graph.createNode(node.getID(), node.getName(), node.getType(), node.getProperties()));
+            progress.assignments = insertPages(assignments, progress,
+                    assignment -> graph.assign(assignment.getSourceID(), assignment.getTargetID()));
+            progress.associations = insertPages(associations, progress,
+                    association -> graph.associate(association.getSourceID(), association.getTargetID(), association.getOperations()));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        GraphLoadStats stats = progress.toStats();
+        LOGGER.info("graph load complete: " + stats);
+        return stats;
+    }
+
+    /**
+     * Start reading the pages of the given query on the executor.  The returned queue receives each page as it is read,
+     * then a final page that is either empty or holds the error that stopped the read.  Any error, including one from
+     * a malformed row, ends the read with an error page, so the load never waits on a reader that has stopped.
+     */
+    private <T> BlockingQueue<Page<T>> readPages(ExecutorService executor, String cypher, RowReader<T> reader,
+                                                 ToLongFunction<T> key) {
+        BlockingQueue<Page<T>> queue = new ArrayBlockingQueue<>(PAGES_AHEAD);
+        executor.submit(() -> {
+            Throwable error = null;
+            try (
+                    Connection conn = neo4j.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement(cypher)
+            ) {
+                Long after = null;
+                while (true) {
+                    stmt.setObject(1, after);
+                    stmt.setInt(2, pageSize);
+
+                    List<T> rows = new ArrayList<>();
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            T row = reader.read(rs);
+                            rows.add(row);
+                            long id = key.applyAsLong(row);
+                            if (after == null || id > after) {
+                                after = id;
+                            }
+                        }
+                    }
+
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    queue.put(new Page<>(rows, null));
+                }
+            }
+            catch (InterruptedException e) {
+                // the load was stopped, nothing is waiting on the queue
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            catch (Exception | Error e) {
+                error = e;
+            }
+
+            queue.put(new Page<>(Collections.emptyList(), error));
+            return null;
+        });
+        return queue;
+    }
+
+    /**
+     * Insert every page from the queue until the final page, logging progress along the way.
+     * @return the number of rows inserted.
+     */
+    private <T> long insertPages(BlockingQueue<Page<T>> queue, Progress progress, RowWriter<T> writer) throws PMException {
+        long count = 0;
+        try {
+            while (true) {
+                Page<T> page = queue.take();
+                if (page.error instanceof PMException) {
+                    throw (PMException) page.error;
+                } else if (page.error != null) {
+                    throw new PMDBException(page.error.getMessage() == null ? page.error.toString() : page.error.getMessage());
+                } else if (page.rows.isEmpty()) {
+                    return count;
+                }
+
+                for (T row : page.rows) {
+                    writer.write(row);
+                }
+                count += page.rows.size();
+                progress.log(page.rows.size());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PMDBException("the graph load was interrupted");
+        }
+    }
+
+    private interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException, PMException;
+    }
+
+    private interface RowWriter<T> {
+        void write(T row) throws PMException;
+    }
+
+    private static class Page<T> {
+        private List<T>   rows;
+        private Throwable error;
+
+        private Page(List<T> rows, Throwable error) {
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Tracks the rows inserted so far and logs the count and rate at most once every PROGRESS_INTERVAL.
+     */
+    private static class Progress {
+        private long start = System.currentTimeMillis();
+        private long lastLog = start;
+        private long total;
+        private long nodes;
+        private long assignments;
+        private long associations;
+
+        private void log(int rows) {
+            total += rows;
+            long now = System.currentTimeMillis();
+            if (now - lastLog >= PROGRESS_INTERVAL) {
+                lastLog = now;
+                LOGGER.info(String.format("graph load: %d elements in %dms (%.0f elements/s)",
+                        total, now - start, total * 1000.0 / (now - start)));
+            }
+        }
+
+        private GraphLoadStats toStats() {
+            return new GraphLoadStats(nodes, assignments, associations, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @return the current time of the database, used as the epoch of a snapshot.  Everything written after this time
+     * will have an _epoch equal to or greater than it.
+     * @throws PMDBException if there is an error getting the time from the database.
+     */
+    public long getEpoch() throws PMDBException {
+        try(
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(EPOCH_CYPHER);
+                ResultSet rs = stmt.executeQuery()
+        ) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Apply the changes made to the graph in the database at or after the given epoch to the in-memory graph.  Deletes
+     * are applied first, then every node, assignment, and association written since the epoch is applied in its
+     * current state.  Each change is applied only if the in-memory graph does not already reflect it, so changes that
+     * made it into the snapshot are skipped.
+     *
+     * @param graph the graph loaded from a snapshot.
+     * @param epoch the epoch of the snapshot.
+     * @return the number of changes applied.
+     * @throws PMDBException if there is an error reading the changes from the database.
+     * @throws PMException if there is an error applying a change to the in-memory graph.
+     */
+    public long catchUp(Graph graph, long epoch) throws PMException {
+        long changes = 0;
+        try (Connection conn = neo4j.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(TOMBSTONES_SINCE_CYPHER)) {
+                stmt.setLong(1, epoch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String kind = rs.getString(1);
+                        long id = rs.getLong(2);
+                        long target = rs.getLong(3);
+                        if (!graph.exists(id)) {
+                            continue;
+                        }
+
+                        if (kind.equals("node")) {
+                            graph.deleteNode(id);
+                        } else if (kind.equals("assignment") && graph.getParents(id).contains(target)) {
+                            graph.deassign(id, target);
+                        } else if (kind.equals("association") && graph.getSourceAssociations(id).containsKey(target)) {
+                            graph.dissociate(id, target);
+                        } else {
+                            continue;
+                        }
+                        changes++;
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(NODES_SINCE_CYPHER)) {
+                stmt.setLong(1, epoch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Node node = Neo4jHelper.mapToNode((Map) rs.getObject(1));
+                        if (graph.exists(node.getID())) {
+                            graph.updateNode(node.getID(), node.getName(), node.getProperties());
+                        } else {
+                            graph.createNode(node.getID(), node.getName(), node.getType(), node.getProperties());
+                        }
+                        changes++;
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(ASSIGNMENTS_SINCE_CYPHER)) {
+                stmt.setLong(1, epoch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        long childID = rs.getLong(1);
+                        long parentID = rs.getLong(2);
+                        if (!graph.getParents(childID).contains(parentID)) {
+                            graph.assign(childID, parentID);
+                            changes++;
+                        }
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(ASSOCIATIONS_SINCE_CYPHER)) {
+                stmt.setLong(1, epoch);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Collection<String> ops = (Collection) rs.getObject(3);
+                        graph.associate(rs.getLong(1), rs.getLong(2), OperationSet.of(ops));
+                        changes++;
+                    }
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+
+        return changes;
+    }
+
+    /**
+     * @param epoch the epoch of a snapshot.
+     * @return true if any prohibition was created, updated, or deleted at or after the given epoch.
+     * @throws PMDBException if there is an error reading the prohibitions from the database.
+     */
+    public boolean prohibitionsChangedSince(long epoch) throws PMDBException {
+        try(
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(PROHIBITIONS_SINCE_CYPHER)
+        ) {
+            stmt.setLong(1, epoch);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getLong(1) > 0;
+            }
+        } catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the tombstones left before the given epoch.  They are no longer needed once a snapshot at or after the
+     * epoch has been written, or once the graph has been loaded in full.
+     * @param epoch the epoch to delete tombstones before.
+     * @throws PMDBException if there is an error deleting the tombstones.
+     */
+    public void pruneTombstones(long epoch) throws PMDBException {
+        try(
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(PRUNE_TOMBSTONES_CYPHER)
+        ) {
+            stmt.setLong(1, epoch);
+            stmt.executeQuery();
+        } catch (SQLException e) {
+            throw new PMDBException(e.getMessage());
+        }
+    }
 }
@@ -13,7 +13,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -21,6 +20,8 @@ import java.util.List;
  */
 public class Neo4jProhibitionsLoader implements ProhibitionsLoader {
 
+    private static final String GET_PROHIBITIONS_CYPHER = String.format(Neo4jHelper.PROHIBITIONS_CYPHER, "");
+
     /**
      * Object to hold connection to Neo4j instance.
      */
@@ -32,11 +33,12 @@ public class Neo4jProhibitionsLoader implements ProhibitionsLoader {
      * @throws PMDBException if a connection cannot be made to the database
      */
     public Neo4jProhibitionsLoader(DatabaseContext ctx) throws PMDBException {
-        neo4j = new Neo4jConnection(ctx.getHost(), ctx.getPort(), ctx.getUsername(), ctx.getPassword());
+        neo4j = Neo4jConnection.getPool(ctx);
     }
 
     /**
-     * Load all of the  prohibitions in the database into a memory structure.
+     * Load all of the prohibitions in the database into a memory structure.  The prohibitions, their subjects, and their
+     * nodes are read in one query, one row per prohibition.
      * @return the list of all prohibitions.
      * @throws PMDBException if there is an error getting a prohibition form the database.
      * @throws PMProhibitionException if there is an error constructing the prohibition objects.
@@ -45,48 +47,13 @@ public class Neo4jProhibitionsLoader implements ProhibitionsLoader {
     public List<Prohibition> loadProhibitions() throws PMException {
         List<Prohibition> prohibitions = new ArrayList<>();
 
-        String cypher = "match(p:prohibition) return p.name, p.operations, p.intersection";
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
+                PreparedStatement stmt = conn.prepareStatement(GET_PROHIBITIONS_CYPHER);
                 ResultSet rs = stmt.executeQuery()
         ) {
             while (rs.next()) {
-                String name = rs.getString(1);
-                HashSet<String> ops = Neo4jHelper.getStringSetFromJson(rs.getString(2));
-                boolean inter = rs.getBoolean(3);
-
-                //get subject
-                Prohibition.Subject subject = null;
-                cypher = "match(d:prohibition{name:'" + name + "'})<-[:prohibition]-(s:prohibition_subject) return s.subjectID, s.subjectType";
-                try(
-                        Connection subjectConn = neo4j.getConnection();
-                        PreparedStatement subjectStmt = subjectConn.prepareStatement(cypher);
-                        ResultSet subjectRs = subjectStmt.executeQuery()
-                ) {
-                    if (subjectRs.next()) {
-                        long subjectID = subjectRs.getLong(1);
-                        String subjectType = subjectRs.getString(2);
-                        subject = new Prohibition.Subject(subjectID, Prohibition.Subject.Type.toType(subjectType));
-                    }
-                }
-
-                //get nodes
-                List<Prohibition.Node> nodes = new ArrayList<>();
-                cypher = "match(d:prohibition{name:'" + name + "'})<-[r:prohibition]-(s:prohibition_node) return s.id, r.complement";
-                try(
-                        Connection resConn = neo4j.getConnection();
-                        PreparedStatement resStmt = resConn.prepareStatement(cypher);
-                        ResultSet resRs = resStmt.executeQuery()
-                ) {
-                    while(resRs.next()) {
-                        long resourceID = resRs.getLong(1);
-                        boolean comp = resRs.getBoolean(2);
-                        nodes.add(new Prohibition.Node(resourceID, comp));
-                    }
-                }
-
-                prohibitions.add(new Prohibition(name, subject, nodes, ops, inter));
+                prohibitions.add(Neo4jHelper.getProhibitionFromResultSet(rs));
             }
         }
         catch (SQLException e) {
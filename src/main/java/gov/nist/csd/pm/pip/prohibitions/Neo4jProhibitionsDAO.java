@@ -14,8 +14,6 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -26,8 +24,11 @@ import static gov.nist.csd.pm.pip.db.neo4j.Neo4jHelper.setToCypherArray;
  */
 public class Neo4jProhibitionsDAO implements ProhibitionsDAO {
 
+    private static final String GET_PROHIBITION_CYPHER = String.format(Neo4jHelper.PROHIBITIONS_CYPHER, "{name:{1}}");
+
     private Neo4jConnection neo4j;
     private DatabaseContext ctx;
+    private boolean         tombstones;
 
     /**
      * Create a new Neo4jProhibitionsDAO with the given database context information.
@@ -35,8 +36,20 @@ public class Neo4jProhibitionsDAO implements ProhibitionsDAO {
      * @throws PMDBException if there is an error establishing a connection to the Neo4j instance.
      */
     public Neo4jProhibitionsDAO(DatabaseContext ctx) throws PMDBException {
+        this(ctx, true);
+    }
+
+    /**
+     * Create a new Neo4jProhibitionsDAO with the given database context information.
+     * @param ctx the database connection information.
+     * @param tombstones true to leave a pm_tombstone for every deleted prohibition, which is only needed to catch up a
+     *                   snapshot.
+     * @throws PMDBException if there is an error establishing a connection to the Neo4j instance.
+     */
+    public Neo4jProhibitionsDAO(DatabaseContext ctx, boolean tombstones) throws PMDBException {
         this.ctx = ctx;
-        this.neo4j = new Neo4jConnection(ctx.getHost(), ctx.getPort(), ctx.getUsername(), ctx.getPassword());
+        this.neo4j = Neo4jConnection.getPool(ctx);
+        this.tombstones = tombstones;
     }
 
     /**
@@ -69,7 +82,7 @@ public class Neo4jProhibitionsDAO implements ProhibitionsDAO {
         }
 
         String cypher =
-                String.format("create (p:prohibition:%s{name: '%s', operations: %s, intersection: %b}) ", name, name, setToCypherArray(operations), intersection) +
+                String.format("create (p:prohibition:%s{name: '%s', operations: %s, intersection: %b, _epoch: timestamp()}) ", name, name, setToCypherArray(operations), intersection) +
                         " with p " +
                         String.format("create(p)<-[:prohibition]-(ps:prohibition_subject:%s{subjectID:%d, subjectType:'%s'})", name, subject.getSubjectID(), subject.getSubjectType()) +
                         nodesStr;
@@ -97,69 +110,48 @@ public class Neo4jProhibitionsDAO implements ProhibitionsDAO {
         return new Neo4jProhibitionsLoader(ctx).loadProhibitions();
     }
 
+    /**
+     * Get the prohibition with the given name.  The prohibition, its subject, and its nodes are read in one query.
+     *
+     * @return the prohibition with the given name, or null if it does not exist.
+     * @throws PMDBException if there is an error retrieving the prohibition from the database.
+     * @throws PMProhibitionException if there is an error converting the data in the database to a Prohibition object.
+     */
     @Override
     public Prohibition getProhibition(String prohibitionName) throws PMException {
-        Prohibition prohibition = null;
-
-        String cypher = "match(p:prohibition{name: " + prohibitionName + "}) return p.name, p.operations, p.intersection";
         try(
                 Connection conn = neo4j.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(cypher);
-                ResultSet rs = stmt.executeQuery()
+                PreparedStatement stmt = conn.prepareStatement(GET_PROHIBITION_CYPHER)
         ) {
-            if (rs.next()) {
-                String name = rs.getString(1);
-                HashSet<String> ops = Neo4jHelper.getStringSetFromJson(rs.getString(2));
-                boolean inter = rs.getBoolean(3);
-
-                //get subject
-                Prohibition.Subject subject = null;
-                cypher = "match(d:prohibition{name:'" + name + "'})<-[:prohibition]-(s:prohibition_subject) return s.subjectID, s.subjectType";
-                try(
-                        Connection subjectConn = neo4j.getConnection();
-                        PreparedStatement subjectStmt = subjectConn.prepareStatement(cypher);
-                        ResultSet subjectRs = subjectStmt.executeQuery()
-                ) {
-                    if (subjectRs.next()) {
-                        long subjectID = subjectRs.getLong(1);
-                        String subjectType = subjectRs.getString(2);
-                        subject = new Prohibition.Subject(subjectID, Prohibition.Subject.Type.toType(subjectType));
-                    }
+            stmt.setString(1, prohibitionName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Neo4jHelper.getProhibitionFromResultSet(rs);
                 }
-
-                //get nodes
-                List<Prohibition.Node> nodes = new ArrayList<>();
-                cypher = "match(d:prohibition{name:'" + name + "'})-[r:prohibition]->(s:prohibition_node) return s.id, r.complement";
-                try(
-                        Connection resConn = neo4j.getConnection();
-                        PreparedStatement resStmt = resConn.prepareStatement(cypher);
-                        ResultSet resRs = resStmt.executeQuery()
-                ) {
-                    while(resRs.next()) {
-                        long id = resRs.getLong(1);
-                        boolean comp = resRs.getBoolean(2);
-                        nodes.add(new Prohibition.Node(id, comp));
-                    }
-                }
-
-                prohibition = new Prohibition(name, subject, nodes, ops, inter);
             }
         }
         catch (SQLException e) {
             throw new PMDBException(e.getMessage());
         }
 
-        return prohibition;
+        return null;
     }
 
     @Override
     public void deleteProhibition(String prohibitionName) throws PMDBException {
         String cypher = "match(p:" + prohibitionName + ") detach delete p";
+        if (tombstones) {
+            // leave a tombstone so a PAP started from a snapshot knows the prohibitions changed
+            cypher += " with count(*) as deleted create (:pm_tombstone{kind: 'prohibition', name: {1}, _epoch: timestamp()})";
+        }
 
         try(
                 Connection conn = neo4j.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(cypher);
         ) {
+            if (tombstones) {
+                stmt.setString(1, prohibitionName);
+            }
             stmt.executeQuery();
 
 
@@ -0,0 +1,57 @@
+package gov.nist.csd.pm.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares a LongIntMap with a HashMap given the same changes.
+ */
+class LongIntMapTest {
+
+    @Test
+    void testSameAsHashMap() {
+        Random random = new Random(5);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            // few enough keys that they collide and are removed often, including 0 and negative keys
+            long key = random.nextInt(2000) - 1000;
+            int value = random.nextInt(Integer.MAX_VALUE);
+            switch (random.nextInt(3)) {
+                case 0:
+                    map.put(key, value);
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    assertEquals((int) expected.computeIfAbsent(key, k -> value), map.putIfAbsent(key, value));
+                    break;
+                default:
+                    Integer removed = expected.remove(key);
+                    assertEquals(removed == null ? -1 : removed, map.remove(key));
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long key = -1000; key < 1000; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key));
+        }
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(0));
+    }
+
+    @Test
+    void testNegativeValue() {
+        LongIntMap map = new LongIntMap(4);
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(1, -1));
+    }
+}
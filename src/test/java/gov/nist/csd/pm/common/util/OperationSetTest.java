@@ -0,0 +1,108 @@
+package gov.nist.csd.pm.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static gov.nist.csd.pm.common.constants.Operations.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationSetTest {
+
+    @Test
+    void testSameAsHashSet() {
+        Random random = new Random(3);
+        List<String> ops = new ArrayList<>(Arrays.asList(READ, WRITE, ASSIGN, ASSIGN_TO, ALL_OPERATIONS));
+        for (int i = 0; i < 100; i++) {
+            // enough operations to need more than one word
+            ops.add("custom op " + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            Set<String> a = sample(ops, random);
+            Set<String> b = sample(ops, random);
+            OperationSet setA = OperationSet.of(a);
+            OperationSet setB = OperationSet.of(b);
+
+            assertEquals(a, setA);
+            assertEquals(setA, a);
+            assertEquals(a.hashCode(), setA.hashCode());
+            assertEquals(a.size(), setA.size());
+            assertEquals(a, new HashSet<>(setA));
+
+            Set<String> union = new HashSet<>(a);
+            union.addAll(b);
+            assertEquals(union, setA.union(setB));
+
+            Set<String> intersection = new HashSet<>(a);
+            intersection.retainAll(b);
+            assertEquals(intersection, setA.intersection(setB));
+
+            Set<String> difference = new HashSet<>(a);
+            difference.removeAll(b);
+            assertEquals(difference, setA.difference(setB));
+
+            assertEquals(a.containsAll(b), setA.containsAll(setB));
+            assertEquals(OperationSet.of(a), OperationSet.fromBits(setA.toBits()));
+        }
+    }
+
+    @Test
+    void testLookupsDoNotRegister() {
+        int size = OperationRegistry.size();
+        assertFalse(OperationSet.of(READ).contains("an operation no policy has"));
+        assertEquals(-1, OperationRegistry.find("an operation no policy has"));
+        assertEquals(size, OperationRegistry.size());
+        assertFalse(OperationSet.of(READ).contains(1));
+    }
+
+    @Test
+    void testOperationsConstantsAreRegistered() {
+        assertTrue(OperationRegistry.find(READ) >= 0);
+        assertTrue(OperationRegistry.find(PROHIBIT_RESOURCE) >= 0);
+        assertSame(OperationRegistry.operation(OperationRegistry.find(READ)), OperationRegistry.intern(new String(READ)));
+    }
+
+    @Test
+    void testEmptyAndImmutable() {
+        assertSame(OperationSet.EMPTY, OperationSet.of(Collections.emptySet()));
+        assertSame(OperationSet.EMPTY, OperationSet.of(READ).difference(OperationSet.of(READ)));
+        assertEquals(Collections.emptySet(), OperationSet.EMPTY);
+        assertThrows(UnsupportedOperationException.class, () -> OperationSet.of(READ).add(WRITE));
+        assertThrows(UnsupportedOperationException.class, () -> OperationSet.of(READ).remove(READ));
+        assertThrows(IllegalArgumentException.class, () -> OperationSet.of(Collections.singleton(null)));
+    }
+
+    @Test
+    void testFindDoesNotRegister() {
+        String unknown = "never registered " + UUID.randomUUID();
+        int size = OperationRegistry.size();
+        assertEquals(OperationSet.of(READ), OperationSet.find(Arrays.asList(READ, unknown)));
+        assertEquals(-1, OperationRegistry.find(unknown));
+        assertEquals(size, OperationRegistry.size());
+    }
+
+    @Test
+    void testRegistryGrowsInChunks() {
+        // enough operations to fill several chunks of the registry
+        String prefix = "chunked op " + UUID.randomUUID() + " ";
+        int[] ordinals = new int[1000];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = OperationRegistry.ordinal(prefix + i);
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            assertEquals(prefix + i, OperationRegistry.operation(ordinals[i]));
+            assertEquals(ordinals[i], OperationRegistry.ordinal(prefix + i));
+        }
+    }
+
+    private static Set<String> sample(List<String> ops, Random random) {
+        Set<String> sample = new HashSet<>();
+        for (String op : ops) {
+            if (random.nextInt(4) == 0) {
+                sample.add(op);
+            }
+        }
+        return sample;
+    }
+}
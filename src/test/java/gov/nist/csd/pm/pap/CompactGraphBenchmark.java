@@ -0,0 +1,153 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares walking a MemGraph with walking a CompactGraph holding the same policy: every ancestor of a node, as the
+ * decider walks from a target to its policy classes, and the children of a node with many children.  The nodes form a
+ * binary tree, and each node is also assigned to one of the first 100 nodes, so the graph has about twice as many
+ * assignments as nodes.
+ *
+ * The footprint benchmark builds each graph once and reports the heap it uses, and for a CompactGraph the bytes it
+ * estimates it uses, as the heapBytes and estimatedBytes counters in the JMH results.
+ *
+ * Run with "mvn test-compile" and then the main method of this class, or
+ * "java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main CompactGraphBenchmark".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+public class CompactGraphBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int nodes;
+
+    @Param({"mem", "compact"})
+    private String store;
+
+    private Graph  graph;
+    private long[] leaves;
+    private int    next;
+
+    @Setup
+    public void setup() throws PMException {
+        graph = build(store, nodes);
+        Random random = new Random(42);
+        leaves = new long[1024];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = nodes - random.nextInt(nodes / 10);
+        }
+    }
+
+    @Benchmark
+    public int ancestors() throws PMException {
+        long start = leaves[next++ & (leaves.length - 1)];
+        Set<Long> visited = new HashSet<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            for (long parent : graph.getParents(queue.poll())) {
+                if (visited.add(parent)) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return visited.size();
+    }
+
+    @Benchmark
+    public int children() throws PMException {
+        return graph.getChildren(2).size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Graph footprint(Footprint footprint) throws PMException {
+        long before = usedHeap();
+        Graph built = build(store, nodes);
+        footprint.heapBytes = usedHeap() - before;
+        if (built instanceof CompactGraph) {
+            footprint.estimatedBytes = ((CompactGraph) built).getFootprint().getTotalBytes();
+        }
+        return built;
+    }
+
+    /**
+     * The memory used by the graph built in the footprint benchmark, reported by JMH with the benchmark's results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapBytes;
+        public long estimatedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            heapBytes = 0;
+            estimatedBytes = 0;
+        }
+    }
+
+    /**
+     * Build a graph where node 1 is a policy class and every other node is assigned to the node with half its ID and
+     * to a random one of the first 100 nodes.
+     */
+    static Graph build(String store, int nodes) throws PMException {
+        Graph graph = newGraph(store);
+        Random random = new Random(7);
+        graph.createNode(1, "pc", NodeType.PC, new HashMap<>());
+        for (long id = 2; id <= nodes; id++) {
+            graph.createNode(id, "node" + id, NodeType.OA, new HashMap<>());
+            graph.assign(id, id / 2);
+            long other = 1 + random.nextInt((int) Math.min(id - 1, 100));
+            if (other != id / 2) {
+                graph.assign(id, other);
+            }
+        }
+        if (graph instanceof CompactGraph) {
+            ((CompactGraph) graph).compact();
+        }
+        return graph;
+    }
+
+    /**
+     * @return a new empty graph of the kind named by a value of graph.store.  A mapped graph uses direct buffers.
+     */
+    static Graph newGraph(String store) {
+        switch (store) {
+            case PAP.COMPACT_STORE:
+                return new CompactGraph();
+            case PAP.MAPPED_STORE:
+                return new MappedGraph();
+            default:
+                return new MemGraph();
+        }
+    }
+
+    static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompactGraphBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,187 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Makes the same random changes to a CompactGraph and a MemGraph and compares them.
+ */
+class CompactGraphTest {
+
+    private static final NodeType[] TYPES = {OA, O, UA, U};
+    private static final String[]   OPS   = {"read", "write", "execute", "assign", "assign to"};
+
+    @Test
+    void testSameAsMemGraph() throws PMException {
+        assertSameAsMemGraph(new CompactGraph(), 11);
+    }
+
+    /**
+     * Make the same random changes to the graph and a MemGraph, and check they have the same nodes and edges before and
+     * after the graph is compacted.
+     */
+    static void assertSameAsMemGraph(CompactGraph compact, long seed) throws PMException {
+        Random random = new Random(seed);
+        MemGraph mem = new MemGraph();
+        List<Long> ids = new ArrayList<>();
+        Map<Long, NodeType> types = new HashMap<>();
+
+        for (int step = 0; step < 50000; step++) {
+            int kind = random.nextInt(20);
+            if (kind < 4 || ids.size() < 10) {
+                long id = step + 1;
+                NodeType type = ids.size() % 100 == 0 ? PC : TYPES[random.nextInt(TYPES.length)];
+                Map<String, String> properties = new HashMap<>();
+                properties.put("namespace", "ns" + random.nextInt(5));
+                compact.createNode(id, "n" + id, type, properties);
+                mem.createNode(id, "n" + id, type, properties);
+                ids.add(id);
+                types.put(id, type);
+            } else if (kind < 10) {
+                long child = pick(ids, random);
+                long parent = pick(ids, random);
+                if (child != parent && canAssign(types.get(child), types.get(parent))
+                        && !mem.getParents(child).contains(parent)) {
+                    compact.assign(child, parent);
+                    mem.assign(child, parent);
+                }
+            } else if (kind < 12) {
+                long child = pick(ids, random);
+                Set<Long> parents = mem.getParents(child);
+                if (!parents.isEmpty()) {
+                    long parent = parents.iterator().next();
+                    compact.deassign(child, parent);
+                    mem.deassign(child, parent);
+                }
+            } else if (kind < 16) {
+                long ua = pick(ids, random);
+                long target = pick(ids, random);
+                if (types.get(ua) != UA || (types.get(target) != UA && types.get(target) != OA)) {
+                    continue;
+                }
+                Set<String> ops = new HashSet<>();
+                for (String op : OPS) {
+                    if (random.nextBoolean()) {
+                        ops.add(op);
+                    }
+                }
+                compact.associate(ua, target, ops);
+                mem.associate(ua, target, ops);
+            } else if (kind < 17) {
+                long ua = pick(ids, random);
+                Map<Long, Set<String>> associations = mem.getSourceAssociations(ua);
+                if (!associations.isEmpty()) {
+                    long target = associations.keySet().iterator().next();
+                    compact.dissociate(ua, target);
+                    mem.dissociate(ua, target);
+                }
+            } else if (kind < 18) {
+                long id = pick(ids, random);
+                Map<String, String> properties = new HashMap<>();
+                properties.put("namespace", "ns" + random.nextInt(5));
+                compact.updateNode(id, "renamed" + id, properties);
+                mem.updateNode(id, "renamed" + id, properties);
+            } else if (random.nextInt(10) == 0) {
+                long id = ids.remove(random.nextInt(ids.size()));
+                compact.deleteNode(id);
+                mem.deleteNode(id);
+            }
+        }
+
+        compare(mem, compact, ids);
+        compact.compact();
+        compare(mem, compact, ids);
+
+        assertEquals(ids(mem.search(null, OA.toString(), Collections.singletonMap("namespace", "ns1"))),
+                ids(compact.search(null, OA.toString(), Collections.singletonMap("namespace", "ns1"))));
+    }
+
+    @Test
+    void testSlotsAreReused() throws PMException {
+        CompactGraph graph = new CompactGraph();
+        graph.createNode(1, "oa1", OA, null);
+        graph.createNode(2, "oa2", OA, null);
+        graph.assign(2, 1);
+        graph.deleteNode(1);
+
+        // the new node takes the slot of the deleted one, but none of its edges
+        graph.createNode(3, "oa3", OA, null);
+        assertTrue(graph.getParents(2).isEmpty());
+        assertTrue(graph.getChildren(3).isEmpty());
+        assertEquals(2, graph.getFootprint().getNodes());
+        assertEquals(0, graph.getFootprint().getAssignments());
+    }
+
+    @Test
+    void testErrors() throws PMException {
+        CompactGraph graph = new CompactGraph();
+        graph.createNode(1, "oa1", OA, null);
+
+        assertThrows(IllegalArgumentException.class, () -> graph.createNode(0, "oa", OA, null));
+        assertThrows(IllegalArgumentException.class, () -> graph.createNode(2, null, OA, null));
+        assertThrows(IllegalArgumentException.class, () -> graph.createNode(2, "oa", null, null));
+        assertThrows(PMGraphException.class, () -> graph.createNode(1, "oa1", OA, null));
+        assertThrows(PMGraphException.class, () -> graph.getNode(2));
+        assertThrows(PMGraphException.class, () -> graph.assign(1, 2));
+    }
+
+    @Test
+    void testReturnedNodesAreCopies() throws PMException {
+        CompactGraph graph = new CompactGraph();
+        graph.createNode(1, "oa1", OA, Collections.singletonMap("key", "value"));
+
+        graph.getNode(1).getProperties().put("key", "changed");
+        assertEquals("value", graph.getNode(1).getProperties().get("key"));
+    }
+
+    private static void compare(MemGraph mem, CompactGraph compact, List<Long> ids) throws PMException {
+        assertEquals(mem.getPolicies(), compact.getPolicies());
+        assertEquals(mem.getNodes().size(), compact.getNodes().size());
+        for (long id : ids) {
+            Node node = mem.getNode(id);
+            assertEquals(node.getName(), compact.getNode(id).getName());
+            assertEquals(node.getType(), compact.getNode(id).getType());
+            assertEquals(node.getProperties(), compact.getNode(id).getProperties());
+            assertEquals(mem.getParents(id), compact.getParents(id));
+            assertEquals(mem.getChildren(id), compact.getChildren(id));
+            assertEquals(mem.getSourceAssociations(id), compact.getSourceAssociations(id));
+            assertEquals(mem.getTargetAssociations(id), compact.getTargetAssociations(id));
+        }
+    }
+
+    private static boolean canAssign(NodeType child, NodeType parent) {
+        switch (child) {
+            case OA:
+                return parent == OA || parent == PC;
+            case O:
+                return parent == OA;
+            case UA:
+                return parent == UA || parent == PC;
+            case U:
+                return parent == UA;
+            default:
+                return false;
+        }
+    }
+
+    private static Set<Long> ids(Set<Node> nodes) {
+        Set<Long> ids = new HashSet<>();
+        for (Node node : nodes) {
+            ids.add(node.getID());
+        }
+        return ids;
+    }
+
+    private static long pick(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
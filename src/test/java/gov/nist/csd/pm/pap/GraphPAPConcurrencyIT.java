@@ -0,0 +1,184 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.decider.Decider;
+import gov.nist.csd.pm.decider.PReviewDecider;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphPAPConcurrencyIT {
+
+    private static final int WRITES  = 200;
+    private static final int READERS = 4;
+
+    private Neo4jGraph      dbGraph;
+    private GraphPAP        graphPAP;
+    private ProhibitionsPAP prohibitionsPAP;
+    private String          testID;
+    private Random          random = new Random();
+
+    private Node u;
+    private Node o;
+    private Node oa1;
+    private Node oa2;
+    private Node ua;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        prohibitionsPAP = new ProhibitionsPAP(TestUtils.getDatabaseContext(), new ArrayList<>());
+        testID = UUID.randomUUID().toString();
+
+        Node pc = graphPAP.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        ua = graphPAP.createNode(random.nextLong(), "ua", UA, NodeUtils.toProperties("namespace", testID));
+        u = graphPAP.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+        oa1 = graphPAP.createNode(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(ua.getID(), pc.getID());
+        graphPAP.assign(u.getID(), ua.getID());
+        graphPAP.assign(oa1.getID(), pc.getID());
+        graphPAP.assign(oa2.getID(), pc.getID());
+        graphPAP.assign(o.getID(), oa1.getID());
+        graphPAP.associate(ua.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read")));
+        graphPAP.associate(ua.getID(), oa2.getID(), new HashSet<>(Arrays.asList("write")));
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        for (Prohibition prohibition : prohibitionsPAP.getProhibitions()) {
+            prohibitionsPAP.deleteProhibition(prohibition.getName());
+        }
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testConcurrentReadsAndWrites() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 2);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger decisions = new AtomicInteger();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch writers = new CountDownLatch(2);
+
+        // move the object in and out of oa2 and create and delete nodes, changing the nodes readers iterate
+        executor.submit(() -> {
+            try {
+                for (int i = 0; i < WRITES; i++) {
+                    graphPAP.assign(o.getID(), oa2.getID());
+                    Node node = graphPAP.createNode(random.nextLong(), "tmp" + i, O, NodeUtils.toProperties("namespace", testID));
+                    graphPAP.assign(node.getID(), oa2.getID());
+                    graphPAP.deassign(o.getID(), oa2.getID());
+                    graphPAP.deleteNode(node.getID());
+                }
+            }
+            catch (Throwable t) {
+                errors.add(t);
+            }
+            finally {
+                writers.countDown();
+            }
+        });
+
+        // create and delete a prohibition on an operation the readers do not check
+        executor.submit(() -> {
+            try {
+                for (int i = 0; i < WRITES / 4; i++) {
+                    String name = testID + "-" + i;
+                    prohibitionsPAP.createProhibition(new Prohibition(name, new Prohibition.Subject(u.getID(), Prohibition.Subject.Type.USER),
+                            Collections.singletonList(new Prohibition.Node(oa2.getID(), false)),
+                            new HashSet<>(Arrays.asList("write")), false));
+                    prohibitionsPAP.deleteProhibition(name);
+                }
+            }
+            catch (Throwable t) {
+                errors.add(t);
+            }
+            finally {
+                writers.countDown();
+            }
+        });
+
+        // the user can always read the object through oa1, whatever the writers are doing
+        for (int i = 0; i < READERS; i++) {
+            executor.submit(() -> {
+                try {
+                    while (writing.get()) {
+                        Decider decider = new PReviewDecider(graphPAP, prohibitionsPAP.getProhibitions());
+                        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "read"));
+                        assertTrue(decider.listPermissions(u.getID(), o.getID()).contains("read"));
+
+                        for (Node node : graphPAP.getNodes()) {
+                            assertNotNull(node.getName());
+                        }
+                        for (long childID : graphPAP.getChildren(oa2.getID())) {
+                            assertTrue(childID != 0);
+                        }
+                        graphPAP.search(null, O.toString(), NodeUtils.toProperties("namespace", testID));
+                        decisions.incrementAndGet();
+                    }
+                }
+                catch (Throwable t) {
+                    errors.add(t);
+                }
+            });
+        }
+
+        assertTrue(writers.await(5, TimeUnit.MINUTES));
+        writing.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(new ArrayList<>(), errors);
+        assertTrue(decisions.get() > 0);
+    }
+
+    @Test
+    void testStateAfterConcurrentWrites() throws InterruptedException, PMException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        List<Long> created = new CopyOnWriteArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < WRITES / 4; i++) {
+                        Node node = graphPAP.createNode(random.nextLong(), "o" + i, O, NodeUtils.toProperties("namespace", testID));
+                        graphPAP.assign(node.getID(), oa2.getID());
+                        created.add(node.getID());
+                    }
+                }
+                catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        assertEquals(new ArrayList<>(), errors);
+
+        // the in-memory graph and the database agree
+        assertEquals(new HashSet<>(created), graphPAP.getChildren(oa2.getID()));
+        assertEquals(new HashSet<>(created), dbGraph.getChildren(oa2.getID()));
+    }
+}
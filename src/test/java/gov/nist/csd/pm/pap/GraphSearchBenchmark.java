@@ -0,0 +1,103 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static gov.nist.csd.pm.common.constants.Properties.NAMESPACE_PROPERTY;
+
+/**
+ * Compares searching the in-memory graph by scanning every node with searching the indexes kept by GraphPAP.  The graph
+ * has one namespace per 100 nodes, and each search is one the server makes: a node by name and type, the nodes of a
+ * type in a namespace, and a node by name, type, and namespace as checked when a node is created.
+ *
+ * Run with "mvn test-compile" and then the main method of this class, or
+ * "java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main GraphSearchBenchmark".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class GraphSearchBenchmark {
+
+    private static final NodeType[] TYPES = {NodeType.OA, NodeType.O, NodeType.UA, NodeType.U};
+
+    @Param({"10000", "100000", "1000000"})
+    private int nodes;
+
+    private MemGraph memGraph;
+    private GraphPAP graphPAP;
+    private String   name;
+    private String   type;
+    private String   namespace;
+
+    @Setup
+    public void setup() throws PMException {
+        memGraph = new MemGraph();
+        for (long id = 1; id <= nodes; id++) {
+            Map<String, String> properties = new HashMap<>();
+            properties.put(NAMESPACE_PROPERTY, "ns" + id / 100);
+            memGraph.createNode(id, "node" + id, TYPES[(int) (id % TYPES.length)], properties);
+        }
+        graphPAP = new GraphPAP(memGraph, null);
+
+        long id = new Random(42).nextInt(nodes) + 1;
+        Node node = memGraph.getNode(id);
+        name = node.getName();
+        type = node.getType().toString();
+        namespace = node.getProperties().get(NAMESPACE_PROPERTY);
+    }
+
+    @Benchmark
+    public Set<Node> scanByName() {
+        return memGraph.search(name, type, null);
+    }
+
+    @Benchmark
+    public Set<Node> indexByName() {
+        return graphPAP.search(name, type, null);
+    }
+
+    @Benchmark
+    public Set<Node> scanByNamespace() {
+        return memGraph.search(null, type, namespace());
+    }
+
+    @Benchmark
+    public Set<Node> indexByNamespace() {
+        return graphPAP.search(null, type, namespace());
+    }
+
+    @Benchmark
+    public Set<Node> scanByNameAndNamespace() {
+        return memGraph.search(name, type, namespace());
+    }
+
+    @Benchmark
+    public Set<Node> indexByNameAndNamespace() {
+        return graphPAP.search(name, type, namespace());
+    }
+
+    private Map<String, String> namespace() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(NAMESPACE_PROPERTY, namespace);
+        return properties;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GraphSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
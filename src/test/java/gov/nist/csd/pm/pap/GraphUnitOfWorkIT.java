@@ -0,0 +1,207 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphUnitOfWorkIT {
+
+    private Neo4jGraph dbGraph;
+    private MemGraph   memGraph;
+    private GraphPAP   graphPAP;
+    private String     testID;
+    private Random     random = new Random();
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        memGraph = new MemGraph();
+        graphPAP = new GraphPAP(memGraph, dbGraph);
+        testID = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testCommit() throws PMException {
+        GraphUnitOfWork work = graphPAP.beginWork();
+        Node pc = work.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        Node oa = work.createNode(random.nextLong(), "oa", OA, NodeUtils.toProperties("namespace", testID));
+        Node ua = work.createNode(random.nextLong(), "ua", UA, NodeUtils.toProperties("namespace", testID));
+        work.assign(oa.getID(), pc.getID());
+        work.assign(ua.getID(), pc.getID());
+        work.associate(ua.getID(), oa.getID(), new HashSet<>(Arrays.asList("read")));
+        work.updateNode(oa.getID(), "oa updated", null);
+
+        // nothing is written before the commit
+        assertFalse(dbGraph.exists(pc.getID()));
+        assertFalse(memGraph.exists(pc.getID()));
+
+        work.commit();
+
+        assertEquals("oa updated", dbGraph.getNode(oa.getID()).getName());
+        assertEquals("oa updated", memGraph.getNode(oa.getID()).getName());
+        assertEquals(testID, dbGraph.getNode(oa.getID()).getProperties().get("namespace"));
+        assertEquals(new HashSet<>(Arrays.asList(oa.getID(), ua.getID())), dbGraph.getChildren(pc.getID()));
+        assertEquals(new HashSet<>(Arrays.asList(oa.getID(), ua.getID())), memGraph.getChildren(pc.getID()));
+        assertTrue(dbGraph.getSourceAssociations(ua.getID()).containsKey(oa.getID()));
+        assertTrue(memGraph.getSourceAssociations(ua.getID()).containsKey(oa.getID()));
+
+        assertThrows(IllegalStateException.class, work::commit);
+    }
+
+    @Test
+    void testInvalidChangeIsRejected() throws PMException {
+        GraphUnitOfWork work = graphPAP.beginWork();
+        Node pc = work.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        Node u = work.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+
+        // a user cannot be assigned to a policy class, and the node must exist
+        assertThrows(PMException.class, () -> work.assign(u.getID(), pc.getID()));
+        assertThrows(PMException.class, () -> work.assign(random.nextLong(), pc.getID()));
+
+        work.rollback();
+        assertFalse(dbGraph.exists(pc.getID()));
+        assertFalse(memGraph.exists(pc.getID()));
+    }
+
+    @Test
+    void testFailedTransactionChangesNeitherGraph() throws PMException {
+        // a node that is in the database but not in memory, so the unit of work cannot see the ID conflict
+        Node existing = dbGraph.createNode(random.nextLong(), "existing", OA, NodeUtils.toProperties("namespace", testID));
+
+        GraphUnitOfWork work = graphPAP.beginWork();
+        Node pc = work.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        work.createNode(existing.getID(), "duplicate", OA, NodeUtils.toProperties("namespace", testID));
+
+        // the unique constraint on node IDs fails the transaction
+        assertThrows(PMException.class, work::commit);
+
+        assertFalse(dbGraph.exists(pc.getID()));
+        assertFalse(memGraph.exists(pc.getID()));
+        assertFalse(memGraph.exists(existing.getID()));
+        assertEquals("existing", dbGraph.getNode(existing.getID()).getName());
+    }
+
+    @Test
+    void testChangeMadeInvalidByAnotherCommitFails() throws PMException {
+        Node oa = graphPAP.createNode(random.nextLong(), "oa", OA, NodeUtils.toProperties("namespace", testID));
+        Node o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+
+        GraphUnitOfWork work = graphPAP.beginWork();
+        work.assign(o.getID(), oa.getID());
+
+        // the parent is deleted after the assignment was checked, so it is checked again when it commits
+        graphPAP.deleteNode(oa.getID());
+        assertThrows(PMGraphException.class, work::commit);
+        assertTrue(dbGraph.getParents(o.getID()).isEmpty());
+        assertTrue(memGraph.getParents(o.getID()).isEmpty());
+    }
+
+    @Test
+    void testConcurrentCommitsKeepBothGraphsTheSame() throws Exception {
+        Node pc = graphPAP.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        List<Node> oas = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Node oa = graphPAP.createNode(random.nextLong(), "oa" + i, OA, NodeUtils.toProperties("namespace", testID));
+            graphPAP.assign(oa.getID(), pc.getID());
+            oas.add(oa);
+        }
+        Node o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+
+        // assign and deassign the same edges from several threads, so commits race on each edge
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long seed = random.nextLong();
+                futures.add(executor.submit(() -> {
+                    Random threadRandom = new Random(seed);
+                    for (int i = 0; i < 25; i++) {
+                        long oaID = oas.get(threadRandom.nextInt(oas.size())).getID();
+                        if (threadRandom.nextBoolean()) {
+                            graphPAP.assign(o.getID(), oaID);
+                        } else {
+                            graphPAP.deassign(o.getID(), oaID);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(dbGraph.getParents(o.getID()), memGraph.getParents(o.getID()));
+    }
+
+    @Test
+    void testFailedApplyReloadsFromTheDatabase() throws PMException, IOException {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        MemGraph failingGraph = new MemGraph() {
+            @Override
+            public void assign(long childID, long parentID) throws PMException {
+                if (fail.getAndSet(false)) {
+                    throw new PMGraphException("could not assign");
+                }
+                super.assign(childID, parentID);
+            }
+        };
+        GraphPAP failingPAP = new GraphPAP(failingGraph, new Neo4jGraph(TestUtils.getDatabaseContext()));
+        AtomicInteger reloads = new AtomicInteger();
+        failingPAP.addListener(new PolicyListener() {
+            @Override
+            public void graphChanged(List<GraphMutation> mutations) {
+            }
+
+            @Override
+            public void graphReloaded() {
+                reloads.incrementAndGet();
+            }
+
+            @Override
+            public void prohibitionChanged(Prohibition prohibition) {
+            }
+        });
+
+        Node oa = failingPAP.createNode(random.nextLong(), "oa", OA, NodeUtils.toProperties("namespace", testID));
+        Node o = failingPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+
+        // the assignment is committed to the database but cannot be applied in memory, so memory is reloaded
+        failingPAP.assign(o.getID(), oa.getID());
+        assertEquals(1, reloads.get());
+        assertTrue(dbGraph.getParents(o.getID()).contains(oa.getID()));
+        assertTrue(failingPAP.getParents(o.getID()).contains(oa.getID()));
+        assertEquals(1, failingPAP.search("o", O.toString(), NodeUtils.toProperties("namespace", testID)).size());
+    }
+}
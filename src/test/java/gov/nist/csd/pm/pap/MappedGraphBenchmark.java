@@ -0,0 +1,160 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.decider.PReviewDecider;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares access decisions against a MemGraph, a CompactGraph, and a MappedGraph holding the same policy of about
+ * 10M assignments.  Decision latency is sampled so JMH reports its percentiles, including p99, and the GC profiler
+ * reports the time spent in collections while deciding.
+ *
+ * The policy is the tree of CompactGraphBenchmark under one policy class, with 100 user attributes associated with
+ * nodes near the top of the tree and 1000 users each assigned to two of them.  A decision lists the permissions of a
+ * random user on a random node near the bottom of the tree.
+ *
+ * The footprint benchmark builds each graph once and reports the heap it uses, the bytes it keeps off the heap, and
+ * how long a full collection pauses with it in the heap, as the heapBytes, offHeapBytes, and gcPauseMillis counters in
+ * the JMH results.
+ *
+ * Run with "mvn test-compile" and then the main method of this class, or
+ * "java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main MappedGraphBenchmark -prof gc".
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx16g", "-XX:MaxDirectMemorySize=16g"})
+public class MappedGraphBenchmark {
+
+    private static final int UAS   = 100;
+    private static final int USERS = 1000;
+
+    @Param({"5000000"})
+    private int nodes;
+
+    @Param({"mem", "compact", "mapped"})
+    private String store;
+
+    private PReviewDecider decider;
+    private long[]         users;
+    private long[]         targets;
+    private int            next;
+
+    @Setup
+    public void setup() throws PMException {
+        Graph graph = build(store, nodes);
+        decider = new PReviewDecider(graph, new ArrayList<>());
+
+        Random random = new Random(42);
+        users = new long[1024];
+        targets = new long[1024];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = nodes + UAS + 1 + random.nextInt(USERS);
+            targets[i] = nodes - random.nextInt(nodes / 10);
+        }
+    }
+
+    @Benchmark
+    public Set<String> decide() throws PMException {
+        int i = next++ & (users.length - 1);
+        return decider.listPermissions(users[i], targets[i]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Graph footprint(Footprint footprint) throws PMException {
+        long before = CompactGraphBenchmark.usedHeap();
+        Graph built = build(store, nodes);
+        footprint.heapBytes = CompactGraphBenchmark.usedHeap() - before;
+        footprint.gcPauseMillis = fullGCPause();
+        if (built instanceof CompactGraph) {
+            footprint.offHeapBytes = ((CompactGraph) built).getFootprint().getOffHeapBytes();
+        }
+        return built;
+    }
+
+    /**
+     * The memory used by the graph built in the footprint benchmark, and the pause of a full collection with it in the
+     * heap, reported by JMH with the benchmark's results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapBytes;
+        public long offHeapBytes;
+        public long gcPauseMillis;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            heapBytes = 0;
+            offHeapBytes = 0;
+            gcPauseMillis = 0;
+        }
+    }
+
+    /**
+     * Build the tree of CompactGraphBenchmark, then add the user attributes, their associations, and the users.
+     */
+    static Graph build(String store, int nodes) throws PMException {
+        Graph graph = CompactGraphBenchmark.build(store, nodes);
+        Random random = new Random(9);
+        Set<String> ops = new HashSet<>(Arrays.asList("read", "write"));
+        for (long ua = nodes + 1; ua <= nodes + UAS; ua++) {
+            graph.createNode(ua, "ua" + ua, NodeType.UA, new HashMap<>());
+            graph.assign(ua, 1);
+            graph.associate(ua, 2 + random.nextInt(1000), ops);
+        }
+        for (long user = nodes + UAS + 1; user <= nodes + UAS + USERS; user++) {
+            graph.createNode(user, "u" + user, NodeType.U, new HashMap<>());
+            long first = nodes + 1 + random.nextInt(UAS);
+            long second = nodes + 1 + random.nextInt(UAS);
+            graph.assign(user, first);
+            if (second != first) {
+                graph.assign(user, second);
+            }
+        }
+        if (graph instanceof CompactGraph) {
+            ((CompactGraph) graph).compact();
+        }
+        return graph;
+    }
+
+    /**
+     * @return the milliseconds a full collection pauses for.
+     */
+    private static long fullGCPause() {
+        long before = gcTime();
+        System.gc();
+        return gcTime() - before;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MappedGraphBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
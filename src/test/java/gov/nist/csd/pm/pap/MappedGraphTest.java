@@ -0,0 +1,93 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.OA;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedGraphTest {
+
+    @Test
+    void testDirectSameAsMemGraph() throws PMException {
+        CompactGraphTest.assertSameAsMemGraph(new MappedGraph(), 13);
+    }
+
+    @Test
+    void testMappedSameAsMemGraph(@TempDir Path dir) throws PMException, IOException {
+        CompactGraphTest.assertSameAsMemGraph(new MappedGraph(dir.resolve("graph")), 17);
+
+        // the mapped files are deleted once they are mapped
+        try (Stream<Path> files = Files.list(dir.resolve("graph"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testGraphIsOffHeap() throws PMException {
+        MappedGraph graph = new MappedGraph();
+        for (long id = 1; id <= 10000; id++) {
+            graph.createNode(id, "oa" + id, OA, Collections.singletonMap("key", "value" + id));
+            if (id > 1) {
+                graph.assign(id, id / 2);
+            }
+        }
+        graph.compact();
+
+        GraphFootprint footprint = graph.getFootprint();
+        assertEquals(10000, footprint.getNodes());
+        assertEquals(9999, footprint.getAssignments());
+        assertTrue(footprint.getOffHeapBytes() > footprint.getTotalBytes() * 9 / 10);
+    }
+
+    @Test
+    void testRebuildReleasesOldArrays() throws PMException {
+        MappedGraph graph = new MappedGraph();
+        for (long id = 1; id <= 10000; id++) {
+            graph.createNode(id, "oa" + id, OA, null);
+            if (id > 1) {
+                graph.assign(id, id / 2);
+            }
+        }
+        graph.compact();
+        long offHeapBytes = graph.getFootprint().getOffHeapBytes();
+
+        // each rebuild allocates arrays of the same size and releases the ones it replaces
+        for (int i = 0; i < 10; i++) {
+            graph.compact();
+        }
+        assertEquals(offHeapBytes, graph.getFootprint().getOffHeapBytes());
+    }
+
+    @Test
+    void testReplacedRecordsAreRewritten() throws PMException {
+        MappedGraph graph = new MappedGraph();
+        char[] padding = new char[1000];
+        for (long id = 1; id <= 100; id++) {
+            graph.createNode(id, "oa" + id, OA, null);
+        }
+
+        // about 50MB of records, of which 100KB are live at any time
+        for (int i = 0; i < 500; i++) {
+            for (long id = 1; id <= 100; id++) {
+                Map<String, String> properties = new HashMap<>();
+                properties.put("version", String.valueOf(i));
+                properties.put("padding", new String(padding));
+                graph.updateNode(id, i % 2 == 0 ? "renamed" + id : null, properties);
+            }
+        }
+
+        assertEquals("renamed1", graph.getNode(1).getName());
+        assertEquals("499", graph.getNode(100).getProperties().get("version"));
+        assertTrue(graph.getFootprint().getNodeBytes() < 40 << 20);
+    }
+}
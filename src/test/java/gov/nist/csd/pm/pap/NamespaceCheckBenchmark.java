@@ -0,0 +1,84 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static gov.nist.csd.pm.common.constants.Properties.NAMESPACE_PROPERTY;
+
+/**
+ * Compares the check made before each node is created: scanning the in-memory graph for a node with the same name,
+ * type, and namespace, and claiming the key in the namespace index.  Each operation checks and creates one node in a
+ * graph that already has the given number of nodes, as a bulk create does for every node it creates.
+ *
+ * Run with "mvn test-compile" and then the main method of this class, or
+ * "java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main NamespaceCheckBenchmark".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class NamespaceCheckBenchmark {
+
+    private static final NodeType[] TYPES = {NodeType.OA, NodeType.O, NodeType.UA, NodeType.U};
+
+    @Param({"10000", "100000", "1000000"})
+    private int nodes;
+
+    private MemGraph       memGraph;
+    private NamespaceIndex namespaces;
+    private long           next;
+
+    @Setup(Level.Iteration)
+    public void setup() throws PMException {
+        memGraph = new MemGraph();
+        for (long id = 1; id <= nodes; id++) {
+            memGraph.createNode(id, "node" + id, TYPES[(int) (id % TYPES.length)], properties(id));
+        }
+        namespaces = new NamespaceIndex(memGraph.getNodes());
+        next = nodes + 1;
+    }
+
+    @Benchmark
+    public Node scanThenCreate() throws PMException {
+        long id = next++;
+        NodeType type = TYPES[(int) (id % TYPES.length)];
+        Map<String, String> properties = properties(id);
+        if (!memGraph.search("node" + id, type.toString(), properties).isEmpty()) {
+            throw new IllegalStateException("node" + id + " already exists");
+        }
+        return memGraph.createNode(id, "node" + id, type, properties);
+    }
+
+    @Benchmark
+    public Node claimThenCreate() throws PMException {
+        long id = next++;
+        NodeType type = TYPES[(int) (id % TYPES.length)];
+        Map<String, String> properties = properties(id);
+        if (!namespaces.claim(NamespaceIndex.key("node" + id, type, properties), id)) {
+            throw new IllegalStateException("node" + id + " already exists");
+        }
+        return memGraph.createNode(id, "node" + id, type, properties);
+    }
+
+    private static Map<String, String> properties(long id) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(NAMESPACE_PROPERTY, "ns" + id / 100);
+        return properties;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NamespaceCheckBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.common.exceptions.PMGraphException;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static gov.nist.csd.pm.common.constants.Properties.DEFAULT_NAMESPACE;
+import static gov.nist.csd.pm.common.constants.Properties.NAMESPACE_PROPERTY;
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NamespaceIndexTest {
+
+    @Test
+    void testClaimAndRelease() {
+        NamespaceIndex index = new NamespaceIndex(Collections.emptyList());
+        NamespaceIndex.Key key = NamespaceIndex.key("oa1", OA, namespace("ns1"));
+
+        assertTrue(index.claim(key, 1));
+        assertTrue(index.claim(key, 1));
+        assertFalse(index.claim(key, 2));
+        assertEquals(Long.valueOf(1), index.getOwner(key));
+
+        // only the owner can give a key back
+        index.release(key, 2);
+        assertEquals(Long.valueOf(1), index.getOwner(key));
+        index.release(key, 1);
+        assertNull(index.getOwner(key));
+        assertTrue(index.claim(key, 2));
+    }
+
+    @Test
+    void testKey() {
+        // a node without a namespace is in the default namespace
+        assertEquals(NamespaceIndex.key("oa1", OA, null), NamespaceIndex.key("oa1", OA, namespace(DEFAULT_NAMESPACE)));
+        assertEquals(NamespaceIndex.key("oa1", OA, new HashMap<>()), NamespaceIndex.key("oa1", OA, null));
+
+        // the name, type, and namespace all make up the key
+        assertNotEquals(NamespaceIndex.key("oa1", OA, null), NamespaceIndex.key("oa1", O, null));
+        assertNotEquals(NamespaceIndex.key("oa1", OA, null), NamespaceIndex.key("oa2", OA, null));
+        assertNotEquals(NamespaceIndex.key("oa1", OA, null), NamespaceIndex.key("oa1", OA, namespace("ns1")));
+    }
+
+    @Test
+    void testLoad() throws PMException {
+        MemGraph graph = new MemGraph();
+        graph.createNode(1, "oa1", OA, namespace("ns1"));
+        graph.createNode(2, "oa1", OA, namespace("ns2"));
+        graph.createNode(3, "oa1", O, namespace("ns1"));
+        graph.createNode(4, "oa1", OA, namespace("ns1"));
+
+        // a duplicate already in the graph is loaded, and the key stays with the node seen first
+        NamespaceIndex index = new NamespaceIndex(graph.getNodes());
+        assertEquals(3, index.size());
+        Long owner = index.getOwner(NamespaceIndex.key("oa1", OA, namespace("ns1")));
+        assertTrue(owner == 1 || owner == 4);
+    }
+
+    @Test
+    void testConcurrentClaims() throws InterruptedException {
+        NamespaceIndex index = new NamespaceIndex(Collections.emptyList());
+        NamespaceIndex.Key key = NamespaceIndex.key("u1", U, null);
+        AtomicInteger claimed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 1; i <= 8; i++) {
+            long id = i;
+            executor.submit(() -> {
+                start.await();
+                if (index.claim(key, id)) {
+                    claimed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, claimed.get());
+    }
+
+    @Test
+    void testTaken() {
+        PMGraphException e = NamespaceIndex.taken(NamespaceIndex.key("oa1", OA, namespace("ns1")));
+        assertEquals("a node with the name \"oa1\" and type OA already exists in the namespace \"ns1\"", e.getMessage());
+    }
+
+    private static Map<String, String> namespace(String namespace) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(NAMESPACE_PROPERTY, namespace);
+        return properties;
+    }
+}
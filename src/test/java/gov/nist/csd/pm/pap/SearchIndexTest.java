@@ -0,0 +1,159 @@
+package gov.nist.csd.pm.pap;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares searches of the index with searches that compare every node.
+ */
+class SearchIndexTest {
+
+    private static final NodeType[] TYPES = {OA, O, UA, U};
+
+    @Test
+    void testSearch() throws PMException {
+        Random random = new Random(7);
+        MemGraph graph = new MemGraph();
+        for (long id = 1; id <= 500; id++) {
+            graph.createNode(id, "n" + random.nextInt(50), TYPES[random.nextInt(TYPES.length)], randomProperties(random));
+        }
+
+        SearchIndex index = new SearchIndex(graph.getNodes(), Arrays.asList(SearchIndex.TYPE, "namespace"));
+        compare(graph, index, random);
+
+        // the index follows creates, updates, and deletes
+        for (long id = 501; id <= 600; id++) {
+            apply(graph, index, GraphMutation.createNode(id, "n" + random.nextInt(50), TYPES[random.nextInt(TYPES.length)],
+                    randomProperties(random)));
+        }
+        for (long id = 1; id <= 100; id++) {
+            Node node = graph.getNode(id);
+            apply(graph, index, GraphMutation.updateNode(id, "n" + random.nextInt(50), node.getType(),
+                    randomProperties(random)));
+        }
+        for (long id = 101; id <= 200; id++) {
+            apply(graph, index, GraphMutation.deleteNode(id, graph.getNode(id).getType()));
+        }
+        compare(graph, index, random);
+    }
+
+    @Test
+    void testFindByNameAndType() throws PMException {
+        // the lookup of a login's user, with and without the type indexed
+        List<List<String>> indexes = Arrays.asList(Collections.emptyList(), Collections.singletonList(SearchIndex.TYPE));
+        for (List<String> keys : indexes) {
+            MemGraph graph = new MemGraph();
+            graph.createNode(1, "u1", U, new HashMap<>());
+            graph.createNode(2, "u1", UA, new HashMap<>());
+            graph.createNode(3, "u1", U, new HashMap<>());
+            SearchIndex index = new SearchIndex(graph.getNodes(), keys);
+
+            assertEquals(new HashSet<>(Arrays.asList(1L, 3L)), ids(index.search(graph, "u1", U.toString(), null)));
+            assertEquals(Collections.singleton(2L), ids(index.search(graph, "u1", UA.toString(), null)));
+            assertTrue(index.search(graph, "u2", U.toString(), null).isEmpty());
+
+            apply(graph, index, GraphMutation.updateNode(1, "u2", U, new HashMap<>()));
+            assertEquals(Collections.singleton(3L), ids(index.search(graph, "u1", U.toString(), null)));
+            assertEquals(Collections.singleton(1L), ids(index.search(graph, "u2", U.toString(), null)));
+
+            apply(graph, index, GraphMutation.deleteNode(1, U));
+            assertTrue(index.search(graph, "u2", U.toString(), null).isEmpty());
+        }
+    }
+
+    @Test
+    void testUnindexed() throws PMException {
+        MemGraph graph = new MemGraph();
+        graph.createNode(1, "oa1", OA, new HashMap<>());
+        SearchIndex index = new SearchIndex(graph.getNodes(), Collections.singletonList("namespace"));
+
+        // nothing indexed is searched for, so the graph has to be scanned
+        assertNull(index.search(graph, null, OA.toString(), null));
+        assertNull(index.search(graph, "", null, Collections.singletonMap("key", "value")));
+
+        // the type is checked against the node when it is not indexed
+        assertEquals(1, index.search(graph, "oa1", OA.toString(), null).size());
+        assertTrue(index.search(graph, "oa1", UA.toString(), null).isEmpty());
+        assertTrue(index.search(graph, "oa1", "not a type", null).isEmpty());
+    }
+
+    private void compare(MemGraph graph, SearchIndex index, Random random) {
+        for (int i = 0; i < 500; i++) {
+            String name = random.nextBoolean() ? "n" + random.nextInt(50) : null;
+            String type = random.nextBoolean() ? TYPES[random.nextInt(TYPES.length)].toString() : null;
+            Map<String, String> properties = random.nextBoolean() ? randomProperties(random) : null;
+
+            Set<Node> found = index.search(graph, name, type, properties);
+            Set<Long> expected = scan(graph, name, type, properties);
+            if (found == null) {
+                assertTrue(name == null && type == null && (properties == null || !properties.containsKey("namespace")));
+                continue;
+            }
+
+            Set<Long> actual = new HashSet<>();
+            for (Node node : found) {
+                actual.add(node.getID());
+            }
+            assertEquals(expected, actual, String.format("name=%s type=%s properties=%s", name, type, properties));
+        }
+    }
+
+    private static Set<Long> ids(Set<Node> nodes) {
+        Set<Long> ids = new HashSet<>();
+        for (Node node : nodes) {
+            ids.add(node.getID());
+        }
+        return ids;
+    }
+
+    private static void apply(MemGraph graph, SearchIndex index, GraphMutation mutation) throws PMException {
+        index.apply(mutation, graph);
+        switch (mutation.getKind()) {
+            case CREATE_NODE:
+                graph.createNode(mutation.getSourceID(), mutation.getName(), mutation.getType(), mutation.getProperties());
+                break;
+            case UPDATE_NODE:
+                graph.updateNode(mutation.getSourceID(), mutation.getName(), mutation.getProperties());
+                break;
+            case DELETE_NODE:
+                graph.deleteNode(mutation.getSourceID());
+                break;
+        }
+    }
+
+    private static Set<Long> scan(MemGraph graph, String name, String type, Map<String, String> properties) {
+        Set<Long> ids = new HashSet<>();
+        for (Node node : graph.getNodes()) {
+            if (name != null && !name.equals(node.getName())) {
+                continue;
+            } else if (type != null && !type.equals(node.getType().toString())) {
+                continue;
+            } else if (properties != null && !properties.entrySet().stream()
+                    .allMatch(e -> e.getValue().equals(node.getProperties().get(e.getKey())))) {
+                continue;
+            }
+            ids.add(node.getID());
+        }
+        return ids;
+    }
+
+    private static Map<String, String> randomProperties(Random random) {
+        Map<String, String> properties = new HashMap<>();
+        if (random.nextBoolean()) {
+            properties.put("namespace", "ns" + random.nextInt(5));
+        }
+        if (random.nextBoolean()) {
+            properties.put("key", "value" + random.nextInt(3));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,97 @@
+package gov.nist.csd.pm.pap.ids;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockIDAllocatorTest {
+
+    /**
+     * Reserves consecutive ranges starting at 1, like the Neo4j sequence on an empty database.
+     */
+    private static class CountingSource implements IDBlockSource {
+        private long next = 1;
+        private AtomicInteger reserved = new AtomicInteger();
+
+        @Override
+        public synchronized long reserve(int size, long after) {
+            reserved.incrementAndGet();
+            long start = Math.max(next, after + 1);
+            next = start + size;
+            return start;
+        }
+    }
+
+    @Test
+    void testIncreasing() throws PMException {
+        CountingSource source = new CountingSource();
+        BlockIDAllocator allocator = new BlockIDAllocator(source, 100, 10);
+
+        for (long expected = 1; expected <= 1000; expected++) {
+            assertEquals(expected, allocator.nextID());
+        }
+
+        // the source is only asked once per block
+        assertEquals(10, source.reserved.get());
+    }
+
+    @Test
+    void testSkipPast() throws PMException {
+        BlockIDAllocator allocator = new BlockIDAllocator(new CountingSource(), 100, 10);
+        assertEquals(1, allocator.nextID());
+
+        // a loaded ID inside the current block and one beyond it
+        allocator.skipPast(50);
+        assertTrue(allocator.nextID() > 50);
+        allocator.skipPast(5000);
+        assertEquals(5001, allocator.nextID());
+    }
+
+    @Test
+    void testConcurrent() throws Exception {
+        BlockIDAllocator allocator = new BlockIDAllocator(new CountingSource(), 1000, 10);
+        int threads = 8;
+        int perThread = 10000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                long[] ids = new long[perThread];
+                for (int j = 0; j < perThread; j++) {
+                    ids[j] = allocator.nextID();
+                }
+                return ids;
+            }));
+        }
+        executor.shutdown();
+
+        Set<Long> all = new HashSet<>();
+        for (Future<long[]> future : futures) {
+            long[] ids = future.get(30, TimeUnit.SECONDS);
+            for (int j = 0; j < ids.length; j++) {
+                assertTrue(ids[j] > 0);
+                // the IDs each thread is given increase
+                assertTrue(j == 0 || ids[j] > ids[j - 1]);
+                assertTrue(all.add(ids[j]), "ID " + ids[j] + " was allocated twice");
+            }
+        }
+
+        // the IDs are dense, apart from the unused part each thread holds
+        long max = Collections.max(all);
+        assertTrue(max <= threads * perThread + threads * 10);
+    }
+
+    @Test
+    void testInvalidSizes() {
+        CountingSource source = new CountingSource();
+        assertThrows(IllegalArgumentException.class, () -> new BlockIDAllocator(source, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new BlockIDAllocator(source, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BlockIDAllocator(source, 10, 20));
+    }
+}
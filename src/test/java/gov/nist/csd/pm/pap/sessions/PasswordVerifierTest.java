@@ -0,0 +1,81 @@
+package gov.nist.csd.pm.pap.sessions;
+
+import gov.nist.csd.pm.common.exceptions.PMUnavailableException;
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import org.junit.jupiter.api.Test;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordVerifierTest {
+
+    @Test
+    void testVerify() throws PMException, InvalidKeySpecException, NoSuchAlgorithmException {
+        PasswordVerifier verifier = new PasswordVerifier(1, 1, 0, 100);
+        String stored = NodeUtils.generatePasswordHash("password");
+
+        PasswordVerifier.Result result = verifier.verify(stored, "password");
+        assertTrue(result.matches());
+        assertNull(result.getRehash());
+        assertFalse(verifier.verify(stored, "wrong").matches());
+
+        LoginStats stats = verifier.getStats();
+        assertEquals(2, stats.getVerified());
+        assertEquals(1, stats.getFailed());
+        assertTrue(stats.getP50() <= stats.getMax());
+        verifier.close();
+    }
+
+    @Test
+    void testRehash() throws PMException, InvalidKeySpecException, NoSuchAlgorithmException {
+        PasswordVerifier verifier = new PasswordVerifier(1, 1, 0, 1000);
+        String stored = NodeUtils.generatePasswordHash("password");
+        assertEquals(100, NodeUtils.getHashIterations(stored));
+
+        PasswordVerifier.Result result = verifier.verify(stored, "password");
+        assertTrue(result.matches());
+        assertNotNull(result.getRehash());
+        assertEquals(1000, NodeUtils.getHashIterations(result.getRehash()));
+        assertTrue(NodeUtils.checkPasswordHash(result.getRehash(), "password"));
+        assertFalse(NodeUtils.checkPasswordHash(result.getRehash(), "wrong"));
+
+        // the new hash has enough iterations, so it is not replaced again
+        assertNull(verifier.verify(result.getRehash(), "password").getRehash());
+        assertEquals(1, verifier.getStats().getRehashed());
+        verifier.close();
+    }
+
+    @Test
+    void testRejectWhenFull() throws Exception {
+        PasswordVerifier verifier = new PasswordVerifier(1, 1, 0, 100000);
+        String stored = NodeUtils.generatePasswordHash("password", 100000);
+
+        // more logins than the thread and the queue can hold
+        ExecutorService logins = Executors.newFixedThreadPool(8);
+        List<Future<PasswordVerifier.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(logins.submit(() -> verifier.verify(stored, "password")));
+        }
+
+        int rejected = 0;
+        for (Future<PasswordVerifier.Result> future : futures) {
+            try {
+                assertTrue(future.get().matches());
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof PMUnavailableException);
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 0);
+        assertEquals(rejected, verifier.getStats().getRejected());
+        logins.shutdown();
+        verifier.close();
+    }
+}
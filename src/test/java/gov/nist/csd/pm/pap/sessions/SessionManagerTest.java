@@ -0,0 +1,153 @@
+package gov.nist.csd.pm.pap.sessions;
+
+import gov.nist.csd.pm.common.exceptions.PMAuthenticationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionManagerTest {
+
+    @Test
+    void testUnknownSession() {
+        SessionManager sessionManager = new SessionManager();
+        assertThrows(PMAuthenticationException.class, () -> sessionManager.getSessionUserID("123"));
+        assertThrows(PMAuthenticationException.class, () -> sessionManager.getSessionUserID(null));
+        sessionManager.close();
+    }
+
+    @Test
+    void testCreateAndDelete() throws PMAuthenticationException {
+        SessionManager sessionManager = new SessionManager();
+        sessionManager.createSession("123", 1);
+        assertEquals(1, sessionManager.getSessionUserID("123"));
+
+        sessionManager.deleteSession("123");
+        assertThrows(PMAuthenticationException.class, () -> sessionManager.getSessionUserID("123"));
+        assertEquals(0, sessionManager.getStats().getActive());
+        assertEquals(1, sessionManager.getStats().getCreated());
+        sessionManager.close();
+    }
+
+    @Test
+    void testIdleTimeout() throws InterruptedException {
+        SessionManager sessionManager = new SessionManager(50, 0, 10, 0, null);
+        sessionManager.createSession("123", 1);
+        Thread.sleep(100);
+
+        assertThrows(PMAuthenticationException.class, () -> sessionManager.getSessionUserID("123"));
+        assertEquals(1, sessionManager.getStats().getExpired());
+        assertEquals(0, sessionManager.getStats().getActive());
+        sessionManager.close();
+    }
+
+    @Test
+    void testMaxLifetime() throws InterruptedException, PMAuthenticationException {
+        SessionManager sessionManager = new SessionManager(0, 100, 10, 0, null);
+        sessionManager.createSession("123", 1);
+        assertEquals(1, sessionManager.getSessionUserID("123"));
+        Thread.sleep(150);
+
+        assertThrows(PMAuthenticationException.class, () -> sessionManager.getSessionUserID("123"));
+        assertEquals(1, sessionManager.getStats().getExpired());
+        sessionManager.close();
+    }
+
+    @Test
+    void testSweep() throws InterruptedException {
+        SessionManager sessionManager = new SessionManager(50, 0, 10, 0, null);
+        sessionManager.createSession("123", 1);
+        sessionManager.createSession("456", 2);
+        Thread.sleep(100);
+
+        sessionManager.sweep();
+        assertEquals(0, sessionManager.getStats().getActive());
+        assertEquals(2, sessionManager.getStats().getExpired());
+        sessionManager.close();
+    }
+
+    @Test
+    void testMaxSessions() throws PMAuthenticationException {
+        SessionManager sessionManager = new SessionManager(0, 0, 2, 0, null);
+        sessionManager.createSession("1", 1);
+        sessionManager.createSession("2", 2);
+        sessionManager.createSession("3", 3);
+
+        assertEquals(2, sessionManager.getStats().getActive());
+        assertEquals(1, sessionManager.getStats().getEvicted());
+        assertEquals(3, sessionManager.getSessionUserID("3"));
+        sessionManager.close();
+    }
+
+    @Test
+    void testConcurrentCreateStaysUnderMax() throws InterruptedException {
+        SessionManager sessionManager = new SessionManager(0, 0, 10, 0, null);
+        AtomicBoolean overMax = new AtomicBoolean();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t * 1000;
+            threads[t] = new Thread(() -> {
+                for (int i = first; i < first + 1000; i++) {
+                    sessionManager.createSession(String.valueOf(i), i);
+                    if (sessionManager.getStats().getActive() > 10) {
+                        overMax.set(true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(overMax.get());
+        assertEquals(10, sessionManager.getStats().getActive());
+        assertEquals(8000 - 10, sessionManager.getStats().getEvicted());
+        sessionManager.close();
+    }
+
+    @Test
+    void testFileSessionStore() throws IOException, PMAuthenticationException {
+        Path dir = Files.createTempDirectory("sessions");
+        Path path = dir.resolve("sessions.log");
+        try {
+            SessionManager sessionManager = new SessionManager(0, 0, 10, 0, new FileSessionStore(path));
+            sessionManager.createSession("session-123", 1);
+            sessionManager.createSession("session-456", 2);
+            sessionManager.deleteSession("session-123");
+            sessionManager.close();
+
+            // only the hashes of the session IDs are written, to a file only its owner can read
+            String contents = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            assertFalse(contents.contains("session-"));
+            if (Files.getFileStore(dir).supportsFileAttributeView("posix")) {
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+            }
+
+            List<Session> loaded = new ArrayList<>(new FileSessionStore(path).load());
+            assertEquals(1, loaded.size());
+            assertEquals(Session.hashID("session-456"), loaded.get(0).getID());
+
+            SessionManager restored = new SessionManager(0, 0, 10, 0, new FileSessionStore(path));
+            assertEquals(2, restored.getSessionUserID("session-456"));
+            assertThrows(PMAuthenticationException.class, () -> restored.getSessionUserID("session-123"));
+            assertThrows(PMAuthenticationException.class, () -> restored.getSessionUserID(Session.hashID("session-456")));
+
+            restored.reset();
+            assertFalse(Files.exists(path));
+            restored.close();
+        }
+        finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
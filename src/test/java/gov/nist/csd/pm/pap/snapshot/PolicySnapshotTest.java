@@ -0,0 +1,99 @@
+package gov.nist.csd.pm.pap.snapshot;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicySnapshotTest {
+
+    private Path dir;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot");
+        file = dir.resolve("policy.snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testWriteAndRead() throws PMException, IOException {
+        MemGraph graph = new MemGraph();
+        Node pc = graph.createNode(1, "pc", PC, NodeUtils.toProperties("key", "välue"));
+        Node ua = graph.createNode(2, "ua", UA, null);
+        Node oa = graph.createNode(3, "oa", OA, NodeUtils.toProperties("k1", "v1", "k2", "v2"));
+        Node u = graph.createNode(4, "u", U, null);
+        graph.assign(ua.getID(), pc.getID());
+        graph.assign(oa.getID(), pc.getID());
+        graph.assign(u.getID(), ua.getID());
+        graph.associate(ua.getID(), oa.getID(), new HashSet<>(Arrays.asList("read", "write")));
+
+        Prohibition prohibition = new Prohibition();
+        prohibition.setName("deny");
+        prohibition.setIntersection(true);
+        prohibition.setOperations(new HashSet<>(Arrays.asList("read")));
+        prohibition.setSubject(new Prohibition.Subject(ua.getID(), Prohibition.Subject.Type.USER_ATTRIBUTE));
+        prohibition.addNode(new Prohibition.Node(oa.getID(), true));
+
+        PolicySnapshot.write(file, 1234, graph, Collections.singletonList(prohibition));
+        PolicySnapshot snapshot = PolicySnapshot.read(file);
+
+        assertEquals(1234, snapshot.getEpoch());
+        assertEquals(4, snapshot.getNodeCount());
+        assertEquals(3, snapshot.getAssignmentCount());
+        assertEquals(1, snapshot.getAssociationCount());
+
+        Graph read = snapshot.getGraph();
+        assertEquals("välue", read.getNode(pc.getID()).getProperties().get("key"));
+        assertEquals(OA, read.getNode(oa.getID()).getType());
+        assertTrue(read.getPolicies().contains(pc.getID()));
+        assertEquals(new HashSet<>(Arrays.asList(ua.getID(), oa.getID())), read.getChildren(pc.getID()));
+        assertTrue(read.getParents(u.getID()).contains(ua.getID()));
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), read.getSourceAssociations(ua.getID()).get(oa.getID()));
+
+        assertEquals(1, snapshot.getProhibitions().size());
+        Prohibition readProhibition = snapshot.getProhibitions().get(0);
+        assertEquals("deny", readProhibition.getName());
+        assertTrue(readProhibition.isIntersection());
+        assertEquals(ua.getID(), readProhibition.getSubject().getSubjectID());
+        assertEquals(Prohibition.Subject.Type.USER_ATTRIBUTE, readProhibition.getSubject().getSubjectType());
+        assertTrue(readProhibition.getNodes().get(0).isComplement());
+    }
+
+    @Test
+    void testChecksumMismatch() throws PMException, IOException {
+        MemGraph graph = new MemGraph();
+        graph.createNode(1, "pc", PC, null);
+        PolicySnapshot.write(file, 1, graph, new ArrayList<>());
+
+        // flip a byte in the middle of the file
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(20);
+            int b = raf.read();
+            raf.seek(20);
+            raf.write(b ^ 0xff);
+        }
+
+        assertThrows(IOException.class, () -> PolicySnapshot.read(file));
+    }
+}
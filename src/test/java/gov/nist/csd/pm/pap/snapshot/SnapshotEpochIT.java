@@ -0,0 +1,113 @@
+package gov.nist.csd.pm.pap.snapshot;
+
+import gov.nist.csd.pm.common.exceptions.PMDBException;
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.pip.loader.graph.Neo4jGraphLoader;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.OA;
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.PC;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotEpochIT {
+
+    private Path            dir;
+    private Path            file;
+    private String          testID;
+    private Neo4jGraph      dbGraph;
+    private GraphPAP        graphPAP;
+    private ProhibitionsPAP prohibitionsPAP;
+    private ExecutorService executor;
+    private Random          random = new Random();
+
+    private AtomicBoolean  slow    = new AtomicBoolean();
+    private CountDownLatch written = new CountDownLatch(1);
+    private CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dir = Files.createTempDirectory("snapshot");
+        file = dir.resolve("policy.snapshot");
+        testID = UUID.randomUUID().toString();
+        executor = Executors.newFixedThreadPool(2);
+
+        // a database graph that, once armed, stops after writing a change and before it is applied in memory
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext()) {
+            @Override
+            public void write(List<GraphMutation> mutations) throws PMDBException {
+                super.write(mutations);
+                if (slow.get()) {
+                    written.countDown();
+                    try {
+                        release.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        prohibitionsPAP = new ProhibitionsPAP(TestUtils.getDatabaseContext(), new ArrayList<>());
+    }
+
+    @AfterEach
+    void tearDown() throws PMException, IOException {
+        release.countDown();
+        executor.shutdownNow();
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for (Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testSnapshotDuringSlowCommit() throws Exception {
+        Node pc = graphPAP.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        Node oa = graphPAP.createNode(random.nextLong(), "oa", OA, NodeUtils.toProperties("namespace", testID));
+        Neo4jGraphLoader loader = new Neo4jGraphLoader(TestUtils.getDatabaseContext());
+
+        slow.set(true);
+        Future<?> commit = executor.submit(() -> {
+            graphPAP.assign(oa.getID(), pc.getID());
+            return null;
+        });
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+
+        // write a snapshot the way the PAP does while the assignment is in the database but not yet in memory
+        Future<?> snapshot = executor.submit(() -> {
+            long epoch = graphPAP.readCommitted(() -> prohibitionsPAP.readCommitted(loader::getEpoch));
+            PolicySnapshot.write(file, epoch, graphPAP, prohibitionsPAP.getProhibitions());
+            return null;
+        });
+        assertThrows(TimeoutException.class, () -> snapshot.get(500, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        commit.get(10, TimeUnit.SECONDS);
+        snapshot.get(10, TimeUnit.SECONDS);
+
+        // the assignment is either in the snapshot or caught up from the database
+        PolicySnapshot read = PolicySnapshot.read(file, new MemGraph());
+        loader.catchUp(read.getGraph(), read.getEpoch());
+        assertTrue(read.getGraph().getParents(oa.getID()).contains(pc.getID()));
+    }
+}
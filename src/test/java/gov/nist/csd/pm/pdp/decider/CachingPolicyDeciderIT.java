@@ -0,0 +1,181 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.decider.PReviewDecider;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingPolicyDeciderIT {
+
+    private Neo4jGraph           dbGraph;
+    private GraphPAP             graphPAP;
+    private ProhibitionsPAP      prohibitionsPAP;
+    private CachingPolicyDecider decider;
+    private String               testID;
+    private Random               random = new Random();
+
+    private Node pc1;
+    private Node pc2;
+    private Node u;
+    private Node ua1;
+    private Node ua2;
+    private Node oa1;
+    private Node oa2;
+    private Node o;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        prohibitionsPAP = new ProhibitionsPAP(TestUtils.getDatabaseContext(), new ArrayList<>());
+        decider = new CachingPolicyDecider(graphPAP, prohibitionsPAP, 1000, true);
+        testID = UUID.randomUUID().toString();
+
+        pc1 = graphPAP.createNode(random.nextLong(), "pc1", PC, NodeUtils.toProperties("namespace", testID));
+        pc2 = graphPAP.createNode(random.nextLong(), "pc2", PC, NodeUtils.toProperties("namespace", testID));
+        ua1 = graphPAP.createNode(random.nextLong(), "ua1", UA, NodeUtils.toProperties("namespace", testID));
+        ua2 = graphPAP.createNode(random.nextLong(), "ua2", UA, NodeUtils.toProperties("namespace", testID));
+        u = graphPAP.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+        oa1 = graphPAP.createNode(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(ua1.getID(), pc1.getID());
+        graphPAP.assign(ua2.getID(), pc2.getID());
+        graphPAP.assign(u.getID(), ua1.getID());
+        graphPAP.assign(oa1.getID(), pc1.getID());
+        graphPAP.assign(oa2.getID(), pc2.getID());
+        graphPAP.assign(o.getID(), oa1.getID());
+        graphPAP.associate(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read", "write")));
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        decider.close();
+        for (Prohibition prohibition : prohibitionsPAP.getProhibitions()) {
+            prohibitionsPAP.deleteProhibition(prohibition.getName());
+        }
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testHitsAndMisses() throws PMException {
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), decider.listPermissions(u.getID(), o.getID()));
+        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "read"));
+        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "any"));
+
+        DecisionCacheStats stats = decider.getStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    void testEviction() throws PMException {
+        CachingPolicyDecider small = new CachingPolicyDecider(graphPAP, prohibitionsPAP, 16, true);
+        try {
+            for (int i = 0; i < 100; i++) {
+                Node node = graphPAP.createNode(random.nextLong(), "o" + i, O, NodeUtils.toProperties("namespace", testID));
+                graphPAP.assign(node.getID(), oa1.getID());
+                small.listPermissions(u.getID(), node.getID());
+            }
+            assertTrue(small.getStats().getSize() <= 16);
+            assertTrue(small.getStats().getEvictions() >= 84);
+        }
+        finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void testInvalidation() throws PMException {
+        // cache the decision, then make each kind of change and check the decision matches an uncached one
+        check();
+
+        // leaf assignment
+        graphPAP.assign(o.getID(), oa2.getID());
+        check();
+        graphPAP.associate(ua2.getID(), oa2.getID(), new HashSet<>(Arrays.asList("read")));
+        check();
+        graphPAP.assign(u.getID(), ua2.getID());
+        check();
+
+        // association on one policy class
+        graphPAP.associate(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read")));
+        check();
+        graphPAP.dissociate(ua2.getID(), oa2.getID());
+        check();
+
+        // attribute assignment into and out of a policy class
+        Node oa3 = graphPAP.createNode(random.nextLong(), "oa3", OA, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(oa3.getID(), pc2.getID());
+        graphPAP.associate(ua2.getID(), oa3.getID(), new HashSet<>(Arrays.asList("read")));
+        check();
+        graphPAP.assign(oa1.getID(), oa3.getID());
+        check();
+        graphPAP.deassign(oa1.getID(), oa3.getID());
+        check();
+        graphPAP.deassign(o.getID(), oa2.getID());
+        check();
+
+        // prohibition
+        String name = testID + "-deny";
+        prohibitionsPAP.createProhibition(new Prohibition(name, new Prohibition.Subject(u.getID(), Prohibition.Subject.Type.USER),
+                Collections.singletonList(new Prohibition.Node(oa1.getID(), false)), new HashSet<>(Arrays.asList("read")), false));
+        check();
+        prohibitionsPAP.deleteProhibition(name);
+        check();
+
+        // deleting an attribute
+        graphPAP.deassign(u.getID(), ua2.getID());
+        graphPAP.deleteNode(ua2.getID());
+        check();
+
+        assertTrue(decider.getStats().getInvalidations() > 0);
+    }
+
+    @Test
+    void testKillSwitch() throws PMException {
+        decider.listPermissions(u.getID(), o.getID());
+        decider.setEnabled(false);
+        assertEquals(0, decider.getStats().getSize());
+
+        decider.listPermissions(u.getID(), o.getID());
+        assertEquals(0, decider.getStats().getSize());
+        assertEquals(1, decider.getStats().getMisses());
+
+        decider.setEnabled(true);
+        decider.listPermissions(u.getID(), o.getID());
+        assertEquals(1, decider.getStats().getSize());
+    }
+
+    /**
+     * Compare the cached decision, after it has been cached once, with one from a new decider.
+     */
+    private void check() throws PMException {
+        PReviewDecider uncached = new PReviewDecider(graphPAP, prohibitionsPAP.getProhibitions());
+        Set<String> expected = uncached.listPermissions(u.getID(), o.getID());
+        assertEquals(expected, decider.listPermissions(u.getID(), o.getID()));
+        assertEquals(expected, decider.listPermissions(u.getID(), o.getID()));
+        for (String op : Arrays.asList("read", "write", "any")) {
+            assertEquals(uncached.hasPermissions(u.getID(), o.getID(), op), decider.hasPermissions(u.getID(), o.getID(), op));
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.decider.PReviewDecider;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapabilityIndexIT {
+
+    private Neo4jGraph      dbGraph;
+    private GraphPAP        graphPAP;
+    private ProhibitionsPAP prohibitionsPAP;
+    private CapabilityIndex index;
+    private PolicyDecider   decider;
+    private String          testID;
+    private Random          random = new Random();
+
+    private Node pc1;
+    private Node pc2;
+    private Node u;
+    private Node ua1;
+    private Node ua2;
+    private Node oa1;
+    private Node oa2;
+    private Node o;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        prohibitionsPAP = new ProhibitionsPAP(TestUtils.getDatabaseContext(), new ArrayList<>());
+        index = new CapabilityIndex(graphPAP, prohibitionsPAP, 1000, 10);
+        decider = new PolicyDecider(graphPAP, prohibitionsPAP);
+        decider.setCapabilityIndex(index);
+        testID = UUID.randomUUID().toString();
+
+        pc1 = graphPAP.createNode(random.nextLong(), "pc1", PC, NodeUtils.toProperties("namespace", testID));
+        pc2 = graphPAP.createNode(random.nextLong(), "pc2", PC, NodeUtils.toProperties("namespace", testID));
+        ua1 = graphPAP.createNode(random.nextLong(), "ua1", UA, NodeUtils.toProperties("namespace", testID));
+        ua2 = graphPAP.createNode(random.nextLong(), "ua2", UA, NodeUtils.toProperties("namespace", testID));
+        u = graphPAP.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+        oa1 = graphPAP.createNode(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(ua1.getID(), pc1.getID());
+        graphPAP.assign(ua2.getID(), pc2.getID());
+        graphPAP.assign(u.getID(), ua1.getID());
+        graphPAP.assign(oa1.getID(), pc1.getID());
+        graphPAP.assign(oa2.getID(), pc2.getID());
+        graphPAP.assign(o.getID(), oa1.getID());
+        graphPAP.associate(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read", "write")));
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        decider.close();
+        index.close();
+        for (Prohibition prohibition : prohibitionsPAP.getProhibitions()) {
+            prohibitionsPAP.deleteProhibition(prohibition.getName());
+        }
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testLookup() throws PMException {
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), index.listPermissions(u.getID(), o.getID()));
+        assertEquals(new HashSet<>(), index.listPermissions(u.getID(), oa2.getID()));
+        assertNull(index.listPermissions(u.getID(), random.nextLong()));
+        assertEquals(new HashSet<>(Arrays.asList(o.getID(), oa1.getID())),
+                index.filter(u.getID(), Arrays.asList(o.getID(), oa1.getID(), oa2.getID(), pc1.getID()), "read"));
+
+        List<CapabilityIndexStats> stats = index.getStats();
+        assertEquals(1, stats.size());
+        assertEquals(u.getID(), stats.get(0).getUserID());
+        assertEquals(2, stats.get(0).getEntries());
+        assertTrue(stats.get(0).getEstimatedBytes() > 0);
+        assertFalse(stats.get(0).isOverCap());
+    }
+
+    @Test
+    void testUpdates() throws PMException {
+        check();
+
+        // leaf assignment
+        graphPAP.assign(o.getID(), oa2.getID());
+        check();
+        graphPAP.associate(ua2.getID(), oa2.getID(), new HashSet<>(Arrays.asList("read")));
+        check();
+        graphPAP.assign(u.getID(), ua2.getID());
+        check();
+
+        // a new object
+        Node o2 = graphPAP.createNode(random.nextLong(), "o2", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(o2.getID(), oa1.getID());
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), index.listPermissions(u.getID(), o2.getID()));
+
+        // associations
+        graphPAP.associate(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read")));
+        check();
+        graphPAP.dissociate(ua2.getID(), oa2.getID());
+        check();
+
+        // attribute assignment
+        Node oa3 = graphPAP.createNode(random.nextLong(), "oa3", OA, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(oa3.getID(), pc2.getID());
+        graphPAP.associate(ua2.getID(), oa3.getID(), new HashSet<>(Arrays.asList("read")));
+        graphPAP.assign(oa1.getID(), oa3.getID());
+        check();
+        graphPAP.deassign(oa1.getID(), oa3.getID());
+        check();
+        graphPAP.deassign(o.getID(), oa2.getID());
+        check();
+
+        // prohibitions, including one on a container the object is assigned to after it is created
+        String name = testID + "-deny";
+        prohibitionsPAP.createProhibition(new Prohibition(name, new Prohibition.Subject(u.getID(), Prohibition.Subject.Type.USER),
+                Collections.singletonList(new Prohibition.Node(oa2.getID(), false)), new HashSet<>(Arrays.asList("read")), false));
+        check();
+        graphPAP.assign(o.getID(), oa2.getID());
+        check();
+        prohibitionsPAP.deleteProhibition(name);
+        check();
+
+        // deleting the object
+        graphPAP.deleteNode(o2.getID());
+        assertNull(index.listPermissions(u.getID(), o2.getID()));
+    }
+
+    @Test
+    void testOverCap() throws PMException {
+        CapabilityIndex small = new CapabilityIndex(graphPAP, prohibitionsPAP, 1, 10);
+        try {
+            assertNull(small.listPermissions(u.getID(), o.getID()));
+            assertNull(small.filter(u.getID(), Collections.singletonList(o.getID()), "read"));
+            assertTrue(small.getStats().get(0).isOverCap());
+            assertEquals(0, small.getStats().get(0).getEntries());
+
+            // the decider falls back to the graph
+            decider.setCapabilityIndex(small);
+            assertTrue(decider.hasPermissions(u.getID(), o.getID(), "read"));
+        }
+        finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void testMaxUsers() throws PMException {
+        CapabilityIndex small = new CapabilityIndex(graphPAP, prohibitionsPAP, 1000, 2);
+        try {
+            for (int i = 0; i < 5; i++) {
+                Node user = graphPAP.createNode(random.nextLong(), "u" + i, U, NodeUtils.toProperties("namespace", testID));
+                graphPAP.assign(user.getID(), ua1.getID());
+                assertEquals(new HashSet<>(Arrays.asList("read", "write")), small.listPermissions(user.getID(), o.getID()));
+            }
+            assertEquals(2, small.getStats().size());
+        }
+        finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void testOnlyUsersAreIndexed() throws PMException {
+        CapabilityIndex small = new CapabilityIndex(graphPAP, prohibitionsPAP, 1000, 2);
+        try {
+            assertNotNull(small.listPermissions(u.getID(), o.getID()));
+
+            // IDs that are not users do not take a place in the index
+            for (int i = 0; i < 5; i++) {
+                assertNull(small.listPermissions(random.nextLong(), o.getID()));
+            }
+            assertNull(small.listPermissions(ua1.getID(), o.getID()));
+            assertNull(small.listPermissions(o.getID(), o.getID()));
+
+            List<CapabilityIndexStats> stats = small.getStats();
+            assertEquals(1, stats.size());
+            assertEquals(u.getID(), stats.get(0).getUserID());
+        }
+        finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void testRevokedPermissionsAreNotRead() throws Exception {
+        assertTrue(index.listPermissions(u.getID(), o.getID()).contains("read"));
+
+        // readers check that the index never answers with the permission while it is revoked.  The phase is odd from
+        // when a deassign has returned until just before the assignment is made again.
+        AtomicInteger phase = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(readers.submit(() -> {
+                while (!stop.get()) {
+                    int before = phase.get();
+                    Set<String> ops = index.listPermissions(u.getID(), o.getID());
+                    if (before % 2 == 1 && phase.get() == before && ops != null && ops.contains("read")) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                graphPAP.deassign(u.getID(), ua1.getID());
+                phase.incrementAndGet();
+                Thread.sleep(5);
+                phase.incrementAndGet();
+                graphPAP.assign(u.getID(), ua1.getID());
+                Thread.sleep(5);
+            }
+        }
+        finally {
+            stop.set(true);
+            readers.shutdown();
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+    }
+
+    /**
+     * Compare the indexed decision with one from a new decider.
+     */
+    private void check() throws PMException {
+        PReviewDecider uncached = new PReviewDecider(graphPAP, prohibitionsPAP.getProhibitions());
+        Set<String> expected = uncached.listPermissions(u.getID(), o.getID());
+        assertEquals(expected, index.listPermissions(u.getID(), o.getID()));
+        assertEquals(expected, decider.listPermissions(u.getID(), o.getID()));
+        for (String op : Arrays.asList("read", "write", "any")) {
+            assertEquals(uncached.hasPermissions(u.getID(), o.getID(), op), decider.hasPermissions(u.getID(), o.getID(), op));
+        }
+    }
+}
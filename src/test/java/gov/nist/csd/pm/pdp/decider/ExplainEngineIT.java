@@ -0,0 +1,152 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExplainEngineIT {
+
+    private Neo4jGraph       dbGraph;
+    private GraphPAP         graphPAP;
+    private PolicyClassIndex pcIndex;
+    private ExplainEngine    engine;
+    private String           testID;
+    private Random           random = new Random();
+
+    private Node pc1;
+    private Node u;
+    private Node ua1;
+    private Node ua2;
+    private Node oa1;
+    private Node o;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        pcIndex = new PolicyClassIndex(graphPAP);
+        engine = new ExplainEngine(graphPAP, pcIndex, 100, 1000);
+        testID = UUID.randomUUID().toString();
+
+        // u reaches ua1 directly and through ua2
+        pc1 = graphPAP.createNode(random.nextLong(), "pc1", PC, NodeUtils.toProperties("namespace", testID));
+        ua1 = graphPAP.createNode(random.nextLong(), "ua1", UA, NodeUtils.toProperties("namespace", testID));
+        ua2 = graphPAP.createNode(random.nextLong(), "ua2", UA, NodeUtils.toProperties("namespace", testID));
+        u = graphPAP.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+        oa1 = graphPAP.createNode(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(ua1.getID(), pc1.getID());
+        graphPAP.assign(ua2.getID(), ua1.getID());
+        graphPAP.assign(u.getID(), ua1.getID());
+        graphPAP.assign(u.getID(), ua2.getID());
+        graphPAP.assign(oa1.getID(), pc1.getID());
+        graphPAP.assign(o.getID(), oa1.getID());
+        graphPAP.associate(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read", "write")));
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        engine.close();
+        pcIndex.close();
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testExplain() throws PMException {
+        Explanation explanation = engine.explain(u.getID(), o.getID());
+        assertFalse(explanation.isTruncated());
+        List<ExplainPath> paths = explanation.getPaths().get("pc1");
+        assertEquals(2, paths.size());
+
+        Set<List<String>> userPaths = new HashSet<>();
+        for (ExplainPath path : paths) {
+            userPaths.add(path.getUserPath());
+            assertEquals(Arrays.asList("o", "oa1"), path.getTargetPath());
+            assertEquals(new HashSet<>(Arrays.asList("read", "write")), path.getOperations());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(Arrays.asList("u", "ua1"), Arrays.asList("u", "ua2", "ua1"))), userPaths);
+
+        assertThrows(PMException.class, () -> engine.explain(random.nextLong(), o.getID()));
+    }
+
+    @Test
+    void testTruncation() throws PMException {
+        ExplainEngine limited = new ExplainEngine(graphPAP, pcIndex, 1, 1000);
+        try {
+            Explanation explanation = limited.explain(u.getID(), o.getID());
+            assertTrue(explanation.isTruncated());
+            assertEquals(1, explanation.getPaths().get("pc1").size());
+        }
+        finally {
+            limited.close();
+        }
+    }
+
+    @Test
+    void testTruncationOffTheResult() throws PMException {
+        // o2 reaches pc1 through two attributes, but only the single path to oa1 is used by the association
+        Node u2 = graphPAP.createNode(random.nextLong(), "u2", U, NodeUtils.toProperties("namespace", testID));
+        Node oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        Node o2 = graphPAP.createNode(random.nextLong(), "o2", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(u2.getID(), ua1.getID());
+        graphPAP.assign(oa2.getID(), pc1.getID());
+        graphPAP.assign(o2.getID(), oa1.getID());
+        graphPAP.assign(o2.getID(), oa2.getID());
+
+        ExplainEngine limited = new ExplainEngine(graphPAP, pcIndex, 1, 1000);
+        try {
+            Explanation explanation = limited.explain(u2.getID(), o2.getID());
+            assertFalse(explanation.isTruncated());
+            assertEquals(1, explanation.getPaths().get("pc1").size());
+        }
+        finally {
+            limited.close();
+        }
+    }
+
+    @Test
+    void testCacheAndEpoch() throws PMException {
+        Explanation first = engine.explain(u.getID(), o.getID());
+        assertSame(first, engine.explain(u.getID(), o.getID()));
+
+        // a change to the graph makes the cached explanation stale
+        Node oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(oa2.getID(), pc1.getID());
+        graphPAP.assign(o.getID(), oa2.getID());
+        graphPAP.associate(ua2.getID(), oa2.getID(), new HashSet<>(Collections.singletonList("read")));
+        Explanation second = engine.explain(u.getID(), o.getID());
+        assertNotSame(first, second);
+        assertEquals(3, second.getPaths().get("pc1").size());
+    }
+
+    @Test
+    void testExplainAll() throws PMException {
+        Node o2 = graphPAP.createNode(random.nextLong(), "o2", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(o2.getID(), oa1.getID());
+
+        List<Explanation> explanations = engine.explainAll(Arrays.asList(
+                new long[]{u.getID(), o.getID()},
+                new long[]{u.getID(), o2.getID()},
+                new long[]{u.getID(), pc1.getID()}));
+        assertEquals(3, explanations.size());
+        assertEquals(o.getID(), explanations.get(0).getTargetID());
+        assertEquals(2, explanations.get(1).getPaths().get("pc1").size());
+        assertTrue(explanations.get(2).getPaths().isEmpty());
+    }
+}
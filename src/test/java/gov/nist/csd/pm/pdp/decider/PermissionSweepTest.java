@@ -0,0 +1,163 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.decider.PReviewDecider;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static gov.nist.csd.pm.common.constants.Operations.ANY_OPERATIONS;
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermissionSweepTest {
+
+    private static final List<String> OPS = Arrays.asList("read", "write", "execute");
+
+    /**
+     * Build random graphs with two policy classes and some prohibitions, and check the sweep decides the same as
+     * PReviewDecider for every user and node.
+     */
+    @Test
+    void testMatchesPReviewDecider() throws PMException {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            MemGraph graph = new MemGraph();
+            long id = 1;
+
+            List<Long> pcs = new ArrayList<>();
+            List<Long> uas = new ArrayList<>();
+            List<Long> oas = new ArrayList<>();
+            List<Long> users = new ArrayList<>();
+            List<Long> objects = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                pcs.add(graph.createNode(id++, "pc" + i, PC, null).getID());
+            }
+            for (int i = 0; i < 8; i++) {
+                long ua = graph.createNode(id++, "ua" + i, UA, null).getID();
+                assignRandomly(graph, random, ua, i < 2 ? pcs : concat(pcs, uas));
+                uas.add(ua);
+
+                long oa = graph.createNode(id++, "oa" + i, OA, null).getID();
+                assignRandomly(graph, random, oa, i < 2 ? pcs : concat(pcs, oas));
+                oas.add(oa);
+            }
+            for (int i = 0; i < 5; i++) {
+                long u = graph.createNode(id++, "u" + i, U, null).getID();
+                assignRandomly(graph, random, u, uas);
+                users.add(u);
+            }
+            for (int i = 0; i < 30; i++) {
+                long o = graph.createNode(id++, "o" + i, O, null).getID();
+                assignRandomly(graph, random, o, oas);
+                objects.add(o);
+            }
+            for (int i = 0; i < 10; i++) {
+                long ua = uas.get(random.nextInt(uas.size()));
+                long target = random.nextBoolean() ? oas.get(random.nextInt(oas.size())) : uas.get(random.nextInt(uas.size()));
+                if (ua != target) {
+                    graph.associate(ua, target, randomOps(random));
+                }
+            }
+
+            List<Prohibition> prohibitions = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                List<Prohibition.Node> nodes = new ArrayList<>();
+                nodes.add(new Prohibition.Node(oas.get(random.nextInt(oas.size())), false));
+                nodes.add(new Prohibition.Node(oas.get(random.nextInt(oas.size())), random.nextBoolean()));
+                Prohibition.Subject subject = random.nextBoolean() ?
+                        new Prohibition.Subject(users.get(random.nextInt(users.size())), Prohibition.Subject.Type.USER) :
+                        new Prohibition.Subject(uas.get(random.nextInt(uas.size())), Prohibition.Subject.Type.USER_ATTRIBUTE);
+                prohibitions.add(new Prohibition("p" + i, subject, nodes, randomOps(random), random.nextBoolean()));
+            }
+
+            PReviewDecider decider = new PReviewDecider(graph, prohibitions);
+            List<Long> targets = concat(objects, oas);
+            for (long u : users) {
+                PermissionSweep sweep = new PermissionSweep(graph, prohibitions, u);
+                for (long target : targets) {
+                    assertEquals(decider.listPermissions(u, target), sweep.listPermissions(target),
+                            String.format("seed %d, user %d, target %d", seed, u, target));
+                }
+
+                for (String op : Arrays.asList(ANY_OPERATIONS, "read", "write")) {
+                    Set<Long> expected = new HashSet<>();
+                    for (long target : targets) {
+                        if (decider.hasPermissions(u, target, op)) {
+                            expected.add(target);
+                        }
+                    }
+                    assertEquals(expected, sweep.filter(targets, op), String.format("seed %d, user %d, op %s", seed, u, op));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFilterLargeGraph() throws PMException {
+        MemGraph graph = new MemGraph();
+        long pc = graph.createNode(1, "pc", PC, null).getID();
+        long ua = graph.createNode(2, "ua", UA, null).getID();
+        long u = graph.createNode(3, "u", U, null).getID();
+        graph.assign(ua, pc);
+        graph.assign(u, ua);
+
+        // 100 containers of 1000 objects each, half of which the user can read
+        long id = 4;
+        List<Long> nodes = new ArrayList<>();
+        Set<Long> readable = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            long oa = graph.createNode(id++, "oa" + i, OA, null).getID();
+            graph.assign(oa, pc);
+            if (i % 2 == 0) {
+                graph.associate(ua, oa, new HashSet<>(Arrays.asList("read")));
+            }
+            for (int j = 0; j < 1000; j++) {
+                long o = graph.createNode(id++, "o" + i + "-" + j, O, null).getID();
+                graph.assign(o, oa);
+                nodes.add(o);
+                if (i % 2 == 0) {
+                    readable.add(o);
+                }
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Set<Long> filtered = new PermissionSweep(graph, new ArrayList<>(), u).filter(nodes, ANY_OPERATIONS);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(readable, filtered);
+        assertTrue(elapsed < 1000, String.format("filtering 100k nodes took %dms", elapsed));
+    }
+
+    private static void assignRandomly(MemGraph graph, Random random, long child, List<Long> parents) throws PMException {
+        int count = 1 + random.nextInt(2);
+        for (int i = 0; i < count; i++) {
+            long parent = parents.get(random.nextInt(parents.size()));
+            if (parent != child && !graph.getParents(child).contains(parent)) {
+                graph.assign(child, parent);
+            }
+        }
+    }
+
+    private static Set<String> randomOps(Random random) {
+        Set<String> ops = new HashSet<>();
+        for (String op : OPS) {
+            if (random.nextBoolean()) {
+                ops.add(op);
+            }
+        }
+        if (ops.isEmpty()) {
+            ops.add(OPS.get(0));
+        }
+        return ops;
+    }
+
+    private static List<Long> concat(List<Long> a, List<Long> b) {
+        List<Long> list = new ArrayList<>(a);
+        list.addAll(b);
+        return list;
+    }
+}
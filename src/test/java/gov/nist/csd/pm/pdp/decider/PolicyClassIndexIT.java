@@ -0,0 +1,146 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyClassIndexIT {
+
+    private Neo4jGraph       dbGraph;
+    private GraphPAP         graphPAP;
+    private PolicyClassIndex index;
+    private String           testID;
+    private Random           random = new Random();
+
+    private Node pc1;
+    private Node pc2;
+    private Node oa1;
+    private Node oa2;
+    private Node oa3;
+    private Node o;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        testID = UUID.randomUUID().toString();
+
+        pc1 = graphPAP.createNode(random.nextLong(), "pc1", PC, NodeUtils.toProperties("namespace", testID));
+        oa1 = graphPAP.createNode(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(oa1.getID(), pc1.getID());
+        graphPAP.assign(oa2.getID(), oa1.getID());
+        graphPAP.assign(o.getID(), oa2.getID());
+
+        // built from the graph, then kept up to date
+        index = new PolicyClassIndex(graphPAP);
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        index.close();
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testBuild() throws PMException {
+        assertEquals(Collections.singleton(pc1.getID()), index.getPolicyClasses(pc1.getID()));
+        check();
+        assertTrue(index.getPolicyClasses(random.nextLong()).isEmpty());
+    }
+
+    @Test
+    void testUpdates() throws PMException {
+        // a new policy class, and a chain assigned into it
+        pc2 = graphPAP.createNode(random.nextLong(), "pc2", PC, NodeUtils.toProperties("namespace", testID));
+        oa3 = graphPAP.createNode(random.nextLong(), "oa3", OA, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(oa3.getID(), pc2.getID());
+        check();
+        graphPAP.assign(oa2.getID(), oa3.getID());
+        assertEquals(new HashSet<>(Arrays.asList(pc1.getID(), pc2.getID())), index.getPolicyClasses(o.getID()));
+        check();
+
+        // removing one path keeps the policy classes reachable through the other
+        graphPAP.deassign(oa2.getID(), oa1.getID());
+        assertEquals(Collections.singleton(pc2.getID()), index.getPolicyClasses(o.getID()));
+        check();
+        graphPAP.assign(o.getID(), oa1.getID());
+        check();
+        graphPAP.deassign(o.getID(), oa2.getID());
+        check();
+
+        // deleting an attribute rebuilds the index
+        graphPAP.deassign(oa2.getID(), oa3.getID());
+        graphPAP.deleteNode(oa2.getID());
+        check();
+    }
+
+    @Test
+    void testManyPolicyClasses() throws PMException {
+        // more policy classes than fit in one word
+        Set<Long> expected = new HashSet<>(Collections.singleton(pc1.getID()));
+        for (int i = 0; i < 70; i++) {
+            Node pc = graphPAP.createNode(random.nextLong(), "pc" + i, PC, NodeUtils.toProperties("namespace", testID));
+            graphPAP.assign(oa2.getID(), pc.getID());
+            expected.add(pc.getID());
+        }
+        assertEquals(expected, index.getPolicyClasses(o.getID()));
+        check();
+    }
+
+    @Test
+    void testBitOperations() {
+        long[] a = {0b0101L};
+        long[] b = {0b0100L, 1L};
+        assertArrayEquals(new long[]{0b0101L, 1L}, PolicyClassIndex.or(a, b));
+        assertArrayEquals(new long[]{0b0100L}, PolicyClassIndex.and(a, b));
+        assertTrue(PolicyClassIndex.containsAll(a, new long[]{0b0100L}));
+        assertFalse(PolicyClassIndex.containsAll(a, b));
+        assertTrue(PolicyClassIndex.isEmpty(new long[]{0L, 0L}));
+    }
+
+    /**
+     * Compare the indexed policy classes of every node with a search up its assignments.
+     */
+    private void check() throws PMException {
+        for (Node node : graphPAP.getNodes()) {
+            assertEquals(search(node.getID()), index.getPolicyClasses(node.getID()), node.getName());
+        }
+    }
+
+    private Set<Long> search(long nodeID) throws PMException {
+        Set<Long> policies = graphPAP.getPolicies();
+        Set<Long> pcs = new HashSet<>();
+        Set<Long> visited = new HashSet<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        queue.add(nodeID);
+        while (!queue.isEmpty()) {
+            long id = queue.poll();
+            if (!visited.add(id)) {
+                continue;
+            }
+            if (policies.contains(id)) {
+                pcs.add(id);
+            }
+            queue.addAll(graphPAP.getParents(id));
+        }
+        return pcs;
+    }
+}
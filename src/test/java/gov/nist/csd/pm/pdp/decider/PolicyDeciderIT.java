@@ -0,0 +1,138 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pap.PolicyListener;
+import gov.nist.csd.pm.pap.ProhibitionsPAP;
+import gov.nist.csd.pm.pip.graph.GraphMutation;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyDeciderIT {
+
+    private Neo4jGraph      dbGraph;
+    private GraphPAP        graphPAP;
+    private ProhibitionsPAP prohibitionsPAP;
+    private PolicyDecider   decider;
+    private String          testID;
+    private Random          random = new Random();
+
+    private Node u;
+    private Node ua;
+    private Node oa;
+    private Node o;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        prohibitionsPAP = new ProhibitionsPAP(TestUtils.getDatabaseContext(), new ArrayList<>());
+        decider = new PolicyDecider(graphPAP, prohibitionsPAP);
+        testID = UUID.randomUUID().toString();
+
+        Node pc = graphPAP.createNode(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        ua = graphPAP.createNode(random.nextLong(), "ua", UA, NodeUtils.toProperties("namespace", testID));
+        u = graphPAP.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+        oa = graphPAP.createNode(random.nextLong(), "oa", OA, NodeUtils.toProperties("namespace", testID));
+        o = graphPAP.createNode(random.nextLong(), "o", O, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(ua.getID(), pc.getID());
+        graphPAP.assign(u.getID(), ua.getID());
+        graphPAP.assign(oa.getID(), pc.getID());
+        graphPAP.assign(o.getID(), oa.getID());
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        decider.close();
+        for (Prohibition prohibition : prohibitionsPAP.getProhibitions()) {
+            prohibitionsPAP.deleteProhibition(prohibition.getName());
+        }
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testSeesGraphChanges() throws PMException {
+        assertFalse(decider.hasPermissions(u.getID(), o.getID(), "read"));
+
+        graphPAP.associate(ua.getID(), oa.getID(), new HashSet<>(Arrays.asList("read")));
+        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "read"));
+
+        graphPAP.deassign(o.getID(), oa.getID());
+        assertFalse(decider.hasPermissions(u.getID(), o.getID(), "read"));
+    }
+
+    @Test
+    void testSeesProhibitionChanges() throws PMException {
+        graphPAP.associate(ua.getID(), oa.getID(), new HashSet<>(Arrays.asList("read", "write")));
+        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "write"));
+
+        String name = testID + "-deny";
+        prohibitionsPAP.createProhibition(new Prohibition(name, new Prohibition.Subject(u.getID(), Prohibition.Subject.Type.USER),
+                Collections.singletonList(new Prohibition.Node(oa.getID(), false)), new HashSet<>(Arrays.asList("write")), false));
+        assertFalse(decider.hasPermissions(u.getID(), o.getID(), "write"));
+        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "read"));
+
+        prohibitionsPAP.deleteProhibition(name);
+        assertTrue(decider.hasPermissions(u.getID(), o.getID(), "write"));
+    }
+
+    @Test
+    void testListenersAreNotified() throws PMException {
+        List<GraphMutation> graphChanges = new ArrayList<>();
+        List<Prohibition> prohibitionChanges = new ArrayList<>();
+        PolicyListener listener = new PolicyListener() {
+            @Override
+            public void graphChanged(List<GraphMutation> mutations) {
+                graphChanges.addAll(mutations);
+            }
+
+            @Override
+            public void graphReloaded() {
+                fail("the graph was reloaded");
+            }
+
+            @Override
+            public void prohibitionChanged(Prohibition prohibition) {
+                prohibitionChanges.add(prohibition);
+            }
+        };
+        graphPAP.addListener(listener);
+        prohibitionsPAP.addListener(listener);
+
+        graphPAP.associate(ua.getID(), oa.getID(), new HashSet<>(Arrays.asList("read")));
+        assertEquals(1, graphChanges.size());
+        assertEquals(GraphMutation.Kind.ASSOCIATE, graphChanges.get(0).getKind());
+        assertEquals(ua.getID(), graphChanges.get(0).getSourceID());
+        assertEquals(oa.getID(), graphChanges.get(0).getTargetID());
+
+        // a failed change is not reported
+        assertThrows(PMException.class, () -> graphPAP.assign(u.getID(), o.getID()));
+        assertEquals(1, graphChanges.size());
+
+        String name = testID + "-deny";
+        prohibitionsPAP.createProhibition(new Prohibition(name, new Prohibition.Subject(u.getID(), Prohibition.Subject.Type.USER),
+                Collections.singletonList(new Prohibition.Node(oa.getID(), false)), new HashSet<>(Arrays.asList("read")), false));
+        prohibitionsPAP.deleteProhibition(name);
+        assertEquals(2, prohibitionChanges.size());
+        assertEquals(name, prohibitionChanges.get(1).getName());
+
+        graphPAP.removeListener(listener);
+        prohibitionsPAP.removeListener(listener);
+    }
+}
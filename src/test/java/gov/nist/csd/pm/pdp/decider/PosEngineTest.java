@@ -0,0 +1,265 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import com.google.gson.Gson;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.Graph;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.nodes.NodeType;
+import gov.nist.csd.pm.pap.GraphPAP;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the POS found by PosEngine with the POS found by the Hashtable based search it replaced.
+ */
+class PosEngineTest {
+
+    @Test
+    void testNdacDemo() throws PMException, IOException {
+        MemGraph graph = new MemGraph();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("ndac_demo.pm");
+             Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            JsonGraph json = new Gson().fromJson(readAll(reader), JsonGraph.class);
+            for (JsonNode node : json.nodes) {
+                Map<String, String> properties = new HashMap<>();
+                for (JsonProperty property : node.properties) {
+                    properties.put(property.key, property.value);
+                }
+                graph.createNode(node.id, node.name, NodeType.toNodeType(node.type), properties);
+            }
+            for (JsonAssignment assignment : json.assignments) {
+                graph.assign(assignment.child, assignment.parent);
+            }
+            for (JsonAssociation association : json.associations) {
+                graph.associate(association.ua, association.target, new HashSet<>(association.ops));
+            }
+        }
+
+        compareAllUsers(graph);
+    }
+
+    @Test
+    void testManyPolicyClassesAndOperations() throws PMException {
+        // more policy classes and operations than fit in one word, with targets in some of the policy classes
+        MemGraph graph = new MemGraph();
+        Random random = new Random(42);
+        List<Long> uas = new ArrayList<>();
+        List<Long> oas = new ArrayList<>();
+        long id = 1;
+        for (int i = 0; i < 70; i++) {
+            long pc = id++;
+            graph.createNode(pc, "pc" + i, PC, new HashMap<>());
+            long ua = id++;
+            graph.createNode(ua, "ua" + i, UA, new HashMap<>());
+            graph.assign(ua, pc);
+            long oa = id++;
+            graph.createNode(oa, "oa" + i, OA, new HashMap<>());
+            graph.assign(oa, pc);
+            uas.add(ua);
+            oas.add(oa);
+        }
+        for (int i = 0; i < 200; i++) {
+            long oa = oas.get(random.nextInt(oas.size()));
+            long parent = oas.get(random.nextInt(oas.size()));
+            if (oa != parent && !graph.getParents(oa).contains(parent) && !reaches(graph, parent, oa)) {
+                graph.assign(oa, parent);
+            }
+            long ua = uas.get(random.nextInt(uas.size()));
+            Set<String> ops = new HashSet<>();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                ops.add("op" + random.nextInt(100));
+            }
+            graph.associate(ua, oas.get(random.nextInt(oas.size())), ops);
+        }
+        for (int i = 0; i < 10; i++) {
+            long u = id++;
+            graph.createNode(u, "u" + i, U, new HashMap<>());
+            Set<Long> parents = new HashSet<>();
+            for (int j = random.nextInt(20); j >= 0; j--) {
+                parents.add(uas.get(random.nextInt(uas.size())));
+            }
+            for (long ua : parents) {
+                graph.assign(u, ua);
+            }
+        }
+
+        compareAllUsers(graph);
+    }
+
+    private void compareAllUsers(MemGraph graph) throws PMException {
+        GraphPAP graphPAP = new GraphPAP(graph, null);
+        PolicyClassIndex pcIndex = new PolicyClassIndex(graphPAP);
+        PosEngine engine = new PosEngine(graphPAP, pcIndex);
+
+        int users = 0;
+        for (Node node : graph.getNodes()) {
+            if (node.getType() != U) {
+                continue;
+            }
+            users++;
+
+            Set<Long> actual = new HashSet<>();
+            for (long posID : engine.find(node.getID())) {
+                actual.add(posID);
+            }
+            assertEquals(LegacyPos.getPos(graph, node.getID()), actual, node.getName());
+        }
+        assertTrue(users > 0);
+    }
+
+    private static boolean reaches(Graph graph, long from, long to) throws PMException {
+        ArrayDeque<Long> queue = new ArrayDeque<>(Collections.singleton(from));
+        Set<Long> visited = new HashSet<>();
+        while (!queue.isEmpty()) {
+            long id = queue.poll();
+            if (id == to) {
+                return true;
+            }
+            if (visited.add(id)) {
+                queue.addAll(graph.getParents(id));
+            }
+        }
+        return false;
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int n;
+        while ((n = reader.read(buf)) != -1) {
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The POS search from AnalyticsService before PosEngine, kept as the reference the engine is compared against.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static class LegacyPos {
+
+        static Set<Long> getPos(Graph graph, long userID) throws PMException {
+            HashSet<Long> hsOa = new HashSet<>();
+            Hashtable htOa = findBorderOaPrivRestrictedInternal(graph, userID);
+            for (Enumeration oas = htOa.keys(); oas.hasMoreElements(); ) {
+                long oaID = (long)oas.nextElement();
+                HashSet hsReqPcs = inMemFindPcSet(graph, oaID);
+                Hashtable htOaLabel = (Hashtable)htOa.get(oaID);
+                for (Enumeration ops = htOaLabel.keys(); ops.hasMoreElements(); ) {
+                    String sOp = (String)ops.nextElement();
+                    HashSet hsActualPcs = (HashSet)htOaLabel.get(sOp);
+                    if (hsActualPcs.containsAll(hsReqPcs)) {
+                        hsOa.add(oaID);
+                        break;
+                    }
+                }
+            }
+            return hsOa;
+        }
+
+        private static Hashtable findBorderOaPrivRestrictedInternal(Graph graph, long userID) throws PMException {
+            Hashtable htReachableOas = new Hashtable();
+            Set<Long> visited = new HashSet<>();
+            List<Long> queue = new ArrayList<>(graph.getParents(userID));
+            while (!queue.isEmpty()) {
+                Long crtNode = queue.remove(0);
+                if (!visited.contains(crtNode)) {
+                    if (!graph.getSourceAssociations(crtNode).isEmpty()) {
+                        HashSet<Long> hsUaPcs = inMemFindPcSet(graph, crtNode);
+                        Map<Long, Set<String>> assocs = graph.getSourceAssociations(crtNode);
+                        for (Long targetID : assocs.keySet()) {
+                            Hashtable htOaLabel = (Hashtable)htReachableOas.get(targetID);
+                            if (htOaLabel == null) {
+                                htOaLabel = new Hashtable();
+                                htReachableOas.put(targetID, htOaLabel);
+                            }
+                            for (String sOp : assocs.get(targetID)) {
+                                HashSet hsPcs = (HashSet)htOaLabel.get(sOp);
+                                if (hsPcs != null) {
+                                    hsPcs.addAll(hsUaPcs);
+                                } else {
+                                    htOaLabel.put(sOp, new HashSet(hsUaPcs));
+                                }
+                            }
+                        }
+                    }
+                    visited.add(crtNode);
+                    queue.addAll(graph.getParents(crtNode));
+                }
+            }
+
+            for (Enumeration keys = htReachableOas.keys(); keys.hasMoreElements() ;) {
+                long oaID = (long)keys.nextElement();
+                HashSet hsOaPcs = inMemFindPcSet(graph, oaID);
+                Hashtable htOaLabel = (Hashtable)htReachableOas.get(oaID);
+                for (Enumeration lbl = htOaLabel.keys(); lbl.hasMoreElements();) {
+                    String sOp = (String)lbl.nextElement();
+                    HashSet oaPcs = (HashSet)htOaLabel.get(sOp);
+                    oaPcs.retainAll(hsOaPcs);
+                    if (oaPcs.isEmpty()) htOaLabel.remove(sOp);
+                }
+            }
+            return htReachableOas;
+        }
+
+        private static HashSet<Long> inMemFindPcSet(Graph graph, Long nodeID) throws PMException {
+            HashSet<Long> reachable = new HashSet<>();
+            ArrayList<Long> queue = new ArrayList<>();
+            HashSet<Long> visited = new HashSet<>();
+            queue.add(nodeID);
+            while (!queue.isEmpty()) {
+                Long crtNode = queue.remove(0);
+                if (!visited.contains(crtNode)) {
+                    visited.add(crtNode);
+                    for (Long n : graph.getParents(crtNode)) {
+                        if (graph.getPolicies().contains(n)) {
+                            reachable.add(n);
+                        } else {
+                            queue.add(n);
+                        }
+                    }
+                }
+            }
+            return reachable;
+        }
+    }
+
+    private static class JsonGraph {
+        List<JsonNode>        nodes;
+        List<JsonAssignment>  assignments;
+        List<JsonAssociation> associations;
+    }
+
+    private static class JsonNode {
+        long               id;
+        String             name;
+        String             type;
+        List<JsonProperty> properties = new ArrayList<>();
+    }
+
+    private static class JsonProperty {
+        String key;
+        String value;
+    }
+
+    private static class JsonAssignment {
+        long child;
+        long parent;
+    }
+
+    private static class JsonAssociation {
+        long         ua;
+        long         target;
+        List<String> ops;
+    }
+}
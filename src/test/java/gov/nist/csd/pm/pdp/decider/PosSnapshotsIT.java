@@ -0,0 +1,78 @@
+package gov.nist.csd.pm.pdp.decider;
+
+import gov.nist.csd.pm.common.util.NodeUtils;
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pap.GraphPAP;
+import gov.nist.csd.pm.pip.graph.Neo4jGraph;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static gov.nist.csd.pm.graph.model.nodes.NodeType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PosSnapshotsIT {
+
+    private Neo4jGraph       dbGraph;
+    private GraphPAP         graphPAP;
+    private PolicyClassIndex pcIndex;
+    private PosSnapshots     snapshots;
+    private String           testID;
+    private Random           random = new Random();
+
+    private Node pc1;
+    private Node u;
+    private Node ua1;
+    private Node oa1;
+
+    @BeforeEach
+    void setUp() throws PMException, IOException {
+        dbGraph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        graphPAP = new GraphPAP(new MemGraph(), dbGraph);
+        pcIndex = new PolicyClassIndex(graphPAP);
+        snapshots = new PosSnapshots(graphPAP, pcIndex, 10);
+        testID = UUID.randomUUID().toString();
+
+        pc1 = graphPAP.createNode(random.nextLong(), "pc1", PC, NodeUtils.toProperties("namespace", testID));
+        ua1 = graphPAP.createNode(random.nextLong(), "ua1", UA, NodeUtils.toProperties("namespace", testID));
+        u = graphPAP.createNode(random.nextLong(), "u", U, NodeUtils.toProperties("namespace", testID));
+        oa1 = graphPAP.createNode(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(ua1.getID(), pc1.getID());
+        graphPAP.assign(u.getID(), ua1.getID());
+        graphPAP.assign(oa1.getID(), pc1.getID());
+        graphPAP.associate(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read")));
+    }
+
+    @AfterEach
+    void tearDown() throws PMException {
+        snapshots.close();
+        pcIndex.close();
+        Set<Node> nodes = dbGraph.search(null, null, NodeUtils.toProperties("namespace", testID));
+        for(Node node : nodes) {
+            dbGraph.deleteNode(node.getID());
+        }
+    }
+
+    @Test
+    void testSnapshotIsReusedUntilTheGraphChanges() throws PMException {
+        long[] first = snapshots.get(u.getID());
+        assertArrayEquals(new long[]{oa1.getID()}, first);
+        assertSame(first, snapshots.get(u.getID()));
+
+        Node oa2 = graphPAP.createNode(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        graphPAP.assign(oa2.getID(), pc1.getID());
+        graphPAP.associate(ua1.getID(), oa2.getID(), new HashSet<>(Arrays.asList("write")));
+
+        long[] second = snapshots.get(u.getID());
+        assertNotSame(first, second);
+        long[] expected = new long[]{oa1.getID(), oa2.getID()};
+        Arrays.sort(expected);
+        assertArrayEquals(expected, second);
+    }
+}
@@ -4,6 +4,8 @@ import gov.nist.csd.pm.common.exceptions.PMGraphException;
 import gov.nist.csd.pm.common.util.NodeUtils;
 import gov.nist.csd.pm.exceptions.PMException;
 import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.graph.model.relationships.Assignment;
+import gov.nist.csd.pm.graph.model.relationships.Association;
 import gov.nist.csd.pm.utils.TestUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -255,4 +257,60 @@ public class Neo4jGraphIT {
         assertEquals(OA, node.getType());
         assertEquals(NodeUtils.toProperties("namespace", testID), node.getProperties());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testQuotedValues() throws PMException {
+        Node node = graph.createNode(random.nextLong(), "o'reilly", OA, NodeUtils.toProperties("namespace", testID, "description", "it's \"quoted\""));
+        node = graph.getNode(node.getID());
+        assertEquals("o'reilly", node.getName());
+        assertEquals("it's \"quoted\"", node.getProperties().get("description"));
+
+        Set<Node> nodes = graph.search("o'reilly", OA.toString(), NodeUtils.toProperties("namespace", testID));
+        assertEquals(1, nodes.size());
+
+        graph.updateNode(node.getID(), "o'reilly's", null);
+        assertEquals("o'reilly's", graph.getNode(node.getID()).getName());
+    }
+
+    @Test
+    void testBulkWrites() throws PMException, IOException {
+        // a batch size of 2 so every call below is split into several chunks
+        Neo4jGraph graph = new Neo4jGraph(TestUtils.getDatabaseContext(), 2);
+
+        Node pc = new Node(random.nextLong(), "pc", PC, NodeUtils.toProperties("namespace", testID));
+        Node ua = new Node(random.nextLong(), "ua", UA, NodeUtils.toProperties("namespace", testID));
+        Node oa1 = new Node(random.nextLong(), "oa1", OA, NodeUtils.toProperties("namespace", testID));
+        Node oa2 = new Node(random.nextLong(), "oa2", OA, NodeUtils.toProperties("namespace", testID));
+        Node oa3 = new Node(random.nextLong(), "oa3", OA, NodeUtils.toProperties("namespace", testID));
+        graph.createNodes(Arrays.asList(pc, ua, oa1, oa2, oa3));
+
+        assertTrue(graph.getPolicies().contains(pc.getID()));
+        assertEquals("oa3", graph.getNode(oa3.getID()).getName());
+        assertEquals(UA, graph.getNode(ua.getID()).getType());
+
+        graph.assignAll(Arrays.asList(
+                new Assignment(ua.getID(), pc.getID()),
+                new Assignment(oa1.getID(), pc.getID()),
+                new Assignment(oa2.getID(), pc.getID()),
+                new Assignment(oa3.getID(), oa1.getID())
+        ));
+        assertEquals(new HashSet<>(Arrays.asList(ua.getID(), oa1.getID(), oa2.getID())), graph.getChildren(pc.getID()));
+        assertTrue(graph.getParents(oa3.getID()).contains(oa1.getID()));
+
+        graph.associateAll(Arrays.asList(
+                new Association(ua.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read", "write"))),
+                new Association(ua.getID(), oa2.getID(), new HashSet<>(Arrays.asList("read"))),
+                new Association(ua.getID(), oa3.getID(), new HashSet<>(Arrays.asList("write")))
+        ));
+        Map<Long, Set<String>> associations = graph.getSourceAssociations(ua.getID());
+        assertEquals(3, associations.size());
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), associations.get(oa1.getID()));
+
+        // an invalid assignment fails before its chunk is written
+        assertThrows(PMException.class, () -> graph.assignAll(Collections.singletonList(new Assignment(pc.getID(), oa2.getID()))));
+        assertFalse(graph.getParents(pc.getID()).contains(oa2.getID()));
+
+        // a node that does not exist
+        assertThrows(PMException.class, () -> graph.assignAll(Collections.singletonList(new Assignment(random.nextLong(), pc.getID()))));
+    }
+}
@@ -0,0 +1,119 @@
+package gov.nist.csd.pm.pip.graph;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.model.nodes.Node;
+import gov.nist.csd.pm.pip.db.neo4j.Neo4jConnection;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that looking up a node by ID stays flat as the graph grows, which only holds if the lookups seek on the
+ * NODE(id) index.  The largest graph size can be set with -Dpm.lookup.maxNodes (default 1,000,000).
+ */
+public class Neo4jGraphLookupIT {
+
+    private static final int    BATCH_SIZE   = 10000;
+    private static final int    LOOKUPS      = 500;
+    private static final double MAX_SLOWDOWN = 3.0;
+
+    private static final String INSERT_CYPHER = "unwind {1} as id create(n:NODE:O{id: id, name: toString(id), type: 'O', namespace: {2}})";
+    private static final String DELETE_CYPHER = "match(n:NODE{namespace: {1}}) with n limit {2} detach delete n return count(n)";
+
+    private Neo4jGraph graph;
+    private Neo4jConnection neo4j;
+    private String testID;
+    private Random random = new Random();
+
+    @BeforeEach
+    public void setUp() throws PMException, IOException {
+        graph = new Neo4jGraph(TestUtils.getDatabaseContext());
+        neo4j = Neo4jConnection.getPool(TestUtils.getDatabaseContext());
+        testID = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws PMException, SQLException {
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(DELETE_CYPHER)
+        ) {
+            stmt.setString(1, testID);
+            stmt.setInt(2, BATCH_SIZE);
+            while (true) {
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next() || rs.getLong(1) == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLookupLatencyIsFlat() throws PMException, SQLException {
+        int maxNodes = Integer.getInteger("pm.lookup.maxNodes", 1000000);
+        List<Long> ids = new ArrayList<>();
+
+        double smallest = -1;
+        double largest = -1;
+        for (int size = 10000; size <= maxNodes; size *= 10) {
+            insertNodes(ids, size - ids.size());
+
+            // warm up the plan and statement caches before timing
+            lookup(ids, LOOKUPS);
+            double avg = lookup(ids, LOOKUPS);
+            if (smallest < 0) {
+                smallest = avg;
+            }
+            largest = avg;
+        }
+
+        assertTrue(largest <= smallest * MAX_SLOWDOWN,
+                String.format("lookups slowed from %.3fms to %.3fms as the graph grew to %d nodes", smallest, largest, ids.size()));
+    }
+
+    private void insertNodes(List<Long> ids, int count) throws PMException, SQLException {
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement(INSERT_CYPHER)
+        ) {
+            for (int i = 0; i < count; i += BATCH_SIZE) {
+                List<Long> batch = new ArrayList<>();
+                for (int j = i; j < Math.min(count, i + BATCH_SIZE); j++) {
+                    batch.add(random.nextLong());
+                }
+
+                stmt.setObject(1, batch);
+                stmt.setString(2, testID);
+                stmt.executeQuery();
+
+                ids.addAll(batch);
+            }
+        }
+    }
+
+    /**
+     * @return the average number of milliseconds to get and check a random node.
+     */
+    private double lookup(List<Long> ids, int count) throws PMException {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long id = ids.get(random.nextInt(ids.size()));
+            Node node = graph.getNode(id);
+            assertEquals(id, node.getID());
+            assertTrue(graph.exists(id));
+        }
+        return (System.nanoTime() - start) / 1000000.0 / count;
+    }
+}
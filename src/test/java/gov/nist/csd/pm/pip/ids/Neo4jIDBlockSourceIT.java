@@ -0,0 +1,39 @@
+package gov.nist.csd.pm.pip.ids;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Neo4jIDBlockSourceIT {
+
+    @Test
+    void testReserve() throws PMException, IOException {
+        Neo4jIDBlockSource source = new Neo4jIDBlockSource(TestUtils.getDatabaseContext());
+
+        long first = source.reserve(100, 0);
+        assertTrue(first > 0);
+
+        // ranges do not overlap and each starts after the last
+        long second = source.reserve(100, 0);
+        assertTrue(second >= first + 100);
+
+        // a range starts after the given ID
+        long third = source.reserve(100, second + 1000);
+        assertTrue(third > second + 1000);
+    }
+
+    @Test
+    void testSharedSequence() throws PMException, IOException {
+        // two sources on the same database, like two PAPs, never reserve the same IDs
+        Neo4jIDBlockSource source1 = new Neo4jIDBlockSource(TestUtils.getDatabaseContext());
+        Neo4jIDBlockSource source2 = new Neo4jIDBlockSource(TestUtils.getDatabaseContext());
+
+        long first = source1.reserve(10, 0);
+        long second = source2.reserve(10, 0);
+        assertTrue(second >= first + 10);
+    }
+}
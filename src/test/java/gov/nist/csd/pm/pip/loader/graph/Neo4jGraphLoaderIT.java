@@ -2,10 +2,12 @@ package gov.nist.csd.pm.pip.loader.graph;
 
 import gov.nist.csd.pm.common.util.NodeUtils;
 import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.graph.MemGraph;
 import gov.nist.csd.pm.graph.model.nodes.Node;
 import gov.nist.csd.pm.graph.model.nodes.NodeType;
 import gov.nist.csd.pm.graph.model.relationships.Assignment;
 import gov.nist.csd.pm.graph.model.relationships.Association;
+import gov.nist.csd.pm.pip.db.neo4j.Neo4jConnection;
 import gov.nist.csd.pm.pip.graph.Neo4jGraph;
 import gov.nist.csd.pm.utils.TestUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -13,6 +15,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -85,4 +91,53 @@ class Neo4jGraphLoaderIT {
         Set<Association> associations = loader.getAssociations();
         assertTrue(associations.contains(new Association(ua1.getID(), oa1.getID(), new HashSet<>(Arrays.asList("read", "write")))));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLoad() throws PMException, IOException {
+        // a page size of 1 so every kind of element is read over several pages
+        Neo4jGraphLoader loader = new Neo4jGraphLoader(TestUtils.getDatabaseContext(), 1);
+        MemGraph memGraph = new MemGraph();
+        GraphLoadStats stats = loader.load(memGraph);
+
+        assertTrue(stats.getNodes() >= 5);
+        assertTrue(stats.getAssignments() >= 4);
+        assertTrue(stats.getAssociations() >= 1);
+
+        assertEquals(pc1, memGraph.getNode(pc1.getID()));
+        assertEquals(u1, memGraph.getNode(u1.getID()));
+        assertTrue(memGraph.getPolicies().contains(pc1.getID()));
+        assertTrue(memGraph.getParents(u1.getID()).contains(ua1.getID()));
+        assertTrue(memGraph.getParents(o1.getID()).contains(oa1.getID()));
+        assertEquals(new HashSet<>(Arrays.asList(ua1.getID(), oa1.getID())), memGraph.getChildren(pc1.getID()));
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), memGraph.getSourceAssociations(ua1.getID()).get(oa1.getID()));
+    }
+
+    @Test
+    void testLoadFailsOnBadRow() throws PMException, IOException, SQLException {
+        // a property that is not a string fails to map to a node
+        long badID = random.nextLong() & Long.MAX_VALUE;
+        Neo4jConnection neo4j = Neo4jConnection.getPool(TestUtils.getDatabaseContext());
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("create(:NODE{id: {1}, name: 'bad', type: 'O', count: 7})")
+        ) {
+            stmt.setLong(1, badID);
+            stmt.executeQuery();
+        }
+
+        try {
+            Neo4jGraphLoader loader = new Neo4jGraphLoader(TestUtils.getDatabaseContext(), 1);
+            assertTimeoutPreemptively(Duration.ofMinutes(1),
+                    () -> assertThrows(PMException.class, () -> loader.load(new MemGraph())));
+        }
+        finally {
+            try (
+                    Connection conn = neo4j.getConnection();
+                    PreparedStatement stmt = conn.prepareStatement("match(n:NODE{id: {1}}) detach delete n")
+            ) {
+                stmt.setLong(1, badID);
+                stmt.executeQuery();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package gov.nist.csd.pm.pip.loader.prohibitions;
+
+import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pip.db.neo4j.Neo4jConnection;
+import gov.nist.csd.pm.prohibitions.model.Prohibition;
+import gov.nist.csd.pm.utils.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading the prohibitions one by one, with a query for the subject and a query for the nodes of each
+ * prohibition, with loading them in the one aggregate query of Neo4jProhibitionsLoader.  Needs the Neo4j database in
+ * test_db.config, and removes the prohibitions it creates when it finishes.
+ *
+ * Run with "mvn test-compile" and then the main method of this class, or
+ * "java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main Neo4jProhibitionsLoaderBenchmark".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class Neo4jProhibitionsLoaderBenchmark {
+
+    @Param({"1000", "10000"})
+    private int prohibitions;
+
+    private Neo4jConnection          neo4j;
+    private Neo4jProhibitionsLoader  loader;
+    private String                   prefix;
+
+    @Setup(Level.Trial)
+    public void setup() throws PMException, IOException, SQLException {
+        neo4j = Neo4jConnection.getPool(TestUtils.getDatabaseContext());
+        loader = new Neo4jProhibitionsLoader(TestUtils.getDatabaseContext());
+        prefix = createProhibitions(neo4j, prohibitions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws PMException, SQLException {
+        deleteProhibitions(neo4j, prefix);
+    }
+
+    @Benchmark
+    public List<Prohibition> oneByOne() throws PMException, SQLException {
+        return loadOneByOne(neo4j);
+    }
+
+    @Benchmark
+    public List<Prohibition> oneQuery() throws PMException {
+        return loader.loadProhibitions();
+    }
+
+    /**
+     * Create the given number of prohibitions in bulk, each with a subject and one complemented node.  The ith
+     * prohibition is named the returned prefix followed by i, its subject is i + 1, and its node is i + 1000000.
+     * @return the prefix of the names of the prohibitions.
+     */
+    static String createProhibitions(Neo4jConnection neo4j, int count) throws PMException, SQLException {
+        String prefix = "load_" + UUID.randomUUID().toString().replace("-", "") + "_";
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("name", prefix + i);
+            row.put("subject", (long) i + 1);
+            row.put("node", (long) i + 1000000);
+            rows.add(row);
+        }
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("unwind {1} as row " +
+                        "create(p:prohibition{name: row.name, operations: ['read', 'write'], intersection: false}) " +
+                        "with p, row create(p)<-[:prohibition]-(:prohibition_subject{subjectID: row.subject, subjectType: 'USER'}) " +
+                        "with p, row create(p)<-[:prohibition]-(:prohibition_node{id: row.node, complement: true})")
+        ) {
+            stmt.setObject(1, rows);
+            stmt.executeQuery();
+        }
+        return prefix;
+    }
+
+    /**
+     * Delete the prohibitions whose names start with the prefix, with their subjects and nodes.
+     */
+    static void deleteProhibitions(Neo4jConnection neo4j, String prefix) throws PMException, SQLException {
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("match(p:prohibition) where p.name starts with {1} " +
+                        "optional match(p)<-[:prohibition]-(x) detach delete x, p")
+        ) {
+            stmt.setString(1, prefix);
+            stmt.executeQuery();
+        }
+    }
+
+    /**
+     * The previous loader: one query for the prohibitions, then a query for the subject and a query for the nodes of
+     * each one.
+     */
+    static List<Prohibition> loadOneByOne(Neo4jConnection neo4j) throws PMException, SQLException {
+        List<Prohibition> prohibitions = new ArrayList<>();
+        try (
+                Connection conn = neo4j.getConnection();
+                PreparedStatement stmt = conn.prepareStatement("match(p:prohibition) return p.name, p.intersection");
+                ResultSet rs = stmt.executeQuery()
+        ) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+
+                Prohibition.Subject subject = null;
+                try (
+                        Connection subjectConn = neo4j.getConnection();
+                        PreparedStatement subjectStmt = subjectConn.prepareStatement("match(d:prohibition{name:{1}})<-[:prohibition]-(s:prohibition_subject) return s.subjectID, s.subjectType")
+                ) {
+                    subjectStmt.setString(1, name);
+                    try (ResultSet subjectRs = subjectStmt.executeQuery()) {
+                        if (subjectRs.next()) {
+                            subject = new Prohibition.Subject(subjectRs.getLong(1), Prohibition.Subject.Type.toType(subjectRs.getString(2)));
+                        }
+                    }
+                }
+
+                List<Prohibition.Node> nodes = new ArrayList<>();
+                try (
+                        Connection nodeConn = neo4j.getConnection();
+                        PreparedStatement nodeStmt = nodeConn.prepareStatement("match(d:prohibition{name:{1}})<-[:prohibition]-(s:prohibition_node) return s.id, s.complement")
+                ) {
+                    nodeStmt.setString(1, name);
+                    try (ResultSet nodeRs = nodeStmt.executeQuery()) {
+                        while (nodeRs.next()) {
+                            nodes.add(new Prohibition.Node(nodeRs.getLong(1), nodeRs.getBoolean(2)));
+                        }
+                    }
+                }
+
+                prohibitions.add(new Prohibition(name, subject, nodes, new HashSet<>(), rs.getBoolean(2)));
+            }
+        }
+        return prohibitions;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(Neo4jProhibitionsLoaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,6 +1,7 @@
 package gov.nist.csd.pm.pip.loader.prohibitions;
 
 import gov.nist.csd.pm.exceptions.PMException;
+import gov.nist.csd.pm.pip.db.neo4j.Neo4jConnection;
 import gov.nist.csd.pm.pip.prohibitions.Neo4jProhibitionsDAO;
 import gov.nist.csd.pm.prohibitions.ProhibitionsDAO;
 import gov.nist.csd.pm.prohibitions.model.Prohibition;
@@ -8,9 +9,8 @@ import gov.nist.csd.pm.utils.TestUtils;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
+import java.sql.SQLException;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,4 +49,26 @@ class Neo4jProhibitionsLoaderIT {
         // delete prohibition
         dao.deleteProhibition("deny");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLoadSameAsOneByOne() throws PMException, IOException, SQLException {
+        Neo4jConnection neo4j = Neo4jConnection.getPool(TestUtils.getDatabaseContext());
+        String prefix = Neo4jProhibitionsLoaderBenchmark.createProhibitions(neo4j, 10000);
+        try {
+            List<Prohibition> before = Neo4jProhibitionsLoaderBenchmark.loadOneByOne(neo4j);
+            List<Prohibition> after = new Neo4jProhibitionsLoader(TestUtils.getDatabaseContext()).loadProhibitions();
+            assertEquals(before.size(), after.size());
+
+            Prohibition prohibition = new Neo4jProhibitionsDAO(TestUtils.getDatabaseContext()).getProhibition(prefix + 7);
+            assertEquals(prefix + 7, prohibition.getName());
+            assertEquals(new HashSet<>(Arrays.asList("read", "write")), prohibition.getOperations());
+            assertEquals(8, prohibition.getSubject().getSubjectID());
+            assertEquals(1, prohibition.getNodes().size());
+            assertEquals(1000007, prohibition.getNodes().get(0).getID());
+            assertTrue(prohibition.getNodes().get(0).isComplement());
+        }
+        finally {
+            Neo4jProhibitionsLoaderBenchmark.deleteProhibitions(neo4j, prefix);
+        }
+    }
+}
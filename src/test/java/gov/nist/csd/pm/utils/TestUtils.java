@@ -1,5 +1,6 @@
 package gov.nist.csd.pm.utils;
 
+import gov.nist.csd.pm.pip.db.ConnectionPoolConfig;
 import gov.nist.csd.pm.pip.db.DatabaseContext;
 
 import java.io.IOException;
@@ -21,7 +22,8 @@ public class TestUtils {
                     Integer.valueOf(props.getProperty("port")),
                     props.getProperty("username"),
                     props.getProperty("password"),
-                    props.getProperty("schema")
+                    props.getProperty("schema"),
+                    ConnectionPoolConfig.fromProperties(props)
             );
         }
 